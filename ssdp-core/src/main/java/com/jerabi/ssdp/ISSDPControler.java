@@ -172,4 +172,21 @@ public interface ISSDPControler {
 	 * @param listener that will listen and handle multicast messages received 
 	 */
 	void setMulticastListener(SSDPMulticastListener listener);
+	
+	/**
+	 * Returns the number of shards of the {@link SSDPMulticastListener}
+	 * @return shard count
+	 */
+	int getMulticastListenerShardCount();
+	
+	/**
+	 * Sets the number of shards of the {@link SSDPMulticastListener}.  The messages are received and decoded by one 
+	 * socket and one Thread, only the dispatch is sharded : each shard parses and handles the messages of its senders 
+	 * in its own Thread.  Every message is handled 
+	 * once, the messages are dropped only when the queue of their shard is full.  Must be set before the controler is started.
+	 * 
+	 * @param shardCount number of shards
+	 * @see SSDPMulticastListener#setShardCount(int)
+	 */
+	void setMulticastListenerShardCount(int shardCount);
 }
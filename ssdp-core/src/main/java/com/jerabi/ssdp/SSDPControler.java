@@ -1,10 +1,12 @@
 package com.jerabi.ssdp;
 
 import java.net.NetworkInterface;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import com.jerabi.ssdp.handler.ISSDPMessageHandler;
@@ -16,11 +18,15 @@ import com.jerabi.ssdp.message.ByeByeMessage;
 import com.jerabi.ssdp.message.DiscoverMessage;
 import com.jerabi.ssdp.message.DiscoverResponseMessage;
 import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.SSDPMessageKind;
 import com.jerabi.ssdp.message.ServiceInfo;
 import com.jerabi.ssdp.message.UpdateMessage;
+import com.jerabi.ssdp.network.ISSDPNetwork;
+import com.jerabi.ssdp.network.SSDPNetworkFactory;
 import com.jerabi.ssdp.sender.SSDPDefaultPeriodicMessageSender;
 import com.jerabi.ssdp.sender.SSDPDiscoverSender;
 import com.jerabi.ssdp.sender.SSDPPeriodicMessageSender;
+import com.jerabi.ssdp.sender.SSDPSendQueue;
 import com.jerabi.ssdp.util.SSDPContants;
 
 /**
@@ -144,6 +150,9 @@ public class SSDPControler implements ISSDPControler {
 
 	protected List<ISSDPMessageHandler> messageHandlerList = null;
 
+	// copy of messageHandlerList, built again when the list is modified
+	private volatile HandlerTable handlerTable = null;
+
 	protected SSDPDiscoverSender discoverSender = null;
 	protected SSDPPeriodicMessageSender periodicSender = null;
 	protected SSDPMulticastListener multicastListener = null;
@@ -160,6 +169,130 @@ public class SSDPControler implements ISSDPControler {
 
 	protected List<ServiceInfo> serviceInfoList = null;
 
+	// true between start() and stop() : this controler holds the shared SSDPSendQueue and ISSDPNetwork
+	private boolean sharedResourcesAcquired = false;
+
+	// copy of the handlers called for each message.  Never modified : a new table is built when the list of handlers changes.
+	private static final class HandlerTable {
+		final List<ISSDPMessageHandler> list;
+		final int version;
+		final ISSDPMessageHandler[] handlers;
+
+		HandlerTable(List<ISSDPMessageHandler> list) {
+			this.list = list;
+
+			// the version is read before the copy, a modification made meanwhile rebuilds the table again
+			if (list instanceof HandlerList) {
+				version = ((HandlerList) list).getVersion();
+			} else {
+				version = -1;
+			}
+			handlers = list.toArray(new ISSDPMessageHandler[list.size()]);
+		}
+
+		boolean isCurrent(List<ISSDPMessageHandler> current) {
+			// only a HandlerList counts its modifications, another list is copied for each message
+			if (current != list || !(current instanceof HandlerList)) {
+				return false;
+			}
+			return version == ((HandlerList) current).getVersion();
+		}
+	}
+
+	// copy-on-write list of the handlers that counts its modifications, so the HandlerTable is rebuilt only after a
+	// modification.  The modifications made through subList() are not counted.
+	private static final class HandlerList extends CopyOnWriteArrayList<ISSDPMessageHandler> {
+		private static final long serialVersionUID = 1L;
+
+		private final AtomicInteger version = new AtomicInteger();
+
+		int getVersion() {
+			return version.get();
+		}
+
+		@Override
+		public boolean add(ISSDPMessageHandler handler) {
+			boolean added = super.add(handler);
+			version.incrementAndGet();
+			return added;
+		}
+
+		@Override
+		public void add(int index, ISSDPMessageHandler handler) {
+			super.add(index, handler);
+			version.incrementAndGet();
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends ISSDPMessageHandler> c) {
+			boolean added = super.addAll(c);
+			version.incrementAndGet();
+			return added;
+		}
+
+		@Override
+		public boolean addAll(int index, Collection<? extends ISSDPMessageHandler> c) {
+			boolean added = super.addAll(index, c);
+			version.incrementAndGet();
+			return added;
+		}
+
+		@Override
+		public boolean addIfAbsent(ISSDPMessageHandler handler) {
+			boolean added = super.addIfAbsent(handler);
+			version.incrementAndGet();
+			return added;
+		}
+
+		@Override
+		public int addAllAbsent(Collection<? extends ISSDPMessageHandler> c) {
+			int added = super.addAllAbsent(c);
+			version.incrementAndGet();
+			return added;
+		}
+
+		@Override
+		public ISSDPMessageHandler set(int index, ISSDPMessageHandler handler) {
+			ISSDPMessageHandler old = super.set(index, handler);
+			version.incrementAndGet();
+			return old;
+		}
+
+		@Override
+		public ISSDPMessageHandler remove(int index) {
+			ISSDPMessageHandler old = super.remove(index);
+			version.incrementAndGet();
+			return old;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			boolean removed = super.remove(o);
+			version.incrementAndGet();
+			return removed;
+		}
+
+		@Override
+		public boolean removeAll(Collection<?> c) {
+			boolean removed = super.removeAll(c);
+			version.incrementAndGet();
+			return removed;
+		}
+
+		@Override
+		public boolean retainAll(Collection<?> c) {
+			boolean removed = super.retainAll(c);
+			version.incrementAndGet();
+			return removed;
+		}
+
+		@Override
+		public void clear() {
+			super.clear();
+			version.incrementAndGet();
+		}
+	}
+
 	/**
 	 * Constructor that used the default settings
 	 * @throws Exception 
@@ -223,9 +356,10 @@ public class SSDPControler implements ISSDPControler {
 		this.ssdpPort = ssdpPort;
 		this.threadPool = threadPool;
 
-		messageHandlerList = new ArrayList<ISSDPMessageHandler>();
+		// read by the listener and senders threads while the application modifies them
+		messageHandlerList = new HandlerList();
 
-		serviceInfoList = new ArrayList<ServiceInfo>();
+		serviceInfoList = new CopyOnWriteArrayList<ServiceInfo>();
 
 		discoverSender = new SSDPDiscoverSender(this, ssdpHost, ssdpPort, networkInterfaceList);
 		discoverSender.setSSDPResponseHandler(new SSDPDiscoverResponseHandler(this));
@@ -357,13 +491,37 @@ public class SSDPControler implements ISSDPControler {
 		this.multicastListener = listener;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getMulticastListenerShardCount() {
+		return multicastListener.getShardCount();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The value is set on the current {@link SSDPMulticastListener}.
+	 */
+	@Override
+	public void setMulticastListenerShardCount(int shardCount) {
+		multicastListener.setShardCount(shardCount);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * Starts DiscoverSender, PeriodicSender and MulticastListener 
-	 * that are enabled.
+	 * that are enabled.  The {@link SSDPSendQueue} and the {@link ISSDPNetwork} shared with the others
+	 * controlers are acquired until {@link #stop()}.
 	 */
 	@Override
-	public void start() throws Exception {
+	public synchronized void start() throws Exception {
+
+		if (!sharedResourcesAcquired) {
+			SSDPNetworkFactory.acquireInstance();
+			SSDPSendQueue.acquireMulticastQueue();
+			sharedResourcesAcquired = true;
+		}
 
 		// runner that send periodic messages
 		if (discoverSenderEnabled) {
@@ -379,10 +537,22 @@ public class SSDPControler implements ISSDPControler {
 
 	/**
 	 * {@inheritDoc}
+	 * Stops the {@link SSDPDiscoverSender} with the Thread that receives the responses to the M-SEARCH.
+	 * Releases the {@link SSDPSendQueue} and the {@link ISSDPNetwork} shared with the others controlers : the queue 
+	 * is stopped and the sockets kept open to send the messages are closed only when the last controler is stopped.
 	 */
 	@Override
-	public void stop() throws Exception {
+	public synchronized void stop() throws Exception {
 		threadPool.shutdownNow();
+		
+		discoverSender.stop();
+		
+		if (sharedResourcesAcquired) {
+			sharedResourcesAcquired = false;
+			
+			SSDPSendQueue.releaseMulticastQueue();
+			SSDPNetworkFactory.releaseInstance();
+		}
 	}
 
 	@Override
@@ -390,41 +560,76 @@ public class SSDPControler implements ISSDPControler {
 		processSSDPMessage(null, -1, message);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The kind of the message is given by the message (see {@link SSDPMessageKind#of(ISSDPMessage)}), all the handlers
+	 * are called from a copy of the list.  The copy is built again after the list of handlers is modified,
+	 * a handler added while a message is processed receives the next messages.
+	 */
 	@Override
 	public void processSSDPMessage(String remoteAddr, int remotePort, ISSDPMessage message) throws Exception {
 
-		if (message instanceof DiscoverMessage) {
-			for (ISSDPMessageHandler listener : messageHandlerList) {
-				listener.processSSDPDiscoverMessage(remoteAddr, remotePort, (DiscoverMessage) message);
-			}
-		} else if (message instanceof AbstractSSDPNotifyMessage) {
-
-			AbstractSSDPNotifyMessage notifyMessage = (AbstractSSDPNotifyMessage) message;
-			if (SSDPContants.NTS_ALIVE.equals(notifyMessage.getNts())) {
-				for (ISSDPMessageHandler listener : messageHandlerList) {
-					listener.processSSDPAliveMessage((AliveMessage) notifyMessage);
-				}
-			} else if (SSDPContants.NTS_UPDATE.equals(notifyMessage.getNts())) {
-				for (ISSDPMessageHandler listener : messageHandlerList) {
-					listener.processSSDPUpdateMessage((UpdateMessage) notifyMessage);
-				}
-			} else if (SSDPContants.NTS_BYEBYE.equals(notifyMessage.getNts())) {
-				for (ISSDPMessageHandler listener : messageHandlerList) {
-					listener.processSSDPByeByeMessage((ByeByeMessage) notifyMessage);
-				}
+		SSDPMessageKind kind = SSDPMessageKind.of(message);
+
+		if (kind == null) {
+			if (message instanceof AbstractSSDPNotifyMessage) {
+				logger.info("SSDPNotifyResponse not reconized : " + message);
 			} else {
-				logger.info("SSDPNotifyResponse not reconized : " + notifyMessage);
+				logger.info("ISSDPMessage not reconized : " + message);
+			}
+			return;
+		}
+
+		ISSDPMessageHandler[] handlers = getHandlerTable().handlers;
+
+		switch (kind) {
+		case ALIVE:
+			AliveMessage aliveMessage = (AliveMessage) message;
+			for (int i = 0; i < handlers.length; i++) {
+				handlers[i].processSSDPAliveMessage(aliveMessage);
 			}
-		} else if (message instanceof DiscoverResponseMessage) {
-			for (ISSDPMessageHandler listener : messageHandlerList) {
-				listener.processSSDPDiscoverResponseMessage((DiscoverResponseMessage) message);
+			break;
+		case UPDATE:
+			UpdateMessage updateMessage = (UpdateMessage) message;
+			for (int i = 0; i < handlers.length; i++) {
+				handlers[i].processSSDPUpdateMessage(updateMessage);
 			}
-		} else {
-			logger.info("ISSDPMessage not reconized : " + message);
+			break;
+		case BYEBYE:
+			ByeByeMessage byeByeMessage = (ByeByeMessage) message;
+			for (int i = 0; i < handlers.length; i++) {
+				handlers[i].processSSDPByeByeMessage(byeByeMessage);
+			}
+			break;
+		case DISCOVER:
+			DiscoverMessage discoverMessage = (DiscoverMessage) message;
+			for (int i = 0; i < handlers.length; i++) {
+				handlers[i].processSSDPDiscoverMessage(remoteAddr, remotePort, discoverMessage);
+			}
+			break;
+		case DISCOVER_RESPONSE:
+			DiscoverResponseMessage discoverResponseMessage = (DiscoverResponseMessage) message;
+			for (int i = 0; i < handlers.length; i++) {
+				handlers[i].processSSDPDiscoverResponseMessage(discoverResponseMessage);
+			}
+			break;
 		}
 
 	}
 
+	private HandlerTable getHandlerTable() {
+		HandlerTable table = handlerTable;
+
+		// the list was modified or replaced since the table was built
+		if (table == null || !table.isCurrent(messageHandlerList)) {
+			table = new HandlerTable(messageHandlerList);
+			handlerTable = table;
+		}
+
+		return table;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -451,10 +656,17 @@ public class SSDPControler implements ISSDPControler {
 
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * The services are copied in a {@link CopyOnWriteArrayList}, that can be modified while the senders iterate it,
+	 * unless the list is already a CopyOnWriteArrayList.
 	 */
 	@Override
 	public void setServiceInfoList(List<ServiceInfo> serviceList) {
-		this.serviceInfoList = serviceList;
+		if (serviceList == null || serviceList instanceof CopyOnWriteArrayList<?>) {
+			this.serviceInfoList = serviceList;
+		} else {
+			this.serviceInfoList = new CopyOnWriteArrayList<ServiceInfo>(serviceList);
+		}
 	}
 
 }
@@ -0,0 +1,24 @@
+package com.jerabi.ssdp.filter;
+
+/**
+ * Rule evaluated on a datagram received, before it's parsed.
+ * 
+ * The filters are called for each datagram received by the {@link com.jerabi.ssdp.listener.SSDPMulticastListener}.
+ * They must be fast and shouldn't allocate objects.
+ * 
+ * @author Sebastien Dionne
+ * @see SSDPFilterChain
+ * @see SSDPHeaderFilter
+ * @see SSDPSourceFilter
+ */
+public interface ISSDPPacketFilter {
+	
+	/**
+	 * Returns true if the datagram matches this filter
+	 * 
+	 * @param packet datagram received
+	 * @return true if it matches
+	 */
+	boolean matches(SSDPPacket packet);
+	
+}
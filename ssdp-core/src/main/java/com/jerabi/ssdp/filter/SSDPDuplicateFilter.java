@@ -0,0 +1,171 @@
+package com.jerabi.ssdp.filter;
+
+/**
+ * Matches the datagrams already received from the same address in the last milliseconds.
+ * 
+ * The devices send each NOTIFY 2 or 3 times in a row (like {@link com.jerabi.ssdp.sender.AliveMessageSender}), and the 
+ * M-SEARCH are sent twice.  Added to a {@link SSDPFilterChain} with the action DROP, this filter suppresses the copies 
+ * before they are parsed.
+ * 
+ * The datagrams are identified by {@link SSDPPacket#getHash()} and their length.  The cache is a fixed table : when 
+ * two datagrams use the same slot, the oldest is forgotten, so a copy can be missed but a different datagram is never 
+ * suppressed.  The window starts when a datagram is received the first time, the copies don't extend it : a device 
+ * that repeats the same message is still handled once per window.
+ * 
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPDuplicateFilter duplicateFilter = new SSDPDuplicateFilter(500, 256);
+ * 
+ * SSDPFilterChain chain = new SSDPFilterChain();
+ * chain.addRule("duplicates", duplicateFilter, SSDPFilterChain.Action.DROP);
+ * 
+ * controler.getMulticastListener().setFilterChain(chain);
+ * ...
+ * long suppressed = duplicateFilter.getSuppressedCount();
+ * </pre>
+ */
+public class SSDPDuplicateFilter implements ISSDPPacketFilter {
+	
+	/**
+	 * Default window in ms
+	 */
+	public static final long DEFAULT_WINDOW = 500;
+	
+	/**
+	 * Default number of datagrams remembered
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	private final long windowNanos;
+	private final int mask;
+	
+	// slots of the cache
+	private final long[] hashes;
+	private final int[] lengths;
+	private final long[] times;
+	private final boolean[] used;
+	
+	private long suppressedCount = 0;
+	private long receivedCount = 0;
+	
+	/**
+	 * Constructor with default values
+	 */
+	public SSDPDuplicateFilter() {
+		this(DEFAULT_WINDOW, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor
+	 * @param window time in ms during which a copy is suppressed
+	 * @param capacity number of datagrams remembered, rounded to the next power of 2
+	 */
+	public SSDPDuplicateFilter(long window, int capacity) {
+		if(window<=0){
+			throw new IllegalArgumentException("Invalid window : " + window);
+		}
+		if(capacity<1 || capacity>(1 << 20)){
+			throw new IllegalArgumentException("Invalid capacity : " + capacity);
+		}
+		
+		int size = Integer.highestOneBit(capacity);
+		if(size<capacity){
+			size <<= 1;
+		}
+		
+		this.windowNanos = window * 1000000L;
+		this.mask = size - 1;
+		
+		hashes = new long[size];
+		lengths = new int[size];
+		times = new long[size];
+		used = new boolean[size];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Returns true if the same datagram was received from the same address during the window.  Otherwise the 
+	 * datagram is remembered.
+	 */
+	@Override
+	public boolean matches(SSDPPacket packet) {
+		return isDuplicate(packet.getHash(), packet.getLength(), System.nanoTime());
+	}
+	
+	/**
+	 * Returns true if the datagram was received during the window, otherwise the datagram is remembered
+	 * @param hash hash of the datagram
+	 * @param length length of the datagram
+	 * @param now current time in ns
+	 * @return true if it's a copy
+	 */
+	protected synchronized boolean isDuplicate(long hash, int length, long now) {
+		receivedCount++;
+		
+		// the high bits are better mixed by FNV
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		
+		if(used[slot] && hashes[slot]==hash && lengths[slot]==length && now - times[slot] < windowNanos){
+			suppressedCount++;
+			return true;
+		}
+		
+		used[slot] = true;
+		hashes[slot] = hash;
+		lengths[slot] = length;
+		times[slot] = now;
+		
+		return false;
+	}
+	
+	/**
+	 * Forgets all the datagrams
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < used.length; i++) {
+			used[i] = false;
+		}
+	}
+	
+	/**
+	 * Returns the time in ms during which a copy is suppressed
+	 * @return window
+	 */
+	public long getWindow() {
+		return windowNanos / 1000000L;
+	}
+	
+	/**
+	 * Returns the number of datagrams remembered
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+	
+	/**
+	 * Returns the number of copies suppressed
+	 * @return suppressed
+	 */
+	public synchronized long getSuppressedCount() {
+		return suppressedCount;
+	}
+	
+	/**
+	 * Returns the number of datagrams checked
+	 * @return received
+	 */
+	public synchronized long getReceivedCount() {
+		return receivedCount;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SSDPDuplicateFilter[window=" + getWindow() + ", capacity=" + getCapacity() + ", suppressed=" + getSuppressedCount() + "]";
+	}
+	
+}
@@ -0,0 +1,251 @@
+package com.jerabi.ssdp.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ordered list of rules evaluated on each datagram received, before it's parsed.
+ * 
+ * The first rule that matches decides if the datagram is accepted or dropped.  When no rule matches, the 
+ * default action is used.  Each rule counts the datagrams it matched.
+ * 
+ * The rules can be added while the listener is running.  Evaluating the chain doesn't allocate any object.
+ * 
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPFilterChain chain = new SSDPFilterChain();
+ * 
+ * // drop the Microsoft and DIAL chatter, and the M-SEARCH of the others control points
+ * chain.addRule("microsoft", new SSDPHeaderFilter(SSDPPacket.NT, "urn:schemas-microsoft-com:"), SSDPFilterChain.Action.DROP);
+ * chain.addRule("dial", new SSDPHeaderFilter(SSDPPacket.NT, "urn:dial-multiscreen-org:"), SSDPFilterChain.Action.DROP);
+ * chain.addRule("m-search", new SSDPHeaderFilter(SSDPPacket.START_LINE, "M-SEARCH"), SSDPFilterChain.Action.DROP);
+ * 
+ * controler.getMulticastListener().setFilterChain(chain);
+ * ...
+ * long dropped = chain.getRule("microsoft").getHitCount();
+ * </pre>
+ * @see com.jerabi.ssdp.listener.SSDPMulticastListener#setFilterChain(SSDPFilterChain)
+ */
+public class SSDPFilterChain {
+	
+	/**
+	 * What to do with a datagram
+	 */
+	public enum Action {
+		/**
+		 * The datagram is parsed and dispatched
+		 */
+		ACCEPT,
+		/**
+		 * The datagram is ignored
+		 */
+		DROP
+	}
+	
+	/**
+	 * A filter of the chain, with its action and its counter
+	 */
+	public static class Rule {
+		private final String name;
+		private final ISSDPPacketFilter filter;
+		private final Action action;
+		private final AtomicLong hitCount = new AtomicLong();
+		
+		Rule(String name, ISSDPPacketFilter filter, Action action) {
+			this.name = name;
+			this.filter = filter;
+			this.action = action;
+		}
+		
+		/**
+		 * Returns the name of the rule
+		 * @return name
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Returns the filter
+		 * @return filter
+		 */
+		public ISSDPPacketFilter getFilter() {
+			return filter;
+		}
+		
+		/**
+		 * Returns the action when the filter matches
+		 * @return action
+		 */
+		public Action getAction() {
+			return action;
+		}
+		
+		/**
+		 * Returns the number of datagrams matched by this rule
+		 * @return hits
+		 */
+		public long getHitCount() {
+			return hitCount.get();
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return name + " " + action + " " + filter + " hits=" + hitCount.get();
+		}
+	}
+	
+	// replaced when a rule is added or removed
+	private volatile Rule[] rules = new Rule[0];
+	
+	private volatile Action defaultAction = Action.ACCEPT;
+	
+	private final AtomicLong acceptedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	
+	/**
+	 * Adds a rule at the end of the chain
+	 * 
+	 * @param name name of the rule, to read its counter
+	 * @param filter filter
+	 * @param action action when the filter matches
+	 * @return the rule added
+	 */
+	public synchronized Rule addRule(String name, ISSDPPacketFilter filter, Action action) {
+		if(filter==null || action==null){
+			throw new IllegalArgumentException("The filter and the action can't be null");
+		}
+		
+		Rule rule = new Rule(name, filter, action);
+		
+		Rule[] newRules = Arrays.copyOf(rules, rules.length + 1);
+		newRules[rules.length] = rule;
+		rules = newRules;
+		
+		return rule;
+	}
+	
+	/**
+	 * Removes the rules with this name
+	 * 
+	 * @param name name of the rule
+	 * @return true if a rule was removed
+	 */
+	public synchronized boolean removeRule(String name) {
+		List<Rule> ruleList = new ArrayList<Rule>();
+		
+		for (Rule rule : rules) {
+			if(name==null ? rule.name!=null : !name.equals(rule.name)){
+				ruleList.add(rule);
+			}
+		}
+		
+		if(ruleList.size()==rules.length){
+			return false;
+		}
+		
+		rules = ruleList.toArray(new Rule[ruleList.size()]);
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the first rule with this name
+	 * 
+	 * @param name name of the rule
+	 * @return the rule or null if not found
+	 */
+	public Rule getRule(String name) {
+		for (Rule rule : rules) {
+			if(name==null ? rule.name==null : name.equals(rule.name)){
+				return rule;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the rules, in the order they are evaluated
+	 * @return rules
+	 */
+	public List<Rule> getRules() {
+		return Arrays.asList(rules);
+	}
+	
+	/**
+	 * Evaluates the rules on the datagram
+	 * 
+	 * @param packet datagram received
+	 * @return true if the datagram must be parsed, false if it's dropped
+	 */
+	public boolean accept(SSDPPacket packet) {
+		Rule[] rules = this.rules;
+		Action action = defaultAction;
+		
+		for (int i = 0; i < rules.length; i++) {
+			if(rules[i].filter.matches(packet)){
+				rules[i].hitCount.incrementAndGet();
+				action = rules[i].action;
+				break;
+			}
+		}
+		
+		if(action==Action.ACCEPT){
+			acceptedCount.incrementAndGet();
+			return true;
+		}
+		
+		droppedCount.incrementAndGet();
+		return false;
+	}
+	
+	/**
+	 * Returns the action when no rule matches
+	 * @return default action
+	 */
+	public Action getDefaultAction() {
+		return defaultAction;
+	}
+	
+	/**
+	 * Sets the action when no rule matches.  The default is ACCEPT.
+	 * @param defaultAction default action
+	 */
+	public void setDefaultAction(Action defaultAction) {
+		if(defaultAction==null){
+			throw new IllegalArgumentException("The default action can't be null");
+		}
+		this.defaultAction = defaultAction;
+	}
+	
+	/**
+	 * Returns the number of datagrams accepted
+	 * @return accepted
+	 */
+	public long getAcceptedCount() {
+		return acceptedCount.get();
+	}
+	
+	/**
+	 * Returns the number of datagrams dropped
+	 * @return dropped
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SSDPFilterChain[accepted=" + acceptedCount.get() + ", dropped=" + droppedCount.get() + ", rules=" + Arrays.toString(rules) + "]";
+	}
+	
+}
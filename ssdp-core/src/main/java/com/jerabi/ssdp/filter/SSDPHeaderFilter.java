@@ -0,0 +1,83 @@
+package com.jerabi.ssdp.filter;
+
+/**
+ * Matches the datagrams when the start line or a header starts with a prefix.  The case of the
+ * ASCII letters is ignored.
+ * 
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * // the messages of the Windows Media Player and of the DIAL devices
+ * new SSDPHeaderFilter(SSDPPacket.NT, "urn:schemas-microsoft-com:");
+ * new SSDPHeaderFilter(SSDPPacket.ST, "urn:dial-multiscreen-org:");
+ * 
+ * // the M-SEARCH requests
+ * new SSDPHeaderFilter(SSDPPacket.START_LINE, "M-SEARCH");
+ * </pre>
+ * @see SSDPPacket
+ */
+public class SSDPHeaderFilter implements ISSDPPacketFilter {
+	
+	private final int field;
+	private final String prefix;
+	private final byte[] prefixBytes;
+	
+	/**
+	 * Constructor
+	 * @param field like {@link SSDPPacket#NT}
+	 * @param prefix ASCII prefix
+	 */
+	public SSDPHeaderFilter(int field, String prefix) {
+		if(field<SSDPPacket.START_LINE || field>SSDPPacket.USN){
+			throw new IllegalArgumentException("Unknown field : " + field);
+		}
+		if(prefix==null){
+			throw new IllegalArgumentException("The prefix can't be null");
+		}
+		
+		this.field = field;
+		this.prefix = prefix;
+		
+		prefixBytes = new byte[prefix.length()];
+		for (int i = 0; i < prefixBytes.length; i++) {
+			char c = Character.toUpperCase(prefix.charAt(i));
+			if(c>0x7f){
+				throw new IllegalArgumentException("The prefix must be ASCII : " + prefix);
+			}
+			prefixBytes[i] = (byte) c;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean matches(SSDPPacket packet) {
+		return packet.startsWith(field, prefixBytes, true);
+	}
+	
+	/**
+	 * Returns the field compared
+	 * @return field like {@link SSDPPacket#NT}
+	 */
+	public int getField() {
+		return field;
+	}
+	
+	/**
+	 * Returns the prefix
+	 * @return prefix
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SSDPHeaderFilter[field=" + field + ", prefix=" + prefix + "]";
+	}
+	
+}
@@ -0,0 +1,284 @@
+package com.jerabi.ssdp.filter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Peek on a datagram received, before it's parsed.
+ * 
+ * Only the start line and the headers NT, ST, NTS and USN are located.  The values are not decoded : the filters
+ * compare them with {@link #startsWith(int, byte[], boolean)} directly on the bytes (or the chars) received.  {@link #getHash()}
+ * identifies the content of the datagram and its sender.
+ * 
+ * The same instance is reused for each datagram by {@link #reset(String, byte[], int, int)}, so filtering a 
+ * datagram doesn't allocate any object.  A SSDPPacket must be used by one Thread at the time.
+ * 
+ * @author Sebastien Dionne
+ * @see SSDPFilterChain
+ */
+public class SSDPPacket {
+	
+	/**
+	 * The first line of the message, like NOTIFY * HTTP/1.1
+	 */
+	public static final int START_LINE = 0;
+	/**
+	 * NT header
+	 */
+	public static final int NT = 1;
+	/**
+	 * ST header
+	 */
+	public static final int ST = 2;
+	/**
+	 * NTS header
+	 */
+	public static final int NTS = 3;
+	/**
+	 * USN header
+	 */
+	public static final int USN = 4;
+	
+	private static final int FIELD_COUNT = 5;
+	
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	// header names with the colon, in upper case, by field
+	private static final byte[][] HEADERS = {
+		null,
+		{'N', 'T', ':'},
+		{'S', 'T', ':'},
+		{'N', 'T', 'S', ':'},
+		{'U', 'S', 'N', ':'}
+	};
+	
+	private String remoteAddr = null;
+	
+	// the datagram is a byte array, a buffer or a String
+	private byte[] data = null;
+	private ByteBuffer buffer = null;
+	private String text = null;
+	
+	// datagram, between start and end
+	private int start;
+	private int end;
+	
+	private final int[] valueStart = new int[FIELD_COUNT];
+	private final int[] valueEnd = new int[FIELD_COUNT];
+	
+	// computed on the first call of getHash()
+	private long hash;
+	private boolean hashed;
+	
+	/**
+	 * Locates the fields of a datagram received
+	 * 
+	 * @param remoteAddr sender IP address, can be null
+	 * @param data array that contains the datagram
+	 * @param offset index of the first byte
+	 * @param length length of the datagram
+	 */
+	public void reset(String remoteAddr, byte[] data, int offset, int length) {
+		this.remoteAddr = remoteAddr;
+		this.data = data;
+		this.buffer = null;
+		this.text = null;
+		
+		scan(offset, offset + length);
+	}
+	
+	/**
+	 * Locates the fields of the datagram between the position and the limit of the buffer.  The 
+	 * buffer must not be modified while the packet is used.
+	 * 
+	 * @param remoteAddr sender IP address, can be null
+	 * @param data datagram received
+	 */
+	public void reset(String remoteAddr, ByteBuffer data) {
+		if(data.hasArray()){
+			reset(remoteAddr, data.array(), data.arrayOffset() + data.position(), data.remaining());
+			return;
+		}
+		
+		this.remoteAddr = remoteAddr;
+		this.data = null;
+		this.buffer = data;
+		this.text = null;
+		
+		scan(data.position(), data.limit());
+	}
+	
+	/**
+	 * Locates the fields of a message already decoded
+	 * 
+	 * @param remoteAddr sender IP address, can be null
+	 * @param message message received
+	 */
+	public void reset(String remoteAddr, String message) {
+		this.remoteAddr = remoteAddr;
+		this.data = null;
+		this.buffer = null;
+		this.text = message;
+		
+		scan(0, message!=null ? message.length() : 0);
+	}
+	
+	/**
+	 * Returns the sender IP address
+	 * @return remote address or null if unknown
+	 */
+	public String getRemoteAddr() {
+		return remoteAddr;
+	}
+	
+	/**
+	 * Returns the length of the datagram
+	 * @return length in bytes, or in chars if the message was decoded
+	 */
+	public int getLength() {
+		return end - start;
+	}
+	
+	/**
+	 * Returns a 64 bits hash (FNV-1a) of the sender address and of the datagram.  Two datagrams with the 
+	 * same content sent by the same address have the same hash.
+	 * 
+	 * @return hash
+	 */
+	public long getHash() {
+		if(hashed){
+			return hash;
+		}
+		
+		long h = FNV_OFFSET;
+		
+		if(remoteAddr!=null){
+			for (int i = 0; i < remoteAddr.length(); i++) {
+				h = (h ^ remoteAddr.charAt(i)) * FNV_PRIME;
+			}
+		}
+		// separator, so the address can't be confused with the datagram
+		h = (h ^ 0xff) * FNV_PRIME;
+		
+		for (int i = start; i < end; i++) {
+			h = (h ^ at(i)) * FNV_PRIME;
+		}
+		
+		hash = h;
+		hashed = true;
+		
+		return h;
+	}
+	
+	/**
+	 * Returns true if the field is in the datagram
+	 * @param field like {@link #NT}
+	 * @return true if found
+	 */
+	public boolean contains(int field) {
+		return valueStart[field]>=0;
+	}
+	
+	/**
+	 * Returns true if the value of the field starts with the prefix.
+	 * 
+	 * @param field like {@link #NT}
+	 * @param prefix ASCII prefix.  With ignoreCase, the prefix must be in upper case
+	 * @param ignoreCase compare the ASCII letters ignoring the case
+	 * @return false if the field is not found or doesn't start with the prefix
+	 */
+	public boolean startsWith(int field, byte[] prefix, boolean ignoreCase) {
+		int start = valueStart[field];
+		if(start<0 || valueEnd[field] - start < prefix.length){
+			return false;
+		}
+		
+		for (int i = 0; i < prefix.length; i++) {
+			int c = at(start + i);
+			if(ignoreCase && c>='a' && c<='z'){
+				c -= 'a' - 'A';
+			}
+			if(c!=(prefix[i] & 0xff)){
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private int at(int i) {
+		if(data!=null){
+			return data[i] & 0xff;
+		} else if(buffer!=null){
+			return buffer.get(i) & 0xff;
+		}
+		return text.charAt(i);
+	}
+	
+	private void scan(int start, int end) {
+		this.start = start;
+		this.end = end;
+		this.hashed = false;
+		
+		for (int i = 0; i < FIELD_COUNT; i++) {
+			valueStart[i] = -1;
+			valueEnd[i] = -1;
+		}
+		
+		int lineStart = start;
+		boolean first = true;
+		
+		while(lineStart<end){
+			int lineEnd = lineStart;
+			while(lineEnd<end && at(lineEnd)!='\n'){
+				lineEnd++;
+			}
+			
+			if(first){
+				setValue(START_LINE, lineStart, lineEnd);
+				first = false;
+			} else {
+				for (int field = 1; field < FIELD_COUNT; field++) {
+					if(matchesHeader(lineStart, lineEnd, HEADERS[field])){
+						setValue(field, lineStart + HEADERS[field].length, lineEnd);
+						break;
+					}
+				}
+			}
+			
+			lineStart = lineEnd + 1;
+		}
+	}
+	
+	private boolean matchesHeader(int start, int end, byte[] header) {
+		if(end - start < header.length){
+			return false;
+		}
+		
+		for (int i = 0; i < header.length; i++) {
+			int c = at(start + i);
+			if(c>='a' && c<='z'){
+				c -= 'a' - 'A';
+			}
+			if(c!=header[i]){
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	// the value is trimmed
+	private void setValue(int field, int start, int end) {
+		while(start<end && at(start)<=' '){
+			start++;
+		}
+		while(end>start && at(end-1)<=' '){
+			end--;
+		}
+		
+		valueStart[field] = start;
+		valueEnd[field] = end;
+	}
+	
+}
@@ -0,0 +1,82 @@
+package com.jerabi.ssdp.filter;
+
+/**
+ * Matches the datagrams sent from an address that starts with a prefix.
+ * 
+ * The prefix ends with a separator of the address, a dot for IPv4 or a colon for IPv6, so it matches whole numbers only : 
+ * "192.168.1." matches 192.168.1.10 but not 192.168.10.1.  A prefix like "192.168.1.1" is refused because it would match 
+ * 192.168.1.1 to 192.168.1.199, use it with exact=true.  An empty prefix matches all the addresses.
+ * 
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * // the devices of the subnet 192.168.2.0/24
+ * new SSDPSourceFilter("192.168.2.");
+ * 
+ * // one device
+ * new SSDPSourceFilter("192.168.1.20", true);
+ * </pre>
+ * @see SSDPPacket#getRemoteAddr()
+ */
+public class SSDPSourceFilter implements ISSDPPacketFilter {
+	
+	private final String prefix;
+	private final boolean exact;
+	
+	/**
+	 * Constructor
+	 * @param prefix beginning of the IP address, ending with a dot or a colon
+	 * @throws IllegalArgumentException if the prefix doesn't end with a dot or a colon
+	 */
+	public SSDPSourceFilter(String prefix) {
+		this(prefix, false);
+	}
+	
+	/**
+	 * Constructor
+	 * @param prefix beginning of the IP address ending with a dot or a colon, or the IP address
+	 * @param exact true if the address must be equal to the prefix
+	 * @throws IllegalArgumentException if the prefix is not exact and doesn't end with a dot or a colon
+	 */
+	public SSDPSourceFilter(String prefix, boolean exact) {
+		if(prefix==null){
+			throw new IllegalArgumentException("The prefix can't be null");
+		}
+		if(!exact && prefix.length()>0 && !prefix.endsWith(".") && !prefix.endsWith(":")){
+			throw new IllegalArgumentException("The prefix must end with a dot or a colon : " + prefix);
+		}
+		this.prefix = prefix;
+		this.exact = exact;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean matches(SSDPPacket packet) {
+		String remoteAddr = packet.getRemoteAddr();
+		
+		if(remoteAddr==null){
+			return false;
+		}
+		
+		return exact ? remoteAddr.equals(prefix) : remoteAddr.startsWith(prefix);
+	}
+	
+	/**
+	 * Returns the prefix of the addresses
+	 * @return prefix
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SSDPSourceFilter[prefix=" + prefix + ", exact=" + exact + "]";
+	}
+	
+}
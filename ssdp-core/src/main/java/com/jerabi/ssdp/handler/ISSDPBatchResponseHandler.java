@@ -0,0 +1,23 @@
+package com.jerabi.ssdp.handler;
+
+/**
+ * Provides a API to handle many raw messages received at once.
+ * 
+ * When the handler of a {@link com.jerabi.ssdp.network.IMulticastListener} implements this interface, the listener 
+ * can pass all the messages received in the same wakeup with one call, see 
+ * {@link com.jerabi.ssdp.network.IMulticastListener#receive(boolean, int)}.  The others handlers receive the messages one by one.
+ * 
+ * @author Sebastien Dionne
+ * @see SSDPResponseBatch
+ */
+public interface ISSDPBatchResponseHandler extends ISSDPResponseHandler {
+	
+	/**
+	 * Handle the raw messages received.  The batch is reused by the listener, it's only valid during the call.
+	 * 
+	 * @param batch messages received, in the order they were received
+	 * @throws Exception
+	 */
+	void handleBatch(SSDPResponseBatch batch) throws Exception;
+	
+}
@@ -0,0 +1,29 @@
+package com.jerabi.ssdp.handler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides a API to handle the bytes of the messages received, before they are decoded.
+ * 
+ * When the handler of a {@link com.jerabi.ssdp.network.IMulticastListener} implements this interface, the listener
+ * passes the buffer received from the network instead of a String.  The messages are passed one by one, even 
+ * if the handler is also a {@link ISSDPBatchResponseHandler}.
+ * 
+ * @author Sebastien Dionne
+ * @see SSDPRawResponseHandler
+ * @see com.jerabi.ssdp.message.helper.SSDPMessageParser
+ */
+public interface ISSDPRawResponseHandler extends ISSDPResponseHandler {
+	
+	/**
+	 * Handle the message received.  The message is between the position and the limit of the buffer.
+	 * The buffer is reused by the listener, it's only valid during the call.
+	 * 
+	 * @param remoteAddr sender IP address
+	 * @param remotePort sender port
+	 * @param data message received from the network
+	 * @throws Exception
+	 */
+	void handle(String remoteAddr, int remotePort, ByteBuffer data) throws Exception;
+	
+}
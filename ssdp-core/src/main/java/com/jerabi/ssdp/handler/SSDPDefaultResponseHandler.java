@@ -18,10 +18,13 @@ import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
  * This class look like {@link ISSDPMessageHandler} but ISSDPMessageHandler actually process a {@link com.jerabi.ssdp.message.ISSDPMessage} 
  * generated from the raw message received by this ISSDPHandler.  Once a ISSDPMessage is generated, it's passed to the {@link com.jerabi.ssdp.ISSDPControler}.
  * 
+ * The messages of a {@link SSDPResponseBatch} are passed one by one to {@link #handle(String, int, String)}, so
+ * the subclasses only need to override it.
+ * 
  * @author Sebastien Dionne
  * @see ISSDPMessageHandler 
  */
-public class SSDPDefaultResponseHandler implements ISSDPResponseHandler {
+public class SSDPDefaultResponseHandler implements ISSDPBatchResponseHandler {
 	private Logger logger = Logger.getLogger(SSDPDefaultResponseHandler.class.getName());
 	
 	protected ISSDPControler controler = null;
@@ -87,5 +90,29 @@ public class SSDPDefaultResponseHandler implements ISSDPResponseHandler {
 		} 
 		
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Each message is handled by {@link #handle(String, int, String)}.  If a message fails, the 
+	 * others messages are still handled and the first Exception is thrown at the end.
+	 */
+	@Override
+	public void handleBatch(SSDPResponseBatch batch) throws Exception {
+		Exception exception = null;
+		
+		for (int i = 0; i < batch.size(); i++) {
+			try {
+				handle(batch.getRemoteAddr(i), batch.getRemotePort(i), batch.getMessage(i));
+			} catch (Exception e) {
+				if(exception==null){
+					exception = e;
+				}
+			}
+		}
+		
+		if(exception!=null){
+			throw exception;
+		}
+	}
 
 }
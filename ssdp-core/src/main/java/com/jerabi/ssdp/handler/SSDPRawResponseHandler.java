@@ -0,0 +1,93 @@
+package com.jerabi.ssdp.handler;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jerabi.ssdp.ISSDPControler;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
+import com.jerabi.ssdp.message.helper.SSDPMessageParser;
+
+/**
+ * {@link SSDPDefaultResponseHandler} that parses the bytes received with {@link SSDPMessageParser}.
+ * 
+ * The datagram is not decoded to a String before the parsing : the message is read from the buffer
+ * of the listener by {@link SSDPMessageHelper#parseSSDPMessage(ByteBuffer)}.  The ISSDPMessage created 
+ * are the same as {@link SSDPDefaultResponseHandler}.
+ * 
+ * By default, the messages passed to the ISSDPControler are views from {@link SSDPMessageHelper#parseSSDPMessageView(ByteBuffer)} :
+ * the headers are only decoded when they are requested.  Use {@link #setMessageView(boolean)} to parse all the headers. 
+ * 
+ * The messages are logged with the level FINE instead of INFO, to avoid decoding them.
+ * 
+ * The messages received as String (by {@link #handle(String, int, String)}) are still parsed 
+ * by {@link SSDPMessageHelper#getSSDPMessage(String)}.
+ * 
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * controler.getMulticastListener().setSSDPResponseHandler(new SSDPRawResponseHandler(controler));
+ * </pre>
+ * @see SSDPMessageParser
+ */
+public class SSDPRawResponseHandler extends SSDPDefaultResponseHandler implements ISSDPRawResponseHandler {
+	private Logger logger = Logger.getLogger(SSDPRawResponseHandler.class.getName());
+	
+	private boolean messageView = true;
+	
+	/**
+	 * Constructor
+	 * @param controler that will process {@link ISSDPMessage}
+	 */
+	public SSDPRawResponseHandler(ISSDPControler controler) {
+		super(controler);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The message received will be converted to ISSDPMessage 
+	 * {@link SSDPMessageHelper#parseSSDPMessageView(ByteBuffer)} or {@link SSDPMessageHelper#parseSSDPMessage(ByteBuffer)}. 
+	 * 
+	 * The ISSDPMessage will be process by the ISSDPControler
+	 */
+	@Override
+	public void handle(String remoteAddr, int remotePort, ByteBuffer data) throws Exception {
+		// the message is only decoded for the log if required
+		if(logger.isLoggable(Level.FINE)){
+			byte[] bytes = new byte[data.remaining()];
+			data.duplicate().get(bytes);
+			logger.fine("\n" + new String(bytes));
+		}
+		
+		ISSDPMessage ssdpMessage = null;
+		
+		if(messageView){
+			ssdpMessage = SSDPMessageHelper.parseSSDPMessageView(data);
+		} else {
+			ssdpMessage = SSDPMessageHelper.parseSSDPMessage(data);
+		}
+		
+		if(ssdpMessage!=null && controler!=null){
+			controler.processSSDPMessage(remoteAddr, remotePort, ssdpMessage);
+		} 
+	}
+
+	/**
+	 * Returns true if the messages are views that decode the headers when they are requested
+	 * @return message view
+	 */
+	public boolean isMessageView() {
+		return messageView;
+	}
+
+	/**
+	 * Sets if the messages are views that decode the headers when they are requested, or messages 
+	 * with all the headers parsed
+	 * @param messageView true for views
+	 */
+	public void setMessageView(boolean messageView) {
+		this.messageView = messageView;
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.jerabi.ssdp.handler;
+
+/**
+ * Raw messages received together by a {@link com.jerabi.ssdp.network.IMulticastListener}.
+ * 
+ * A batch is created once by the listener and reused for each call to 
+ * {@link ISSDPBatchResponseHandler#handleBatch(SSDPResponseBatch)}, so a handler must not keep a reference
+ * to the batch after the call.  The values can be copied if required.
+ * 
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * public void handleBatch(SSDPResponseBatch batch) throws Exception {
+ *     for (int i = 0; i &lt; batch.size(); i++) {
+ *         handle(batch.getRemoteAddr(i), batch.getRemotePort(i), batch.getMessage(i));
+ *     }
+ * }
+ * </pre>
+ * @see ISSDPBatchResponseHandler
+ */
+public class SSDPResponseBatch {
+	
+	/**
+	 * Default number of messages in a batch
+	 */
+	public static final int DEFAULT_CAPACITY = 32;
+	
+	private final String[] remoteAddrs;
+	private final int[] remotePorts;
+	private final String[] messages;
+	private int size = 0;
+	
+	/**
+	 * Constructor
+	 * @param capacity maximum number of messages in the batch
+	 */
+	public SSDPResponseBatch(int capacity) {
+		if(capacity<=0){
+			throw new IllegalArgumentException("Invalid capacity : " + capacity);
+		}
+		remoteAddrs = new String[capacity];
+		remotePorts = new int[capacity];
+		messages = new String[capacity];
+	}
+	
+	/**
+	 * Adds a message at the end of the batch
+	 * @param remoteAddr sender IP address
+	 * @param remotePort sender port
+	 * @param message raw message received from the network
+	 * @throws IllegalStateException if the batch is full
+	 */
+	public void add(String remoteAddr, int remotePort, String message) {
+		if(isFull()){
+			throw new IllegalStateException("Batch is full");
+		}
+		remoteAddrs[size] = remoteAddr;
+		remotePorts[size] = remotePort;
+		messages[size] = message;
+		size++;
+	}
+	
+	/**
+	 * Removes all the messages
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			remoteAddrs[i] = null;
+			messages[i] = null;
+		}
+		size = 0;
+	}
+	
+	/**
+	 * Returns the number of messages in the batch
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns true if the batch doesn't contain messages
+	 * @return empty
+	 */
+	public boolean isEmpty() {
+		return size==0;
+	}
+	
+	/**
+	 * Returns true if the batch can't contain more messages
+	 * @return full
+	 */
+	public boolean isFull() {
+		return size==messages.length;
+	}
+	
+	/**
+	 * Returns the maximum number of messages in the batch
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return messages.length;
+	}
+	
+	/**
+	 * Returns the sender IP address of a message
+	 * @param index index of the message
+	 * @return IP address
+	 */
+	public String getRemoteAddr(int index) {
+		checkIndex(index);
+		return remoteAddrs[index];
+	}
+	
+	/**
+	 * Returns the sender port of a message
+	 * @param index index of the message
+	 * @return port
+	 */
+	public int getRemotePort(int index) {
+		checkIndex(index);
+		return remotePorts[index];
+	}
+	
+	/**
+	 * Returns a raw message
+	 * @param index index of the message
+	 * @return message
+	 */
+	public String getMessage(int index) {
+		checkIndex(index);
+		return messages[index];
+	}
+	
+	private void checkIndex(int index) {
+		if(index<0 || index>=size){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+}
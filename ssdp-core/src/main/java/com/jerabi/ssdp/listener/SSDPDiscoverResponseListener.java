@@ -0,0 +1,380 @@
+package com.jerabi.ssdp.listener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jerabi.ssdp.ISSDPControler;
+import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
+import com.jerabi.ssdp.network.IUDPSender;
+import com.jerabi.ssdp.network.SSDPNetworkFactory;
+import com.jerabi.ssdp.util.SSDPContants;
+import com.jerabi.ssdp.util.State;
+import com.jerabi.ssdp.util.StateHolder;
+
+/**
+ * Sends M-SEARCH and receives their responses (HTTP/1.1 200 OK) with only one socket and one Thread.
+ *
+ * All the M-SEARCH are sent with the same {@link IUDPSender}, so all the responses are received on the same port.  A single
+ * Thread reads the responses and gives them to the {@link SSDPSearch} in progress that match their ST.  Many searches
+ * can be in progress at the same time without using more Threads.
+ *
+ * A M-SEARCH sent again with the same ST and the same handler while its search is in progress (the M-SEARCH are
+ * sent twice because UDP is unreliable) joins this search : the same SSDPSearch and id are returned and its deadline
+ * is extended.  A response is given only once to each handler, even if many searches of this handler match it.
+ *
+ * The Thread is a daemon Thread started with the first search.  It stops when {@link #stop()} is called.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPDiscoverResponseListener responseListener = new SSDPDiscoverResponseListener();
+ *
+ * DiscoverMessage message = new DiscoverMessage(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT, 3, "upnp:rootdevice", null);
+ * SSDPSearch search = responseListener.search(message.toString(), new InetSocketAddress(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT),
+ *                                             new SSDPDiscoverResponseHandler(controler), 3);
+ * ...
+ * System.out.println(search.getResponseCount() + " devices found");
+ * </pre>
+ * @see SSDPSearch
+ */
+public class SSDPDiscoverResponseListener implements Runnable {
+	private static final Logger logger = Logger.getLogger(SSDPDiscoverResponseListener.class.getName());
+
+	/**
+	 * Timeout of the socket.  The expired searches are removed at least at this interval.
+	 */
+	public static final int RECEIVE_TIMEOUT = 1000;
+
+	protected StateHolder<State> stateHolder = new StateHolder<State>();
+
+	private IUDPSender udpSender = null;
+	// the sender created by this listener is closed when it's stopped
+	private boolean ownsUDPSender = false;
+	// the Thread of the current start, a Thread of a previous start exits
+	private volatile Thread thread = null;
+	private final List<SSDPSearch> searchList = new CopyOnWriteArrayList<SSDPSearch>();
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	// dispatch the responses to the searches in progress
+	private final ISSDPResponseHandler dispatcher = new ISSDPResponseHandler() {
+		@Override
+		public void setSSDPControler(ISSDPControler controler) {
+		}
+
+		@Override
+		public ISSDPControler getSSDPControler() {
+			return null;
+		}
+
+		@Override
+		public void handle(String message) throws Exception {
+			handle(null, -1, message);
+		}
+
+		@Override
+		public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+			dispatch(remoteAddr, remotePort, message);
+		}
+	};
+
+	/**
+	 * Constructor.  The IUDPSender will be created with the first search.
+	 */
+	public SSDPDiscoverResponseListener() {
+		setState(State.STOPPED);
+	}
+
+	/**
+	 * Constructor
+	 * @param udpSender sender used for all the searches
+	 */
+	public SSDPDiscoverResponseListener(IUDPSender udpSender) {
+		this.udpSender = udpSender;
+		setState(State.STOPPED);
+	}
+
+	/**
+	 * Sends a M-SEARCH and returns immediately.  The responses will be given to the handler by the Thread
+	 * of this listener until the MX delay expired.
+	 *
+	 * @param message the M-SEARCH
+	 * @param address destination address
+	 * @param handler will handle the responses, can be null
+	 * @param mx MX delay in seconds
+	 * @return the search in progress
+	 * @throws Exception
+	 */
+	public SSDPSearch search(String message, SocketAddress address, ISSDPResponseHandler handler, int mx) throws Exception {
+		String st = SSDPMessageHelper.getHeaderValue(message, SSDPContants.ST);
+		long deadline = System.currentTimeMillis() + mx*1000L; // convert to seconds
+
+		SSDPSearch search = null;
+		boolean added = false;
+
+		synchronized (searchList) {
+			// the same M-SEARCH sent again joins the search in progress
+			for (SSDPSearch current : searchList) {
+				if(!current.isDone() && current.getSSDPResponseHandler()==handler && equals(st, current.getSearchTarget())){
+					search = current;
+					search.extendDeadline(deadline);
+					break;
+				}
+			}
+
+			if(search==null){
+				search = new SSDPSearch(nextId.incrementAndGet(), st, handler, deadline);
+				searchList.add(search);
+				added = true;
+			}
+		}
+
+		try {
+			start();
+			getUDPSender().sendMessage(message, address);
+		} catch (Exception e) {
+			if(added){
+				searchList.remove(search);
+			}
+			throw e;
+		}
+
+		return search;
+	}
+
+	private static boolean equals(String value, String other) {
+		return value==null ? other==null : value.equals(other);
+	}
+
+	/**
+	 * Sends a M-SEARCH and returns immediately.
+	 *
+	 * @param message the M-SEARCH
+	 * @param host destination IP
+	 * @param port destination port
+	 * @param handler will handle the responses, can be null
+	 * @param mx MX delay in seconds
+	 * @return the search in progress
+	 * @throws Exception
+	 * @see #search(String, SocketAddress, ISSDPResponseHandler, int)
+	 */
+	public SSDPSearch search(String message, String host, int port, ISSDPResponseHandler handler, int mx) throws Exception {
+		return search(message, new InetSocketAddress(host, port), handler, mx);
+	}
+
+	/**
+	 * Gives a response to all the searches in progress that match its ST.  A handler receives the response only once,
+	 * even if many of its searches match.  The messages that are not responses are ignored.
+	 *
+	 * @param remoteAddr sender IP address
+	 * @param remotePort sender port
+	 * @param message raw message received
+	 * @throws Exception
+	 */
+	protected void dispatch(String remoteAddr, int remotePort, String message) throws Exception {
+		if(message==null || !message.regionMatches(true, 0, "HTTP/1.1 200", 0, 12)){
+			logger.finest("not a discover response : \n" + message);
+			return;
+		}
+
+		String st = SSDPMessageHelper.getHeaderValue(message, SSDPContants.ST);
+
+		// the handlers that already received the response, created only if many searches match
+		List<ISSDPResponseHandler> handled = null;
+		ISSDPResponseHandler first = null;
+
+		for (SSDPSearch search : searchList) {
+			if(search.isDone() || !search.matches(st)){
+				continue;
+			}
+
+			ISSDPResponseHandler handler = search.getSSDPResponseHandler();
+			boolean forward = handler==null || (handler!=first && (handled==null || !containsHandler(handled, handler)));
+
+			if(forward && handler!=null){
+				if(first==null){
+					first = handler;
+				} else {
+					if(handled==null){
+						handled = new ArrayList<ISSDPResponseHandler>();
+					}
+					handled.add(handler);
+				}
+			}
+
+			try {
+				search.handle(remoteAddr, remotePort, message, forward);
+			} catch (Exception e) {
+				logger.log(Level.WARNING, e.getMessage(), e);
+			}
+		}
+	}
+
+	private static boolean containsHandler(List<ISSDPResponseHandler> handlers, ISSDPResponseHandler handler) {
+		for (int i = 0; i < handlers.size(); i++) {
+			if(handlers.get(i)==handler){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the search in progress with this id
+	 * @param id id of the search, see {@link SSDPSearch#getId()}
+	 * @return the search or null if it's done or unknown
+	 */
+	public SSDPSearch getSearch(int id) {
+		for (SSDPSearch search : searchList) {
+			if(search.getId()==id && !search.isDone()){
+				return search;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the searches in progress
+	 * @return SSDPSearch list
+	 */
+	public List<SSDPSearch> getSearchList() {
+		return searchList;
+	}
+
+	/**
+	 * Returns the IUDPSender used to send the searches, it's created if required.
+	 * @return IUDPSender
+	 * @throws Exception
+	 */
+	public synchronized IUDPSender getUDPSender() throws Exception {
+		if(udpSender==null){
+			udpSender = SSDPNetworkFactory.getInstance().createUDPSender();
+			ownsUDPSender = true;
+		}
+		return udpSender;
+	}
+
+	/**
+	 * Returns the current state of this listener
+	 * @return the current state
+	 */
+	public State getState() {
+		return stateHolder.getState();
+	}
+
+	/**
+	 * Sets a new state for this listener
+	 * @param state new State
+	 */
+	public void setState(State state) {
+		this.stateHolder.setState(state);
+	}
+
+	/**
+	 * Starts the Thread that receives the responses if it's not already started
+	 * @throws Exception
+	 */
+	public synchronized void start() throws Exception {
+		if(thread!=null && thread.isAlive()){
+			return;
+		}
+
+		getUDPSender();
+
+		setState(State.STARTED);
+
+		thread = new Thread(this, "SSDPDiscoverResponseListener");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the Thread that receives the responses.  The searches in progress are cancelled.
+	 * The IUDPSender created by this listener is closed, a new one will be created by the next search.
+	 */
+	public synchronized void stop() {
+		setState(State.STOPPED);
+
+		for (SSDPSearch search : searchList) {
+			search.cancel();
+		}
+		searchList.clear();
+
+		if(thread!=null){
+			thread.interrupt();
+			thread = null;
+		}
+
+		if(ownsUDPSender){
+			if(udpSender instanceof Closeable){
+				try {
+					((Closeable) udpSender).close();
+				} catch (IOException e) {
+					logger.log(Level.FINE, e.getMessage(), e);
+				}
+			}
+			udpSender = null;
+			ownsUDPSender = false;
+		}
+	}
+
+	@Override
+	public void run() {
+
+		Thread current = Thread.currentThread();
+
+		synchronized (this) {
+			// started without start()
+			if(thread == null){
+				thread = current;
+				setState(State.STARTED);
+			}
+		}
+
+		try {
+			IUDPSender sender = getUDPSender();
+
+			while (!Thread.interrupted() && thread == current && stateHolder.getState() != State.STOPPED) {
+				try {
+					sender.receive(dispatcher, RECEIVE_TIMEOUT);
+				} catch (SocketTimeoutException e) {
+					// does nothing
+				}
+
+				// remove the searches expired
+				for (SSDPSearch search : searchList) {
+					if(search.isDone()){
+						searchList.remove(search);
+						logger.fine(search.toString());
+					}
+				}
+			}
+		} catch (Exception e) {
+			if(thread != current || stateHolder.getState() == State.STOPPED){
+				// the socket was closed by stop()
+				logger.log(Level.FINE, e.getMessage(), e);
+			} else {
+				logger.log(Level.WARNING, e.getMessage(), e);
+			}
+		} finally {
+			synchronized (this) {
+				// the listener may have been restarted by another Thread
+				if(thread == current){
+					setState(State.STOPPED);
+					thread = null;
+				}
+			}
+		}
+
+	}
+
+}
@@ -4,13 +4,28 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.jerabi.ssdp.ISSDPControler;
+import com.jerabi.ssdp.filter.SSDPFilterChain;
+import com.jerabi.ssdp.filter.SSDPPacket;
+import com.jerabi.ssdp.handler.ISSDPBatchResponseHandler;
+import com.jerabi.ssdp.handler.ISSDPRawResponseHandler;
 import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.handler.SSDPResponseBatch;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+import com.jerabi.ssdp.network.IEventMulticastListener;
 import com.jerabi.ssdp.network.IMulticastListener;
 import com.jerabi.ssdp.network.SSDPNetworkFactory;
+import com.jerabi.ssdp.util.IStateListener;
 import com.jerabi.ssdp.util.SSDPContants;
 import com.jerabi.ssdp.util.State;
 import com.jerabi.ssdp.util.StateHolder;
@@ -36,8 +51,27 @@ import com.jerabi.ssdp.util.StateHolder;
  * listener.setSSDPHandler(new SSDPDefaultHandler(controler)); 
  * t = new Thread(listener);
  * t.start();  
+ * 
+ * // using 4 Threads to parse and dispatch the messages
+ * SSDPMulticastListener listener = new SSDPMulticastListener(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT);
+ * listener.setShardCount(4);
  * </pre>
  * 
+ * When the shard count is greater than 1, the messages are still received by one socket, and all the datagrams are 
+ * received and decoded by the one Thread of the listener : only the dispatch to the handler, which parses the messages, 
+ * runs in the Threads of the shards.  Each message is queued to the shard assigned to the sender address, 
+ * see {@link #getShardIndex(String, int)}, so the messages of a device are handled in order.  Every message received, 
+ * multicast or unicast, is handled once.  When the queue of a shard is full, the new messages of this shard are 
+ * dropped, see {@link #getShardDroppedCount()}.
+ * 
+ * When the {@link IMulticastListener} created by the network implementation is a {@link IEventMulticastListener}, 
+ * the messages are pushed to the handler and the Thread of the listener waits without polling the socket.  When 
+ * the state changes to STOPPED or the Thread is interrupted, the socket is closed immediately.  The timeout and 
+ * the blocking mode are only used by the network implementations that must be polled.
+ * 
+ * With a {@link SSDPFilterChain}, the start line and a few headers of each datagram are checked before the datagram
+ * is decoded, and the datagrams dropped by the chain never reach the handler.
+ * 
  */
 public class SSDPMulticastListener implements Runnable {
 	private static final Logger logger = Logger.getLogger(SSDPMulticastListener.class.getName());
@@ -51,6 +85,20 @@ public class SSDPMulticastListener implements Runnable {
 	protected List<NetworkInterface> networkInterfaceList = null;
 	private ISSDPResponseHandler handler = null;
 	protected boolean blocking = true;
+	protected int shardCount = 1;
+	protected int batchSize = 1;
+	protected SSDPFilterChain filterChain = null;
+	
+	/**
+	 * Number of messages that can wait in the queue of a shard
+	 */
+	public static final int SHARD_QUEUE_CAPACITY = 1024;
+	
+	// queues the messages to the shards, null with only one shard
+	private volatile ShardResponseHandler shardHandler = null;
+	
+	// released when the state changes to STOPPED
+	private CountDownLatch stopLatch = null;
 	
 	/**
 	 * Constructor with default delay and listener in blocking mode
@@ -271,38 +319,221 @@ public class SSDPMulticastListener implements Runnable {
 		return blocking;
 	}
 	
+	/**
+	 * Returns the number of Threads used to dispatch the messages
+	 * @return shard count
+	 */
+	public int getShardCount() {
+		return shardCount;
+	}
+	
+	/**
+	 * Sets the number of Threads used to dispatch the messages.  The messages are received and decoded by one socket 
+	 * and one Thread, then queued to the shard assigned to the sender address, so the messages of a device are always handled in 
+	 * order by the same Thread.  Every message, multicast or unicast, is handled by one shard only.
+	 * 
+	 * Each shard queues up to {@link #SHARD_QUEUE_CAPACITY} messages, the messages received while the queue 
+	 * is full are dropped and counted in {@link #getShardDroppedCount()}.  Must be set before the listener is started.
+	 * 
+	 * @param shardCount number of shards, 1 to handle the messages in the Thread that receives them.
+	 */
+	public void setShardCount(int shardCount) {
+		if(shardCount<1){
+			throw new IllegalArgumentException("Invalid shard count : " + shardCount);
+		}
+		this.shardCount = shardCount;
+	}
+	
+	/**
+	 * Returns the number of messages dropped because the queue of their shard was full
+	 * @return drop count, 0 with only one shard
+	 */
+	public long getShardDroppedCount() {
+		ShardResponseHandler shards = shardHandler;
+		return shards!=null ? shards.getDroppedCount() : 0;
+	}
+	
+	/**
+	 * Returns the maximum number of messages read for each wakeup of the listener
+	 * @return batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * Sets the maximum number of messages read for each wakeup of the listener.  With a batch size greater than 1, 
+	 * the listener reads all the messages already received (up to the batch size) before it checks 
+	 * its state again, see {@link IMulticastListener#receive(boolean, int)}.  Useful when many devices send messages at the same time.
+	 * 
+	 * @param batchSize maximum number of messages, 1 to read the messages one by one.
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize<1){
+			throw new IllegalArgumentException("Invalid batch size : " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Returns the rules evaluated on the datagrams before they are parsed
+	 * @return filter chain or null if all the datagrams are handled
+	 */
+	public SSDPFilterChain getFilterChain() {
+		return filterChain;
+	}
+	
+	/**
+	 * Sets the rules evaluated on the datagrams before they are parsed.  The datagrams dropped by the chain are
+	 * never decoded nor passed to the handler.  The handler receives the datagrams one by one, even with a batch size.
+	 * 
+	 * Must be set before the listener is started, but the rules of the chain can be changed anytime.
+	 * 
+	 * @param filterChain rules, null to handle all the datagrams
+	 */
+	public void setFilterChain(SSDPFilterChain filterChain) {
+		this.filterChain = filterChain;
+	}
+	
+	/**
+	 * Returns the shard that handles the messages sent by an address
+	 * @param remoteAddr sender IP address
+	 * @param shardCount number of shards
+	 * @return shard index between 0 and shardCount-1
+	 */
+	public static int getShardIndex(String remoteAddr, int shardCount) {
+		if(remoteAddr==null || shardCount<=1){
+			return 0;
+		}
+		return (remoteAddr.hashCode() & 0x7fffffff) % shardCount;
+	}
+	
+	/**
+	 * Starts the listener.  When more than one shard is used, the shards are started in their own Thread 
+	 * and the current Thread receives the messages.  
+	 */
 	@Override
 	public void run() {
 		
 		stateHolder.setState(State.STARTED);
 		
+		List<Thread> shardThreadList = new ArrayList<Thread>();
+		
+		final CountDownLatch latch = new CountDownLatch(1);
+		IStateListener<State> stopListener = new IStateListener<State>() {
+			@Override
+			public void notifyStateChange(State state) {
+				if(state==State.STOPPED){
+					latch.countDown();
+				}
+			}
+		};
+		stateHolder.addStateListener(stopListener);
+		stopLatch = latch;
+		
+		try {
+			ISSDPResponseHandler listenerHandler = handler;
+			
+			if(shardCount>1){
+				final ShardResponseHandler shards;
+				if(handler instanceof ISSDPRawResponseHandler){
+					shards = new RawShardResponseHandler(handler, shardCount, batchSize);
+				} else {
+					shards = new ShardResponseHandler(handler, shardCount, batchSize);
+				}
+				
+				for (int i = 0; i < shardCount; i++) {
+					final int shardIndex = i;
+					Thread t = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							shards.drain(shardIndex);
+						}
+					}, "SSDPMulticastListener-shard-" + i);
+					t.setDaemon(true);
+					t.start();
+					
+					shardThreadList.add(t);
+				}
+				
+				shardHandler = shards;
+				listenerHandler = shards;
+			}
+			
+			if(filterChain!=null){
+				listenerHandler = new FilterResponseHandler(listenerHandler, filterChain);
+			}
+			
+			listen(listenerHandler);
+		} finally {
+			stateHolder.removeStateListener(stopListener);
+			
+			for (Thread t : shardThreadList) {
+				t.interrupt();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Receives and handles the messages until the listener is stopped.  If the socket 
+	 * can't be created or fails, the listener is stopped.
+	 * 
+	 * @param listenerHandler handler of the messages received
+	 */
+	protected void listen(ISSDPResponseHandler listenerHandler) {
+		
 		IMulticastListener listener = null;
 		InetAddress group = null;
 		
 		try {
 			
+			if(networkInterfaceList==null || networkInterfaceList.isEmpty()){
+				group = InetAddress.getByName(host);
+			}
+			
+			listener = SSDPNetworkFactory.getInstance().createMulticastListener(port(), listenerHandler);
+			
 			// if NetworkInterface are used, we can join on multiple groups
-			if(networkInterfaceList!=null && !networkInterfaceList.isEmpty()){
-				//listener = SSDPNetworkFactory.getInstance().createMulticastListener(socketAddress, handler);
-				listener = SSDPNetworkFactory.getInstance().createMulticastListener(socketAddress.getPort(), handler);
+			if(group==null){
 				for (NetworkInterface ni : networkInterfaceList) {
 					listener.joinGroup(socketAddress, ni);
 				}
 			} else {
-				group = InetAddress.getByName(host);
-				listener = SSDPNetworkFactory.getInstance().createMulticastListener(port, handler);
 				listener.joinGroup(group);
 			}
 			
 			listener.setTimeout(timeout);
 			
+			CountDownLatch latch = stopLatch;
+			
+			if(listener instanceof IEventMulticastListener && latch!=null){
+				IEventMulticastListener eventListener = (IEventMulticastListener) listener;
+				
+				if(batchSize>1){
+					eventListener.setBatchSize(batchSize);
+				}
+				eventListener.start(listenerHandler);
+				
+				// no polling : wakes up when the state changes to STOPPED or when the Thread is interrupted
+				if(stateHolder.getState() != State.STOPPED){
+					latch.await();
+				}
+			}
+			
 			while (!Thread.interrupted() && stateHolder.getState() != State.STOPPED) {
 				try {
-					listener.receive(blocking);
+					if(batchSize>1){
+						listener.receive(blocking, batchSize);
+					} else {
+						listener.receive(blocking);
+					}
 				} catch (SocketTimeoutException e) {
 					// does nothing
 				}
 			}
+		} catch(InterruptedException e){
+			// stopped
 		} catch(Exception e){
 			logger.log(Level.WARNING, e.getMessage(), e);
 		} finally {
@@ -321,10 +552,254 @@ public class SSDPMulticastListener implements Runnable {
 						}
 					}
 				}
+				
+				if(listener instanceof IEventMulticastListener){
+					try {
+						((IEventMulticastListener) listener).stop();
+					} catch (Exception e) {
+					}
+				}
 			}
 		}
 		
+	}
+	
+	/**
+	 * Returns the port to listen.  With NetworkInterfaces, the port of the socketAddress is used.
+	 */
+	private int port() {
+		if(networkInterfaceList!=null && !networkInterfaceList.isEmpty()){
+			return socketAddress.getPort();
+		}
+		return port;
+	}
+	
+	/**
+	 * ISSDPResponseHandler that queues the messages received to the shard assigned to the sender address.
+	 * Each shard has its own queue, drained by the Thread of the shard with {@link #drain(int)}.
+	 */
+	private static class ShardResponseHandler implements ISSDPBatchResponseHandler {
+		protected final ISSDPResponseHandler handler;
+		private final int batchSize;
+		private final List<BlockingQueue<ShardMessage>> queues;
+		private final AtomicLong droppedCount = new AtomicLong();
+		
+		ShardResponseHandler(ISSDPResponseHandler handler, int shardCount, int batchSize) {
+			this.handler = handler;
+			this.batchSize = batchSize;
+			
+			queues = new ArrayList<BlockingQueue<ShardMessage>>(shardCount);
+			for (int i = 0; i < shardCount; i++) {
+				queues.add(new ArrayBlockingQueue<ShardMessage>(SHARD_QUEUE_CAPACITY));
+			}
+		}
+		
+		@Override
+		public void setSSDPControler(ISSDPControler controler) {
+			if(handler!=null){
+				handler.setSSDPControler(controler);
+			}
+		}
 		
+		@Override
+		public ISSDPControler getSSDPControler() {
+			return handler!=null ? handler.getSSDPControler() : null;
+		}
+		
+		@Override
+		public void handle(String message) throws Exception {
+			enqueue(null, 0, message);
+		}
+		
+		@Override
+		public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+			enqueue(remoteAddr, remotePort, message);
+		}
+		
+		@Override
+		public void handleBatch(SSDPResponseBatch batch) throws Exception {
+			for (int i = 0; i < batch.size(); i++) {
+				enqueue(batch.getRemoteAddr(i), batch.getRemotePort(i), batch.getMessage(i));
+			}
+		}
+		
+		/**
+		 * Queues a message to its shard
+		 * @param message String or byte[]
+		 */
+		protected void enqueue(String remoteAddr, int remotePort, Object message) {
+			if(handler==null){
+				return;
+			}
+			
+			if(!queues.get(getShardIndex(remoteAddr, queues.size())).offer(new ShardMessage(remoteAddr, remotePort, message))){
+				droppedCount.incrementAndGet();
+				logger.fine("shard queue full, message dropped from " + remoteAddr);
+			}
+		}
+		
+		long getDroppedCount() {
+			return droppedCount.get();
+		}
+		
+		/**
+		 * Handles the messages of a shard until the Thread is interrupted
+		 * @param shardIndex index of the shard
+		 */
+		void drain(int shardIndex) {
+			BlockingQueue<ShardMessage> queue = queues.get(shardIndex);
+			SSDPResponseBatch batch = null;
+			
+			if(batchSize>1 && handler instanceof ISSDPBatchResponseHandler && !(handler instanceof ISSDPRawResponseHandler)){
+				batch = new SSDPResponseBatch(batchSize);
+			}
+			
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					ShardMessage shardMessage = queue.take();
+					
+					try {
+						if(batch==null){
+							handle(shardMessage);
+							continue;
+						}
+						
+						// the messages already queued are handled together
+						do {
+							batch.add(shardMessage.remoteAddr, shardMessage.remotePort, decode(shardMessage.message));
+						} while (!batch.isFull() && (shardMessage = queue.poll())!=null);
+						
+						((ISSDPBatchResponseHandler) handler).handleBatch(batch);
+					} catch (Exception e) {
+						logger.log(Level.WARNING, "Exception while handling message", e);
+					} finally {
+						if(batch!=null){
+							batch.clear();
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// stopped
+			}
+		}
+		
+		protected void handle(ShardMessage shardMessage) throws Exception {
+			if(shardMessage.remoteAddr==null){
+				handler.handle(decode(shardMessage.message));
+			} else {
+				handler.handle(shardMessage.remoteAddr, shardMessage.remotePort, decode(shardMessage.message));
+			}
+		}
+		
+		protected static String decode(Object message) {
+			return message instanceof byte[] ? new String((byte[]) message, SSDPMessageEncoder.US_ASCII) : (String) message;
+		}
+	}
+
+	/**
+	 * ShardResponseHandler that queues a copy of the bytes received and forwards them to a {@link ISSDPRawResponseHandler}.
+	 */
+	private static class RawShardResponseHandler extends ShardResponseHandler implements ISSDPRawResponseHandler {
+		
+		RawShardResponseHandler(ISSDPResponseHandler handler, int shardCount, int batchSize) {
+			super(handler, shardCount, batchSize);
+		}
+		
+		@Override
+		public void handle(String remoteAddr, int remotePort, ByteBuffer data) throws Exception {
+			// the buffer is reused by the listener
+			byte[] bytes = new byte[data.remaining()];
+			data.duplicate().get(bytes);
+			
+			enqueue(remoteAddr, remotePort, bytes);
+		}
+		
+		@Override
+		protected void handle(ShardMessage shardMessage) throws Exception {
+			if(shardMessage.remoteAddr!=null && shardMessage.message instanceof byte[]){
+				((ISSDPRawResponseHandler) handler).handle(shardMessage.remoteAddr, shardMessage.remotePort, ByteBuffer.wrap((byte[]) shardMessage.message));
+			} else {
+				super.handle(shardMessage);
+			}
+		}
+	}
+	
+	/**
+	 * Message waiting in the queue of a shard
+	 */
+	private static class ShardMessage {
+		final String remoteAddr;
+		final int remotePort;
+		// String or byte[]
+		final Object message;
+		
+		ShardMessage(String remoteAddr, int remotePort, Object message) {
+			this.remoteAddr = remoteAddr;
+			this.remotePort = remotePort;
+			this.message = message;
+		}
+	}
+
+	/**
+	 * ISSDPResponseHandler that evaluates the filter chain on the bytes received and forwards only the datagrams accepted.
+	 * Used by one Thread, the SSDPPacket is reused for all the datagrams.
+	 */
+	private static class FilterResponseHandler implements ISSDPRawResponseHandler {
+		private final ISSDPResponseHandler handler;
+		private final SSDPFilterChain filterChain;
+		private final SSDPPacket packet = new SSDPPacket();
+		
+		FilterResponseHandler(ISSDPResponseHandler handler, SSDPFilterChain filterChain) {
+			this.handler = handler;
+			this.filterChain = filterChain;
+		}
+		
+		@Override
+		public void setSSDPControler(ISSDPControler controler) {
+			if(handler!=null){
+				handler.setSSDPControler(controler);
+			}
+		}
+		
+		@Override
+		public ISSDPControler getSSDPControler() {
+			return handler!=null ? handler.getSSDPControler() : null;
+		}
+		
+		@Override
+		public void handle(String message) throws Exception {
+			packet.reset(null, message);
+			
+			if(handler!=null && filterChain.accept(packet)){
+				handler.handle(message);
+			}
+		}
+		
+		@Override
+		public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+			packet.reset(remoteAddr, message);
+			
+			if(handler!=null && filterChain.accept(packet)){
+				handler.handle(remoteAddr, remotePort, message);
+			}
+		}
+		
+		@Override
+		public void handle(String remoteAddr, int remotePort, ByteBuffer data) throws Exception {
+			packet.reset(remoteAddr, data);
+			
+			if(handler==null || !filterChain.accept(packet)){
+				return;
+			}
+			
+			if(handler instanceof ISSDPRawResponseHandler){
+				((ISSDPRawResponseHandler) handler).handle(remoteAddr, remotePort, data);
+			} else {
+				byte[] bytes = new byte[data.remaining()];
+				data.duplicate().get(bytes);
+				handler.handle(remoteAddr, remotePort, new String(bytes, SSDPMessageEncoder.US_ASCII));
+			}
+		}
 	}
 
 }
@@ -0,0 +1,155 @@
+package com.jerabi.ssdp.listener;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.util.SSDPContants;
+
+/**
+ * A M-SEARCH sent by a {@link SSDPDiscoverResponseListener} that waits for its responses.
+ *
+ * The search receives the responses until its MX delay expired or until it's cancelled.  A response is
+ * given to the search if its ST is the same as the ST of the search.  A search for {@link SSDPContants#NTS_DISCOVER_ALL}
+ * or without ST receives all the responses.
+ *
+ * The id identifies the search in its {@link SSDPDiscoverResponseListener} : the same M-SEARCH sent again by the same
+ * handler is routed to the search already in progress (see {@link SSDPDiscoverResponseListener#getSearch(int)}).
+ *
+ * @author Sebastien Dionne
+ * @see SSDPDiscoverResponseListener
+ */
+public class SSDPSearch {
+
+	private final int id;
+	private final String searchTarget;
+	private final ISSDPResponseHandler handler;
+	private volatile long deadline;
+	private final AtomicInteger responseCount = new AtomicInteger();
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Constructor
+	 * @param id search id
+	 * @param searchTarget ST of the M-SEARCH, can be null
+	 * @param handler will handle the responses
+	 * @param deadline time in ms when the search expires
+	 */
+	protected SSDPSearch(int id, String searchTarget, ISSDPResponseHandler handler, long deadline) {
+		this.id = id;
+		this.searchTarget = searchTarget;
+		this.handler = handler;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Returns true if a response with this ST belongs to this search
+	 * @param st ST of the response
+	 * @return if the response matches
+	 */
+	public boolean matches(String st) {
+		if(searchTarget==null || SSDPContants.NTS_DISCOVER_ALL.equals(searchTarget)){
+			return true;
+		}
+		return searchTarget.equals(st);
+	}
+
+	/**
+	 * Forwards a response to the handler of this search
+	 * @param remoteAddr sender IP address
+	 * @param remotePort sender port
+	 * @param message raw response
+	 * @throws Exception
+	 */
+	protected void handle(String remoteAddr, int remotePort, String message) throws Exception {
+		handle(remoteAddr, remotePort, message, true);
+	}
+
+	/**
+	 * Counts a response and forwards it to the handler of this search if required
+	 * @param remoteAddr sender IP address
+	 * @param remotePort sender port
+	 * @param message raw response
+	 * @param forward false if the handler already received this response from another search
+	 * @throws Exception
+	 */
+	protected void handle(String remoteAddr, int remotePort, String message, boolean forward) throws Exception {
+		responseCount.incrementAndGet();
+
+		if(forward && handler!=null){
+			handler.handle(remoteAddr, remotePort, message);
+		}
+	}
+
+	/**
+	 * Returns the id of this search, unique for a {@link SSDPDiscoverResponseListener}
+	 * @return id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the ST of the M-SEARCH
+	 * @return search target
+	 */
+	public String getSearchTarget() {
+		return searchTarget;
+	}
+
+	/**
+	 * Returns the handler of the responses
+	 * @return ISSDPResponseHandler
+	 */
+	public ISSDPResponseHandler getSSDPResponseHandler() {
+		return handler;
+	}
+
+	/**
+	 * Returns the time when this search expires
+	 * @return time in ms
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Extends the search when the same M-SEARCH is sent again
+	 * @param deadline new time in ms when the search expires, ignored if it's before the current deadline
+	 */
+	protected synchronized void extendDeadline(long deadline) {
+		if(deadline>this.deadline){
+			this.deadline = deadline;
+		}
+	}
+
+	/**
+	 * Returns the number of responses received until now
+	 * @return response count
+	 */
+	public int getResponseCount() {
+		return responseCount.get();
+	}
+
+	/**
+	 * Stops receiving the responses for this search
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns true if the search is cancelled or if the MX delay expired
+	 * @return done
+	 */
+	public boolean isDone() {
+		return cancelled || System.currentTimeMillis() > deadline;
+	}
+
+	/**
+	 * @return Returns the search as a String
+	 */
+	public String toString() {
+		return "SSDPSearch id=" + id + " ST=" + searchTarget + " responses=" + getResponseCount();
+	}
+
+}
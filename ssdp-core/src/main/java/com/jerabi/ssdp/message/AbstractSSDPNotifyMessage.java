@@ -9,7 +9,7 @@ import java.util.List;
  * @author Sebastien Dionne
  *
  */
-public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
+public abstract class AbstractSSDPNotifyMessage implements ISSDPTypedMessage {
 	protected String message;
 	protected String notify;
 	protected String host;
@@ -18,6 +18,10 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	protected String nts;
 	protected String usn;
 	protected List<String> attributes = null;
+	protected SSDPHeaderMap headers = null;
+	
+	// true when the message is read only, the setters throw a UnsupportedOperationException
+	private boolean frozen = false;
 	
 	/**
 	 * Returns the raw message if parsed with {@link com.jerabi.ssdp.message.helper.SSDPMessageHelper}
@@ -33,6 +37,7 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 * @param message original message not parsed
 	 */
 	public void setMessage(String message) {
+		checkFrozen();
 		this.message = message;
 	}
 	/**
@@ -50,6 +55,7 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 * @param usn Unique Service Name
 	 */
 	public void setUsn(String usn) {
+		checkFrozen();
 		this.usn = usn;
 	}
 	
@@ -66,6 +72,7 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 * @param host 
 	 */
 	public void setHost(String host) {
+		checkFrozen();
 		this.host = host;
 	}
 	
@@ -82,6 +89,7 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 * @param nt
 	 */
 	public void setNt(String nt) {
+		checkFrozen();
 		this.nt = nt;
 	}
 	
@@ -93,6 +101,7 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 * @param nts
 	 */
 	public void setNts(String nts) {
+		checkFrozen();
 		this.nts = nts;
 	}
 	
@@ -109,6 +118,7 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 * @param notify
 	 */
 	public void setNotify(String notify) {
+		checkFrozen();
 		this.notify = notify;
 	}
 	
@@ -125,6 +135,7 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 * @param port
 	 */
 	public void setPort(String port) {
+		checkFrozen();
 		this.port = port;
 	}
 	
@@ -141,9 +152,56 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 * @param attributes
 	 */
 	public void setAttributes(List<String> attributes) {
+		checkFrozen();
 		this.attributes = attributes;
 	}
 	
+	/**
+	 * Returns the headers received, with a lookup that ignores the case of the names.
+	 * The map is built from the message the first time it's requested.
+	 * @return headers, empty if the message was not parsed
+	 */
+	public SSDPHeaderMap getHeaders() {
+		if(headers==null && message!=null){
+			headers = SSDPHeaderMap.parse(message);
+		}
+		return headers!=null ? headers : SSDPHeaderMap.EMPTY;
+	}
+	
+	/**
+	 * Sets the headers received
+	 * @param headers headers of the message
+	 */
+	public void setHeaders(SSDPHeaderMap headers) {
+		checkFrozen();
+		this.headers = headers;
+	}
+	
+	/**
+	 * Makes the message read only : the setters of the commons fields throw a UnsupportedOperationException.
+	 * The subclasses guard their own setters.
+	 */
+	protected void freeze() {
+		frozen = true;
+	}
+	
+	/**
+	 * Returns true if the message is read only
+	 * @return frozen
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	/**
+	 * Throws a UnsupportedOperationException if the message is read only
+	 */
+	protected void checkFrozen() {
+		if(frozen){
+			throw new UnsupportedOperationException("The message is read only");
+		}
+	}
+	
 	/**
 	 * Return this message formatted
 	 * @return message formatted
@@ -156,4 +214,12 @@ public abstract class AbstractSSDPNotifyMessage implements ISSDPMessage {
 	 */
 	public abstract String getNts();
 	
+	/**
+	 * Returns the kind of the notification, found with the NTS.  The subclasses return their kind directly.
+	 * @return kind or null if the NTS is unknown
+	 */
+	public SSDPMessageKind getKind() {
+		return SSDPMessageKind.ofNts(getNts());
+	}
+	
 }
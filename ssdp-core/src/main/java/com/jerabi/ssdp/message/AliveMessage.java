@@ -1,5 +1,7 @@
 package com.jerabi.ssdp.message;
 
+import java.nio.ByteBuffer;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
 import com.jerabi.ssdp.util.SSDPContants;
 
 /**
@@ -22,7 +24,16 @@ import com.jerabi.ssdp.util.SSDPContants;
  *   
  *   @see AbstractSSDPNotifyMessage
  */
-public class AliveMessage extends AbstractSSDPNotifyMessage {
+public class AliveMessage extends AbstractSSDPNotifyMessage implements ISSDPEncodableMessage {
+	
+	// names of the headers, encoded once
+	private static final byte[] HOST = SSDPMessageEncoder.encodeHeader(SSDPContants.HOST);
+	private static final byte[] NT = SSDPMessageEncoder.encodeHeader(SSDPContants.NT);
+	private static final byte[] NTS = SSDPMessageEncoder.encodeHeader(SSDPContants.NTS);
+	private static final byte[] LOCATION = SSDPMessageEncoder.encodeHeader(SSDPContants.LOCATION);
+	private static final byte[] USN = SSDPMessageEncoder.encodeHeader(SSDPContants.USN);
+	private static final byte[] CACHECONTROL = SSDPMessageEncoder.encodeHeader(SSDPContants.CACHECONTROL);
+	private static final byte[] SERVER = SSDPMessageEncoder.encodeHeader(SSDPContants.SERVER);
 	
 	/**
 	 * First line of the message
@@ -46,6 +57,14 @@ public class AliveMessage extends AbstractSSDPNotifyMessage {
 		return nts;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SSDPMessageKind getKind() {
+		return SSDPMessageKind.ALIVE;
+	}
+	
 	/**
 	 * Returns a duration for which the advertisement is valid
 	 * @return cache-control value
@@ -96,6 +115,22 @@ public class AliveMessage extends AbstractSSDPNotifyMessage {
 		this.server = server;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void encode(ByteBuffer buffer) {
+		SSDPMessageEncoder.putLine(buffer, getNotify());
+		SSDPMessageEncoder.putHeader(buffer, HOST, getHost());
+		SSDPMessageEncoder.putHeader(buffer, NT, getNt());
+		SSDPMessageEncoder.putHeader(buffer, NTS, getNts());
+		SSDPMessageEncoder.putHeader(buffer, LOCATION, getLocation());
+		SSDPMessageEncoder.putHeader(buffer, USN, getUsn());
+		SSDPMessageEncoder.putHeader(buffer, CACHECONTROL, getCacheControl());
+		SSDPMessageEncoder.putHeader(buffer, SERVER, getServer());
+		SSDPMessageEncoder.putEndOfLine(buffer);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1,5 +1,7 @@
 package com.jerabi.ssdp.message;
 
+import java.nio.ByteBuffer;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
 import com.jerabi.ssdp.util.SSDPContants;
 
 /**
@@ -25,7 +27,14 @@ import com.jerabi.ssdp.util.SSDPContants;
  *   
  *   @see AbstractSSDPNotifyMessage
  */
-public class ByeByeMessage extends AbstractSSDPNotifyMessage {
+public class ByeByeMessage extends AbstractSSDPNotifyMessage implements ISSDPEncodableMessage {
+	
+	// names of the headers, encoded once
+	private static final byte[] HOST = SSDPMessageEncoder.encodeHeader(SSDPContants.HOST);
+	private static final byte[] NT = SSDPMessageEncoder.encodeHeader(SSDPContants.NT);
+	private static final byte[] NTS = SSDPMessageEncoder.encodeHeader(SSDPContants.NTS);
+	private static final byte[] USN = SSDPMessageEncoder.encodeHeader(SSDPContants.USN);
+	private static final byte[] CONTENTLENGTH = SSDPMessageEncoder.encodeHeader(SSDPContants.CONTENTLENGTH);
 	
 	/**
 	 * First line of the message
@@ -46,6 +55,14 @@ public class ByeByeMessage extends AbstractSSDPNotifyMessage {
 		return nts;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SSDPMessageKind getKind() {
+		return SSDPMessageKind.BYEBYE;
+	}
+	
 	/**
 	 * Returns the bytes in the body
 	 * @return body length
@@ -62,6 +79,19 @@ public class ByeByeMessage extends AbstractSSDPNotifyMessage {
 		this.contentLength = contentLength;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void encode(ByteBuffer buffer) {
+		SSDPMessageEncoder.putLine(buffer, getNotify());
+		SSDPMessageEncoder.putHeader(buffer, HOST, getHost());
+		SSDPMessageEncoder.putHeader(buffer, NT, getNt());
+		SSDPMessageEncoder.putHeader(buffer, NTS, getNts());
+		SSDPMessageEncoder.putHeader(buffer, USN, getUsn());
+		SSDPMessageEncoder.putHeader(buffer, CONTENTLENGTH, getContentLength());
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
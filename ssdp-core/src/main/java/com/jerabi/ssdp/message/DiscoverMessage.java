@@ -1,7 +1,9 @@
 package com.jerabi.ssdp.message;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
 import com.jerabi.ssdp.util.SSDPContants;
 
 /**
@@ -26,7 +28,13 @@ import com.jerabi.ssdp.util.SSDPContants;
  * 
  * @see DiscoverResponseMessage
  */
-public class DiscoverMessage implements ISSDPMessage {
+public class DiscoverMessage implements ISSDPEncodableMessage, ISSDPTypedMessage {
+	
+	// names of the headers, encoded once
+	private static final byte[] HOST = SSDPMessageEncoder.encodeHeader(SSDPContants.HOST);
+	private static final byte[] MAN = SSDPMessageEncoder.encodeHeader(SSDPContants.MAN);
+	private static final byte[] MX = SSDPMessageEncoder.encodeHeader(SSDPContants.MX);
+	private static final byte[] ST = SSDPMessageEncoder.encodeHeader(SSDPContants.ST);
 	
 	/**
 	 * First line of the message
@@ -43,6 +51,7 @@ public class DiscoverMessage implements ISSDPMessage {
 	protected String st = null;
 	protected String mx = null;
 	protected List<String> attributes = null;
+	protected SSDPHeaderMap headers = null;
 	
 	/**
 	 * Default constructor
@@ -165,6 +174,59 @@ public class DiscoverMessage implements ISSDPMessage {
 		this.attributes = attributes;
 	}
 	
+	/**
+	 * Returns the headers received, with a lookup that ignores the case of the names.
+	 * The map is built from the message the first time it's requested.
+	 * @return headers, empty if the message was not parsed
+	 */
+	public SSDPHeaderMap getHeaders() {
+		if(headers==null && message!=null){
+			headers = SSDPHeaderMap.parse(message);
+		}
+		return headers!=null ? headers : SSDPHeaderMap.EMPTY;
+	}
+	
+	/**
+	 * Sets the headers received
+	 * @param headers headers of the message
+	 */
+	public void setHeaders(SSDPHeaderMap headers) {
+		this.headers = headers;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void encode(ByteBuffer buffer) {
+		SSDPMessageEncoder.putLine(buffer, notify);
+		
+		buffer.put(HOST);
+		SSDPMessageEncoder.put(buffer, getHost());
+		SSDPMessageEncoder.put(buffer, ":");
+		SSDPMessageEncoder.putLine(buffer, getPort()!=null ? getPort() : String.valueOf(SSDPContants.DEFAULT_PORT));
+		
+		SSDPMessageEncoder.putHeader(buffer, MAN, man);
+		SSDPMessageEncoder.putHeader(buffer, MX, mx);
+		SSDPMessageEncoder.putHeader(buffer, ST, st);
+		
+		// custom attributes
+		if(attributes!=null && attributes.size()>0){
+			for (String attribute : attributes) {
+				SSDPMessageEncoder.putLine(buffer, attribute);
+			}
+		}
+		SSDPMessageEncoder.putEndOfLine(buffer);
+	}
+	
+	/**
+	 * Returns the kind of the message
+	 * @return {@link SSDPMessageKind#DISCOVER}
+	 */
+	public SSDPMessageKind getKind() {
+		return SSDPMessageKind.DISCOVER;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
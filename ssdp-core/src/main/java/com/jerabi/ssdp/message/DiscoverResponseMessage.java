@@ -1,7 +1,9 @@
 package com.jerabi.ssdp.message;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
 import com.jerabi.ssdp.util.SSDPContants;
 
 
@@ -26,7 +28,17 @@ import com.jerabi.ssdp.util.SSDPContants;
  * 
  * @see DiscoverMessage
  */
-public class DiscoverResponseMessage implements ISSDPMessage {
+public class DiscoverResponseMessage implements ISSDPEncodableMessage, ISSDPTypedMessage {
+	
+	// names of the headers, encoded once
+	private static final byte[] CACHECONTROL = SSDPMessageEncoder.encodeHeader(SSDPContants.CACHECONTROL);
+	private static final byte[] DATE = SSDPMessageEncoder.encodeHeader(SSDPContants.DATE);
+	private static final byte[] LOCATION = SSDPMessageEncoder.encodeHeader(SSDPContants.LOCATION);
+	private static final byte[] SERVER = SSDPMessageEncoder.encodeHeader(SSDPContants.SERVER);
+	private static final byte[] ST = SSDPMessageEncoder.encodeHeader(SSDPContants.ST);
+	private static final byte[] EXT = SSDPMessageEncoder.encodeHeader(SSDPContants.EXT);
+	private static final byte[] USN = SSDPMessageEncoder.encodeHeader(SSDPContants.USN);
+	private static final byte[] CONTENTLENGTH = SSDPMessageEncoder.encodeHeader(SSDPContants.CONTENTLENGTH);
 	
 	/**
 	 * First line of the message
@@ -43,6 +55,7 @@ public class DiscoverResponseMessage implements ISSDPMessage {
 	protected String usn;
 	protected String contentLength;
 	protected List<String> attributes = null;
+	protected SSDPHeaderMap headers = null;
 	
 	/**
 	 * Returns the Notify : the first line of the message
@@ -219,6 +232,51 @@ public class DiscoverResponseMessage implements ISSDPMessage {
 		this.attributes = attributes;
 	}
 	
+	/**
+	 * Returns the headers received, with a lookup that ignores the case of the names.
+	 * The map is built from the message the first time it's requested.
+	 * @return headers, empty if the message was not parsed
+	 */
+	public SSDPHeaderMap getHeaders() {
+		if(headers==null && message!=null){
+			headers = SSDPHeaderMap.parse(message);
+		}
+		return headers!=null ? headers : SSDPHeaderMap.EMPTY;
+	}
+	
+	/**
+	 * Sets the headers received
+	 * @param headers headers of the message
+	 */
+	public void setHeaders(SSDPHeaderMap headers) {
+		this.headers = headers;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void encode(ByteBuffer buffer) {
+		SSDPMessageEncoder.putLine(buffer, getNotify());
+		SSDPMessageEncoder.putHeader(buffer, CACHECONTROL, getCacheControl());
+		SSDPMessageEncoder.putHeader(buffer, DATE, getDate());
+		SSDPMessageEncoder.putHeader(buffer, LOCATION, getLocation());
+		SSDPMessageEncoder.putHeader(buffer, SERVER, getServer());
+		SSDPMessageEncoder.putHeader(buffer, ST, getSt());
+		SSDPMessageEncoder.putHeader(buffer, EXT, getExt());
+		SSDPMessageEncoder.putHeader(buffer, USN, getUsn());
+		SSDPMessageEncoder.putHeader(buffer, CONTENTLENGTH, getContentLength());
+		SSDPMessageEncoder.putEndOfLine(buffer);
+	}
+	
+	/**
+	 * Returns the kind of the message
+	 * @return {@link SSDPMessageKind#DISCOVER_RESPONSE}
+	 */
+	public SSDPMessageKind getKind() {
+		return SSDPMessageKind.DISCOVER_RESPONSE;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,32 @@
+package com.jerabi.ssdp.message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for a ISSDPMessage that can be written in a buffer without being formatted in a String.
+ *
+ * The bytes written are the bytes of {@link #toString()} encoded in US-ASCII : the names of the headers are
+ * already encoded (see {@link com.jerabi.ssdp.message.helper.SSDPMessageEncoder}) and the values are copied char
+ * by char.  The chars that are not ASCII are replaced by '?'.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * ByteBuffer buffer = ByteBufferPool.getHeapPool().acquire();
+ *
+ * message.encode(buffer);
+ * buffer.flip();
+ * </pre>
+ * @see com.jerabi.ssdp.message.helper.SSDPMessageEncoder#encode(ISSDPMessage)
+ */
+public interface ISSDPEncodableMessage extends ISSDPMessage {
+
+	/**
+	 * Writes the message encoded at the position of the buffer.  The position is moved after the message.
+	 *
+	 * @param buffer buffer that will contain the message
+	 * @throws java.nio.BufferOverflowException if the message doesn't fit in the buffer
+	 */
+	void encode(ByteBuffer buffer);
+
+}
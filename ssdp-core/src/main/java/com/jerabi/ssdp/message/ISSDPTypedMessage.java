@@ -0,0 +1,20 @@
+package com.jerabi.ssdp.message;
+
+/**
+ * Interface for a ISSDPMessage that knows its {@link SSDPMessageKind}.
+ *
+ * The kind is given by the class of the message, so the controler can find the method of the
+ * {@link com.jerabi.ssdp.handler.ISSDPMessageHandler} to call without testing the class and the NTS of the message.
+ *
+ * @author Sebastien Dionne
+ * @see SSDPMessageKind#of(ISSDPMessage)
+ */
+public interface ISSDPTypedMessage extends ISSDPMessage {
+
+	/**
+	 * Returns the kind of the message
+	 * @return kind or null if unknown
+	 */
+	SSDPMessageKind getKind();
+
+}
@@ -0,0 +1,109 @@
+package com.jerabi.ssdp.message;
+
+import java.net.NetworkInterface;
+
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+
+/**
+ * Message already formatted and encoded, ready to be sent.
+ *
+ * The message is encoded once in US-ASCII with {@link SSDPMessageEncoder}, the {@link ISSDPEncodableMessage} are
+ * written without being formatted in a String.  The same instance can be sent many times : the senders pass
+ * the bytes to the network without formatting or encoding the message again.
+ *
+ * A message can be rendered for one NetworkInterface (see {@link #getNetworkInterface()}), the senders send it
+ * only on this interface.
+ *
+ * This class is immutable.  The array returned by {@link #getBytes()} is shared and must not be modified.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPEncodedMessage message = new SSDPEncodedMessage(SSDPMessageHelper.createSSDPAliveMessage(serviceInfo));
+ *
+ * byte[] data = message.getBytes();
+ * String text = message.toString();
+ * </pre>
+ * @see com.jerabi.ssdp.message.helper.SSDPEncodedMessageCache
+ */
+public final class SSDPEncodedMessage implements ISSDPMessage {
+
+	private final byte[] bytes;
+	private final NetworkInterface networkInterface;
+
+	// decoded only if toString() is called
+	private volatile String message;
+
+	/**
+	 * Constructor
+	 * @param message message formatted
+	 */
+	public SSDPEncodedMessage(String message) {
+		if(message==null){
+			throw new IllegalArgumentException("Invalid message : null");
+		}
+		this.message = message;
+		this.bytes = message.getBytes(SSDPMessageEncoder.US_ASCII);
+		this.networkInterface = null;
+	}
+
+	/**
+	 * Constructor
+	 * @param message message to encode
+	 */
+	public SSDPEncodedMessage(ISSDPMessage message) {
+		this(message, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param message message to encode
+	 * @param networkInterface the only NetworkInterface on which the message is sent, or null for all
+	 */
+	public SSDPEncodedMessage(ISSDPMessage message, NetworkInterface networkInterface) {
+		if(message==null){
+			throw new IllegalArgumentException("Invalid message : null");
+		}
+		this.bytes = SSDPMessageEncoder.encode(message);
+		this.networkInterface = networkInterface;
+	}
+
+	/**
+	 * Returns the message encoded.  The array is shared, it must not be modified.
+	 * @return the bytes of the message
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the length of the message encoded
+	 * @return length in bytes
+	 */
+	public int getLength() {
+		return bytes.length;
+	}
+
+	/**
+	 * Returns the NetworkInterface for which the message was rendered
+	 * @return NetworkInterface or null if the message is sent on all the interfaces
+	 */
+	public NetworkInterface getNetworkInterface() {
+		return networkInterface;
+	}
+
+	/**
+	 * Returns the message formatted
+	 * @return message formatted
+	 */
+	@Override
+	public String toString() {
+		String text = message;
+		if(text==null){
+			text = new String(bytes, SSDPMessageEncoder.US_ASCII);
+			message = text;
+		}
+		return text;
+	}
+
+}
@@ -0,0 +1,384 @@
+package com.jerabi.ssdp.message;
+
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+import com.jerabi.ssdp.util.SSDPContants;
+
+/**
+ * Headers of a message received, with a lookup that ignores the case of the names.
+ * 
+ * The map is built the first time the headers of a message are requested : the lines are scanned and the offsets of the names and
+ * of the values are kept in arrays, indexed by an open addressing table on the hash of the names.  A value is 
+ * decoded the first time it's requested, in US-ASCII when the map was built from the bytes.  The map is read only.
+ * 
+ * All the headers are in the map, the ones already parsed in the fields of the messages (like USN) and
+ * the others (like BOOTID.UPNP.ORG or X-User-Agent).  When a header is repeated, the last value is used.
+ * 
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * AliveMessage message = (AliveMessage) SSDPMessageHelper.getSSDPMessage(received);
+ * 
+ * SSDPHeaderMap headers = message.getHeaders();
+ * 
+ * int bootId = headers.getBootId();
+ * String userAgent = headers.get("x-user-agent");
+ * String usn = headers.get(SSDPContants.USN);
+ * </pre>
+ */
+public class SSDPHeaderMap {
+	
+	/**
+	 * Map without headers, for the messages that were not parsed
+	 */
+	public static final SSDPHeaderMap EMPTY = new SSDPHeaderMap(null, null, 0, 0);
+	
+	// the message is a String or a byte array
+	private final String text;
+	private final byte[] data;
+	
+	private int size = 0;
+	private int[] nameStart;
+	private int[] nameEnd;
+	private int[] valueStart;
+	private int[] valueEnd;
+	private int[] hashes;
+	
+	// index of the header + 1 by slot, 0 for an empty slot
+	private int[] table;
+	
+	// values decoded
+	private final String[] values;
+	
+	/**
+	 * Builds the map of the headers of a message.  The first line is not a header.
+	 * 
+	 * @param message message received
+	 * @return map of the headers
+	 */
+	public static SSDPHeaderMap parse(String message) {
+		if(message==null){
+			return EMPTY;
+		}
+		return new SSDPHeaderMap(message, null, 0, message.length());
+	}
+	
+	/**
+	 * Builds the map of the headers of a message.  The bytes are not copied, they must not be modified.
+	 * 
+	 * @param data array that contains the message
+	 * @param offset index of the first byte
+	 * @param length length of the message
+	 * @return map of the headers
+	 */
+	public static SSDPHeaderMap parse(byte[] data, int offset, int length) {
+		if(data==null){
+			return EMPTY;
+		}
+		return new SSDPHeaderMap(null, data, offset, offset + length);
+	}
+	
+	private SSDPHeaderMap(String text, byte[] data, int start, int end) {
+		this.text = text;
+		this.data = data;
+		
+		int capacity = 4;
+		nameStart = new int[capacity];
+		nameEnd = new int[capacity];
+		valueStart = new int[capacity];
+		valueEnd = new int[capacity];
+		hashes = new int[capacity];
+		
+		// skip the first line
+		int lineStart = start;
+		while(lineStart<end && at(lineStart)!='\n'){
+			lineStart++;
+		}
+		lineStart++;
+		
+		while(lineStart<end){
+			int lineEnd = lineStart;
+			int colon = -1;
+			while(lineEnd<end && at(lineEnd)!='\n'){
+				if(colon<0 && at(lineEnd)==':'){
+					colon = lineEnd;
+				}
+				lineEnd++;
+			}
+			
+			if(colon>lineStart){
+				add(lineStart, colon, colon + 1, lineEnd);
+			}
+			
+			lineStart = lineEnd + 1;
+		}
+		
+		// table at most half full
+		int tableSize = 8;
+		while(tableSize<size * 2){
+			tableSize <<= 1;
+		}
+		table = new int[tableSize];
+		
+		for (int i = 0; i < size; i++) {
+			int slot = find(hashes[i], nameStart[i], nameEnd[i]);
+			// the last value replaces the previous one
+			table[slot] = i + 1;
+		}
+		
+		values = new String[size];
+	}
+	
+	private void add(int nStart, int nEnd, int vStart, int vEnd) {
+		// names and values are trimmed
+		while(nStart<nEnd && at(nStart)<=' '){
+			nStart++;
+		}
+		while(nEnd>nStart && at(nEnd-1)<=' '){
+			nEnd--;
+		}
+		while(vStart<vEnd && at(vStart)<=' '){
+			vStart++;
+		}
+		while(vEnd>vStart && at(vEnd-1)<=' '){
+			vEnd--;
+		}
+		
+		if(nStart==nEnd){
+			return;
+		}
+		
+		if(size==nameStart.length){
+			nameStart = grow(nameStart);
+			nameEnd = grow(nameEnd);
+			valueStart = grow(valueStart);
+			valueEnd = grow(valueEnd);
+			hashes = grow(hashes);
+		}
+		
+		int hash = 0;
+		for (int i = nStart; i < nEnd; i++) {
+			hash = 31 * hash + upper(at(i));
+		}
+		
+		nameStart[size] = nStart;
+		nameEnd[size] = nEnd;
+		valueStart[size] = vStart;
+		valueEnd[size] = vEnd;
+		hashes[size] = hash;
+		size++;
+	}
+	
+	private static int[] grow(int[] array) {
+		int[] newArray = new int[array.length * 2];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+	
+	private int at(int i) {
+		return text!=null ? text.charAt(i) : data[i] & 0xff;
+	}
+	
+	private static int upper(int c) {
+		return c>='a' && c<='z' ? c - ('a' - 'A') : c;
+	}
+	
+	// returns the slot of the header with the same name as the header at the offsets, or the first empty slot
+	private int find(int hash, int start, int end) {
+		int mask = table.length - 1;
+		int slot = mix(hash) & mask;
+		
+		while(table[slot]!=0){
+			int i = table[slot] - 1;
+			if(hashes[i]==hash && nameEquals(i, start, end)){
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		return slot;
+	}
+	
+	private boolean nameEquals(int i, int start, int end) {
+		if(nameEnd[i] - nameStart[i] != end - start){
+			return false;
+		}
+		for (int j = 0; j < end - start; j++) {
+			if(upper(at(nameStart[i] + j))!=upper(at(start + j))){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+	
+	/**
+	 * Returns the index of the header, or -1 if not found
+	 */
+	private int indexOf(String name) {
+		if(name==null || size==0){
+			return -1;
+		}
+		
+		// the names of SSDPContants end with a colon
+		int length = name.length();
+		if(length>0 && name.charAt(length-1)==':'){
+			length--;
+		}
+		
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + upper(name.charAt(i));
+		}
+		
+		int mask = table.length - 1;
+		int slot = mix(hash) & mask;
+		
+		while(table[slot]!=0){
+			int i = table[slot] - 1;
+			if(hashes[i]==hash && nameEnd[i] - nameStart[i]==length && nameMatches(i, name)){
+				return i;
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		return -1;
+	}
+	
+	private boolean nameMatches(int i, String name) {
+		for (int j = 0; j < nameEnd[i] - nameStart[i]; j++) {
+			if(upper(at(nameStart[i] + j))!=upper(name.charAt(j))){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the number of headers, the repeated headers are counted once for each line
+	 * @return number of headers
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns true if the header is in the message
+	 * @param name name of the header, with or without the colon.  The case is ignored
+	 * @return true if found
+	 */
+	public boolean contains(String name) {
+		return indexOf(name)>=0;
+	}
+	
+	/**
+	 * Returns the value of the header
+	 * @param name name of the header, with or without the colon.  The case is ignored
+	 * @return the value trimmed or null if not found
+	 */
+	public String get(String name) {
+		int i = indexOf(name);
+		return i<0 ? null : getValue(i);
+	}
+	
+	/**
+	 * Returns the value of a header as a int
+	 * @param name name of the header, with or without the colon.  The case is ignored
+	 * @param defaultValue returned if the header is not found or is not a number
+	 * @return value
+	 */
+	public int getInt(String name, int defaultValue) {
+		int i = indexOf(name);
+		if(i<0 || valueStart[i]==valueEnd[i]){
+			return defaultValue;
+		}
+		
+		// parsed without decoding the value
+		long value = 0;
+		for (int j = valueStart[i]; j < valueEnd[i]; j++) {
+			int c = at(j);
+			if(c<'0' || c>'9' || value>Integer.MAX_VALUE){
+				return defaultValue;
+			}
+			value = value * 10 + (c - '0');
+		}
+		
+		return value>Integer.MAX_VALUE ? defaultValue : (int) value;
+	}
+	
+	/**
+	 * Returns the name of a header, like it was received
+	 * @param index between 0 and size()-1
+	 * @return name without the colon
+	 */
+	public String getName(int index) {
+		return decode(nameStart[index], nameEnd[index]);
+	}
+	
+	/**
+	 * Returns the value of a header
+	 * @param index between 0 and size()-1
+	 * @return the value trimmed
+	 */
+	public String getValue(int index) {
+		String value = values[index];
+		if(value==null){
+			value = decode(valueStart[index], valueEnd[index]);
+			values[index] = value;
+		}
+		return value;
+	}
+	
+	private String decode(int start, int end) {
+		return text!=null ? text.substring(start, end) : new String(data, start, end - start, SSDPMessageEncoder.US_ASCII);
+	}
+	
+	/**
+	 * Returns BOOTID.UPNP.ORG
+	 * @return boot id or -1 if not found
+	 */
+	public int getBootId() {
+		return getInt(SSDPContants.BOOTID, -1);
+	}
+	
+	/**
+	 * Returns NEXTBOOTID.UPNP.ORG
+	 * @return next boot id or -1 if not found
+	 */
+	public int getNextBootId() {
+		return getInt(SSDPContants.NEXTBOOTID, -1);
+	}
+	
+	/**
+	 * Returns CONFIGID.UPNP.ORG
+	 * @return config id or -1 if not found
+	 */
+	public int getConfigId() {
+		return getInt(SSDPContants.CONFIGID, -1);
+	}
+	
+	/**
+	 * Returns SEARCHPORT.UPNP.ORG
+	 * @return search port or -1 if not found
+	 */
+	public int getSearchPort() {
+		return getInt(SSDPContants.SEARCHPORT, -1);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		
+		for (int i = 0; i < size; i++) {
+			sb.append(getName(i)).append(": ").append(getValue(i)).append("\r\n");
+		}
+		
+		return sb.toString();
+	}
+	
+}
@@ -0,0 +1,74 @@
+package com.jerabi.ssdp.message;
+
+import com.jerabi.ssdp.util.SSDPContants;
+
+/**
+ * Defines the kinds of {@link ISSDPMessage} processed by the {@link com.jerabi.ssdp.handler.ISSDPMessageHandler}.
+ *
+ * The kind is known when the message is created : the parser creates the class of the message
+ * (see {@link com.jerabi.ssdp.message.helper.SSDPMessageHelper#getSSDPMessage(String)}) and each class
+ * returns its kind with {@link ISSDPTypedMessage#getKind()}.  The ordinal can be used as an index in a table.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPMessageKind kind = SSDPMessageKind.of(message);
+ *
+ * if(kind!=null){
+ *     ISSDPMessageHandler[] handlers = handlerTable[kind.ordinal()];
+ *     ...
+ * }
+ * </pre>
+ * @see com.jerabi.ssdp.SSDPControler#processSSDPMessage(String, int, ISSDPMessage)
+ */
+public enum SSDPMessageKind {
+	/**
+	 * ssdp:alive, {@link AliveMessage}
+	 */
+	ALIVE,
+	/**
+	 * ssdp:update, {@link UpdateMessage}
+	 */
+	UPDATE,
+	/**
+	 * ssdp:byebye, {@link ByeByeMessage}
+	 */
+	BYEBYE,
+	/**
+	 * M-SEARCH, {@link DiscoverMessage}
+	 */
+	DISCOVER,
+	/**
+	 * response to a M-SEARCH, {@link DiscoverResponseMessage}
+	 */
+	DISCOVER_RESPONSE;
+
+	/**
+	 * Returns the kind of the message
+	 * @param message message received
+	 * @return the kind or null if the message is not a {@link ISSDPTypedMessage} or its kind is unknown
+	 */
+	public static SSDPMessageKind of(ISSDPMessage message) {
+		if(message instanceof ISSDPTypedMessage){
+			return ((ISSDPTypedMessage) message).getKind();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the kind of a notification from its Notification Sub Type (NTS)
+	 * @param nts NTS value like {@link SSDPContants#NTS_ALIVE}
+	 * @return ALIVE, UPDATE, BYEBYE or null if the NTS is unknown
+	 */
+	public static SSDPMessageKind ofNts(String nts) {
+		if(SSDPContants.NTS_ALIVE.equals(nts)){
+			return ALIVE;
+		} else if(SSDPContants.NTS_UPDATE.equals(nts)){
+			return UPDATE;
+		} else if(SSDPContants.NTS_BYEBYE.equals(nts)){
+			return BYEBYE;
+		}
+		return null;
+	}
+
+}
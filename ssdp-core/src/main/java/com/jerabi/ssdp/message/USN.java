@@ -0,0 +1,174 @@
+package com.jerabi.ssdp.message;
+
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Unique Service Name (USN) that can't be modified, with one instance for each USN.
+ *
+ * The USN is split and formatted once, when it's created : the UUID, the URN, the USN and its hash are kept.
+ * {@link #valueOf(String)} returns the same instance for the same USN, as long as the instance is used : the
+ * instances are kept in a global table with weak references, the USN not used anymore are removed by the GC.
+ *
+ * The USN are formatted like {@link USNInfo#toString()} : the UUID starts with "uuid:" and the URN is added after
+ * "::" if it's not empty.  The comparison ignores the case, like {@link USNInfo#compareTo(USNInfo)}, but it's done
+ * on a key already in lower case.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * USN usn = USN.valueOf("uuid:9dcf6abc-fc5b-33eb-bf49-e54643b4f416::upnp:rootdevice");
+ *
+ * String uuid = usn.getUuid(); // uuid:9dcf6abc-fc5b-33eb-bf49-e54643b4f416
+ * String urn = usn.getUrn();   // upnp:rootdevice
+ *
+ * // same instance
+ * USN same = USN.valueOf(message.getUsn());
+ * </pre>
+ * @see USNInfo#toUSN()
+ */
+public final class USN implements Comparable<USN> {
+
+	private static final Map<String, WeakReference<USN>> table = new WeakHashMap<String, WeakReference<USN>>();
+
+	private final String uuid;
+	private final String urn;
+	private final String value;
+	private final String key;
+	private final int hash;
+
+	private USN(String uuid, String urn, String value) {
+		this.uuid = uuid;
+		this.urn = urn;
+		this.value = value;
+
+		String lowerCase = value.toLowerCase(Locale.ENGLISH);
+		this.key = lowerCase.equals(value) ? value : lowerCase;
+		this.hash = value.hashCode();
+	}
+
+	/**
+	 * Returns the USN, parsed if it's not already used.
+	 *
+	 * @param usn UUID and URN separated by "::", or only the UUID
+	 * @return the instance of this USN
+	 */
+	public static USN valueOf(String usn) {
+		if(usn==null){
+			throw new IllegalArgumentException("Invalid USN : null");
+		}
+
+		// most of the USN received are already formatted
+		USN instance = lookup(usn);
+		if(instance!=null){
+			return instance;
+		}
+
+		int separator = usn.indexOf("::");
+
+		if(separator<0){
+			return valueOf(usn, null);
+		}
+
+		return valueOf(usn.substring(0, separator), usn.substring(separator + 2));
+	}
+
+	/**
+	 * Returns the USN of the UUID and the URN
+	 *
+	 * @param uuid is not mandatory
+	 * @param urn is not mandatory
+	 * @return the instance of this USN
+	 */
+	public static USN valueOf(String uuid, String urn) {
+		// be sure that uuid doesn't already contains uuid:
+		String uuidValue = uuid;
+		if(uuid==null || !uuid.regionMatches(true, 0, "uuid:", 0, 5)){
+			uuidValue = "uuid:" + uuidValue;
+		}
+
+		String urnValue = urn!=null && urn.length()>0 ? urn : null;
+		String value = urnValue!=null ? uuidValue + "::" + urnValue : uuidValue;
+
+		synchronized (table) {
+			USN instance = lookup(value);
+			if(instance==null){
+				instance = new USN(uuidValue, urnValue, value);
+
+				// the key is the value of the USN : removed with the USN.  A stale entry is removed first,
+				// put would keep its key, a String that doesn't belong to this USN
+				table.remove(value);
+				table.put(instance.value, new WeakReference<USN>(instance));
+			}
+			return instance;
+		}
+	}
+
+	private static USN lookup(String value) {
+		synchronized (table) {
+			WeakReference<USN> reference = table.get(value);
+			return reference!=null ? reference.get() : null;
+		}
+	}
+
+	/**
+	 * Returns UUID, always with "uuid:"
+	 * @return uuid
+	 */
+	public String getUuid() {
+		return uuid;
+	}
+
+	/**
+	 * Returns URN
+	 * @return urn or null if the USN is only a UUID
+	 */
+	public String getUrn() {
+		return urn;
+	}
+
+	/**
+	 * Returns the USN
+	 * @return usn
+	 */
+	@Override
+	public String toString() {
+		return value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof USN))
+			return false;
+		USN other = (USN) obj;
+		return hash==other.hash && value.equals(other.value);
+	}
+
+	/**
+	 * Compares the USN, ignoring the case
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int compareTo(USN obj) {
+		if(this==obj){
+			return 0;
+		}
+		return key.compareTo(obj.key);
+	}
+
+}
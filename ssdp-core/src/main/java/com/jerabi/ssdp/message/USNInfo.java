@@ -24,14 +24,21 @@ package com.jerabi.ssdp.message;
  *     USN: uuid:9dcf6abc-fc5b-33eb-bf49-e54643b4f416::upnp:rootdevice
  *     USN: uuid:9dcf6abc-fc5b-33eb-bf49-e54643b4f416::urn:schemas-upnp-org:service:ContentDirectory:1
  *  </pre>
+ *  
+ *  The USN formatted is kept in a {@link USN} until the UUID or the URN is modified : toString() and 
+ *  compareTo() don't format the USN each time.
  *
  * @author Sebastien Dionne
+ * @see USN
  */
 public class USNInfo implements Comparable<USNInfo> {
 	
 	protected String uuid;
 	protected String urn;
 	
+	// formatted when needed, reset by the setters
+	private USN usn = null;
+	
 	/**
 	 * Constructor with from a USN
 	 * @param usn must contains a UUID and URN separated by "::" 
@@ -75,6 +82,7 @@ public class USNInfo implements Comparable<USNInfo> {
 	 */
 	public void setUuid(String uuid) {
 		this.uuid = uuid;
+		this.usn = null;
 	}
 	/**
 	 * Returns URN
@@ -89,6 +97,20 @@ public class USNInfo implements Comparable<USNInfo> {
 	 */
 	public void setUrn(String urn) {
 		this.urn = urn;
+		this.usn = null;
+	}
+	
+	/**
+	 * Returns the USN that can't be modified, the same instance for the same USN
+	 * @return usn
+	 */
+	public USN toUSN() {
+		USN value = usn;
+		if(value==null){
+			value = USN.valueOf(uuid, urn);
+			usn = value;
+		}
+		return value;
 	}
 	
 	/**
@@ -97,17 +119,7 @@ public class USNInfo implements Comparable<USNInfo> {
 	 * @return usn 
 	 */
 	public String toString(){
-		// be sure that uuid doesn't already contains uuid:
-		String uuidValue = uuid;
-		if(uuid==null || !uuid.toLowerCase().startsWith("uuid:")){
-			uuidValue = "uuid:" + uuidValue;
-		}
-		
-		if(urn!=null && urn.length()>0){
-			return uuidValue + "::" + urn;
-		} else {
-			return uuidValue;
-		}
+		return toUSN().toString();
 	}
 
 	/**
@@ -152,7 +164,7 @@ public class USNInfo implements Comparable<USNInfo> {
 	 */
 	@Override
 	public int compareTo(USNInfo obj) {
-		return this.toString().compareToIgnoreCase(obj.toString());
+		return toUSN().compareTo(obj.toUSN());
 	}
 	
 }
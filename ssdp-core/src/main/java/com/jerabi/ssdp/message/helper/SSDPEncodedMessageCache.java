@@ -0,0 +1,284 @@
+package com.jerabi.ssdp.message.helper;
+
+import java.net.NetworkInterface;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.ByeByeMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.SSDPEncodedMessage;
+import com.jerabi.ssdp.message.ServiceInfo;
+import com.jerabi.ssdp.message.USN;
+import com.jerabi.ssdp.message.USNInfo;
+import com.jerabi.ssdp.message.UpdateMessage;
+
+/**
+ * Cache of the NOTIFY messages sent for each {@link ServiceInfo}, already encoded.
+ *
+ * The senders send the same NOTIFY for each service at each interval.  The message is created with
+ * {@link SSDPMessageHelper}, encoded once, and the same {@link SSDPEncodedMessage} is returned
+ * until the ServiceInfo, its {@link USNInfo}, the cache-control or the server name change.  Each ServiceInfo
+ * instance has its own messages : the values are compared with the values used to create the message, so a
+ * ServiceInfo modified after the message was created is detected.
+ *
+ * On a multi-homed host, the messages can be rendered for each NetworkInterface with the address of the interface
+ * in the LOCATION (see {@link SSDPMessageHelper#replaceLocationHost(String, String)}).  The message of each
+ * (ServiceInfo, NetworkInterface) is encoded once, and again only if the address of the interface changes.
+ *
+ * The services removed are kept until {@link #retainAll(Collection)} or {@link #clear()} is called.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPEncodedMessageCache cache = new SSDPEncodedMessageCache();
+ *
+ * for (ServiceInfo serviceInfo : controler.getServiceInfoList()) {
+ *     // encoded only the first time
+ *     list.add(cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server"));
+ * }
+ *
+ * cache.retainAll(controler.getServiceInfoList());
+ * </pre>
+ * @see com.jerabi.ssdp.sender.AliveMessageSender
+ */
+public class SSDPEncodedMessageCache {
+
+	private static final int ALIVE = 0;
+	private static final int UPDATE = 1;
+	private static final int BYEBYE = 2;
+
+	// the ServiceInfo are mutable, they are found by their instance.  The messages of each ServiceInfo are
+	// found by NetworkInterface, the key null is the message for all the interfaces
+	private final Map<ServiceInfo, Map<NetworkInterface, Entry[]>> entryMap = new IdentityHashMap<ServiceInfo, Map<NetworkInterface, Entry[]>>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	// message with the values used to create it, never modified
+	private static final class Entry {
+		final String host;
+		final int port;
+		final String nt;
+		final String location;
+		final USN usn;
+		final String cacheControl;
+		final String server;
+		final String interfaceHost;
+		final SSDPEncodedMessage message;
+
+		Entry(ServiceInfo serviceInfo, USN usn, String cacheControl, String server, String interfaceHost, SSDPEncodedMessage message) {
+			this.host = serviceInfo.getHost();
+			this.port = serviceInfo.getPort();
+			this.nt = serviceInfo.getNt();
+			this.location = serviceInfo.getLocation();
+			this.usn = usn;
+			this.cacheControl = cacheControl;
+			this.server = server;
+			this.interfaceHost = interfaceHost;
+			this.message = message;
+		}
+
+		boolean matches(ServiceInfo serviceInfo, USN usn, String cacheControl, String server, String interfaceHost) {
+			return port==serviceInfo.getPort() &&
+				equals(host, serviceInfo.getHost()) &&
+				equals(nt, serviceInfo.getNt()) &&
+				equals(location, serviceInfo.getLocation()) &&
+				equals(this.usn, usn) &&
+				equals(this.cacheControl, cacheControl) &&
+				equals(this.server, server) &&
+				equals(this.interfaceHost, interfaceHost);
+		}
+
+		private static boolean equals(Object value, Object other) {
+			return value==other || (value!=null && value.equals(other));
+		}
+	}
+
+	/**
+	 * Returns the {@link AliveMessage} of the service, encoded.
+	 *
+	 * @param serviceInfo info on your device
+	 * @param cacheControl cache-control value
+	 * @param server the name or description of the server
+	 * @return the message encoded
+	 */
+	public SSDPEncodedMessage getAliveMessage(ServiceInfo serviceInfo, String cacheControl, String server) {
+		return getMessage(ALIVE, serviceInfo, cacheControl, server, null, null);
+	}
+
+	/**
+	 * Returns the {@link AliveMessage} of the service rendered for a NetworkInterface : the host of the LOCATION
+	 * is replaced by the address of the interface.
+	 *
+	 * @param serviceInfo info on your device
+	 * @param cacheControl cache-control value
+	 * @param server the name or description of the server
+	 * @param ni NetworkInterface on which the message will be sent
+	 * @param interfaceHost address of the interface, or null to keep the LOCATION
+	 * @return the message encoded, sent only on the NetworkInterface
+	 */
+	public SSDPEncodedMessage getAliveMessage(ServiceInfo serviceInfo, String cacheControl, String server, NetworkInterface ni, String interfaceHost) {
+		return getMessage(ALIVE, serviceInfo, cacheControl, server, ni, interfaceHost);
+	}
+
+	/**
+	 * Returns the {@link UpdateMessage} of the service, encoded.
+	 *
+	 * @param serviceInfo info on your device
+	 * @param cacheControl cache-control value
+	 * @param server the name or description of the server
+	 * @return the message encoded
+	 */
+	public SSDPEncodedMessage getUpdateMessage(ServiceInfo serviceInfo, String cacheControl, String server) {
+		return getMessage(UPDATE, serviceInfo, cacheControl, server, null, null);
+	}
+
+	/**
+	 * Returns the {@link UpdateMessage} of the service rendered for a NetworkInterface : the host of the LOCATION
+	 * is replaced by the address of the interface.
+	 *
+	 * @param serviceInfo info on your device
+	 * @param cacheControl cache-control value
+	 * @param server the name or description of the server
+	 * @param ni NetworkInterface on which the message will be sent
+	 * @param interfaceHost address of the interface, or null to keep the LOCATION
+	 * @return the message encoded, sent only on the NetworkInterface
+	 */
+	public SSDPEncodedMessage getUpdateMessage(ServiceInfo serviceInfo, String cacheControl, String server, NetworkInterface ni, String interfaceHost) {
+		return getMessage(UPDATE, serviceInfo, cacheControl, server, ni, interfaceHost);
+	}
+
+	/**
+	 * Returns the {@link ByeByeMessage} of the service, encoded.
+	 *
+	 * @param serviceInfo info on your device
+	 * @return the message encoded
+	 */
+	public SSDPEncodedMessage getByeByeMessage(ServiceInfo serviceInfo) {
+		return getMessage(BYEBYE, serviceInfo, null, null, null, null);
+	}
+
+	private SSDPEncodedMessage getMessage(int kind, ServiceInfo serviceInfo, String cacheControl, String server, NetworkInterface ni, String interfaceHost) {
+		if(serviceInfo==null){
+			throw new IllegalArgumentException("Invalid ServiceInfo : null");
+		}
+
+		USNInfo usnInfo = serviceInfo.getUsn();
+		USN usn = usnInfo!=null ? usnInfo.toUSN() : null;
+
+		synchronized (entryMap) {
+			Map<NetworkInterface, Entry[]> interfaceMap = entryMap.get(serviceInfo);
+			Entry[] entries = interfaceMap!=null ? interfaceMap.get(ni) : null;
+
+			if(entries!=null && entries[kind]!=null && entries[kind].matches(serviceInfo, usn, cacheControl, server, interfaceHost)){
+				hitCount.incrementAndGet();
+				return entries[kind].message;
+			}
+
+			missCount.incrementAndGet();
+
+			SSDPEncodedMessage message = new SSDPEncodedMessage(create(kind, serviceInfo, cacheControl, server, interfaceHost), ni);
+
+			if(interfaceMap==null){
+				interfaceMap = new HashMap<NetworkInterface, Entry[]>();
+				entryMap.put(serviceInfo, interfaceMap);
+			}
+			if(entries==null){
+				entries = new Entry[3];
+				interfaceMap.put(ni, entries);
+			}
+			entries[kind] = new Entry(serviceInfo, usn, cacheControl, server, interfaceHost, message);
+
+			return message;
+		}
+	}
+
+	private static ISSDPMessage create(int kind, ServiceInfo serviceInfo, String cacheControl, String server, String interfaceHost) {
+		switch (kind) {
+		case ALIVE:
+			AliveMessage alive = SSDPMessageHelper.createSSDPAliveMessage(serviceInfo);
+			alive.setCacheControl(cacheControl);
+			alive.setServer(server);
+			alive.setLocation(SSDPMessageHelper.replaceLocationHost(alive.getLocation(), interfaceHost));
+			return alive;
+		case UPDATE:
+			UpdateMessage update = SSDPMessageHelper.createSSDPUpdateMessage(serviceInfo);
+			update.setCacheControl(cacheControl);
+			update.setServer(server);
+			update.setLocation(SSDPMessageHelper.replaceLocationHost(update.getLocation(), interfaceHost));
+			return update;
+		default:
+			return SSDPMessageHelper.createSSDPByeByeMessage(serviceInfo);
+		}
+	}
+
+	/**
+	 * Removes the messages of the services that are not in the list
+	 * @param serviceInfoList services still sent
+	 */
+	public void retainAll(Collection<ServiceInfo> serviceInfoList) {
+		Map<ServiceInfo, Boolean> retained = new IdentityHashMap<ServiceInfo, Boolean>();
+		if(serviceInfoList!=null){
+			for (ServiceInfo serviceInfo : serviceInfoList) {
+				retained.put(serviceInfo, Boolean.TRUE);
+			}
+		}
+
+		synchronized (entryMap) {
+			for (Iterator<ServiceInfo> iterator = entryMap.keySet().iterator(); iterator.hasNext();) {
+				if(!retained.containsKey(iterator.next())){
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all the messages
+	 */
+	public void clear() {
+		synchronized (entryMap) {
+			entryMap.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of services in the cache
+	 * @return size
+	 */
+	public int size() {
+		synchronized (entryMap) {
+			return entryMap.size();
+		}
+	}
+
+	/**
+	 * Returns the number of messages found in the cache
+	 * @return hits
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of messages encoded
+	 * @return misses
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SSDPEncodedMessageCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+	}
+
+}
@@ -0,0 +1,348 @@
+package com.jerabi.ssdp.message.helper;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.jerabi.ssdp.message.AbstractSSDPNotifyMessage;
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.ByeByeMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.UpdateMessage;
+
+/**
+ * Cache of the NOTIFY messages already parsed, found by the content of the message received.
+ *
+ * The devices send the same NOTIFY at each interval, byte for byte.  When a message is in the cache, the message
+ * already parsed is returned : it costs a hash and a comparison of the content, instead of a parse.
+ *
+ * The messages returned by the cache are shared, so they are frozen (see {@link AbstractSSDPNotifyMessage#isFrozen()}) :
+ * the setters throw a UnsupportedOperationException and the attributes can't be modified.  They are still a {@link AliveMessage},
+ * {@link UpdateMessage} or {@link ByeByeMessage}, the handlers don't see the difference.  Only the NOTIFY messages
+ * are cached, the M-SEARCH and the responses (with a DATE that changes) are parsed each time.
+ *
+ * The cache is a fixed table : when two messages use the same slot, the last one replaces the other.  The cache can
+ * be used by many threads without lock.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPMessageHelper.setMessageCache(new SSDPMessageCache(512));
+ *
+ * // the same instance for the same message
+ * ISSDPMessage message = SSDPMessageHelper.getSSDPMessage(received);
+ * </pre>
+ * @see SSDPMessageHelper#setMessageCache(SSDPMessageCache)
+ */
+public class SSDPMessageCache {
+
+	/**
+	 * Default number of messages cached
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final AtomicReferenceArray<Entry> entries;
+	private final int mask;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	// message received with the message parsed, never modified
+	private static final class Entry {
+		final int hash;
+		final String text;
+		final byte[] bytes;
+		final ISSDPMessage message;
+
+		Entry(int hash, String text, byte[] bytes, ISSDPMessage message) {
+			this.hash = hash;
+			this.text = text;
+			this.bytes = bytes;
+			this.message = message;
+		}
+	}
+
+	/**
+	 * Constructor with default values
+	 */
+	public SSDPMessageCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity number of messages cached, rounded to the next power of 2
+	 */
+	public SSDPMessageCache(int capacity) {
+		if(capacity<1 || capacity>(1 << 20)){
+			throw new IllegalArgumentException("Invalid capacity : " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if(size<capacity){
+			size <<= 1;
+		}
+
+		this.entries = new AtomicReferenceArray<Entry>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Returns the message cached, or parses the message with {@link SSDPMessageHelper} and caches it.
+	 *
+	 * @param message message received
+	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
+	 */
+	public ISSDPMessage getSSDPMessage(String message) {
+		if(message==null){
+			return null;
+		}
+
+		int hash = message.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & mask;
+
+		Entry entry = entries.get(slot);
+		if(entry!=null && entry.hash==hash && entry.text.equals(message)){
+			hitCount.incrementAndGet();
+			return entry.message;
+		}
+
+		missCount.incrementAndGet();
+
+		ISSDPMessage ssdpMessage = readOnly(SSDPMessageHelper.decode(message));
+
+		if(ssdpMessage instanceof AbstractSSDPNotifyMessage){
+			entries.set(slot, new Entry(hash, message, null, ssdpMessage));
+		}
+
+		return ssdpMessage;
+	}
+
+	/**
+	 * Returns the message cached, or parses the bytes between the position and the limit of the buffer with
+	 * {@link SSDPMessageParser} and caches it.  The position of the buffer is not changed.
+	 *
+	 * @param data message received
+	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
+	 */
+	public ISSDPMessage parse(ByteBuffer data) {
+		if(data==null){
+			return null;
+		}
+
+		int position = data.position();
+		int length = data.remaining();
+
+		// same hash as String.hashCode() for ASCII, the messages can be found by their String or their bytes
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + data.get(position + i);
+		}
+		int slot = (hash ^ (hash >>> 16)) & mask;
+
+		Entry entry = entries.get(slot);
+		if(entry!=null && entry.hash==hash && equals(entry, data, position, length)){
+			hitCount.incrementAndGet();
+			return entry.message;
+		}
+
+		missCount.incrementAndGet();
+
+		ISSDPMessage ssdpMessage = SSDPMessageParser.parse(data);
+
+		if(ssdpMessage instanceof AbstractSSDPNotifyMessage){
+			ssdpMessage = readOnly(ssdpMessage);
+
+			byte[] bytes = new byte[length];
+			data.duplicate().get(bytes);
+
+			entries.set(slot, new Entry(hash, ((AbstractSSDPNotifyMessage) ssdpMessage).getMessage(), bytes, ssdpMessage));
+		}
+
+		return ssdpMessage;
+	}
+
+	private static boolean equals(Entry entry, ByteBuffer data, int position, int length) {
+		if(entry.bytes!=null){
+			if(entry.bytes.length!=length){
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if(entry.bytes[i]!=data.get(position + i)){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// cached from a String, compared as ASCII
+		if(entry.text.length()!=length){
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if(entry.text.charAt(i)!=data.get(position + i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a read only copy of the NOTIFY messages, or the message if it's not cached
+	 */
+	private static ISSDPMessage readOnly(ISSDPMessage message) {
+		if(message instanceof AliveMessage){
+			return new ReadOnlyAliveMessage((AliveMessage) message);
+		} else if(message instanceof UpdateMessage){
+			return new ReadOnlyUpdateMessage((UpdateMessage) message);
+		} else if(message instanceof ByeByeMessage){
+			return new ReadOnlyByeByeMessage((ByeByeMessage) message);
+		}
+		return message;
+	}
+
+	/**
+	 * Removes all the messages
+	 */
+	public void clear() {
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, null);
+		}
+	}
+
+	/**
+	 * Returns the number of messages that can be cached
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Returns the number of messages found in the cache
+	 * @return hits
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of messages parsed
+	 * @return misses
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SSDPMessageCache[capacity=" + getCapacity() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+	}
+
+	private static List<String> readOnly(List<String> attributes) {
+		return attributes!=null ? Collections.unmodifiableList(attributes) : null;
+	}
+
+	private static class ReadOnlyAliveMessage extends AliveMessage {
+
+		ReadOnlyAliveMessage(AliveMessage message) {
+			super.setMessage(message.getMessage());
+			super.setNotify(message.getNotify());
+			super.setHost(message.getHost());
+			super.setPort(message.getPort());
+			super.setNt(message.getNt());
+			super.setNts(message.getNts());
+			super.setUsn(message.getUsn());
+			super.setAttributes(readOnly(message.getAttributes()));
+			super.setHeaders(message.getHeaders());
+			super.setCacheControl(message.getCacheControl());
+			super.setLocation(message.getLocation());
+			super.setServer(message.getServer());
+			freeze();
+		}
+
+		@Override
+		public void setCacheControl(String cacheControl) {
+			checkFrozen();
+			super.setCacheControl(cacheControl);
+		}
+
+		@Override
+		public void setLocation(String location) {
+			checkFrozen();
+			super.setLocation(location);
+		}
+
+		@Override
+		public void setServer(String server) {
+			checkFrozen();
+			super.setServer(server);
+		}
+	}
+
+	private static class ReadOnlyUpdateMessage extends UpdateMessage {
+
+		ReadOnlyUpdateMessage(UpdateMessage message) {
+			super.setMessage(message.getMessage());
+			super.setNotify(message.getNotify());
+			super.setHost(message.getHost());
+			super.setPort(message.getPort());
+			super.setNt(message.getNt());
+			super.setNts(message.getNts());
+			super.setUsn(message.getUsn());
+			super.setAttributes(readOnly(message.getAttributes()));
+			super.setHeaders(message.getHeaders());
+			super.setCacheControl(message.getCacheControl());
+			super.setLocation(message.getLocation());
+			super.setServer(message.getServer());
+			freeze();
+		}
+
+		@Override
+		public void setCacheControl(String cacheControl) {
+			checkFrozen();
+			super.setCacheControl(cacheControl);
+		}
+
+		@Override
+		public void setLocation(String location) {
+			checkFrozen();
+			super.setLocation(location);
+		}
+
+		@Override
+		public void setServer(String server) {
+			checkFrozen();
+			super.setServer(server);
+		}
+	}
+
+	private static class ReadOnlyByeByeMessage extends ByeByeMessage {
+
+		ReadOnlyByeByeMessage(ByeByeMessage message) {
+			super.setMessage(message.getMessage());
+			super.setNotify(message.getNotify());
+			super.setHost(message.getHost());
+			super.setPort(message.getPort());
+			super.setNt(message.getNt());
+			super.setNts(message.getNts());
+			super.setUsn(message.getUsn());
+			super.setAttributes(readOnly(message.getAttributes()));
+			super.setHeaders(message.getHeaders());
+			super.setContentLength(message.getContentLength());
+			freeze();
+		}
+
+		@Override
+		public void setContentLength(String contentLength) {
+			checkFrozen();
+			super.setContentLength(contentLength);
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.jerabi.ssdp.message.helper;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.jerabi.ssdp.message.ISSDPEncodableMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.network.ByteBufferPool;
+
+/**
+ * Helper to encode the messages in US-ASCII, the charset of the SSDP headers.
+ *
+ * The {@link ISSDPEncodableMessage} use this class to write their headers : the names of the headers are encoded
+ * once in constants with {@link #encodeHeader(String)}, and the values are copied char by char in the buffer, without
+ * creating a String for each line.  The other messages are formatted with toString() and encoded with
+ * {@link #US_ASCII}.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * private static final byte[] HOST = SSDPMessageEncoder.encodeHeader(SSDPContants.HOST);
+ *
+ * public void encode(ByteBuffer buffer) {
+ *     SSDPMessageEncoder.putLine(buffer, getNotify());
+ *     SSDPMessageEncoder.putHeader(buffer, HOST, getHost());
+ *     ...
+ * }
+ *
+ * // the message encoded, with a buffer of ByteBufferPool
+ * byte[] data = SSDPMessageEncoder.encode(message);
+ * </pre>
+ */
+public final class SSDPMessageEncoder {
+
+	/**
+	 * Charset of the messages
+	 */
+	public static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+	private static final byte CR = '\r';
+	private static final byte LF = '\n';
+	private static final byte SPACE = ' ';
+	private static final byte REPLACEMENT = '?';
+
+	private SSDPMessageEncoder() {
+	}
+
+	/**
+	 * Returns the name of a header encoded, followed by a space
+	 *
+	 * @param name name of the header with ":" like {@link com.jerabi.ssdp.util.SSDPContants#HOST}
+	 * @return the bytes of "name "
+	 */
+	public static byte[] encodeHeader(String name) {
+		byte[] bytes = new byte[name.length() + 1];
+		for (int i = 0; i < name.length(); i++) {
+			bytes[i] = encode(name.charAt(i));
+		}
+		bytes[name.length()] = SPACE;
+		return bytes;
+	}
+
+	/**
+	 * Writes a header : the name already encoded, the value and CRLF.
+	 *
+	 * @param buffer buffer that will contain the message
+	 * @param name name of the header returned by {@link #encodeHeader(String)}
+	 * @param value value of the header, "null" is written if it's null like in toString()
+	 */
+	public static void putHeader(ByteBuffer buffer, byte[] name, String value) {
+		buffer.put(name);
+		putLine(buffer, value);
+	}
+
+	/**
+	 * Writes a line followed by CRLF
+	 *
+	 * @param buffer buffer that will contain the message
+	 * @param value line to write, "null" is written if it's null
+	 */
+	public static void putLine(ByteBuffer buffer, String value) {
+		put(buffer, value);
+		putEndOfLine(buffer);
+	}
+
+	/**
+	 * Writes CRLF
+	 *
+	 * @param buffer buffer that will contain the message
+	 */
+	public static void putEndOfLine(ByteBuffer buffer) {
+		buffer.put(CR).put(LF);
+	}
+
+	/**
+	 * Writes the value encoded in US-ASCII.  The chars that are not ASCII are replaced by '?'.
+	 *
+	 * @param buffer buffer that will contain the message
+	 * @param value value to write, "null" is written if it's null
+	 */
+	public static void put(ByteBuffer buffer, String value) {
+		String text = String.valueOf(value);
+		int length = text.length();
+
+		if(buffer.remaining()<length){
+			throw new BufferOverflowException();
+		}
+
+		if(buffer.hasArray()){
+			byte[] array = buffer.array();
+			int offset = buffer.arrayOffset() + buffer.position();
+
+			for (int i = 0; i < length; i++) {
+				array[offset + i] = encode(text.charAt(i));
+			}
+			buffer.position(buffer.position() + length);
+		} else {
+			for (int i = 0; i < length; i++) {
+				buffer.put(encode(text.charAt(i)));
+			}
+		}
+	}
+
+	private static byte encode(char c) {
+		return c<0x80 ? (byte) c : REPLACEMENT;
+	}
+
+	/**
+	 * Returns the message encoded in US-ASCII.  The {@link ISSDPEncodableMessage} are written in a buffer taken
+	 * from {@link ByteBufferPool#getHeapPool()}, the other messages are formatted with toString().
+	 *
+	 * @param message message to encode
+	 * @return the bytes of the message or null if the message is null
+	 */
+	public static byte[] encode(ISSDPMessage message) {
+		if(message==null){
+			return null;
+		}
+
+		if(!(message instanceof ISSDPEncodableMessage)){
+			return message.toString().getBytes(US_ASCII);
+		}
+
+		ByteBufferPool pool = ByteBufferPool.getHeapPool();
+		ByteBuffer buffer = pool.acquire();
+		try {
+			((ISSDPEncodableMessage) message).encode(buffer);
+
+			byte[] data = new byte[buffer.position()];
+			System.arraycopy(buffer.array(), buffer.arrayOffset(), data, 0, data.length);
+
+			return data;
+		} catch (BufferOverflowException e) {
+			// bigger than the MTU, encoded with toString()
+			return message.toString().getBytes(US_ASCII);
+		} finally {
+			pool.release(buffer);
+		}
+	}
+
+}
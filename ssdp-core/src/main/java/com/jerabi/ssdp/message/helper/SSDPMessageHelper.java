@@ -1,7 +1,9 @@
 package com.jerabi.ssdp.message.helper;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import com.jerabi.ssdp.message.AbstractSSDPNotifyMessage;
@@ -13,6 +15,7 @@ import com.jerabi.ssdp.message.ISSDPMessage;
 import com.jerabi.ssdp.message.ServiceInfo;
 import com.jerabi.ssdp.message.UpdateMessage;
 import com.jerabi.ssdp.util.SSDPContants;
+import com.jerabi.ssdp.util.SSDPStringCache;
 
 /**
  * This helper provides API to create and parse {@link ISSDPMessage}.
@@ -48,6 +51,107 @@ public class SSDPMessageHelper {
 	
 	private static final Logger logger = Logger.getLogger(SSDPMessageHelper.class.getName());
 	
+	private static volatile SSDPStringCache stringCache = new SSDPStringCache();
+	
+	/**
+	 * Returns the cache of the header values used by the parsers
+	 * @return the cache or null if the values are not cached
+	 */
+	public static SSDPStringCache getStringCache() {
+		return stringCache;
+	}
+	
+	/**
+	 * Sets the cache of the header values used by the parsers.  The messages parsed share the same
+	 * String for the values already received, like SERVER, LOCATION or USN.
+	 * @param stringCache the cache or null to disable it
+	 */
+	public static void setStringCache(SSDPStringCache stringCache) {
+		SSDPMessageHelper.stringCache = stringCache;
+	}
+	
+	private static volatile SSDPMessageCache messageCache = null;
+	
+	/**
+	 * Returns the cache of the messages parsed
+	 * @return the cache or null if the messages are not cached
+	 */
+	public static SSDPMessageCache getMessageCache() {
+		return messageCache;
+	}
+	
+	/**
+	 * Sets the cache of the messages parsed.  When a NOTIFY is received again, the message already parsed
+	 * is returned by {@link #getSSDPMessage(String)} and {@link #parseSSDPMessage(ByteBuffer)}.  These messages are
+	 * shared and read only.  Disabled by default.
+	 * @param messageCache the cache or null to disable it
+	 */
+	public static void setMessageCache(SSDPMessageCache messageCache) {
+		SSDPMessageHelper.messageCache = messageCache;
+	}
+	
+	// headers in the same order as the lenient parser
+	private static final String[] STRICT_HEADERS = {
+		SSDPContants.CACHECONTROL,
+		SSDPContants.DATE,
+		SSDPContants.LOCATION,
+		SSDPContants.SERVER,
+		SSDPContants.ST,
+		SSDPContants.EXT,
+		SSDPContants.USN,
+		SSDPContants.CONTENTLENGTH,
+		SSDPContants.HOST,
+		SSDPContants.NT,
+		SSDPContants.NTS,
+		SSDPContants.MX,
+		SSDPContants.MAN
+	};
+	
+	private static volatile boolean strictParsing = false;
+	private static final AtomicLong strictCount = new AtomicLong();
+	private static final AtomicLong lenientCount = new AtomicLong();
+	
+	/**
+	 * Returns true if {@link #getSSDPMessage(String)} tries the strict parser first
+	 * @return strict parsing
+	 */
+	public static boolean isStrictParsing() {
+		return strictParsing;
+	}
+	
+	/**
+	 * Sets the strict parsing.  The strict parser expects well formed messages : each line ends with CRLF, 
+	 * the empty line is the last one, each header has a colon and is not repeated.  The message is read in one 
+	 * pass, without splitting the lines and without converting them to upper case.
+	 * 
+	 * When a message is not well formed, it's parsed again by the lenient parser.  The messages returned are the
+	 * same with both parsers.  Disabled by default.
+	 * 
+	 * @param strictParsing true to try the strict parser first
+	 * @see #getStrictParseCount()
+	 * @see #getLenientParseCount()
+	 */
+	public static void setStrictParsing(boolean strictParsing) {
+		SSDPMessageHelper.strictParsing = strictParsing;
+	}
+	
+	/**
+	 * Returns the number of messages parsed by the strict parser
+	 * @return messages parsed
+	 */
+	public static long getStrictParseCount() {
+		return strictCount.get();
+	}
+	
+	/**
+	 * Returns the number of messages that were not well formed and parsed by the lenient parser, when the
+	 * strict parsing is enabled
+	 * @return messages parsed again
+	 */
+	public static long getLenientParseCount() {
+		return lenientCount.get();
+	}
+	
 
 	/**
 	 * Parse the message and returns a ISSDPMessage if the message is supported.
@@ -56,17 +160,31 @@ public class SSDPMessageHelper {
 	 * Some extra attributes could be received within the message.  Even if there are not
 	 * part of the SSDP specs, and they be parsed and kept into the property : Attributes. 
 	 * 
+	 * When a {@link SSDPMessageCache} is set, the NOTIFY already received are returned by the cache. 
+	 * 
 	 * @param message message to parse
 	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
 	 */
 	public static ISSDPMessage getSSDPMessage(String message){
+		SSDPMessageCache cache = messageCache;
+		if(cache!=null){
+			return cache.getSSDPMessage(message);
+		}
+		return decode(message);
+	}
+	
+	/**
+	 * Parses the message without the cache of the messages
+	 * 
+	 * @param message message to parse
+	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
+	 */
+	static ISSDPMessage decode(String message){
 		
-		if(message==null || message.trim().length()==0){
+		if(message==null || isBlank(message)){
 			return null;
 		}
 		
-		String[] split = message.split("\n");
-		
 		String notify = null;
 		String cacheControl = null;
 		String date = null;
@@ -85,31 +203,34 @@ public class SSDPMessageHelper {
 		String man = null;
 		List<String> othersAttributes = new ArrayList<String>();
 		
-		for (int i = 0; i < split.length; i++) {
-			
-			String line = split[i];
+		String[] values = null;
+		if(strictParsing){
+			values = scanStrict(message, othersAttributes);
+			if(values!=null){
+				strictCount.incrementAndGet();
+			} else {
+				lenientCount.incrementAndGet();
+				othersAttributes.clear();
+			}
+		}
+		
+		if(values!=null){
+			notify = values[0];
+			cacheControl = values[1];
+			date = values[2];
+			location = values[3];
+			server = values[4];
+			st = values[5];
+			ext = values[6];
+			usn = values[7];
+			contentLength = values[8];
+			host = values[9];
+			nt = values[10];
+			nts = values[11];
+			mx = values[12];
+			man = values[13];
 			
-			if(i==0){
-				notify = line.trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.CACHECONTROL)){
-				cacheControl = line.substring(SSDPContants.CACHECONTROL.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.DATE)){
-				date = line.substring(SSDPContants.DATE.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.LOCATION)){
-				location = line.substring(SSDPContants.LOCATION.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.SERVER)){
-				server = line.substring(SSDPContants.SERVER.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.ST)){
-				st = line.substring(SSDPContants.ST.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.EXT)){
-				ext = line.substring(SSDPContants.EXT.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.USN)){
-				usn = line.substring(SSDPContants.USN.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.CONTENTLENGTH)){
-				contentLength = line.substring(SSDPContants.CONTENTLENGTH.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.HOST)){
-				host = line.substring(SSDPContants.HOST.length()).trim();
-				
+			if(host!=null){
 				// extract port if found
 				int portIndex = host.indexOf(":");
 				if(portIndex>0){
@@ -119,19 +240,72 @@ public class SSDPMessageHelper {
 					// use default port
 					port = Integer.toString(SSDPContants.DEFAULT_PORT);
 				}
-				
-			} else if(line.toUpperCase().startsWith(SSDPContants.NT)){
-				nt = line.substring(SSDPContants.NT.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.NTS)){
-				nts = line.substring(SSDPContants.NTS.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.MX)){
-				mx = line.substring(SSDPContants.MX.length()).trim();
-			} else if(line.toUpperCase().startsWith(SSDPContants.MAN)){
-				man = line.substring(SSDPContants.MAN.length()).trim();
-			} else {
-				othersAttributes.add(line);
 			}
+		} else {
+			String[] split = message.split("\n");
 			
+			for (int i = 0; i < split.length; i++) {
+				
+				String line = split[i];
+				
+				if(i==0){
+					notify = line.trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.CACHECONTROL)){
+					cacheControl = line.substring(SSDPContants.CACHECONTROL.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.DATE)){
+					date = line.substring(SSDPContants.DATE.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.LOCATION)){
+					location = line.substring(SSDPContants.LOCATION.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.SERVER)){
+					server = line.substring(SSDPContants.SERVER.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.ST)){
+					st = line.substring(SSDPContants.ST.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.EXT)){
+					ext = line.substring(SSDPContants.EXT.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.USN)){
+					usn = line.substring(SSDPContants.USN.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.CONTENTLENGTH)){
+					contentLength = line.substring(SSDPContants.CONTENTLENGTH.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.HOST)){
+					host = line.substring(SSDPContants.HOST.length()).trim();
+					
+					// extract port if found
+					int portIndex = host.indexOf(":");
+					if(portIndex>0){
+						port = host.substring(portIndex+1);
+						host = host.substring(0,portIndex);
+					} else {
+						// use default port
+						port = Integer.toString(SSDPContants.DEFAULT_PORT);
+					}
+					
+				} else if(line.toUpperCase().startsWith(SSDPContants.NT)){
+					nt = line.substring(SSDPContants.NT.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.NTS)){
+					nts = line.substring(SSDPContants.NTS.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.MX)){
+					mx = line.substring(SSDPContants.MX.length()).trim();
+				} else if(line.toUpperCase().startsWith(SSDPContants.MAN)){
+					man = line.substring(SSDPContants.MAN.length()).trim();
+				} else {
+					othersAttributes.add(line);
+				}
+				
+			}
+		}
+		
+		SSDPStringCache cache = stringCache;
+		if(cache!=null){
+			// the messages kept share the same values
+			cacheControl = cache.intern(cacheControl);
+			location = cache.intern(location);
+			server = cache.intern(server);
+			st = cache.intern(st);
+			usn = cache.intern(usn);
+			host = cache.intern(host);
+			port = cache.intern(port);
+			nt = cache.intern(nt);
+			nts = cache.intern(nts);
 		}
 		
 		// is it a M-SEARCH ?
@@ -212,6 +386,174 @@ public class SSDPMessageHelper {
 		return null;
 	}
 	
+	/**
+	 * Parse the bytes of the message and returns a ISSDPMessage if the message is supported.
+	 * If the message is not recognized a null value will be return.
+	 * 
+	 * The message is read between the position and the limit of the buffer, without decoding it
+	 * first.  The ISSDPMessage returned is the same as {@link #getSSDPMessage(String)}. 
+	 * 
+	 * @param data message to parse
+	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
+	 * @see SSDPMessageParser
+	 */
+	public static ISSDPMessage parseSSDPMessage(ByteBuffer data){
+		SSDPMessageCache cache = messageCache;
+		if(cache!=null){
+			return cache.parse(data);
+		}
+		return SSDPMessageParser.parse(data);
+	}
+	
+	/**
+	 * Parse the bytes of the message and returns a view of the message if the message is supported.
+	 * If the message is not recognized a null value will be return.
+	 * 
+	 * The view keeps a copy of the bytes, the headers are decoded when they are requested.
+	 * 
+	 * @param data message to parse
+	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
+	 * @see SSDPMessageParser#parseView(ByteBuffer)
+	 */
+	public static ISSDPMessage parseSSDPMessageView(ByteBuffer data){
+		return SSDPMessageParser.parseView(data);
+	}
+	
+	/**
+	 * Reads a well formed message in one pass.  The values are in the order of STRICT_HEADERS, after
+	 * the first line.  The lines that are not a known header are added to the attributes with their CR, like
+	 * the lenient parser.
+	 * 
+	 * @return the first line and the values, or null if the message is not well formed
+	 */
+	private static String[] scanStrict(String message, List<String> attributes) {
+		int length = message.length();
+		
+		// the last line ends with CRLF too
+		if(length<2 || message.charAt(length-2)!='\r' || message.charAt(length-1)!='\n'){
+			return null;
+		}
+		
+		String[] values = new String[STRICT_HEADERS.length + 1];
+		int lineStart = 0;
+		boolean blank = false;
+		
+		while(lineStart<length){
+			if(blank){
+				// the empty line must be the last one
+				return null;
+			}
+			
+			int cr = lineStart;
+			int colon = -1;
+			char c;
+			while((c = message.charAt(cr))!='\r'){
+				if(c=='\n'){
+					// LF without CR
+					return null;
+				}
+				if(colon<0 && c==':'){
+					colon = cr;
+				}
+				cr++;
+			}
+			
+			if(message.charAt(cr+1)!='\n'){
+				// CR without LF
+				return null;
+			}
+			
+			if(lineStart==0){
+				values[0] = trim(message, lineStart, cr);
+			} else if(cr==lineStart){
+				blank = true;
+				attributes.add("\r");
+			} else if(colon<0){
+				return null;
+			} else {
+				int header = getStrictHeader(message, lineStart, colon);
+				
+				if(header<0){
+					attributes.add(message.substring(lineStart, cr+1));
+				} else if(values[header+1]!=null){
+					// repeated
+					return null;
+				} else {
+					values[header+1] = trim(message, colon+1, cr);
+				}
+			}
+			
+			lineStart = cr + 2;
+		}
+		
+		return values;
+	}
+	
+	private static int getStrictHeader(String message, int start, int colon) {
+		int nameLength = colon - start;
+		for (int i = 0; i < STRICT_HEADERS.length; i++) {
+			// the names end with a colon
+			if(STRICT_HEADERS[i].length()==nameLength+1 && message.regionMatches(true, start, STRICT_HEADERS[i], 0, nameLength)){
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	// like String.trim() on a part of the message
+	private static String trim(String message, int start, int end) {
+		while(start<end && message.charAt(start)<=' '){
+			start++;
+		}
+		while(end>start && message.charAt(end-1)<=' '){
+			end--;
+		}
+		return message.substring(start, end);
+	}
+	
+	private static boolean isBlank(String message) {
+		for (int i = 0; i < message.length(); i++) {
+			if(message.charAt(i)>' '){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the value of a header without parsing the whole message.  The name of the header is 
+	 * not case sensitive.
+	 * 
+	 * @param message raw message
+	 * @param header name of the header with the colon, like {@link SSDPContants#ST}
+	 * @return the value trimmed, or null if the header is not found
+	 */
+	public static String getHeaderValue(String message, String header){
+		if(message==null){
+			return null;
+		}
+		
+		int start = 0;
+		int length = message.length();
+		
+		// the first line is the request line, not a header
+		int end = message.indexOf('\n');
+		
+		while(end>=0 && end<length){
+			start = end + 1;
+			end = message.indexOf('\n', start);
+			if(end<0){
+				end = length;
+			}
+			
+			if(message.regionMatches(true, start, header, 0, header.length())){
+				return message.substring(start + header.length(), end).trim();
+			}
+		}
+		
+		return null;
+	}
+	
 	/**
 	 * Creates a {@link AliveMessage} from a {@link ServiceInfo}.  
 	 * 
@@ -283,4 +625,73 @@ public class SSDPMessageHelper {
 		return message;
 	}
 	
+	/**
+	 * Returns the LOCATION with another host.  The host is replaced only if it's an IP address, the names
+	 * are kept : a name can be resolved by the clients on all the networks.
+	 * 
+	 * @example.
+	 * <pre>
+	 * // http://10.0.0.5:9000/description.xml
+	 * SSDPMessageHelper.replaceLocationHost("http://192.168.1.10:9000/description.xml", "10.0.0.5");
+	 * </pre>
+	 * 
+	 * @param location URL like http://192.168.1.10:9000/description.xml
+	 * @param host the new host, an IPv4 address or a IPv6 address between []
+	 * @return the location with the new host, or the location if it can't be replaced
+	 */
+	public static String replaceLocationHost(String location, String host) {
+		if(location==null || host==null){
+			return location;
+		}
+		
+		int start = location.indexOf("://");
+		if(start<0){
+			return location;
+		}
+		start += 3;
+		
+		int end;
+		if(location.startsWith("[", start)){
+			end = location.indexOf(']', start);
+			if(end<0){
+				return location;
+			}
+			end++;
+		} else {
+			end = start;
+			while(end<location.length() && ":/?#".indexOf(location.charAt(end))<0){
+				end++;
+			}
+			if(!isIPv4(location, start, end)){
+				return location;
+			}
+		}
+		
+		if(location.regionMatches(start, host, 0, host.length()) && end - start==host.length()){
+			return location;
+		}
+		
+		return location.substring(0, start) + host + location.substring(end);
+	}
+	
+	private static boolean isIPv4(String value, int start, int end) {
+		int dots = 0;
+		int digits = 0;
+		for (int i = start; i < end; i++) {
+			char c = value.charAt(i);
+			if(c=='.'){
+				if(digits==0){
+					return false;
+				}
+				dots++;
+				digits = 0;
+			} else if(c>='0' && c<='9' && digits<3){
+				digits++;
+			} else {
+				return false;
+			}
+		}
+		return dots==3 && digits>0;
+	}
+	
 }
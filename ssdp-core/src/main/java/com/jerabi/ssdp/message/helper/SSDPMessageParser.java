@@ -0,0 +1,234 @@
+package com.jerabi.ssdp.message.helper;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+import com.jerabi.ssdp.message.AbstractSSDPNotifyMessage;
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.ByeByeMessage;
+import com.jerabi.ssdp.message.DiscoverMessage;
+import com.jerabi.ssdp.message.DiscoverResponseMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.UpdateMessage;
+import com.jerabi.ssdp.message.view.AliveMessageView;
+import com.jerabi.ssdp.message.view.ByeByeMessageView;
+import com.jerabi.ssdp.message.view.DiscoverResponseMessageView;
+import com.jerabi.ssdp.message.view.SSDPMessageIndex;
+import com.jerabi.ssdp.message.view.UpdateMessageView;
+import com.jerabi.ssdp.util.SSDPContants;
+
+/**
+ * Parser that reads a SSDP message directly from the bytes received, without decoding the datagram first.
+ *
+ * The bytes are scanned once by {@link SSDPMessageIndex} : each line is delimited by its LF, the name of the header by its 
+ * first colon, and the name is compared to the known headers on the ASCII bytes, ignoring the case.  Only the values of 
+ * the headers are decoded.  No String is created to split the message or to compare the names.
+ * 
+ * {@link #parseView(ByteBuffer)} goes further : the messages returned keep a copy of the bytes and the index, and the
+ * values are only decoded when a getter is called.  The views extend the same classes (AliveMessageView is a AliveMessage), 
+ * so the handlers and the listeners don't see the difference.  The M-SEARCH messages are always parsed.
+ *
+ * The messages created are the same as {@link SSDPMessageHelper#getSSDPMessage(String)} : same classes, same values
+ * and same attributes.  {@link SSDPMessageHelper#getSSDPMessage(String)} is still the default parser, this one
+ * is used with {@link SSDPMessageHelper#parseSSDPMessage(ByteBuffer)}.
+ *
+ * The values are decoded in US-ASCII by {@link SSDPMessageIndex}, like the messages received by the network implementations.
+ * The values already received are taken from {@link SSDPMessageHelper#getStringCache()}.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * // buffer filled by a DatagramChannel, between its position and its limit
+ * ISSDPMessage message = SSDPMessageParser.parse(buffer);
+ *
+ * // or from the array of a DatagramPacket
+ * ISSDPMessage message = SSDPMessageParser.parse(packet.getData(), packet.getOffset(), packet.getLength());
+ * 
+ * // only the NTS is decoded to find the type of the message, the USN when getUsn() is called
+ * AliveMessage alive = (AliveMessage) SSDPMessageParser.parseView(buffer);
+ * String usn = alive.getUsn();
+ * </pre>
+ * @see SSDPMessageHelper
+ */
+public class SSDPMessageParser {
+
+	private static final Logger logger = Logger.getLogger(SSDPMessageParser.class.getName());
+
+	private SSDPMessageParser(){}
+
+	/**
+	 * Parses the bytes between the position and the limit of the buffer.  The position of the buffer is not changed.
+	 *
+	 * @param data the message received
+	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
+	 */
+	public static ISSDPMessage parse(ByteBuffer data) {
+		if(data==null){
+			return null;
+		}
+
+		if(data.hasArray()){
+			return parse(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		}
+
+		// direct buffer : one copy of the datagram
+		return parse(copy(data), 0, data.remaining());
+	}
+
+	/**
+	 * Parses the bytes of a message
+	 *
+	 * @param data array that contains the message
+	 * @param offset index of the first byte
+	 * @param length length of the message
+	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
+	 */
+	public static ISSDPMessage parse(byte[] data, int offset, int length) {
+		SSDPMessageIndex index = SSDPMessageIndex.create(data, offset, length, SSDPMessageHelper.getStringCache());
+
+		if(index==null){
+			return null;
+		}
+
+		if(index.isDiscover()){
+			return createDiscoverMessage(index);
+		} else if(index.isDiscoverResponse()){
+			// probably a M-SEARCH response
+			DiscoverResponseMessage ssdpMessage = new DiscoverResponseMessage();
+
+			ssdpMessage.setMessage(index.getMessage());
+			ssdpMessage.setCacheControl(index.getValue(SSDPMessageIndex.CACHECONTROL));
+			ssdpMessage.setDate(index.getValue(SSDPMessageIndex.DATE));
+			ssdpMessage.setLocation(index.getValue(SSDPMessageIndex.LOCATION));
+			ssdpMessage.setServer(index.getValue(SSDPMessageIndex.SERVER));
+			ssdpMessage.setSt(index.getValue(SSDPMessageIndex.ST));
+			ssdpMessage.setExt(index.getValue(SSDPMessageIndex.EXT));
+			ssdpMessage.setUsn(index.getValue(SSDPMessageIndex.USN));
+			ssdpMessage.setContentLength(index.getValue(SSDPMessageIndex.CONTENTLENGTH));
+			ssdpMessage.setAttributes(index.getAttributes());
+
+			return ssdpMessage;
+		}
+
+		String nts = index.getValue(SSDPMessageIndex.NTS);
+
+		if(nts!=null && nts.length()>0){
+
+			AbstractSSDPNotifyMessage ssdpMessage = null;
+
+			if(SSDPContants.NTS_ALIVE.equals(nts)){
+				AliveMessage aliveMessage = new AliveMessage();
+
+				aliveMessage.setCacheControl(index.getValue(SSDPMessageIndex.CACHECONTROL));
+				aliveMessage.setLocation(index.getValue(SSDPMessageIndex.LOCATION));
+				aliveMessage.setServer(index.getValue(SSDPMessageIndex.SERVER));
+
+				ssdpMessage = aliveMessage;
+			} else if(SSDPContants.NTS_UPDATE.equals(nts)){
+				UpdateMessage updateMessage = new UpdateMessage();
+
+				updateMessage.setCacheControl(index.getValue(SSDPMessageIndex.CACHECONTROL));
+				updateMessage.setLocation(index.getValue(SSDPMessageIndex.LOCATION));
+				updateMessage.setServer(index.getValue(SSDPMessageIndex.SERVER));
+
+				ssdpMessage = updateMessage;
+			} else if(SSDPContants.NTS_BYEBYE.equals(nts)){
+				ByeByeMessage byeByeMessage = new ByeByeMessage();
+
+				byeByeMessage.setContentLength(index.getValue(SSDPMessageIndex.CONTENTLENGTH));
+
+				ssdpMessage = byeByeMessage;
+			} else {
+				logger.info("SSDPNotifyMessage not reconized : \n" + index.getMessage());
+				return null;
+			}
+
+			// commons fields
+			ssdpMessage.setMessage(index.getMessage());
+			ssdpMessage.setNotify(index.getNotify());
+			ssdpMessage.setHost(index.getHost());
+			ssdpMessage.setPort(index.getPort());
+			ssdpMessage.setNt(index.getValue(SSDPMessageIndex.NT));
+			ssdpMessage.setNts(nts);
+			ssdpMessage.setUsn(index.getValue(SSDPMessageIndex.USN));
+			ssdpMessage.setAttributes(index.getAttributes());
+
+			return ssdpMessage;
+		}
+
+		logger.finest("Message not recognized");
+
+		return null;
+	}
+
+	/**
+	 * Parses the bytes between the position and the limit of the buffer and returns a message view.  The bytes are copied,
+	 * the buffer can be reused after the call.  The position of the buffer is not changed.
+	 *
+	 * The values of the message are decoded when they are requested.  A M-SEARCH is returned as a {@link DiscoverMessage}
+	 * already parsed.
+	 *
+	 * @param data the message received
+	 * @return ISSDPMessage if a valid message is received or null if it's a unknown format
+	 * @see AliveMessageView
+	 * @see ByeByeMessageView
+	 * @see UpdateMessageView
+	 * @see DiscoverResponseMessageView
+	 */
+	public static ISSDPMessage parseView(ByteBuffer data) {
+		if(data==null){
+			return null;
+		}
+
+		SSDPMessageIndex index = SSDPMessageIndex.create(copy(data), 0, data.remaining(), SSDPMessageHelper.getStringCache());
+
+		if(index==null){
+			return null;
+		}
+
+		if(index.isDiscover()){
+			return createDiscoverMessage(index);
+		} else if(index.isDiscoverResponse()){
+			return new DiscoverResponseMessageView(index);
+		}
+
+		String nts = index.getValue(SSDPMessageIndex.NTS);
+
+		if(nts!=null && nts.length()>0){
+			if(SSDPContants.NTS_ALIVE.equals(nts)){
+				return new AliveMessageView(index);
+			} else if(SSDPContants.NTS_UPDATE.equals(nts)){
+				return new UpdateMessageView(index);
+			} else if(SSDPContants.NTS_BYEBYE.equals(nts)){
+				return new ByeByeMessageView(index);
+			}
+
+			logger.info("SSDPNotifyMessage not reconized : \n" + index.getMessage());
+			return null;
+		}
+
+		logger.finest("Message not recognized");
+
+		return null;
+	}
+
+	private static DiscoverMessage createDiscoverMessage(SSDPMessageIndex index) {
+		DiscoverMessage ssdpMessage = new DiscoverMessage();
+
+		ssdpMessage.setMessage(index.getMessage());
+		ssdpMessage.setHost(index.getHost());
+		ssdpMessage.setPort(index.getPort());
+		ssdpMessage.setMx(index.getValue(SSDPMessageIndex.MX));
+		ssdpMessage.setSt(index.getValue(SSDPMessageIndex.ST));
+		ssdpMessage.setAttributes(index.getAttributes());
+
+		return ssdpMessage;
+	}
+
+	private static byte[] copy(ByteBuffer data) {
+		byte[] bytes = new byte[data.remaining()];
+		data.duplicate().get(bytes);
+		return bytes;
+	}
+
+}
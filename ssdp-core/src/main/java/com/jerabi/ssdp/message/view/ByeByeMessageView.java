@@ -0,0 +1,211 @@
+package com.jerabi.ssdp.message.view;
+
+import java.util.List;
+
+import com.jerabi.ssdp.message.ByeByeMessage;
+import com.jerabi.ssdp.message.SSDPHeaderMap;
+
+/**
+ * {@link ByeByeMessage} backed by the bytes of the message received.
+ * 
+ * The values are decoded from the bytes received the first time they are requested, the headers
+ * that are never requested are never decoded.  A value set replaces the value received.
+ * 
+ * @author Sebastien Dionne
+ * @see SSDPMessageIndex
+ * @see com.jerabi.ssdp.message.helper.SSDPMessageParser#parseView(java.nio.ByteBuffer)
+ */
+public class ByeByeMessageView extends ByeByeMessage {
+	
+	private final SSDPMessageIndex index;
+	
+	/**
+	 * Constructor
+	 * @param index index of the message received
+	 */
+	public ByeByeMessageView(SSDPMessageIndex index) {
+		this.index = index;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getMessage() {
+		if(index.decode(SSDPMessageIndex.MESSAGE)){
+			message = index.getMessage();
+		}
+		return message;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setMessage(String message) {
+		index.setDecoded(SSDPMessageIndex.MESSAGE);
+		super.setMessage(message);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getNotify() {
+		// the field is hidden by the constant notify
+		if(index.decode(SSDPMessageIndex.NOTIFY)){
+			super.setNotify(index.getNotify());
+		}
+		return super.getNotify();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setNotify(String notify) {
+		index.setDecoded(SSDPMessageIndex.NOTIFY);
+		super.setNotify(notify);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getHost() {
+		if(index.decode(SSDPMessageIndex.HOST)){
+			host = index.getHost();
+		}
+		return host;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setHost(String host) {
+		index.setDecoded(SSDPMessageIndex.HOST);
+		super.setHost(host);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getPort() {
+		if(index.decode(SSDPMessageIndex.PORT)){
+			port = index.getPort();
+		}
+		return port;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setPort(String port) {
+		index.setDecoded(SSDPMessageIndex.PORT);
+		super.setPort(port);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getNt() {
+		if(index.decode(SSDPMessageIndex.NT)){
+			nt = index.getValue(SSDPMessageIndex.NT);
+		}
+		return nt;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setNt(String nt) {
+		index.setDecoded(SSDPMessageIndex.NT);
+		super.setNt(nt);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getUsn() {
+		if(index.decode(SSDPMessageIndex.USN)){
+			usn = index.getValue(SSDPMessageIndex.USN);
+		}
+		return usn;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setUsn(String usn) {
+		index.setDecoded(SSDPMessageIndex.USN);
+		super.setUsn(usn);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<String> getAttributes() {
+		if(index.decode(SSDPMessageIndex.ATTRIBUTES)){
+			attributes = index.getAttributes();
+		}
+		return attributes;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setAttributes(List<String> attributes) {
+		index.setDecoded(SSDPMessageIndex.ATTRIBUTES);
+		super.setAttributes(attributes);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SSDPHeaderMap getHeaders() {
+		if(index.decode(SSDPMessageIndex.HEADERS)){
+			headers = index.getHeaders();
+		}
+		return super.getHeaders();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setHeaders(SSDPHeaderMap headers) {
+		index.setDecoded(SSDPMessageIndex.HEADERS);
+		super.setHeaders(headers);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getContentLength() {
+		if(index.decode(SSDPMessageIndex.CONTENTLENGTH)){
+			contentLength = index.getValue(SSDPMessageIndex.CONTENTLENGTH);
+		}
+		return contentLength;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setContentLength(String contentLength) {
+		index.setDecoded(SSDPMessageIndex.CONTENTLENGTH);
+		super.setContentLength(contentLength);
+	}
+
+}
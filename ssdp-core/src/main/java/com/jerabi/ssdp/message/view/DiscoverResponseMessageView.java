@@ -0,0 +1,250 @@
+package com.jerabi.ssdp.message.view;
+
+import java.util.List;
+
+import com.jerabi.ssdp.message.DiscoverResponseMessage;
+import com.jerabi.ssdp.message.SSDPHeaderMap;
+
+/**
+ * {@link DiscoverResponseMessage} backed by the bytes of the message received.
+ * 
+ * The values are decoded from the bytes received the first time they are requested, the headers
+ * that are never requested are never decoded.  A value set replaces the value received.
+ * 
+ * @author Sebastien Dionne
+ * @see SSDPMessageIndex
+ * @see com.jerabi.ssdp.message.helper.SSDPMessageParser#parseView(java.nio.ByteBuffer)
+ */
+public class DiscoverResponseMessageView extends DiscoverResponseMessage {
+	
+	private final SSDPMessageIndex index;
+	
+	/**
+	 * Constructor
+	 * @param index index of the message received
+	 */
+	public DiscoverResponseMessageView(SSDPMessageIndex index) {
+		this.index = index;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getMessage() {
+		if(index.decode(SSDPMessageIndex.MESSAGE)){
+			message = index.getMessage();
+		}
+		return message;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setMessage(String message) {
+		index.setDecoded(SSDPMessageIndex.MESSAGE);
+		super.setMessage(message);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<String> getAttributes() {
+		if(index.decode(SSDPMessageIndex.ATTRIBUTES)){
+			attributes = index.getAttributes();
+		}
+		return attributes;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setAttributes(List<String> attributes) {
+		index.setDecoded(SSDPMessageIndex.ATTRIBUTES);
+		super.setAttributes(attributes);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SSDPHeaderMap getHeaders() {
+		if(index.decode(SSDPMessageIndex.HEADERS)){
+			headers = index.getHeaders();
+		}
+		return super.getHeaders();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setHeaders(SSDPHeaderMap headers) {
+		index.setDecoded(SSDPMessageIndex.HEADERS);
+		super.setHeaders(headers);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getCacheControl() {
+		if(index.decode(SSDPMessageIndex.CACHECONTROL)){
+			cacheControl = index.getValue(SSDPMessageIndex.CACHECONTROL);
+		}
+		return cacheControl;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCacheControl(String cacheControl) {
+		index.setDecoded(SSDPMessageIndex.CACHECONTROL);
+		super.setCacheControl(cacheControl);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getDate() {
+		if(index.decode(SSDPMessageIndex.DATE)){
+			date = index.getValue(SSDPMessageIndex.DATE);
+		}
+		return date;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setDate(String date) {
+		index.setDecoded(SSDPMessageIndex.DATE);
+		super.setDate(date);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getLocation() {
+		if(index.decode(SSDPMessageIndex.LOCATION)){
+			location = index.getValue(SSDPMessageIndex.LOCATION);
+		}
+		return location;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setLocation(String location) {
+		index.setDecoded(SSDPMessageIndex.LOCATION);
+		super.setLocation(location);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getServer() {
+		if(index.decode(SSDPMessageIndex.SERVER)){
+			server = index.getValue(SSDPMessageIndex.SERVER);
+		}
+		return server;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setServer(String server) {
+		index.setDecoded(SSDPMessageIndex.SERVER);
+		super.setServer(server);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getSt() {
+		if(index.decode(SSDPMessageIndex.ST)){
+			st = index.getValue(SSDPMessageIndex.ST);
+		}
+		return st;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSt(String st) {
+		index.setDecoded(SSDPMessageIndex.ST);
+		super.setSt(st);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getExt() {
+		if(index.decode(SSDPMessageIndex.EXT)){
+			ext = index.getValue(SSDPMessageIndex.EXT);
+		}
+		return ext;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setExt(String ext) {
+		index.setDecoded(SSDPMessageIndex.EXT);
+		super.setExt(ext);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getUsn() {
+		if(index.decode(SSDPMessageIndex.USN)){
+			usn = index.getValue(SSDPMessageIndex.USN);
+		}
+		return usn;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setUsn(String usn) {
+		index.setDecoded(SSDPMessageIndex.USN);
+		super.setUsn(usn);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getContentLength() {
+		if(index.decode(SSDPMessageIndex.CONTENTLENGTH)){
+			contentLength = index.getValue(SSDPMessageIndex.CONTENTLENGTH);
+		}
+		return contentLength;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setContentLength(String contentLength) {
+		index.setDecoded(SSDPMessageIndex.CONTENTLENGTH);
+		super.setContentLength(contentLength);
+	}
+
+}
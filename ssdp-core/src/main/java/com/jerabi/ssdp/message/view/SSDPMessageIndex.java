@@ -0,0 +1,423 @@
+package com.jerabi.ssdp.message.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jerabi.ssdp.message.SSDPHeaderMap;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+import com.jerabi.ssdp.util.SSDPContants;
+import com.jerabi.ssdp.util.SSDPStringCache;
+
+/**
+ * Index of the headers of a SSDP message received.
+ * 
+ * The bytes of the message are scanned once : each line is delimited by its LF, the name of the header by its first colon, 
+ * and the name is compared to the known headers on the ASCII bytes, ignoring the case.  The index only keeps the offsets 
+ * of the values, a value is decoded in US-ASCII when it's requested.
+ * 
+ * The index also keeps which fields of a message view were already decoded or set, see {@link #decode(int)}.  Like the 
+ * messages, the index is not thread safe.
+ * 
+ * When the index is created with a {@link SSDPStringCache}, the values already received are taken from the cache 
+ * instead of being decoded again.  The DATE and the whole message are never cached.
+ * 
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPMessageIndex index = SSDPMessageIndex.create(packet.getData(), packet.getOffset(), packet.getLength());
+ * 
+ * if(index!=null && index.contains(SSDPMessageIndex.NTS)){
+ *     String nts = index.getValue(SSDPMessageIndex.NTS);
+ * }
+ * </pre>
+ * @see com.jerabi.ssdp.message.helper.SSDPMessageParser
+ */
+public class SSDPMessageIndex {
+	
+	// headers, in the same order as SSDPMessageHelper
+	public static final int CACHECONTROL = 0;
+	public static final int DATE = 1;
+	public static final int LOCATION = 2;
+	public static final int SERVER = 3;
+	public static final int ST = 4;
+	public static final int EXT = 5;
+	public static final int USN = 6;
+	public static final int CONTENTLENGTH = 7;
+	public static final int HOST = 8;
+	public static final int NT = 9;
+	public static final int NTS = 10;
+	public static final int MX = 11;
+	public static final int MAN = 12;
+	
+	// fields of the messages that are not a header value
+	public static final int NOTIFY = 13;
+	public static final int MESSAGE = 14;
+	public static final int ATTRIBUTES = 15;
+	public static final int PORT = 16;
+	public static final int HEADERS = 17;
+	
+	// header names with the colon, in upper case
+	private static final byte[][] HEADER_NAMES = {
+		ascii(SSDPContants.CACHECONTROL),
+		ascii(SSDPContants.DATE),
+		ascii(SSDPContants.LOCATION),
+		ascii(SSDPContants.SERVER),
+		ascii(SSDPContants.ST),
+		ascii(SSDPContants.EXT),
+		ascii(SSDPContants.USN),
+		ascii(SSDPContants.CONTENTLENGTH),
+		ascii(SSDPContants.HOST),
+		ascii(SSDPContants.NT),
+		ascii(SSDPContants.NTS),
+		ascii(SSDPContants.MX),
+		ascii(SSDPContants.MAN)
+	};
+	
+	private static final byte[] M_SEARCH = ascii("M-SEARCH");
+	private static final byte[] HTTP_OK = ascii("HTTP/1.1 200 OK");
+	
+	private final byte[] data;
+	private final int offset;
+	private final int length;
+	private final SSDPStringCache cache;
+	
+	// first line, trimmed
+	private int notifyStart;
+	private int notifyEnd;
+	
+	// values trimmed, -1 if the header is not found
+	private final int[] valueStart = new int[HEADER_NAMES.length];
+	private final int[] valueEnd = new int[HEADER_NAMES.length];
+	
+	// lines that are not a known header
+	private int[] attributeStart = new int[4];
+	private int[] attributeEnd = new int[4];
+	private int attributeLines = 0;
+	
+	// the empty lines at the end of the message are not attributes
+	private int attributeCount = 0;
+	
+	// fields decoded or set
+	private int decoded = 0;
+	
+	private static byte[] ascii(String value) {
+		byte[] bytes = new byte[value.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Character.toUpperCase(value.charAt(i));
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Indexes the bytes of a message.  The array is not copied, it must not be modified while the index is used.
+	 * 
+	 * @param data array that contains the message
+	 * @param offset index of the first byte
+	 * @param length length of the message
+	 * @return the index or null if the message is empty
+	 */
+	public static SSDPMessageIndex create(byte[] data, int offset, int length) {
+		return create(data, offset, length, null);
+	}
+	
+	/**
+	 * Indexes the bytes of a message.  The array is not copied, it must not be modified while the index is used.
+	 * 
+	 * @param data array that contains the message
+	 * @param offset index of the first byte
+	 * @param length length of the message
+	 * @param cache cache of the values, or null to decode all the values
+	 * @return the index or null if the message is empty
+	 */
+	public static SSDPMessageIndex create(byte[] data, int offset, int length, SSDPStringCache cache) {
+		if(data==null || isBlank(data, offset, offset + length)){
+			return null;
+		}
+		
+		return new SSDPMessageIndex(data, offset, length, cache);
+	}
+	
+	private SSDPMessageIndex(byte[] data, int offset, int length, SSDPStringCache cache) {
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+		this.cache = cache;
+		
+		for (int i = 0; i < valueStart.length; i++) {
+			valueStart[i] = -1;
+			valueEnd[i] = -1;
+		}
+		
+		int end = offset + length;
+		int lineStart = offset;
+		boolean first = true;
+		
+		while(lineStart<end){
+			int lineEnd = indexOf(data, (byte) '\n', lineStart, end);
+			int next = lineEnd + 1;
+			if(lineEnd<0){
+				lineEnd = end;
+				next = end;
+			}
+			
+			if(first){
+				notifyStart = trimStart(data, lineStart, lineEnd);
+				notifyEnd = trimEnd(data, notifyStart, lineEnd);
+				first = false;
+			} else if(lineEnd==lineStart){
+				addAttribute(lineStart, lineEnd);
+			} else {
+				int header = getHeader(data, lineStart, lineEnd);
+				
+				if(header<0){
+					addAttribute(lineStart, lineEnd);
+				} else {
+					valueStart[header] = trimStart(data, lineStart + HEADER_NAMES[header].length, lineEnd);
+					valueEnd[header] = trimEnd(data, valueStart[header], lineEnd);
+				}
+				
+				attributeCount = attributeLines;
+			}
+			
+			lineStart = next;
+		}
+	}
+	
+	private void addAttribute(int start, int end) {
+		if(attributeLines==attributeStart.length){
+			int[] newStart = new int[attributeLines * 2];
+			int[] newEnd = new int[attributeLines * 2];
+			System.arraycopy(attributeStart, 0, newStart, 0, attributeLines);
+			System.arraycopy(attributeEnd, 0, newEnd, 0, attributeLines);
+			attributeStart = newStart;
+			attributeEnd = newEnd;
+		}
+		
+		attributeStart[attributeLines] = start;
+		attributeEnd[attributeLines] = end;
+		attributeLines++;
+	}
+	
+	/**
+	 * Returns true if the first line is a M-SEARCH request
+	 * @return discover
+	 */
+	public boolean isDiscover() {
+		return regionMatches(data, notifyStart, notifyEnd, M_SEARCH, false);
+	}
+	
+	/**
+	 * Returns true if the first line is a HTTP/1.1 200 OK response
+	 * @return discover response
+	 */
+	public boolean isDiscoverResponse() {
+		return regionMatches(data, notifyStart, notifyEnd, HTTP_OK, true);
+	}
+	
+	/**
+	 * Returns true if the header is in the message
+	 * @param header like {@link #NTS}
+	 * @return true if found
+	 */
+	public boolean contains(int header) {
+		return valueStart[header]>=0;
+	}
+	
+	/**
+	 * Returns the value of a header, decoded with the default charset
+	 * @param header like {@link #NTS}
+	 * @return the value trimmed or null if the header is not found
+	 */
+	public String getValue(int header) {
+		if(valueStart[header]<0){
+			return null;
+		}
+		if(header==DATE){
+			// always different
+			return new String(data, valueStart[header], valueEnd[header] - valueStart[header], SSDPMessageEncoder.US_ASCII);
+		}
+		return string(valueStart[header], valueEnd[header]);
+	}
+	
+	/**
+	 * Returns the host of the HOST header, without the port
+	 * @return host or null if the header is not found
+	 */
+	public String getHost() {
+		if(valueStart[HOST]<0){
+			return null;
+		}
+		int portIndex = indexOf(data, (byte) ':', valueStart[HOST], valueEnd[HOST]);
+		if(portIndex>valueStart[HOST]){
+			return string(valueStart[HOST], portIndex);
+		}
+		return string(valueStart[HOST], valueEnd[HOST]);
+	}
+	
+	/**
+	 * Returns the port of the HOST header, or the default port if the HOST doesn't have a port
+	 * @return port or null if the header is not found
+	 */
+	public String getPort() {
+		if(valueStart[HOST]<0){
+			return null;
+		}
+		int portIndex = indexOf(data, (byte) ':', valueStart[HOST], valueEnd[HOST]);
+		if(portIndex>valueStart[HOST]){
+			return string(portIndex + 1, valueEnd[HOST]);
+		}
+		return Integer.toString(SSDPContants.DEFAULT_PORT);
+	}
+	
+	/**
+	 * Returns the first line, trimmed
+	 * @return notify
+	 */
+	public String getNotify() {
+		return string(notifyStart, notifyEnd);
+	}
+	
+	/**
+	 * Returns the whole message decoded
+	 * @return message
+	 */
+	public String getMessage() {
+		return new String(data, offset, length, SSDPMessageEncoder.US_ASCII);
+	}
+	
+	/**
+	 * Returns the lines that are not a known header, without the empty lines at the end
+	 * @return extra attributes
+	 */
+	public List<String> getAttributes() {
+		List<String> attributes = new ArrayList<String>(attributeCount);
+		
+		for (int i = 0; i < attributeCount; i++) {
+			attributes.add(string(attributeStart[i], attributeEnd[i]));
+		}
+		
+		return attributes;
+	}
+	
+	/**
+	 * Returns the map of all the headers of the message
+	 * @return headers
+	 */
+	public SSDPHeaderMap getHeaders() {
+		return SSDPHeaderMap.parse(data, offset, length);
+	}
+	
+	/**
+	 * Marks a field as decoded.  Returns true the first time, when the field still needs to be decoded.
+	 * @param field like {@link #LOCATION} or {@link #NOTIFY}
+	 * @return true if the field was not decoded or set
+	 */
+	public boolean decode(int field) {
+		int mask = 1 << field;
+		if((decoded & mask)!=0){
+			return false;
+		}
+		decoded |= mask;
+		return true;
+	}
+	
+	/**
+	 * Marks a field as set.  The value of the message must not be replaced by the value of the index.
+	 * @param field like {@link #LOCATION} or {@link #NOTIFY}
+	 */
+	public void setDecoded(int field) {
+		decoded |= 1 << field;
+	}
+	
+	/**
+	 * Returns true if the field was decoded or set
+	 * @param field like {@link #LOCATION} or {@link #NOTIFY}
+	 * @return decoded
+	 */
+	public boolean isDecoded(int field) {
+		return (decoded & (1 << field))!=0;
+	}
+	
+	// decodes the bytes, or takes the value from the cache
+	private String string(int start, int end) {
+		if(cache==null){
+			return new String(data, start, end - start, SSDPMessageEncoder.US_ASCII);
+		}
+		return cache.intern(data, start, end - start);
+	}
+	
+	/**
+	 * Returns the index of the header of a line, comparing the name until the first colon
+	 *
+	 * @return index in HEADER_NAMES or -1 if the header is unknown
+	 */
+	private static int getHeader(byte[] data, int start, int end) {
+		int colon = indexOf(data, (byte) ':', start, end);
+		if(colon<0){
+			return -1;
+		}
+		
+		int nameLength = colon - start + 1;
+		
+		for (int i = 0; i < HEADER_NAMES.length; i++) {
+			if(HEADER_NAMES[i].length==nameLength && regionMatches(data, start, end, HEADER_NAMES[i], false)){
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Returns true if the bytes start with the upper case ASCII value, ignoring the case
+	 *
+	 * @param exact true if the bytes must contain only the value
+	 */
+	private static boolean regionMatches(byte[] data, int start, int end, byte[] value, boolean exact) {
+		int length = end - start;
+		if(length<value.length || (exact && length!=value.length)){
+			return false;
+		}
+		
+		for (int i = 0; i < value.length; i++) {
+			byte b = data[start + i];
+			if(b>='a' && b<='z'){
+				b -= 'a' - 'A';
+			}
+			if(b!=value[i]){
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static int indexOf(byte[] data, byte b, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if(data[i]==b){
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private static boolean isBlank(byte[] data, int start, int end) {
+		return trimStart(data, start, end)==end;
+	}
+	
+	// the spaces and control characters are removed, like String.trim()
+	private static int trimStart(byte[] data, int start, int end) {
+		while(start<end && (data[start] & 0xff)<=' '){
+			start++;
+		}
+		return start;
+	}
+	
+	private static int trimEnd(byte[] data, int start, int end) {
+		while(end>start && (data[end-1] & 0xff)<=' '){
+			end--;
+		}
+		return end;
+	}
+	
+}
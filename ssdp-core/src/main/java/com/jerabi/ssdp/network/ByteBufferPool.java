@@ -0,0 +1,275 @@
+package com.jerabi.ssdp.network;
+
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of reusable {@link ByteBuffer} for the network implementations.
+ *
+ * A buffer is taken with {@link #acquire()} before receiving a datagram and given back with {@link #release(ByteBuffer)}
+ * once the message is handled.  When the pool is empty a new buffer is allocated, so the pool never blocks.  At most
+ * maxPooled buffers are kept, the others are left to the garbage collector.  The buffers are kept in an array
+ * allocated with the pool, so acquire and release don't allocate anything once the pool is warm.
+ *
+ * The pool can contain heap buffers (backed by an array, usable with {@link java.net.DatagramPacket}) or
+ * direct buffers (for {@link java.nio.channels.DatagramChannel}).  The buffer size is usually the MTU of the NetworkInterfaces
+ * used, a datagram received on those interfaces will fit in a buffer without fragmentation.
+ *
+ * The counters allow to verify that the receive path doesn't allocate buffers once the pool is warm :
+ * {@link #getAllocatedCount()} shouldn't increase anymore.  The pool only covers the buffers : the listeners still
+ * create a String for each datagram when the handler isn't a {@link com.jerabi.ssdp.handler.ISSDPRawResponseHandler}.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * ByteBufferPool pool = ByteBufferPool.getHeapPool();
+ *
+ * ByteBuffer buffer = pool.acquire();
+ * try {
+ *     DatagramPacket packet = new DatagramPacket(buffer.array(), buffer.capacity());
+ *     socket.receive(packet);
+ *     ...
+ * } finally {
+ *     pool.release(buffer);
+ * }
+ * </pre>
+ */
+public class ByteBufferPool {
+
+	/**
+	 * MTU used when it can't be read from the NetworkInterfaces
+	 */
+	public static final int DEFAULT_MTU = 1500;
+
+	/**
+	 * Default number of buffers kept by a pool
+	 */
+	public static final int DEFAULT_MAX_POOLED = 64;
+
+	private static ByteBufferPool heapPool = null;
+	private static ByteBufferPool directPool = null;
+
+	private final int bufferSize;
+	private final int maxPooled;
+	private final boolean direct;
+
+	// stack of the buffers available, guarded by itself
+	private final ByteBuffer[] bufferStack;
+	private int pooledCount = 0;
+
+	private final AtomicLong allocatedCount = new AtomicLong();
+	private final AtomicLong acquiredCount = new AtomicLong();
+	private final AtomicLong releasedCount = new AtomicLong();
+	private final AtomicLong discardedCount = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * @param bufferSize size of the buffers in bytes
+	 * @param maxPooled maximum number of buffers kept in the pool
+	 * @param direct true for direct buffers, false for heap buffers
+	 */
+	public ByteBufferPool(int bufferSize, int maxPooled, boolean direct) {
+		if(bufferSize<=0){
+			throw new IllegalArgumentException("Invalid buffer size : " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+		this.direct = direct;
+		this.bufferStack = new ByteBuffer[Math.max(0, maxPooled)];
+	}
+
+	/**
+	 * Returns the shared pool of heap buffers sized from the MTU of the NetworkInterfaces
+	 * @return ByteBufferPool
+	 */
+	public static synchronized ByteBufferPool getHeapPool() {
+		if(heapPool==null){
+			heapPool = new ByteBufferPool(getMaxMTU(null), DEFAULT_MAX_POOLED, false);
+		}
+		return heapPool;
+	}
+
+	/**
+	 * Returns the shared pool of direct buffers sized from the MTU of the NetworkInterfaces
+	 * @return ByteBufferPool
+	 */
+	public static synchronized ByteBufferPool getDirectPool() {
+		if(directPool==null){
+			directPool = new ByteBufferPool(getMaxMTU(null), DEFAULT_MAX_POOLED, true);
+		}
+		return directPool;
+	}
+
+	/**
+	 * Returns the biggest MTU of the NetworkInterfaces that are up.  The loopback interfaces are ignored
+	 * because their MTU is much bigger than any SSDP message.
+	 *
+	 * @param networkInterfaceList NetworkInterfaces used, or null for all the interfaces
+	 * @return the MTU or {@link #DEFAULT_MTU} if it can't be read
+	 */
+	public static int getMaxMTU(List<NetworkInterface> networkInterfaceList) {
+		int mtu = -1;
+
+		try {
+			if(networkInterfaceList==null){
+				Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces();
+				networkInterfaceList = e!=null ? Collections.list(e) : Collections.<NetworkInterface>emptyList();
+			}
+
+			for (NetworkInterface ni : networkInterfaceList) {
+				if(ni.isUp() && !ni.isLoopback()){
+					mtu = Math.max(mtu, ni.getMTU());
+				}
+			}
+		} catch (SocketException e) {
+			mtu = -1;
+		}
+
+		return mtu>0 ? mtu : DEFAULT_MTU;
+	}
+
+	/**
+	 * Takes a buffer from the pool or allocates a new one if the pool is empty.
+	 * The buffer is cleared.
+	 *
+	 * @return ByteBuffer ready to be filled
+	 */
+	public ByteBuffer acquire() {
+		acquiredCount.incrementAndGet();
+
+		ByteBuffer buffer = null;
+
+		synchronized (bufferStack) {
+			if(pooledCount>0){
+				buffer = bufferStack[--pooledCount];
+				bufferStack[pooledCount] = null;
+			}
+		}
+
+		if(buffer==null){
+			allocatedCount.incrementAndGet();
+			return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+		}
+
+		buffer.clear();
+
+		return buffer;
+	}
+
+	/**
+	 * Gives back a buffer to the pool.  The buffer must not be used after this call.
+	 * Buffers that don't come from this pool or exceed the pool size are discarded.
+	 *
+	 * @param buffer the buffer to release, can be null
+	 */
+	public void release(ByteBuffer buffer) {
+		if(buffer==null){
+			return;
+		}
+
+		releasedCount.incrementAndGet();
+
+		if(buffer.capacity()!=bufferSize || buffer.isDirect()!=direct){
+			discardedCount.incrementAndGet();
+			return;
+		}
+
+		synchronized (bufferStack) {
+			if(pooledCount<bufferStack.length){
+				bufferStack[pooledCount++] = buffer;
+				return;
+			}
+		}
+
+		discardedCount.incrementAndGet();
+	}
+
+	/**
+	 * Returns the size of the buffers
+	 * @return size in bytes
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Returns the maximum number of buffers kept in the pool
+	 * @return max pooled
+	 */
+	public int getMaxPooled() {
+		return maxPooled;
+	}
+
+	/**
+	 * Returns true if the pool contains direct buffers
+	 * @return direct
+	 */
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * Returns the number of buffers available in the pool
+	 * @return pooled buffers
+	 */
+	public int getPooledCount() {
+		synchronized (bufferStack) {
+			return pooledCount;
+		}
+	}
+
+	/**
+	 * Returns the number of buffers allocated since the creation of the pool
+	 * @return allocation count
+	 */
+	public long getAllocatedCount() {
+		return allocatedCount.get();
+	}
+
+	/**
+	 * Returns the number of calls to {@link #acquire()}
+	 * @return acquire count
+	 */
+	public long getAcquiredCount() {
+		return acquiredCount.get();
+	}
+
+	/**
+	 * Returns the number of calls to {@link #release(ByteBuffer)}
+	 * @return release count
+	 */
+	public long getReleasedCount() {
+		return releasedCount.get();
+	}
+
+	/**
+	 * Returns the number of buffers released but not kept in the pool
+	 * @return discard count
+	 */
+	public long getDiscardedCount() {
+		return discardedCount.get();
+	}
+
+	/**
+	 * @return Returns the counters of this pool as a String
+	 */
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+
+		sb.append("bufferSize=").append(bufferSize);
+		sb.append(" direct=").append(direct);
+		sb.append(" pooled=").append(getPooledCount());
+		sb.append(" allocated=").append(getAllocatedCount());
+		sb.append(" acquired=").append(getAcquiredCount());
+		sb.append(" released=").append(getReleasedCount());
+		sb.append(" discarded=").append(getDiscardedCount());
+
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.jerabi.ssdp.network;
+
+import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+
+/**
+ * {@link IMulticastListener} that pushes the messages to a handler instead of being polled with receive.
+ *
+ * After {@link #start(ISSDPResponseHandler)}, each message received is passed to the handler as soon as it arrives,
+ * without socket timeout : an idle listener doesn't wake up.  {@link #stop()} closes the socket, so the
+ * listener stops immediately instead of waiting for a timeout.
+ *
+ * Once stopped, the listener can't be restarted.  You need to create a new instance.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * IMulticastListener listener = SSDPNetworkFactory.getInstance().createMulticastListener(SSDPContants.DEFAULT_PORT, null);
+ * listener.joinGroup(InetAddress.getByName(SSDPContants.DEFAULT_IP));
+ *
+ * if(listener instanceof IEventMulticastListener){
+ *     ((IEventMulticastListener)listener).start(new SSDPDefaultResponseHandler(controler));
+ *     ...
+ *     ((IEventMulticastListener)listener).stop();
+ * }
+ * </pre>
+ */
+public interface IEventMulticastListener extends IMulticastListener {
+
+	/**
+	 * Registers the handler and starts to push the messages received to it.
+	 *
+	 * @param callbackHandler handle the messages
+	 * @throws Exception
+	 */
+	void start(ISSDPResponseHandler callbackHandler) throws Exception;
+
+	/**
+	 * Stops the listener and closes the socket.  Returns without waiting for a timeout.
+	 * @throws Exception
+	 */
+	void stop() throws Exception;
+
+	/**
+	 * Returns true if the listener was started and not stopped
+	 * @return started
+	 */
+	boolean isStarted();
+
+	/**
+	 * Sets the maximum number of messages passed with one call when the handler is
+	 * a {@link com.jerabi.ssdp.handler.ISSDPBatchResponseHandler}
+	 * @param batchSize messages per call
+	 */
+	void setBatchSize(int batchSize);
+
+	/**
+	 * Returns the maximum number of messages passed with one call to a
+	 * {@link com.jerabi.ssdp.handler.ISSDPBatchResponseHandler}
+	 * @return batch size
+	 */
+	int getBatchSize();
+
+}
@@ -45,6 +45,21 @@ public interface IMulticastListener {
 	 */
 	void receive(boolean blocking) throws Exception;
 	
+	/**
+	 * Reads up to maxMessages incoming messages.  Waits for the first message like {@link #receive(boolean)}, 
+	 * then reads the messages that follow it.  The implementation decides when the batch ends : when no message 
+	 * is queued, or when no message is received for a short time.
+	 * 
+	 * If the handler is a {@link com.jerabi.ssdp.handler.ISSDPBatchResponseHandler}, the messages are passed
+	 * with one call, otherwise they are passed one by one.
+	 * 
+	 * @param blocking in blocking mode is set to true
+	 * @param maxMessages maximum number of messages read
+	 * @return the number of messages read
+	 * @throws Exception
+	 */
+	int receive(boolean blocking, int maxMessages) throws Exception;
+	
 	/**
 	 * Joins a multicast group
 	 * @param group the new to join
@@ -137,5 +137,14 @@ public interface ISSDPNetwork {
 	 */
 	IMulticastListener createMulticastListener(SocketAddress bindAddress, ISSDPResponseHandler callbackHandler, NetworkInterface ni) throws Exception;
 	
+	/**
+	 * Closes the sockets that this implementation keeps open to send messages.  
+	 * They will be recreated if a message is sent after this call.
+	 * 
+	 * The listeners and senders created by this ISSDPNetwork are not closed.
+	 * 
+	 * @throws Exception
+	 */
+	void close() throws Exception;
 	
 }
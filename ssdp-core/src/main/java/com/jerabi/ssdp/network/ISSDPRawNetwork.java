@@ -0,0 +1,46 @@
+package com.jerabi.ssdp.network;
+
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+
+/**
+ * Provides API for sending messages already encoded.
+ *
+ * When the {@link ISSDPNetwork} returned by {@link SSDPNetworkFactory} implements this interface, the
+ * {@link com.jerabi.ssdp.sender.SSDPSendQueue} passes the bytes of the messages encoded once by the senders
+ * (see {@link com.jerabi.ssdp.message.SSDPEncodedMessage}) instead of a String.  The bytes are not copied.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * ISSDPNetwork network = SSDPNetworkFactory.getInstance();
+ *
+ * if(network instanceof ISSDPRawNetwork){
+ *     ((ISSDPRawNetwork) network).sendMulticastMessage(data, address, ni);
+ * } else {
+ *     network.sendMulticastMessage(new String(data), address, ni);
+ * }
+ * </pre>
+ */
+public interface ISSDPRawNetwork extends ISSDPNetwork {
+
+	/**
+	 * Sends a multicast UDP message already encoded without the needs to join a group.
+	 *
+	 * @param data message to send.  The array must not be modified.
+	 * @param address destination address
+	 * @throws Exception
+	 */
+	void sendMulticastMessage(byte[] data, SocketAddress address) throws Exception;
+
+	/**
+	 * Sends a multicast UDP message already encoded without the needs to join a group.
+	 *
+	 * @param data message to send.  The array must not be modified.
+	 * @param address destination address
+	 * @param ni NetworkInterface that will be used.
+	 * @throws Exception
+	 */
+	void sendMulticastMessage(byte[] data, SocketAddress address, NetworkInterface ni) throws Exception;
+
+}
@@ -10,6 +10,10 @@ import com.jerabi.ssdp.handler.ISSDPResponseHandler;
  * 
  * This sender will not send multicast UDP.  If you need multicast UDP look {@link ISSDPNetwork}.
  * 
+ * By default, only the first response is handled.  When the multiple responses mode is enabled,
+ * the sender keeps receiving until the TTL expired, and all the responses are forwarded to
+ * the callback.  It's what you need for a M-SEARCH, because every device will respond within the MX delay.
+ * 
  * @author Sebastien Dionne
  */
 public interface IUDPSender {
@@ -22,9 +26,11 @@ public interface IUDPSender {
 	 * @param address destination address
 	 * @param callbackHandler handle the response
 	 * @param ttl Time to live (timeout)
+	 * @return the number of responses received
 	 * @throws Exception
+	 * @see #setMultipleResponses(boolean)
 	 */
-	void sendMessage(String message, SocketAddress address, ISSDPResponseHandler callbackHandler, int ttl) throws Exception;
+	int sendMessage(String message, SocketAddress address, ISSDPResponseHandler callbackHandler, int ttl) throws Exception;
 	
 	/**
 	 * Sends a UDP message and wait for a response.  TTL defines the timeout for the response.
@@ -35,8 +41,45 @@ public interface IUDPSender {
 	 * @param port destination port
 	 * @param callbackHandler handle the response
 	 * @param ttl Time to live (timeout)
+	 * @return the number of responses received
+	 * @throws Exception
+	 * @see #setMultipleResponses(boolean)
+	 */
+	int sendMessage(String message, InetAddress address, int port, ISSDPResponseHandler callbackHandler, int ttl) throws Exception;
+	
+	/**
+	 * Sends a UDP message without waiting for a response.  The responses can be read with 
+	 * {@link #receive(ISSDPResponseHandler, int)}.
+	 * 
+	 * @param message message to send
+	 * @param address destination address
+	 * @throws Exception
+	 */
+	void sendMessage(String message, SocketAddress address) throws Exception;
+	
+	/**
+	 * Waits for a message received by this sender and forwards it to the callback {@link ISSDPResponseHandler}.  
+	 * Used to read the responses of the messages sent by {@link #sendMessage(String, SocketAddress)} from another Thread.
+	 * 
+	 * @param callbackHandler handle the message
+	 * @param timeout timeout in ms.
+	 * @throws java.net.SocketTimeoutException if no message is received before the timeout
 	 * @throws Exception
 	 */
-	void sendMessage(String message, InetAddress address, int port, ISSDPResponseHandler callbackHandler, int ttl) throws Exception;
+	void receive(ISSDPResponseHandler callbackHandler, int timeout) throws Exception;
+	
+	/**
+	 * Returns true if all the responses received before the TTL expired are handled.
+	 * @return multiple responses mode
+	 */
+	boolean isMultipleResponses();
+	
+	/**
+	 * Sets the multiple responses mode.  When true, sendMessage waits until the TTL expired
+	 * and forwards every response received to the callback.  When false, sendMessage returns after the first response.
+	 * 
+	 * @param multipleResponses multiple responses mode
+	 */
+	void setMultipleResponses(boolean multipleResponses);
 	
 }
@@ -11,13 +11,42 @@ import java.lang.reflect.InvocationTargetException;
  * It used for compilation purpose.  An implementation must be
  * available in another package. 
  * 
+ * The implementation is loaded by name.  By default {@link #DEFAULT_IMPL} is used, but another
+ * implementation (like {@link #NIO_IMPL}) can be selected with the system property {@link #IMPL_PROPERTY}
+ * or with {@link #setImplementation(String)} before the first call to {@link #getInstance()}.
+ * 
  * @author Sebastien Dionne
  *
+ * @example.
+ * <pre>
+ * // use the selector based transport (module nio-impl)
+ * java -Dcom.jerabi.ssdp.network.impl=com.jerabi.ssdp.network.nio.SSDPNioNetworkImpl ...
+ * 
+ * // or
+ * SSDPNetworkFactory.setImplementation(SSDPNetworkFactory.NIO_IMPL);
+ * SSDPControler controler = new SSDPControler();
+ * </pre>
  */
 public class SSDPNetworkFactory {
 	
-	private static final String DEFAULT_IMPL = "com.jerabi.ssdp.network.impl.SSDPNetworkImpl";
+	/**
+	 * Implementation using blocking sockets (module default-impl)
+	 */
+	public static final String DEFAULT_IMPL = "com.jerabi.ssdp.network.impl.SSDPNetworkImpl";
+	
+	/**
+	 * Implementation using a single Selector thread (module nio-impl)
+	 */
+	public static final String NIO_IMPL = "com.jerabi.ssdp.network.nio.SSDPNioNetworkImpl";
+	
+	/**
+	 * System property that contains the implementation class name
+	 */
+	public static final String IMPL_PROPERTY = "com.jerabi.ssdp.network.impl";
+	
+	private static String implementation = null;
 	private static ISSDPNetwork instance = null;
+	private static int users = 0;
 	
 	/**
 	 * Private Constructor.  You need to use getInstance()
@@ -37,15 +66,66 @@ public class SSDPNetworkFactory {
 	 * @throws SecurityException 
 	 * @throws NoSuchMethodException 
 	 */
-	public static ISSDPNetwork getInstance() throws InstantiationException, IllegalAccessException, ClassNotFoundException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException {
+	public static synchronized ISSDPNetwork getInstance() throws InstantiationException, IllegalAccessException, ClassNotFoundException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException {
 		
 		if(instance==null){
-			instance = (ISSDPNetwork) Class.forName(DEFAULT_IMPL).newInstance();
+			instance = (ISSDPNetwork) Class.forName(getImplementation()).newInstance();
 		}
 		
 		return instance;
 		
 	}
 	
+	/**
+	 * Returns the ISSDPNetwork instance and registers a user of it.  The sockets kept open by the instance
+	 * are closed by {@link #releaseInstance()} when its last user releases it.
+	 * 
+	 * @return ISSDPNetwork
+	 * @throws Exception if the implementation can't be created
+	 */
+	public static synchronized ISSDPNetwork acquireInstance() throws Exception {
+		ISSDPNetwork network = getInstance();
+		users++;
+		return network;
+	}
+	
+	/**
+	 * Releases the instance acquired with {@link #acquireInstance()}.  When the last user releases it, the sockets
+	 * kept open to send the messages are closed with {@link ISSDPNetwork#close()}.
+	 * 
+	 * @throws Exception
+	 */
+	public static synchronized void releaseInstance() throws Exception {
+		if(users>0 && --users==0 && instance!=null){
+			instance.close();
+		}
+	}
+	
+	/**
+	 * Returns the class name of the ISSDPNetwork implementation that will be used.
+	 * 
+	 * @return the value set by {@link #setImplementation(String)}, the system property {@link #IMPL_PROPERTY} or {@link #DEFAULT_IMPL}
+	 */
+	public static String getImplementation() {
+		if(implementation!=null){
+			return implementation;
+		}
+		
+		return System.getProperty(IMPL_PROPERTY, DEFAULT_IMPL);
+	}
+	
+	/**
+	 * Sets the class name of the ISSDPNetwork implementation.  If an instance was already
+	 * created with another implementation, it will be replaced on the next call to {@link #getInstance()}.
+	 * 
+	 * @param className implementation class name or null to use the default
+	 */
+	public static synchronized void setImplementation(String className) {
+		if(instance!=null && !instance.getClass().getName().equals(className)){
+			instance = null;
+		}
+		implementation = className;
+	}
+	
 
 }
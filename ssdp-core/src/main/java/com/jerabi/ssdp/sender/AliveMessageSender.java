@@ -1,14 +1,18 @@
 package com.jerabi.ssdp.sender;
 
+import java.net.Inet4Address;
+import java.net.InetAddress;
 import java.net.NetworkInterface;
+import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 
 import com.jerabi.ssdp.ISSDPControler;
 import com.jerabi.ssdp.message.AliveMessage;
 import com.jerabi.ssdp.message.ISSDPMessage;
 import com.jerabi.ssdp.message.ServiceInfo;
-import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
+import com.jerabi.ssdp.message.helper.SSDPEncodedMessageCache;
 
 /**
  * This class is a Sender that sends periodically {@link AliveMessage} and doesn't handle responses.  If 
@@ -21,6 +25,14 @@ import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
  * This sender will send the message and enter in sleep mode for the delay used and return to started mode until 
  * the sender is stopped by the controller.
  * 
+ * The message of each {@link ServiceInfo} is formatted and encoded once, and kept in a {@link SSDPEncodedMessageCache} 
+ * until the ServiceInfo, the cache-control or the server name change.
+ * 
+ * When NetworkInterfaces are used, a message is rendered for each interface : the IP address in the LOCATION is 
+ * replaced by the IPv4 address of the interface, so the clients on each network receive a LOCATION that they can 
+ * reach.  The interfaces are looked up again at each interval, because a NetworkInterface keeps the addresses it had 
+ * when it was created : the messages are encoded again only if an address changes, after a DHCP renewal for example.  
+ * See {@link #setLocationPerInterface(boolean)}.
  * 
  * @author Sebastien Dionne
  * @example.
@@ -40,6 +52,8 @@ public class AliveMessageSender extends SSDPDefaultPeriodicMessageSender {
 	protected String cacheControl = "";
 	protected String serverName = "";
 	protected int multipleTimeToSend = 1;
+	protected SSDPEncodedMessageCache messageCache = new SSDPEncodedMessageCache();
+	protected boolean locationPerInterface = true;
 	
 	/**
 	 * Constructor that will use the default delay see com.jerabi.ssdp.util.SSDPContants.DEFAULT_DELAY value
@@ -169,25 +183,145 @@ public class AliveMessageSender extends SSDPDefaultPeriodicMessageSender {
 		this.multipleTimeToSend = multipleTimeToSend; 
 	}
 
+	/**
+	 * Returns the cache-control value
+	 * @return cache-control
+	 */
+	public String getCacheControl() {
+		return cacheControl;
+	}
+	
+	/**
+	 * Sets the cache-control value.  The messages will be encoded again.
+	 * @param cacheControl cache-control
+	 */
+	public void setCacheControl(String cacheControl) {
+		this.cacheControl = cacheControl;
+	}
+	
+	/**
+	 * Returns the name or description of the server
+	 * @return server name
+	 */
+	public String getServerName() {
+		return serverName;
+	}
+	
+	/**
+	 * Sets the name or description of the server.  The messages will be encoded again.
+	 * @param serverName server name
+	 */
+	public void setServerName(String serverName) {
+		this.serverName = serverName;
+	}
+	
+	/**
+	 * Returns the cache of the messages encoded
+	 * @return SSDPEncodedMessageCache
+	 */
+	public SSDPEncodedMessageCache getMessageCache() {
+		return messageCache;
+	}
+
+	/**
+	 * Returns true if a message is rendered for each NetworkInterface with the address of the interface in the LOCATION
+	 * @return true by default
+	 */
+	public boolean isLocationPerInterface() {
+		return locationPerInterface;
+	}
+	
+	/**
+	 * Enables the rendering of the messages for each NetworkInterface.  Only used if NetworkInterfaces are used
+	 * and if the host of the LOCATION is an IP address.
+	 * @param locationPerInterface false to send the same message on all the interfaces
+	 */
+	public void setLocationPerInterface(boolean locationPerInterface) {
+		this.locationPerInterface = locationPerInterface;
+	}
+	
+	/**
+	 * Returns the current addresses of the NetworkInterface.  The interface is looked up again by its name, the
+	 * NetworkInterface given keeps the addresses it had when it was created.
+	 * @param ni NetworkInterface
+	 * @return the addresses of the interface, or the addresses of ni if the interface is not found
+	 */
+	protected Enumeration<InetAddress> getInterfaceAddresses(NetworkInterface ni) {
+		NetworkInterface current = null;
+		
+		try {
+			current = NetworkInterface.getByName(ni.getName());
+		} catch (SocketException e) {
+			current = null;
+		}
+		
+		return current!=null ? current.getInetAddresses() : ni.getInetAddresses();
+	}
+	
+	/**
+	 * Returns the address of the NetworkInterface used in the LOCATION.
+	 * @param ni NetworkInterface
+	 * @return the first IPv4 address of the interface, or null if the interface doesn't have one
+	 * @see #getInterfaceAddresses(NetworkInterface)
+	 */
+	protected String getInterfaceHost(NetworkInterface ni) {
+		Enumeration<InetAddress> addresses = getInterfaceAddresses(ni);
+		
+		while (addresses.hasMoreElements()) {
+			InetAddress address = addresses.nextElement();
+			if(address instanceof Inet4Address){
+				return address.getHostAddress();
+			}
+		}
+		
+		return null;
+	}
+
 	/**
 	 * {@inheritDoc}
+	 * The messages are {@link com.jerabi.ssdp.message.SSDPEncodedMessage}, encoded once for each ServiceInfo, 
+	 * or for each ServiceInfo and NetworkInterface.
 	 */
 	@Override
 	public List<ISSDPMessage> getSSDPMessagesToSend() {
 		List<ISSDPMessage> list = new ArrayList<ISSDPMessage>();
+		// the same services for the messages and the cache, even if the list is modified meanwhile
+		List<ServiceInfo> serviceInfoList = new ArrayList<ServiceInfo>(controler.getServiceInfoList());
 		
-		for (ServiceInfo deviceInfo : controler.getServiceInfoList()) {
-		
-			AliveMessage message = SSDPMessageHelper.createSSDPAliveMessage(deviceInfo);
+		if(locationPerInterface && networkInterfaceList!=null && !networkInterfaceList.isEmpty()){
+			
+			// the addresses are read once for all the services
+			String[] interfaceHosts = new String[networkInterfaceList.size()];
+			for (int i = 0; i < interfaceHosts.length; i++) {
+				interfaceHosts[i] = getInterfaceHost(networkInterfaceList.get(i));
+			}
 			
-			message.setCacheControl(cacheControl);
-			message.setServer(serverName);
+			for (ServiceInfo deviceInfo : serviceInfoList) {
+				for (int i = 0; i < interfaceHosts.length; i++) {
+					
+					ISSDPMessage message = messageCache.getAliveMessage(deviceInfo, cacheControl, serverName, networkInterfaceList.get(i), interfaceHosts[i]);
+					
+					for(int j=0;j<multipleTimeToSend;j++){
+						list.add(message);
+					}
+				}
+			}
+			
+		} else {
 			
-			for(int i=0;i<multipleTimeToSend;i++){
-				list.add(message);
+			for (ServiceInfo deviceInfo : serviceInfoList) {
+				
+				ISSDPMessage message = messageCache.getAliveMessage(deviceInfo, cacheControl, serverName);
+				
+				for(int i=0;i<multipleTimeToSend;i++){
+					list.add(message);
+				}
 			}
 		}
 		
+		// the services removed
+		messageCache.retainAll(serviceInfoList);
+		
 		return list;
 	}
 	
@@ -1,27 +1,31 @@
 package com.jerabi.ssdp.sender;
 
-import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
 import com.jerabi.ssdp.ISSDPControler;
 import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.listener.SSDPDiscoverResponseListener;
+import com.jerabi.ssdp.listener.SSDPSearch;
 import com.jerabi.ssdp.message.DiscoverMessage;
 import com.jerabi.ssdp.message.ISSDPMessage;
 import com.jerabi.ssdp.network.IUDPSender;
-import com.jerabi.ssdp.network.SSDPNetworkFactory;
 import com.jerabi.ssdp.util.SSDPContants;
+import com.jerabi.ssdp.util.State;
 
 /**
  * This class in a {@link SSDPPeriodicMessageSender} that send DiscoverMessage and handle responses for the messages sent. 
  * 
- * The sender is a {@link IUDPSender} and it sends UDP instead of Multicast UDP. The responses will be handle by a {@link ISSDPResponseHandler}, if the handler is null, 
- * the responses will be ignored.
+ * The messages are sent by a {@link SSDPDiscoverResponseListener} with a {@link IUDPSender}, it sends UDP instead of Multicast UDP. 
+ * The responses will be handle by a {@link ISSDPResponseHandler}, if the handler is null, the responses will be ignored.
  *  
- * When you change the port, the {@link IUDPSender} will be set to null and recreated when you send a message.  
+ * All the M-SEARCH are sent with the same socket and the responses are received by the Thread of the SSDPDiscoverResponseListener, 
+ * no Thread is blocked while waiting for the responses.  All the devices that respond within the MX delay 
+ * are handled for each M-SEARCH, not only the first one.  The number of responses of the last M-SEARCH is 
+ * available with {@link #getLastResponseCount()}.
  * 
  * @author Sebastien Dionne
  * @example.
@@ -34,14 +38,17 @@ import com.jerabi.ssdp.util.SSDPContants;
  * t.start();
  * </pre>
  * @see DiscoverMessage
- * @see IUDPSender
+ * @see SSDPDiscoverResponseListener
  */
 public class SSDPDiscoverSender extends SSDPPeriodicMessageSender {
 	private Logger logger = Logger.getLogger(SSDPDiscoverSender.class.getName());
 	
-	private IUDPSender udpSender = null;
+	private SSDPDiscoverResponseListener responseListener = null;
+	// the listener created by this sender is stopped with it
+	private boolean ownsResponseListener = false;
 	private ISSDPResponseHandler handler = null;
 	private int TTL = 3; 	// MX 
+	private volatile SSDPSearch lastSearch = null;
 	
 	/**
 	 * Constructor that will use the default delay see com.jerabi.ssdp.util.SSDPContants.DEFAULT_DELAY value
@@ -112,19 +119,56 @@ public class SSDPDiscoverSender extends SSDPPeriodicMessageSender {
 	}
 	
 	/**
-	 * {@inheritDoc}
-	 * Sets IUDPSender to null. If will be recreate when a message is sent. 
+	 * Returns the number of responses received for the last M-SEARCH sent.
+	 * @return response count
 	 */
-	@Override
-	public void setSSDPPort(int port) {
-	    super.setSSDPPort(port);
-	    udpSender=null;
+	public int getLastResponseCount() {
+		SSDPSearch search = lastSearch;
+		
+		return search!=null ? search.getResponseCount() : 0;
+	}
+	
+	/**
+	 * Returns the SSDPDiscoverResponseListener that sends the messages and receives the responses. 
+	 * It's created when the first message is sent.
+	 * @return responseListener
+	 */
+	public synchronized SSDPDiscoverResponseListener getSSDPDiscoverResponseListener() {
+		if(responseListener==null){
+			responseListener = new SSDPDiscoverResponseListener();
+			ownsResponseListener = true;
+		}
+		return responseListener;
+	}
+	
+	/**
+	 * Sets the SSDPDiscoverResponseListener that sends the messages and receives the responses.
+	 * It can be shared by many SSDPDiscoverSender.
+	 * @param responseListener
+	 */
+	public synchronized void setSSDPDiscoverResponseListener(SSDPDiscoverResponseListener responseListener) {
+		this.responseListener = responseListener;
+		this.ownsResponseListener = false;
+	}
+	
+	/**
+	 * Stops this sender and the {@link SSDPDiscoverResponseListener} it created : its Thread exits and its socket
+	 * is closed.  A SSDPDiscoverResponseListener set with {@link #setSSDPDiscoverResponseListener(SSDPDiscoverResponseListener)}
+	 * can be shared, it must be stopped by its owner.
+	 */
+	public synchronized void stop() {
+		setState(State.STOPPED);
+		
+		if(responseListener!=null && ownsResponseListener){
+			responseListener.stop();
+		}
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 * Creates a {@link DiscoverMessage} and add it twice to the list.
-	 * It's strongly suggested to send DiscoverMessage twice. 
+	 * It's strongly suggested to send DiscoverMessage twice.  The second M-SEARCH joins the search
+	 * of the first one, so the handler receives each response once.
 	 */
 	@Override
 	public List<ISSDPMessage> getSSDPMessagesToSend() {
@@ -139,9 +183,9 @@ public class SSDPDiscoverSender extends SSDPPeriodicMessageSender {
 	}
 	
 	/**
-	 * Sends the messages using {@link IUDPSender} and wait for a response until a timeout (Time-to-live).
-	 * When a response is received, a {@link ISSDPResponseHandler} will handle it.  If the port changed since the
-	 * last time you sent a message, a new IUDPSender will be created.
+	 * Sends the messages with the {@link SSDPDiscoverResponseListener} and returns immediately.
+	 * The responses received until the timeout (Time-to-live) will be handled by the {@link ISSDPResponseHandler}
+	 * in the Thread of the SSDPDiscoverResponseListener.
 	 */
 	@Override 
 	public void sendMessage(String message) throws Exception {
@@ -152,18 +196,7 @@ public class SSDPDiscoverSender extends SSDPPeriodicMessageSender {
 		
 		logger.info("sending M-SEARCH \n" + message);
 		
-		if(udpSender==null){
-			udpSender = SSDPNetworkFactory.getInstance().createUDPSender();
-		}
-		
-		final String msg = message;
-		threadPool.submit(new Callable<Boolean>() {
-			@Override
-			public Boolean call() throws Exception {
-				udpSender.sendMessage(msg, InetAddress.getByName(host), port, handler, TTL);
-				return Boolean.TRUE;
-			}
-		});
+		lastSearch = getSSDPDiscoverResponseListener().search(message, new InetSocketAddress(host, port), handler, TTL);
 		
 	}
 
@@ -4,7 +4,6 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -14,7 +13,7 @@ import java.util.logging.Logger;
 
 import com.jerabi.ssdp.ISSDPControler;
 import com.jerabi.ssdp.message.ISSDPMessage;
-import com.jerabi.ssdp.network.SSDPNetworkFactory;
+import com.jerabi.ssdp.message.SSDPEncodedMessage;
 import com.jerabi.ssdp.util.SSDPContants;
 import com.jerabi.ssdp.util.State;
 import com.jerabi.ssdp.util.StateHolder;
@@ -31,6 +30,16 @@ import com.jerabi.ssdp.util.StateHolder;
  * This sender will send the message and enter in sleep mode for the delay used and return to started mode until 
  * the sender is stopped by the controller.
  * 
+ * The messages are not sent by the calling Thread, they are added to a {@link SSDPSendQueue} and sent by its 
+ * writer Thread.  By default all the senders share the queue {@link SSDPSendQueue#getMulticastQueue()}.
+ * The queue paces the messages per NetworkInterface, a large list of messages is spread evenly instead of 
+ * being sent in one burst.  The shared queue blocks the sender when it's full, so no message of the list is 
+ * lost.  If a queue that drops or rejects the messages is set with {@link #setSendQueue(SSDPSendQueue)}, 
+ * the number of messages lost while the list was queued is logged after each batch.
+ * 
+ * The {@link SSDPEncodedMessage} are not formatted again, their bytes are passed to the queue with 
+ * {@link #sendEncodedMessage(SSDPEncodedMessage)}.
+ * 
  * @author Sebastien Dionne
  * @example.
  * <pre>
@@ -73,10 +82,12 @@ public abstract class SSDPPeriodicMessageSender implements Runnable {
 	protected List<NetworkInterface> networkInterfaceList = null;
 	
 	/**
-	 * Default Thread Pool (called ExecutorService) to send messages.
+	 * Default Thread Pool (called ExecutorService) available to the subclasses.
 	 */
 	protected ExecutorService threadPool;
 	
+	private SSDPSendQueue sendQueue = null;
+	
 	/**
 	 * Constructor that will use the default delay see com.jerabi.ssdp.util.SSDPContants.DEFAULT_DELAY value
 	 * @param controler ISSDPControler
@@ -118,7 +129,7 @@ public abstract class SSDPPeriodicMessageSender implements Runnable {
 	 * @param networkInterfaceList NetworkInterfaces that will be used
 	 */
 	public SSDPPeriodicMessageSender(ISSDPControler controler, String ssdpHost, int ssdpPort, List<NetworkInterface> networkInterfaceList){
-		this(controler, ssdpHost, ssdpPort, SSDPContants.DEFAULT_DELAY);
+		this(controler, ssdpHost, ssdpPort, networkInterfaceList, SSDPContants.DEFAULT_DELAY);
 	}
 	
 	/**
@@ -130,7 +141,7 @@ public abstract class SSDPPeriodicMessageSender implements Runnable {
 	 * @param delay delay before the next batch of messages are sent
 	 */
 	public SSDPPeriodicMessageSender(ISSDPControler controler, String ssdpHost, int ssdpPort, List<NetworkInterface> networkInterfaceList, int delay){
-		this(controler, ssdpHost, ssdpPort, delay, Executors.newFixedThreadPool(5));
+		this(controler, ssdpHost, ssdpPort, networkInterfaceList, delay, Executors.newFixedThreadPool(5));
 	}
 	
 	/**
@@ -219,9 +230,29 @@ public abstract class SSDPPeriodicMessageSender implements Runnable {
 	public void setSSDPPort(int port) {
 		this.port = port;
 	}
+	
+	/**
+	 * Returns the queue used to send the messages.  If no queue was set, the shared
+	 * queue {@link SSDPSendQueue#getMulticastQueue()} is used.
+	 * @return the SSDPSendQueue
+	 */
+	public SSDPSendQueue getSendQueue() {
+		SSDPSendQueue queue = sendQueue;
+		
+		return queue!=null ? queue : SSDPSendQueue.getMulticastQueue();
+	}
+	
+	/**
+	 * Sets the queue used to send the messages.  The queue must be started.
+	 * @param sendQueue the SSDPSendQueue, or null to use the shared queue
+	 */
+	public void setSendQueue(SSDPSendQueue sendQueue) {
+		this.sendQueue = sendQueue;
+	}
 
 	/**
-	 * Sends the multicast message.  This method doesn't wait for a response.  
+	 * Adds the multicast message to the {@link SSDPSendQueue}.  This method doesn't wait for the message 
+	 * to be sent and doesn't wait for a response.  
 	 * If you want to wait for a response, you have to override this method.
 	 * 
 	 * @param message message to send
@@ -235,24 +266,56 @@ public abstract class SSDPPeriodicMessageSender implements Runnable {
 			return;
 		}
 		
-		// TODO devrait avoir une boucle pour lire les messages
-		// entrant.. testcase : 3 serveurs qui couteraient et rpondrait en meme temps
-		// mettre un runnable car on se fou du resultat ici
+		SSDPSendQueue queue = getSendQueue();
+		boolean queued = true;
 		
-		final String msg = message;
-		threadPool.submit(new Callable<Boolean>() {
-			@Override
-			public Boolean call() throws Exception {
-				if(networkInterfaceList!=null && !networkInterfaceList.isEmpty()){
-					for (NetworkInterface ni : networkInterfaceList) {
-						SSDPNetworkFactory.getInstance().sendMulticastMessage(msg, socketAddress, ni);
-					}
-				} else {
-					SSDPNetworkFactory.getInstance().sendMulticastMessage(msg, InetAddress.getByName(host), port);
-				}
-				return Boolean.TRUE;
+		if(networkInterfaceList!=null && !networkInterfaceList.isEmpty()){
+			for (NetworkInterface ni : networkInterfaceList) {
+				queued &= queue.offer(message, socketAddress, ni);
+			}
+		} else {
+			queued = queue.offer(message, new InetSocketAddress(InetAddress.getByName(host), port), null);
+		}
+		
+		if(!queued){
+			logger.warning("message rejected by the SSDPSendQueue : " + queue);
+		}
+		
+	}
+	
+	/**
+	 * Adds the multicast message already encoded to the {@link SSDPSendQueue}.  The bytes of the message 
+	 * are queued as is, the message is not formatted or encoded again.  If the message was rendered for a 
+	 * NetworkInterface, it's sent only on this interface.
+	 * 
+	 * @param message message to send
+	 * @throws Exception
+	 */
+	public void sendEncodedMessage(SSDPEncodedMessage message) throws Exception {
+		
+		logger.info("sendMessage");
+		
+		if(message==null){
+			return;
+		}
+		
+		SSDPSendQueue queue = getSendQueue();
+		boolean queued = true;
+		
+		if(message.getNetworkInterface()!=null){
+			// rendered for this interface only
+			queued = queue.offerEncoded(message.getBytes(), socketAddress, message.getNetworkInterface());
+		} else if(networkInterfaceList!=null && !networkInterfaceList.isEmpty()){
+			for (NetworkInterface ni : networkInterfaceList) {
+				queued &= queue.offerEncoded(message.getBytes(), socketAddress, ni);
 			}
-		});
+		} else {
+			queued = queue.offerEncoded(message.getBytes(), new InetSocketAddress(InetAddress.getByName(host), port), null);
+		}
+		
+		if(!queued){
+			logger.warning("message rejected by the SSDPSendQueue : " + queue);
+		}
 		
 	}
 	
@@ -275,8 +338,21 @@ public abstract class SSDPPeriodicMessageSender implements Runnable {
 					List<ISSDPMessage> list = getSSDPMessagesToSend();
 					
 					if(list!=null){
+						SSDPSendQueue queue = getSendQueue();
+						long lost = queue.getDroppedCount() + queue.getRejectedCount();
+						
 						for (ISSDPMessage message : list) {
-							sendMessage(message.toString());
+							if(message instanceof SSDPEncodedMessage){
+								sendEncodedMessage((SSDPEncodedMessage) message);
+							} else {
+								sendMessage(message.toString());
+							}
+						}
+						
+						// the counters are shared by the senders of the queue
+						lost = queue.getDroppedCount() + queue.getRejectedCount() - lost;
+						if(lost>0){
+							logger.warning(lost + " messages dropped by the SSDPSendQueue while sending " + list.size() + " messages : " + queue);
 						}
 					}
 					// enter sleep mode
@@ -0,0 +1,169 @@
+package com.jerabi.ssdp.sender;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that limits the packets and the bytes sent per second.
+ *
+ * The limiter doesn't block : {@link #reserve(int)} returns the delay to wait before sending the packet, and reserves
+ * the tokens for it.  The packets are spaced evenly at the rate configured instead of being sent in burst at
+ * the beginning of each second.  When the limiter was idle, up to burst packets (or bytes) can be sent without delay.
+ *
+ * A limit of 0 means unlimited.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * // 50 packets/s, 64 KB/s, bursts of 5 packets or 8 KB
+ * SSDPRateLimiter limiter = new SSDPRateLimiter(50, 64*1024, 5, 8*1024);
+ *
+ * long delay = limiter.reserve(message.length());
+ * if(delay>0){
+ *     TimeUnit.NANOSECONDS.sleep(delay);
+ * }
+ * send(message);
+ * </pre>
+ * @see SSDPSendQueue
+ */
+public class SSDPRateLimiter {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final int packetsPerSecond;
+	private final int bytesPerSecond;
+	private final long packetInterval;
+	private final long packetTolerance;
+	private final long byteTolerance;
+
+	// theoretical arrival time of the next packet and byte (GCRA)
+	private long packetTime = Long.MIN_VALUE;
+	private long byteTime = Long.MIN_VALUE;
+
+	/**
+	 * Constructor
+	 * @param packetsPerSecond maximum packets per second, 0 for unlimited
+	 * @param bytesPerSecond maximum bytes per second, 0 for unlimited
+	 * @param burstPackets packets that can be sent without delay after an idle period
+	 * @param burstBytes bytes that can be sent without delay after an idle period
+	 */
+	public SSDPRateLimiter(int packetsPerSecond, int bytesPerSecond, int burstPackets, int burstBytes) {
+		if(packetsPerSecond<0 || bytesPerSecond<0 || burstPackets<0 || burstBytes<0){
+			throw new IllegalArgumentException("Invalid rate : " + packetsPerSecond + " packets/s " + bytesPerSecond + " bytes/s");
+		}
+
+		this.packetsPerSecond = packetsPerSecond;
+		this.bytesPerSecond = bytesPerSecond;
+
+		packetInterval = packetsPerSecond>0 ? NANOS_PER_SECOND / packetsPerSecond : 0;
+		packetTolerance = Math.max(0, burstPackets - 1) * packetInterval;
+		byteTolerance = bytesPerSecond>0 ? burstBytes * NANOS_PER_SECOND / bytesPerSecond : 0;
+	}
+
+	/**
+	 * Reserves the tokens for a packet and returns the delay to wait before sending it.
+	 *
+	 * @param bytes size of the packet
+	 * @return delay in ns, 0 if the packet can be sent now
+	 */
+	public long reserve(int bytes) {
+		return reserve(bytes, System.nanoTime());
+	}
+
+	/**
+	 * Reserves the tokens for a packet at a given time
+	 *
+	 * @param bytes size of the packet
+	 * @param now current time in ns
+	 * @return delay in ns, 0 if the packet can be sent now
+	 */
+	protected synchronized long reserve(int bytes, long now) {
+		if(isUnlimited()){
+			return 0;
+		}
+
+		long byteInterval = bytesPerSecond>0 ? bytes * NANOS_PER_SECOND / bytesPerSecond : 0;
+		long delay = computeDelay(byteInterval, now);
+		long sendTime = now + delay;
+
+		if(packetsPerSecond>0){
+			packetTime = Math.max(packetTime, sendTime) + packetInterval;
+		}
+		if(bytesPerSecond>0){
+			byteTime = Math.max(byteTime, sendTime) + byteInterval;
+		}
+
+		return delay;
+	}
+
+	/**
+	 * Returns the delay to wait before a packet can be sent, without reserving the tokens.
+	 *
+	 * @param bytes size of the packet
+	 * @return delay in ns, 0 if the packet can be sent now
+	 */
+	public long getDelay(int bytes) {
+		return getDelay(bytes, System.nanoTime());
+	}
+
+	/**
+	 * Returns the delay to wait before a packet can be sent at a given time, without reserving the tokens.
+	 *
+	 * @param bytes size of the packet
+	 * @param now current time in ns
+	 * @return delay in ns, 0 if the packet can be sent now
+	 */
+	protected synchronized long getDelay(int bytes, long now) {
+		if(isUnlimited()){
+			return 0;
+		}
+
+		return computeDelay(bytesPerSecond>0 ? bytes * NANOS_PER_SECOND / bytesPerSecond : 0, now);
+	}
+
+	// must be called with the lock
+	private long computeDelay(long byteInterval, long now) {
+		long delay = 0;
+
+		if(packetsPerSecond>0 && packetTime!=Long.MIN_VALUE){
+			delay = Math.max(delay, packetTime - packetTolerance - now);
+		}
+		if(bytesPerSecond>0 && byteTime!=Long.MIN_VALUE){
+			// a packet bigger than the burst is sent when the bucket is full
+			delay = Math.max(delay, byteTime - Math.max(byteTolerance - byteInterval, 0) - now);
+		}
+
+		return delay;
+	}
+
+	/**
+	 * Returns true if there is no limit
+	 * @return unlimited
+	 */
+	public boolean isUnlimited() {
+		return packetsPerSecond==0 && bytesPerSecond==0;
+	}
+
+	/**
+	 * Returns the maximum packets per second
+	 * @return packets/s, 0 for unlimited
+	 */
+	public int getPacketsPerSecond() {
+		return packetsPerSecond;
+	}
+
+	/**
+	 * Returns the maximum bytes per second
+	 * @return bytes/s, 0 for unlimited
+	 */
+	public int getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * @return Returns the limits as a String
+	 */
+	public String toString() {
+		return "packetsPerSecond=" + packetsPerSecond + " bytesPerSecond=" + bytesPerSecond;
+	}
+
+}
@@ -0,0 +1,723 @@
+package com.jerabi.ssdp.sender;
+
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+import com.jerabi.ssdp.network.ISSDPNetwork;
+import com.jerabi.ssdp.network.ISSDPRawNetwork;
+import com.jerabi.ssdp.network.SSDPNetworkFactory;
+import com.jerabi.ssdp.util.State;
+import com.jerabi.ssdp.util.StateHolder;
+
+/**
+ * Bounded queue of the messages to send, drained by a single writer Thread.
+ *
+ * Many Threads can add messages with {@link #offer(String, SocketAddress, NetworkInterface)}, only the writer Thread
+ * sends them.  The messages are kept in a ring buffer allocated once : the slots are reused, nothing is allocated
+ * for a message that is queued.  The messages are queued encoded, like they will be sent on the network.
+ * The messages already encoded in bytes can be added with {@link #offerEncoded(byte[], SocketAddress, NetworkInterface)},
+ * they are passed as is to a {@link ISSDPRawNetwork}, or decoded in US-ASCII for the others networks.
+ *
+ * When the queue is full, the {@link OverflowPolicy} decides what happens to the new message :
+ * <ul>
+ * <li>DROP_OLDEST : the oldest message queued is dropped to make room for the new message.</li>
+ * <li>BLOCK : the caller waits until there is room in the queue.</li>
+ * <li>REJECT : the new message is dropped and offer returns false.</li>
+ * </ul>
+ *
+ * The counters and the depth of the queue allow to see if the writer can follow the senders :
+ * {@link #getMaxDepth()} close to {@link #getCapacity()} or {@link #getDroppedCount()} increasing mean that
+ * the messages are produced faster than they are sent.
+ *
+ * The messages can be paced by a {@link SSDPRateLimiter} per NetworkInterface, see {@link #setRateLimit(int, int, int, int)}.
+ * The writer doesn't send a message that exceeds the rate of its NetworkInterface, so a large number of messages is
+ * spread evenly instead of being sent in one burst that the switches and the Wi-Fi access points could drop.  While an
+ * interface is paced, the writer sends the messages of the others interfaces : the messages of an interface are sent
+ * in order, but an interface doesn't wait behind another.  The senders are not blocked by the pacing, their messages
+ * stay in the queue.  The shared multicast queue is paced with
+ * {@link #MULTICAST_PACKETS_PER_SECOND} and {@link #MULTICAST_BYTES_PER_SECOND}.  It uses the policy BLOCK : a
+ * sender that queues more messages than the capacity waits for the writer instead of losing its oldest announcements.
+ *
+ * By default the messages are sent with {@link SSDPNetworkFactory#getInstance()} in multicast.  Override
+ * {@link #send(String, SocketAddress, NetworkInterface)} to use another transport.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * SSDPSendQueue queue = new SSDPSendQueue(256, SSDPSendQueue.OverflowPolicy.DROP_OLDEST);
+ * queue.setRateLimit(50, 0, 5, 0); // 50 packets/s per NetworkInterface
+ * queue.start();
+ *
+ * queue.offer(message.toString(), new InetSocketAddress(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT), null);
+ * ...
+ * System.out.println(queue);
+ * queue.stop();
+ * </pre>
+ */
+public class SSDPSendQueue implements Runnable {
+	private static final Logger logger = Logger.getLogger(SSDPSendQueue.class.getName());
+
+	/**
+	 * What to do with a new message when the queue is full
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * drops the oldest message queued
+		 */
+		DROP_OLDEST,
+		/**
+		 * waits until there is room in the queue
+		 */
+		BLOCK,
+		/**
+		 * drops the new message
+		 */
+		REJECT
+	}
+
+	/**
+	 * Default number of messages that can be queued
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * Interval in ms used by the writer to verify if the queue was stopped
+	 */
+	public static final int POLL_TIMEOUT = 1000;
+
+	/**
+	 * Packets per second per NetworkInterface for the shared multicast queue
+	 */
+	public static final int MULTICAST_PACKETS_PER_SECOND = 100;
+
+	/**
+	 * Bytes per second per NetworkInterface for the shared multicast queue
+	 */
+	public static final int MULTICAST_BYTES_PER_SECOND = 128 * 1024;
+
+	/**
+	 * Packets sent without pacing after an idle period by the shared multicast queue
+	 */
+	public static final int MULTICAST_BURST_PACKETS = 10;
+
+	/**
+	 * Bytes sent without pacing after an idle period by the shared multicast queue
+	 */
+	public static final int MULTICAST_BURST_BYTES = 16 * 1024;
+
+	private static SSDPSendQueue multicastQueue = null;
+	private static int multicastQueueUsers = 0;
+
+	protected StateHolder<State> stateHolder = new StateHolder<State>();
+
+	private final int capacity;
+	private final OverflowPolicy overflowPolicy;
+
+	// ring buffer
+	private final Object[] messages;
+	private final SocketAddress[] addresses;
+	private final NetworkInterface[] networkInterfaces;
+	private final boolean[] paced;
+	private int head = 0;
+	private int count = 0;
+	private int maxDepth = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	private Thread thread = null;
+
+	// limiters already seen by the writer while it looks for the next message to send
+	private final SSDPRateLimiter[] scanned;
+
+	// pacing per NetworkInterface, the key null is the default interface
+	private final Map<NetworkInterface, SSDPRateLimiter> rateLimiterMap = new HashMap<NetworkInterface, SSDPRateLimiter>();
+	private int packetsPerSecond = 0;
+	private int bytesPerSecond = 0;
+	private int burstPackets = 0;
+	private int burstBytes = 0;
+
+	private final AtomicLong offeredCount = new AtomicLong();
+	private final AtomicLong sentCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong pacedCount = new AtomicLong();
+	private final AtomicLong pacingDelay = new AtomicLong();
+
+	/**
+	 * Constructor with {@link #DEFAULT_CAPACITY} and the policy DROP_OLDEST
+	 */
+	public SSDPSendQueue() {
+		this(DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity maximum number of messages queued
+	 * @param overflowPolicy what to do when the queue is full
+	 */
+	public SSDPSendQueue(int capacity, OverflowPolicy overflowPolicy) {
+		if(capacity<=0){
+			throw new IllegalArgumentException("Invalid capacity : " + capacity);
+		}
+		if(overflowPolicy==null){
+			throw new IllegalArgumentException("OverflowPolicy can't be null");
+		}
+
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+
+		messages = new Object[capacity];
+		addresses = new SocketAddress[capacity];
+		networkInterfaces = new NetworkInterface[capacity];
+		paced = new boolean[capacity];
+		scanned = new SSDPRateLimiter[capacity];
+
+		setState(State.STOPPED);
+	}
+
+	/**
+	 * Returns the queue shared by the senders to send the multicast messages.  The queue is created and started
+	 * on the first call, or if it was stopped.  Its capacity is {@link #DEFAULT_CAPACITY} with the policy BLOCK :
+	 * the messages of a large list are all sent, the sender waits while the queue is full.
+	 * @return SSDPSendQueue started
+	 */
+	public static synchronized SSDPSendQueue getMulticastQueue() {
+		if(multicastQueue==null || multicastQueue.getState()==State.STOPPED){
+			multicastQueue = new SSDPSendQueue(DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+			multicastQueue.setRateLimit(MULTICAST_PACKETS_PER_SECOND, MULTICAST_BYTES_PER_SECOND, MULTICAST_BURST_PACKETS, MULTICAST_BURST_BYTES);
+			multicastQueue.start();
+		}
+		return multicastQueue;
+	}
+
+	/**
+	 * Returns the queue shared by the senders and registers a user of it.  The queue isn't stopped
+	 * by {@link #releaseMulticastQueue()} while other users hold it.
+	 * @return SSDPSendQueue started
+	 */
+	public static synchronized SSDPSendQueue acquireMulticastQueue() {
+		multicastQueueUsers++;
+		return getMulticastQueue();
+	}
+
+	/**
+	 * Releases the queue acquired with {@link #acquireMulticastQueue()}.  The queue is stopped when its last user releases it.
+	 */
+	public static synchronized void releaseMulticastQueue() {
+		if(multicastQueueUsers>0 && --multicastQueueUsers==0){
+			stopMulticastQueue();
+		}
+	}
+
+	/**
+	 * Stops the queue shared by the senders if it was created, even if it's still used.  The messages not sent yet are dropped.
+	 * @see #releaseMulticastQueue()
+	 */
+	public static synchronized void stopMulticastQueue() {
+		if(multicastQueue!=null){
+			multicastQueue.stop();
+			multicastQueue = null;
+		}
+	}
+
+	/**
+	 * Adds a message to send.  The message will be sent by the writer Thread.
+	 *
+	 * @param message message encoded
+	 * @param address destination address
+	 * @param ni NetworkInterface used to send the message, or null for the default interface
+	 * @return true if the message was queued, false if it was rejected
+	 * @throws InterruptedException if the policy is BLOCK and the Thread is interrupted while waiting
+	 */
+	public boolean offer(String message, SocketAddress address, NetworkInterface ni) throws InterruptedException {
+		if(message==null){
+			return false;
+		}
+
+		return enqueue(message, address, ni);
+	}
+
+	/**
+	 * Adds a message already encoded to send.  The message will be sent by the writer Thread.  The array is
+	 * not copied, it must not be modified after this call.
+	 *
+	 * @param data message encoded
+	 * @param address destination address
+	 * @param ni NetworkInterface used to send the message, or null for the default interface
+	 * @return true if the message was queued, false if it was rejected
+	 * @throws InterruptedException if the policy is BLOCK and the Thread is interrupted while waiting
+	 */
+	public boolean offerEncoded(byte[] data, SocketAddress address, NetworkInterface ni) throws InterruptedException {
+		if(data==null){
+			return false;
+		}
+
+		return enqueue(data, address, ni);
+	}
+
+	// the message is a String or a byte[]
+	private boolean enqueue(Object message, SocketAddress address, NetworkInterface ni) throws InterruptedException {
+		offeredCount.incrementAndGet();
+
+		lock.lockInterruptibly();
+		try {
+			if(stateHolder.getState()==State.STOPPED){
+				rejectedCount.incrementAndGet();
+				return false;
+			}
+
+			while(count==capacity){
+				switch (overflowPolicy) {
+				case DROP_OLDEST:
+					removeFirst();
+					droppedCount.incrementAndGet();
+					break;
+				case BLOCK:
+					notFull.await();
+					if(stateHolder.getState()==State.STOPPED){
+						rejectedCount.incrementAndGet();
+						return false;
+					}
+					break;
+				default:
+					rejectedCount.incrementAndGet();
+					return false;
+				}
+			}
+
+			int tail = (head + count) % capacity;
+			messages[tail] = message;
+			addresses[tail] = address;
+			networkInterfaces[tail] = ni;
+			count++;
+
+			if(count>maxDepth){
+				maxDepth = count;
+			}
+
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+
+		return true;
+	}
+
+	// must be called with the lock
+	private void removeFirst() {
+		messages[head] = null;
+		addresses[head] = null;
+		networkInterfaces[head] = null;
+		paced[head] = false;
+		head = (head + 1) % capacity;
+		count--;
+	}
+
+	// removes the message at this position from the head, the next messages are moved back. must be called with the lock
+	private void removeAt(int index) {
+		for (int i = index; i < count - 1; i++) {
+			int slot = (head + i) % capacity;
+			int next = (slot + 1) % capacity;
+			messages[slot] = messages[next];
+			addresses[slot] = addresses[next];
+			networkInterfaces[slot] = networkInterfaces[next];
+			paced[slot] = paced[next];
+		}
+
+		int last = (head + count - 1) % capacity;
+		messages[last] = null;
+		addresses[last] = null;
+		networkInterfaces[last] = null;
+		paced[last] = false;
+		count--;
+	}
+
+	/**
+	 * Returns the position from the head of the next message that can be sent now : the first message of a
+	 * NetworkInterface that its rate limit allows to send.  The first messages of the interfaces that are paced
+	 * are marked paced.  Must be called with the lock.
+	 *
+	 * @param now current time in ns
+	 * @param delays the shortest delay in ns before an interface can send is returned in delays[0]
+	 * @return the position, or -1 if all the interfaces are paced
+	 */
+	private int nextReady(long now, long[] delays) {
+		int scannedCount = 0;
+		delays[0] = Long.MAX_VALUE;
+
+		try {
+			for (int i = 0; i < count; i++) {
+				int slot = (head + i) % capacity;
+				SSDPRateLimiter rateLimiter = getRateLimiter(networkInterfaces[slot]);
+
+				if(contains(scanned, scannedCount, rateLimiter)){
+					// the messages of an interface are sent in order
+					continue;
+				}
+
+				long delay = rateLimiter.getDelay(getLength(messages[slot]), now);
+				if(delay==0){
+					return i;
+				}
+
+				paced[slot] = true;
+				delays[0] = Math.min(delays[0], delay);
+				scanned[scannedCount++] = rateLimiter;
+			}
+
+			return -1;
+		} finally {
+			for (int i = 0; i < scannedCount; i++) {
+				scanned[i] = null;
+			}
+		}
+	}
+
+	private static boolean contains(SSDPRateLimiter[] array, int length, SSDPRateLimiter rateLimiter) {
+		for (int i = 0; i < length; i++) {
+			if(array[i]==rateLimiter){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int getLength(Object message) {
+		return message instanceof byte[] ? ((byte[]) message).length : ((String) message).length();
+	}
+
+	/**
+	 * Sets the rate limit applied to each NetworkInterface.  A limit of 0 means unlimited.
+	 *
+	 * @param packetsPerSecond maximum packets per second
+	 * @param bytesPerSecond maximum bytes per second
+	 * @param burstPackets packets sent without delay after an idle period
+	 * @param burstBytes bytes sent without delay after an idle period
+	 * @see SSDPRateLimiter
+	 */
+	public void setRateLimit(int packetsPerSecond, int bytesPerSecond, int burstPackets, int burstBytes) {
+		// validates the arguments
+		new SSDPRateLimiter(packetsPerSecond, bytesPerSecond, burstPackets, burstBytes);
+
+		synchronized (rateLimiterMap) {
+			this.packetsPerSecond = packetsPerSecond;
+			this.bytesPerSecond = bytesPerSecond;
+			this.burstPackets = burstPackets;
+			this.burstBytes = burstBytes;
+
+			rateLimiterMap.clear();
+		}
+	}
+
+	/**
+	 * Returns the SSDPRateLimiter of a NetworkInterface.  It's created on the first call.
+	 *
+	 * @param ni NetworkInterface, or null for the default interface
+	 * @return SSDPRateLimiter
+	 */
+	public SSDPRateLimiter getRateLimiter(NetworkInterface ni) {
+		synchronized (rateLimiterMap) {
+			SSDPRateLimiter rateLimiter = rateLimiterMap.get(ni);
+
+			if(rateLimiter==null){
+				rateLimiter = new SSDPRateLimiter(packetsPerSecond, bytesPerSecond, burstPackets, burstBytes);
+				rateLimiterMap.put(ni, rateLimiter);
+			}
+
+			return rateLimiter;
+		}
+	}
+
+	/**
+	 * Sends a message.  Called by the writer Thread.
+	 *
+	 * @param message message encoded
+	 * @param address destination address
+	 * @param ni NetworkInterface used to send the message, or null for the default interface
+	 * @throws Exception
+	 */
+	protected void send(String message, SocketAddress address, NetworkInterface ni) throws Exception {
+		if(ni!=null){
+			SSDPNetworkFactory.getInstance().sendMulticastMessage(message, address, ni);
+		} else {
+			SSDPNetworkFactory.getInstance().sendMulticastMessage(message, address);
+		}
+	}
+
+	/**
+	 * Sends a message already encoded.  Called by the writer Thread.  If the network doesn't implement
+	 * {@link ISSDPRawNetwork}, the message is decoded and sent with {@link #send(String, SocketAddress, NetworkInterface)}.
+	 *
+	 * @param data message encoded
+	 * @param address destination address
+	 * @param ni NetworkInterface used to send the message, or null for the default interface
+	 * @throws Exception
+	 */
+	protected void sendEncoded(byte[] data, SocketAddress address, NetworkInterface ni) throws Exception {
+		ISSDPNetwork network = SSDPNetworkFactory.getInstance();
+
+		if(!(network instanceof ISSDPRawNetwork)){
+			send(new String(data, SSDPMessageEncoder.US_ASCII), address, ni);
+		} else if(ni!=null){
+			((ISSDPRawNetwork) network).sendMulticastMessage(data, address, ni);
+		} else {
+			((ISSDPRawNetwork) network).sendMulticastMessage(data, address);
+		}
+	}
+
+	/**
+	 * Returns the current state of this queue
+	 * @return the current state
+	 */
+	public State getState() {
+		return stateHolder.getState();
+	}
+
+	/**
+	 * Sets a new state for this queue
+	 * @param state new State
+	 */
+	public void setState(State state) {
+		this.stateHolder.setState(state);
+	}
+
+	/**
+	 * Starts the writer Thread if it's not already started
+	 */
+	public synchronized void start() {
+		if(thread!=null && thread.isAlive()){
+			return;
+		}
+
+		setState(State.STARTED);
+
+		thread = new Thread(this, "SSDPSendQueue");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the writer Thread.  The messages not sent yet are dropped.
+	 */
+	public synchronized void stop() {
+		lock.lock();
+		try {
+			setState(State.STOPPED);
+
+			while(count>0){
+				removeFirst();
+				droppedCount.incrementAndGet();
+			}
+
+			// wake up the callers blocked
+			notFull.signalAll();
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		if(thread!=null){
+			thread.interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		Object message;
+		SocketAddress address;
+		NetworkInterface ni;
+		long[] delays = new long[1];
+
+		while (!Thread.interrupted() && stateHolder.getState() != State.STOPPED) {
+			lock.lock();
+			try {
+				if(count==0){
+					notEmpty.await(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+					continue;
+				}
+
+				long now = System.nanoTime();
+				int index = nextReady(now, delays);
+
+				if(index<0){
+					// all the interfaces are paced, a message for another interface wakes up the writer
+					notEmpty.awaitNanos(delays[0]);
+					pacingDelay.addAndGet(System.nanoTime() - now);
+					continue;
+				}
+
+				int slot = (head + index) % capacity;
+				message = messages[slot];
+				address = addresses[slot];
+				ni = networkInterfaces[slot];
+				if(paced[slot]){
+					pacedCount.incrementAndGet();
+				}
+				removeAt(index);
+
+				notFull.signal();
+			} catch (InterruptedException e) {
+				break;
+			} finally {
+				lock.unlock();
+			}
+
+			try {
+				long delay = getRateLimiter(ni).reserve(getLength(message));
+
+				if(delay>0){
+					// the rate limit was changed since the message was selected
+					TimeUnit.NANOSECONDS.sleep(delay);
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+
+			try {
+				if(message instanceof byte[]){
+					sendEncoded((byte[]) message, address, ni);
+				} else {
+					send((String) message, address, ni);
+				}
+				sentCount.incrementAndGet();
+			} catch (Exception e) {
+				failedCount.incrementAndGet();
+				logger.log(Level.WARNING, "Exception while sending message", e);
+			}
+		}
+
+		setState(State.STOPPED);
+	}
+
+	/**
+	 * Returns the maximum number of messages queued
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the policy used when the queue is full
+	 * @return OverflowPolicy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Returns the number of messages waiting to be sent
+	 * @return depth
+	 */
+	public int getDepth() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the highest number of messages that were waiting at the same time
+	 * @return max depth
+	 */
+	public int getMaxDepth() {
+		lock.lock();
+		try {
+			return maxDepth;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of calls to {@link #offer(String, SocketAddress, NetworkInterface)}
+	 * @return offer count
+	 */
+	public long getOfferedCount() {
+		return offeredCount.get();
+	}
+
+	/**
+	 * Returns the number of messages sent
+	 * @return sent count
+	 */
+	public long getSentCount() {
+		return sentCount.get();
+	}
+
+	/**
+	 * Returns the number of messages dropped by the policy DROP_OLDEST or by {@link #stop()}
+	 * @return drop count
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns the number of messages rejected by the policy REJECT or because the queue is stopped
+	 * @return reject count
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Returns the number of messages that couldn't be sent because of an Exception
+	 * @return failure count
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * Returns the number of messages delayed by the rate limit of their NetworkInterface
+	 * @return paced count
+	 */
+	public long getPacedCount() {
+		return pacedCount.get();
+	}
+
+	/**
+	 * Returns the total time the writer waited because all the NetworkInterfaces with messages were paced
+	 * @return delay in ms
+	 */
+	public long getPacingDelay() {
+		return TimeUnit.NANOSECONDS.toMillis(pacingDelay.get());
+	}
+
+	/**
+	 * @return Returns the counters of this queue as a String
+	 */
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+
+		sb.append("capacity=").append(capacity);
+		sb.append(" policy=").append(overflowPolicy);
+		sb.append(" depth=").append(getDepth());
+		sb.append(" maxDepth=").append(getMaxDepth());
+		sb.append(" offered=").append(getOfferedCount());
+		sb.append(" sent=").append(getSentCount());
+		sb.append(" dropped=").append(getDroppedCount());
+		sb.append(" rejected=").append(getRejectedCount());
+		sb.append(" failed=").append(getFailedCount());
+		sb.append(" paced=").append(getPacedCount());
+		sb.append(" pacingDelay=").append(getPacingDelay()).append("ms");
+
+		return sb.toString();
+	}
+
+}
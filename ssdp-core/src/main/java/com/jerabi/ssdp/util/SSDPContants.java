@@ -73,6 +73,22 @@ public class SSDPContants {
      * the control point when it processes responses
 	 */
 	public static final String MX = "MX:";
+	/**
+	 * UDA 1.1.  Field value contains the boot instance of the device, increased each time the device rejoins the network
+	 */
+	public static final String BOOTID = "BOOTID.UPNP.ORG:";
+	/**
+	 * UDA 1.1.  Field value contains the new boot instance of the device, sent with ssdp:update
+	 */
+	public static final String NEXTBOOTID = "NEXTBOOTID.UPNP.ORG:";
+	/**
+	 * UDA 1.1.  Field value contains the configuration number of the device description
+	 */
+	public static final String CONFIGID = "CONFIGID.UPNP.ORG:";
+	/**
+	 * UDA 1.1.  Field value contains the port on which the device listens to unicast M-SEARCH, when it's not 1900
+	 */
+	public static final String SEARCHPORT = "SEARCHPORT.UPNP.ORG:";
 	
 	/**
 	 * Default SSDP port
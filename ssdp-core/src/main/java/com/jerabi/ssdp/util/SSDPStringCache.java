@@ -0,0 +1,250 @@
+package com.jerabi.ssdp.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+
+/**
+ * Cache of the header values received, to share the same String between the messages.
+ *
+ * The same devices send the same SERVER, LOCATION, NT and USN thousands of times.  When the parser finds a value
+ * in the cache, the String already created is returned : no String is created, and the messages kept by the
+ * handlers share the same instance.
+ *
+ * The values are found by their bytes, before they are decoded.  The cache is a fixed table : when two values
+ * use the same slot, the last one replaces the other, so the memory used is bounded.  The cache can be used by many
+ * threads without lock, the entries are immutable.
+ *
+ * The values longer than the maximum length are not cached.
+ *
+ * @author Sebastien Dionne
+ * @example.
+ * <pre>
+ * // a bigger cache for a control point that sees a lot of devices
+ * SSDPMessageHelper.setStringCache(new SSDPStringCache(4096, 256));
+ *
+ * // to disable the cache
+ * SSDPMessageHelper.setStringCache(null);
+ * </pre>
+ * @see com.jerabi.ssdp.message.helper.SSDPMessageHelper#setStringCache(SSDPStringCache)
+ */
+public class SSDPStringCache {
+
+	/**
+	 * Default number of values cached
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Default maximum length of the values cached
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 256;
+
+	private final AtomicReferenceArray<Entry> entries;
+	private final int mask;
+	private final int maxLength;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	// value with its bytes, never modified
+	private static final class Entry {
+		final int hash;
+		final byte[] bytes;
+		final String value;
+
+		Entry(int hash, byte[] bytes, String value) {
+			this.hash = hash;
+			this.bytes = bytes;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Constructor with default values
+	 */
+	public SSDPStringCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity number of values cached, rounded to the next power of 2
+	 * @param maxLength maximum length in bytes of the values cached
+	 */
+	public SSDPStringCache(int capacity, int maxLength) {
+		if(capacity<1 || capacity>(1 << 20)){
+			throw new IllegalArgumentException("Invalid capacity : " + capacity);
+		}
+		if(maxLength<1){
+			throw new IllegalArgumentException("Invalid max length : " + maxLength);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if(size<capacity){
+			size <<= 1;
+		}
+
+		this.entries = new AtomicReferenceArray<Entry>(size);
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Returns the value of the bytes, decoded in US-ASCII.  If the same bytes are in the cache,
+	 * the String cached is returned without decoding the bytes.
+	 *
+	 * @param data array that contains the value
+	 * @param offset index of the first byte
+	 * @param length length of the value
+	 * @return the value
+	 */
+	public String intern(byte[] data, int offset, int length) {
+		if(length==0){
+			return "";
+		}
+		if(length>maxLength){
+			return new String(data, offset, length, SSDPMessageEncoder.US_ASCII);
+		}
+
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + data[i];
+		}
+
+		int slot = (hash ^ (hash >>> 16)) & mask;
+
+		Entry entry = entries.get(slot);
+		if(entry!=null && entry.hash==hash && equals(entry.bytes, data, offset, length)){
+			hitCount.incrementAndGet();
+			return entry.value;
+		}
+
+		missCount.incrementAndGet();
+
+		byte[] bytes = new byte[length];
+		System.arraycopy(data, offset, bytes, 0, length);
+		String value = new String(bytes, SSDPMessageEncoder.US_ASCII);
+
+		entries.set(slot, new Entry(hash, bytes, value));
+
+		return value;
+	}
+
+	/**
+	 * Returns the same instance for the values already cached.  Only the ASCII values are cached.
+	 *
+	 * @param value value already decoded
+	 * @return the value cached or the value
+	 */
+	public String intern(String value) {
+		if(value==null || value.length()>maxLength){
+			return value;
+		}
+
+		int length = value.length();
+
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if(c>=0x80){
+				return value;
+			}
+			hash = 31 * hash + c;
+		}
+
+		int slot = (hash ^ (hash >>> 16)) & mask;
+
+		Entry entry = entries.get(slot);
+		if(entry!=null && entry.hash==hash && equals(entry.bytes, value)){
+			hitCount.incrementAndGet();
+			return entry.value;
+		}
+
+		missCount.incrementAndGet();
+
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) value.charAt(i);
+		}
+
+		entries.set(slot, new Entry(hash, bytes, value));
+
+		return value;
+	}
+
+	private static boolean equals(byte[] bytes, byte[] data, int offset, int length) {
+		if(bytes.length!=length){
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if(bytes[i]!=data[offset + i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean equals(byte[] bytes, String value) {
+		if(bytes.length!=value.length()){
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if(bytes[i]!=value.charAt(i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes all the values
+	 */
+	public void clear() {
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, null);
+		}
+	}
+
+	/**
+	 * Returns the number of values that can be cached
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Returns the maximum length of the values cached
+	 * @return max length
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Returns the number of values found in the cache
+	 * @return hits
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of values not found in the cache
+	 * @return misses
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SSDPStringCache[capacity=" + getCapacity() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+	}
+
+}
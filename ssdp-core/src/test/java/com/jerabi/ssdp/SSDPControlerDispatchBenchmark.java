@@ -0,0 +1,126 @@
+package com.jerabi.ssdp;
+
+import java.util.List;
+
+import com.jerabi.ssdp.handler.ISSDPMessageHandler;
+import com.jerabi.ssdp.message.AbstractSSDPNotifyMessage;
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.ByeByeMessage;
+import com.jerabi.ssdp.message.DiscoverMessage;
+import com.jerabi.ssdp.message.DiscoverResponseMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.UpdateMessage;
+import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
+import com.jerabi.ssdp.message.helper.SSDPMessageHelperTest;
+import com.jerabi.ssdp.util.SSDPContants;
+
+/**
+ * Compares the dispatch of {@link SSDPControler#processSSDPMessage(String, int, ISSDPMessage)} with the dispatch
+ * on the class and the NTS of the message, with 1 to 50 handlers.  Not run by the build :
+ * 
+ * <pre>
+ * java -cp target/classes:target/test-classes com.jerabi.ssdp.SSDPControlerDispatchBenchmark
+ * </pre>
+ */
+public class SSDPControlerDispatchBenchmark {
+
+	private static final int ITERATIONS = 2000000;
+
+	private static final int[] HANDLER_COUNTS = {1, 5, 10, 25, 50};
+
+	public static void main(String[] args) throws Exception {
+		ISSDPMessage[] messages = {
+			SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createAliveMessage()),
+			SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createUpdateMessage()),
+			SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createByeByeMessage()),
+			SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createDiscoverMessage()),
+			SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createDiscoverResponseMessage())
+		};
+
+		// warm up, then measure
+		for (int round = 0; round < 3; round++) {
+			for (int handlerCount : HANDLER_COUNTS) {
+				SSDPControler controler = new SSDPControler();
+				for (int i = 0; i < handlerCount; i++) {
+					controler.addMessageHandler(new CountingHandler());
+				}
+
+				long start = System.nanoTime();
+				for (int n = 0; n < ITERATIONS; n++) {
+					processWithInstanceOf(controler.getMessageHandlerList(), messages[n % messages.length]);
+				}
+				report(round, "instanceof", handlerCount, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				for (int n = 0; n < ITERATIONS; n++) {
+					controler.processSSDPMessage(null, -1, messages[n % messages.length]);
+				}
+				report(round, "kind table", handlerCount, System.nanoTime() - start);
+
+				// keeps the result alive
+				for (ISSDPMessageHandler handler : controler.getMessageHandlerList()) {
+					if(((CountingHandler) handler).calls==42){
+						System.out.println();
+					}
+				}
+			}
+		}
+	}
+
+	// the dispatch before SSDPMessageKind
+	private static void processWithInstanceOf(List<ISSDPMessageHandler> messageHandlerList, ISSDPMessage message) throws Exception {
+		if (message instanceof DiscoverMessage) {
+			for (ISSDPMessageHandler listener : messageHandlerList) {
+				listener.processSSDPDiscoverMessage(null, -1, (DiscoverMessage) message);
+			}
+		} else if (message instanceof AbstractSSDPNotifyMessage) {
+			AbstractSSDPNotifyMessage notifyMessage = (AbstractSSDPNotifyMessage) message;
+			if (SSDPContants.NTS_ALIVE.equals(notifyMessage.getNts())) {
+				for (ISSDPMessageHandler listener : messageHandlerList) {
+					listener.processSSDPAliveMessage((AliveMessage) notifyMessage);
+				}
+			} else if (SSDPContants.NTS_UPDATE.equals(notifyMessage.getNts())) {
+				for (ISSDPMessageHandler listener : messageHandlerList) {
+					listener.processSSDPUpdateMessage((UpdateMessage) notifyMessage);
+				}
+			} else if (SSDPContants.NTS_BYEBYE.equals(notifyMessage.getNts())) {
+				for (ISSDPMessageHandler listener : messageHandlerList) {
+					listener.processSSDPByeByeMessage((ByeByeMessage) notifyMessage);
+				}
+			}
+		} else if (message instanceof DiscoverResponseMessage) {
+			for (ISSDPMessageHandler listener : messageHandlerList) {
+				listener.processSSDPDiscoverResponseMessage((DiscoverResponseMessage) message);
+			}
+		}
+	}
+
+	private static void report(int round, String name, int handlerCount, long nanos) {
+		System.out.println("round " + round + " " + name + " " + handlerCount + " handlers : " + (nanos / 1000000) + " ms, " + (nanos / ITERATIONS) + " ns/message");
+	}
+
+	private static class CountingHandler implements ISSDPMessageHandler {
+		long calls = 0;
+
+		public void processSSDPAliveMessage(AliveMessage ssdpMessage) throws Exception {
+			calls++;
+		}
+
+		public void processSSDPUpdateMessage(UpdateMessage ssdpMessage) throws Exception {
+			calls++;
+		}
+
+		public void processSSDPByeByeMessage(ByeByeMessage ssdpMessage) throws Exception {
+			calls++;
+		}
+
+		public void processSSDPDiscoverMessage(String remoteAddr, int remotePort, DiscoverMessage ssdpMessage) throws Exception {
+			calls++;
+		}
+
+		public void processSSDPDiscoverResponseMessage(DiscoverResponseMessage ssdpMessage) throws Exception {
+			calls++;
+		}
+	}
+
+}
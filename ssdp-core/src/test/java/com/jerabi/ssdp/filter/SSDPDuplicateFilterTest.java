@@ -0,0 +1,112 @@
+package com.jerabi.ssdp.filter;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SSDPDuplicateFilterTest {
+
+	private static final long MS = 1000000L;
+	
+	private static final String ALIVE = "NOTIFY * HTTP/1.1\r\n" +
+			"HOST: 239.255.255.250:1900\r\n" +
+			"NT: upnp:rootdevice\r\n" +
+			"NTS: ssdp:alive\r\n" +
+			"USN: uuid:1::upnp:rootdevice\r\n" +
+			"\r\n";
+	
+	private static SSDPPacket createPacket(String remoteAddr, String message) {
+		SSDPPacket packet = new SSDPPacket();
+		byte[] bytes = message.getBytes();
+		packet.reset(remoteAddr, bytes, 0, bytes.length);
+		return packet;
+	}
+	
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new SSDPDuplicateFilter(0, 16);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		
+		try {
+			new SSDPDuplicateFilter(100, 0);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		
+		assertEquals(128, new SSDPDuplicateFilter(100, 100).getCapacity());
+	}
+	
+	@Test
+	public void testHash() {
+		SSDPPacket packet = createPacket("192.168.1.10", ALIVE);
+		
+		assertEquals(packet.getHash(), createPacket("192.168.1.10", ALIVE).getHash());
+		assertEquals(packet.getHash(), packet.getHash());
+		
+		// the same message decoded has the same hash
+		SSDPPacket decoded = new SSDPPacket();
+		decoded.reset("192.168.1.10", ALIVE);
+		assertEquals(packet.getHash(), decoded.getHash());
+		
+		assertFalse(packet.getHash()==createPacket("192.168.1.11", ALIVE).getHash());
+		assertFalse(packet.getHash()==createPacket("192.168.1.10", ALIVE.replace("alive", "byebye")).getHash());
+		
+		packet.reset("192.168.1.10", "");
+		assertEquals(0, packet.getLength());
+		assertFalse(packet.getHash()==createPacket("192.168.1.10", ALIVE).getHash());
+	}
+	
+	@Test
+	public void testWindow() {
+		SSDPDuplicateFilter filter = new SSDPDuplicateFilter(500, 16);
+		long now = 1000 * MS;
+		
+		assertFalse(filter.isDuplicate(1, 10, now));
+		assertTrue(filter.isDuplicate(1, 10, now + 100 * MS));
+		assertTrue(filter.isDuplicate(1, 10, now + 499 * MS));
+		
+		// the window isn't extended by the copies
+		assertFalse(filter.isDuplicate(1, 10, now + 500 * MS));
+		
+		// same hash, different length
+		assertFalse(filter.isDuplicate(1, 11, now + 600 * MS));
+		
+		assertEquals(2, filter.getSuppressedCount());
+		assertEquals(5, filter.getReceivedCount());
+		
+		filter.clear();
+		assertFalse(filter.isDuplicate(1, 11, now + 700 * MS));
+	}
+	
+	@Test
+	public void testSlotReplaced() {
+		SSDPDuplicateFilter filter = new SSDPDuplicateFilter(500, 1);
+		long now = 1000 * MS;
+		
+		assertFalse(filter.isDuplicate(1, 10, now));
+		assertFalse(filter.isDuplicate(2, 10, now));
+		
+		// the first datagram was forgotten
+		assertFalse(filter.isDuplicate(1, 10, now));
+	}
+	
+	@Test
+	public void testChain() {
+		SSDPDuplicateFilter filter = new SSDPDuplicateFilter(5000, 16);
+		
+		SSDPFilterChain chain = new SSDPFilterChain();
+		chain.addRule("duplicates", filter, SSDPFilterChain.Action.DROP);
+		
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i==0, chain.accept(createPacket("192.168.1.10", ALIVE)));
+		}
+		assertTrue(chain.accept(createPacket("192.168.1.11", ALIVE)));
+		
+		assertEquals(2, filter.getSuppressedCount());
+		assertEquals(2, chain.getRule("duplicates").getHitCount());
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.jerabi.ssdp.filter;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class SSDPFilterChainTest {
+
+	private static final String ALIVE = "NOTIFY * HTTP/1.1\r\n" +
+			"HOST: 239.255.255.250:1900\r\n" +
+			"nt:  urn:schemas-upnp-org:device:MediaServer:1 \r\n" +
+			"NTS: ssdp:alive\r\n" +
+			"USN: uuid:1::urn:schemas-upnp-org:device:MediaServer:1\r\n" +
+			"\r\n";
+	
+	private static final String SEARCH = "M-SEARCH * HTTP/1.1\r\n" +
+			"HOST: 239.255.255.250:1900\r\n" +
+			"ST: urn:dial-multiscreen-org:service:dial:1\r\n" +
+			"MAN: \"ssdp:discover\"\r\n" +
+			"\r\n";
+	
+	private static SSDPPacket createPacket(String remoteAddr, String message) {
+		SSDPPacket packet = new SSDPPacket();
+		byte[] bytes = message.getBytes();
+		packet.reset(remoteAddr, bytes, 0, bytes.length);
+		return packet;
+	}
+	
+	@Test
+	public void testPacket() {
+		SSDPPacket packet = createPacket("192.168.1.10", ALIVE);
+		
+		assertEquals("192.168.1.10", packet.getRemoteAddr());
+		assertTrue(packet.contains(SSDPPacket.START_LINE));
+		assertTrue(packet.contains(SSDPPacket.NT));
+		assertTrue(packet.contains(SSDPPacket.NTS));
+		assertTrue(packet.contains(SSDPPacket.USN));
+		assertFalse(packet.contains(SSDPPacket.ST));
+		
+		assertTrue(new SSDPHeaderFilter(SSDPPacket.START_LINE, "notify").matches(packet));
+		assertTrue(new SSDPHeaderFilter(SSDPPacket.NT, "urn:schemas-upnp-org:device:MediaServer:1").matches(packet));
+		assertFalse(new SSDPHeaderFilter(SSDPPacket.NT, "urn:schemas-upnp-org:device:MediaServer:1 ").matches(packet));
+		assertTrue(new SSDPHeaderFilter(SSDPPacket.NTS, "SSDP:ALIVE").matches(packet));
+		assertFalse(new SSDPHeaderFilter(SSDPPacket.ST, "").matches(packet));
+		
+		// the same packet is reused
+		packet.reset("10.0.0.1", SEARCH);
+		
+		assertTrue(new SSDPHeaderFilter(SSDPPacket.START_LINE, "M-SEARCH").matches(packet));
+		assertTrue(new SSDPHeaderFilter(SSDPPacket.ST, "urn:dial-multiscreen-org:").matches(packet));
+		assertFalse(packet.contains(SSDPPacket.NT));
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(100);
+		direct.put(SEARCH.getBytes(), 0, 70);
+		direct.flip();
+		packet.reset("10.0.0.1", direct);
+		
+		assertTrue(new SSDPHeaderFilter(SSDPPacket.ST, "urn:dial").matches(packet));
+	}
+	
+	@Test
+	public void testSourceFilter() {
+		SSDPPacket packet = createPacket("192.168.1.10", ALIVE);
+		
+		assertTrue(new SSDPSourceFilter("192.168.1.").matches(packet));
+		assertFalse(new SSDPSourceFilter("192.168.1.1", true).matches(packet));
+		assertTrue(new SSDPSourceFilter("192.168.1.10", true).matches(packet));
+		
+		packet.reset(null, ALIVE);
+		assertFalse(new SSDPSourceFilter("").matches(packet));
+		
+		// the prefix matches whole numbers only
+		assertFalse(new SSDPSourceFilter("192.168.1.").matches(createPacket("192.168.10.1", ALIVE)));
+		assertTrue(new SSDPSourceFilter("").matches(createPacket("192.168.10.1", ALIVE)));
+		assertTrue(new SSDPSourceFilter("fe80:").matches(createPacket("fe80:0:0:0:1:2:3:4", ALIVE)));
+		assertFalse(new SSDPSourceFilter("fe80:").matches(createPacket("fe801:0:0:0:1:2:3:4", ALIVE)));
+		
+		try {
+			new SSDPSourceFilter("192.168.1.1");
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	@Test
+	public void testInvalidFilter() {
+		try {
+			new SSDPHeaderFilter(12, "x");
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		
+		try {
+			new SSDPHeaderFilter(SSDPPacket.NT, "é");
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	@Test
+	public void testChain() {
+		SSDPFilterChain chain = new SSDPFilterChain();
+		
+		// no rule : accepted
+		assertTrue(chain.accept(createPacket("192.168.1.10", ALIVE)));
+		
+		chain.addRule("local", new SSDPSourceFilter("192.168.1.10", true), SSDPFilterChain.Action.ACCEPT);
+		chain.addRule("search", new SSDPHeaderFilter(SSDPPacket.START_LINE, "M-SEARCH"), SSDPFilterChain.Action.DROP);
+		chain.setDefaultAction(SSDPFilterChain.Action.DROP);
+		
+		// the first rule that matches is used
+		assertTrue(chain.accept(createPacket("192.168.1.10", SEARCH)));
+		assertFalse(chain.accept(createPacket("192.168.1.11", SEARCH)));
+		assertFalse(chain.accept(createPacket("192.168.1.11", ALIVE)));
+		
+		assertEquals(1, chain.getRule("local").getHitCount());
+		assertEquals(1, chain.getRule("search").getHitCount());
+		assertEquals(2, chain.getAcceptedCount());
+		assertEquals(2, chain.getDroppedCount());
+		assertEquals(2, chain.getRules().size());
+		
+		assertTrue(chain.removeRule("local"));
+		assertFalse(chain.removeRule("local"));
+		assertNull(chain.getRule("local"));
+		
+		assertFalse(chain.accept(createPacket("192.168.1.10", SEARCH)));
+	}
+
+}
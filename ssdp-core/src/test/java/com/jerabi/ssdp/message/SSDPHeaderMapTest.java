@@ -0,0 +1,138 @@
+package com.jerabi.ssdp.message;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
+import com.jerabi.ssdp.util.SSDPContants;
+
+public class SSDPHeaderMapTest {
+
+	private static final String ALIVE = "NOTIFY * HTTP/1.1\r\n" +
+		"HOST: 239.255.255.250:1900\r\n" +
+		"CACHE-CONTROL: max-age=1800\r\n" +
+		"LOCATION: http://127.0.0.1:9000/desc.xml\r\n" +
+		"NT: upnp:rootdevice\r\n" +
+		"NTS: ssdp:alive\r\n" +
+		"SERVER: Linux/2.6 UPnP/1.1 jerabi/1.0\r\n" +
+		"USN: uuid:1234::upnp:rootdevice\r\n" +
+		"BOOTID.UPNP.ORG: 12\r\n" +
+		"configid.upnp.org:  3 \r\n" +
+		"X-User-Agent: redsonic\r\n" +
+		"x-user-agent: jerabi\r\n\r\n";
+
+	private void assertHeaders(SSDPHeaderMap headers) {
+		assertEquals(11, headers.size());
+
+		// the case is ignored, with or without the colon
+		assertEquals("239.255.255.250:1900", headers.get("host"));
+		assertEquals("239.255.255.250:1900", headers.get(SSDPContants.HOST));
+		assertEquals("uuid:1234::upnp:rootdevice", headers.get("Usn"));
+		assertTrue(headers.contains("nts"));
+		assertFalse(headers.contains("MX"));
+		assertNull(headers.get("MX"));
+		assertNull(headers.get(null));
+
+		// the last value is used
+		assertEquals("jerabi", headers.get("X-USER-AGENT"));
+
+		assertEquals("HOST", headers.getName(0));
+		assertEquals("239.255.255.250:1900", headers.getValue(0));
+		assertEquals("configid.upnp.org", headers.getName(8));
+
+		assertEquals(12, headers.getBootId());
+		assertEquals(3, headers.getConfigId());
+		assertEquals(-1, headers.getNextBootId());
+		assertEquals(-1, headers.getSearchPort());
+		assertEquals(1900, headers.getInt("NOTHING", 1900));
+
+		// not a number
+		assertEquals(-2, headers.getInt("NTS", -2));
+	}
+
+	@Test
+	public void testParseString() {
+		assertHeaders(SSDPHeaderMap.parse(ALIVE));
+	}
+
+	@Test
+	public void testParseBytes() {
+		byte[] message = ALIVE.getBytes();
+		byte[] bytes = new byte[message.length + 20];
+		System.arraycopy(message, 0, bytes, 10, message.length);
+
+		assertHeaders(SSDPHeaderMap.parse(bytes, 10, message.length));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertSame(SSDPHeaderMap.EMPTY, SSDPHeaderMap.parse(null));
+		assertSame(SSDPHeaderMap.EMPTY, SSDPHeaderMap.parse(null, 0, 0));
+
+		assertEquals(0, SSDPHeaderMap.EMPTY.size());
+		assertNull(SSDPHeaderMap.EMPTY.get(SSDPContants.USN));
+		assertEquals(-1, SSDPHeaderMap.EMPTY.getBootId());
+		assertEquals("", SSDPHeaderMap.EMPTY.toString());
+
+		// only the first line
+		assertEquals(0, SSDPHeaderMap.parse("NOTIFY * HTTP/1.1\r\n").size());
+
+		// the messages created are not parsed
+		assertSame(SSDPHeaderMap.EMPTY, new AliveMessage().getHeaders());
+	}
+
+	@Test
+	public void testManyHeaders() {
+		StringBuffer sb = new StringBuffer("HTTP/1.1 200 OK\r\n");
+		for (int i = 0; i < 100; i++) {
+			sb.append("X-Header-").append(i).append(": ").append(i).append("\r\n");
+		}
+
+		SSDPHeaderMap headers = SSDPHeaderMap.parse(sb.toString());
+
+		assertEquals(100, headers.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, headers.getInt("x-header-" + i, -1));
+		}
+	}
+
+	@Test
+	public void testMessageHeaders() {
+		AliveMessage alive = (AliveMessage) SSDPMessageHelper.getSSDPMessage(ALIVE);
+		assertEquals(12, alive.getHeaders().getBootId());
+		assertEquals("jerabi", alive.getHeaders().get("x-user-agent"));
+
+		AliveMessage parsed = (AliveMessage) SSDPMessageHelper.parseSSDPMessage(ByteBuffer.wrap(ALIVE.getBytes()));
+		assertEquals(12, parsed.getHeaders().getBootId());
+
+		AliveMessage view = (AliveMessage) SSDPMessageHelper.parseSSDPMessageView(ByteBuffer.wrap(ALIVE.getBytes()));
+		assertEquals(3, view.getHeaders().getConfigId());
+	}
+
+	@Test
+	public void testDecodeAscii() throws Exception {
+		byte[] bytes = "NOTIFY * HTTP/1.1\r\nX-User-Agent: t\u00e9st\r\n".getBytes("UTF-8");
+		
+		// not decoded with the platform charset
+		assertEquals("t\ufffd\ufffdst", SSDPHeaderMap.parse(bytes, 0, bytes.length).get("x-user-agent"));
+	}
+	
+	@Test
+	public void testLazyHeaders() {
+		AliveMessage alive = (AliveMessage) SSDPMessageHelper.getSSDPMessage(ALIVE);
+
+		// not built by the parsing, built once by the first call
+		assertNull(alive.headers);
+		SSDPHeaderMap headers = alive.getHeaders();
+		assertEquals(11, headers.size());
+		assertSame(headers, alive.getHeaders());
+
+		// the headers set are kept
+		alive.setHeaders(SSDPHeaderMap.parse("NOTIFY * HTTP/1.1\r\n"));
+		assertEquals(0, alive.getHeaders().size());
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.jerabi.ssdp.message;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
+import com.jerabi.ssdp.message.helper.SSDPMessageHelperTest;
+import com.jerabi.ssdp.util.SSDPContants;
+
+public class SSDPMessageKindTest {
+
+	@Test
+	public void testOf() {
+		assertEquals(SSDPMessageKind.ALIVE, SSDPMessageKind.of(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createAliveMessage())));
+		assertEquals(SSDPMessageKind.UPDATE, SSDPMessageKind.of(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createUpdateMessage())));
+		assertEquals(SSDPMessageKind.BYEBYE, SSDPMessageKind.of(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createByeByeMessage())));
+		assertEquals(SSDPMessageKind.DISCOVER, SSDPMessageKind.of(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createDiscoverMessage())));
+		assertEquals(SSDPMessageKind.DISCOVER_RESPONSE, SSDPMessageKind.of(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createDiscoverResponseMessage())));
+
+		assertEquals(SSDPMessageKind.ALIVE, new AliveMessage().getKind());
+		assertEquals(SSDPMessageKind.DISCOVER, new DiscoverMessage().getKind());
+
+		assertNull(SSDPMessageKind.of(null));
+		assertNull(SSDPMessageKind.of(new ISSDPMessage() {
+			@Override
+			public String toString() {
+				return "Custom ISSDPMessage";
+			}
+		}));
+	}
+
+	@Test
+	public void testOfNts() {
+		assertEquals(SSDPMessageKind.ALIVE, SSDPMessageKind.ofNts(SSDPContants.NTS_ALIVE));
+		assertEquals(SSDPMessageKind.UPDATE, SSDPMessageKind.ofNts(SSDPContants.NTS_UPDATE));
+		assertEquals(SSDPMessageKind.BYEBYE, SSDPMessageKind.ofNts(SSDPContants.NTS_BYEBYE));
+		assertNull(SSDPMessageKind.ofNts(""));
+		assertNull(SSDPMessageKind.ofNts(null));
+
+		// notification that is not created by the parser, the kind is found with the NTS
+		AbstractSSDPNotifyMessage message = new AbstractSSDPNotifyMessage() {
+			@Override
+			public String toString() {
+				return "";
+			}
+
+			@Override
+			public String getNts() {
+				return SSDPContants.NTS_BYEBYE;
+			}
+		};
+		assertEquals(SSDPMessageKind.BYEBYE, SSDPMessageKind.of(message));
+	}
+
+}
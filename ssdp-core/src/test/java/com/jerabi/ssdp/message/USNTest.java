@@ -0,0 +1,129 @@
+package com.jerabi.ssdp.message;
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class USNTest {
+
+	private static final String USN_VALUE = "uuid:9dcf6222-fc4b-33eb-bf49-e54643b4f416::urn:schemas-upnp-org:service:ContentDirectory:1";
+
+	@Test
+	public void testValueOf() {
+		USN usn = USN.valueOf(USN_VALUE);
+
+		assertEquals(USN_VALUE, usn.toString());
+		assertEquals("uuid:9dcf6222-fc4b-33eb-bf49-e54643b4f416", usn.getUuid());
+		assertEquals("urn:schemas-upnp-org:service:ContentDirectory:1", usn.getUrn());
+
+		// same instance, parsed once
+		assertSame(usn, USN.valueOf(new String(USN_VALUE)));
+		assertSame(usn, USN.valueOf("9dcf6222-fc4b-33eb-bf49-e54643b4f416", "urn:schemas-upnp-org:service:ContentDirectory:1"));
+		assertSame(usn.toString(), USN.valueOf(new String(USN_VALUE)).toString());
+
+		try {
+			USN.valueOf(null);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testStaleEntry() throws Exception {
+		String value = "uuid:8dcf6222-fc4b-33eb-bf49-e54643b4f416::upnp:rootdevice";
+
+		// the String of a USN collected is still used : its entry stays in the table
+		USN first = USN.valueOf(new String(value));
+		String kept = first.toString();
+		WeakReference<Object> firstReference = new WeakReference<Object>(first);
+		first = null;
+		waitForGC(firstReference);
+
+		USN usn = USN.valueOf(new String(value));
+		assertNotSame(kept, usn.toString());
+
+		// the entry of the new instance doesn't depend on the old String
+		WeakReference<Object> keptReference = new WeakReference<Object>(kept);
+		kept = null;
+		waitForGC(keptReference);
+
+		assertSame(usn, USN.valueOf(new String(value)));
+	}
+
+	private static void waitForGC(WeakReference<Object> reference) throws InterruptedException {
+		for (int i = 0; i < 50 && reference.get()!=null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+	}
+
+	@Test
+	public void testFormat() {
+		// like USNInfo
+		assertEquals("uuid:abc", USN.valueOf("abc").toString());
+		assertEquals("uuid:abc", USN.valueOf("abc::").toString());
+		assertNull(USN.valueOf("abc::").getUrn());
+		assertEquals("UUID:abc::urn", USN.valueOf("UUID:abc", "urn").toString());
+		assertEquals("uuid:null", USN.valueOf(null, null).toString());
+
+		assertSame(USN.valueOf("abc"), USN.valueOf("uuid:abc::"));
+
+		for (String value : new String[]{"uuid:uuid1::urn1", "abc::", "::", "uuid1"}) {
+			try {
+				USNInfo usnInfo = value.indexOf("::")>=0 ? new USNInfo(value) : new USNInfo(value, null);
+				assertEquals(usnInfo.toString(), USN.valueOf(value).toString());
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testEqualsAndCompare() {
+		USN usn1 = USN.valueOf("uuid:uuid1::urn:urn1");
+		USN usn2 = USN.valueOf("UUID:UUID1::URN:URN1");
+
+		assertFalse(usn1.equals(usn2));
+		assertEquals(0, usn1.compareTo(usn2));
+		assertEquals(usn1.hashCode(), USN.valueOf("uuid1", "urn:urn1").hashCode());
+		assertFalse(usn1.equals(null));
+		assertFalse(usn1.equals(usn1.toString()));
+
+		List<USN> list = new ArrayList<USN>();
+		list.add(USN.valueOf("uuid:uuid3::urn:urn2"));
+		list.add(USN.valueOf("uuid:UUID2::urn:urn2"));
+		list.add(USN.valueOf("uuid:uuid1::urn:urn1"));
+		list.add(USN.valueOf("uuid:uuid2::urn:urn1"));
+		list.add(USN.valueOf("uuid:uuid1::urn:urn0"));
+
+		Collections.sort(list);
+
+		assertEquals("uuid:uuid1::urn:urn0", list.get(0).toString());
+		assertEquals("uuid:uuid1::urn:urn1", list.get(1).toString());
+		assertEquals("uuid:uuid2::urn:urn1", list.get(2).toString());
+		assertEquals("uuid:UUID2::urn:urn2", list.get(3).toString());
+		assertEquals("uuid:uuid3::urn:urn2", list.get(4).toString());
+	}
+
+	@Test
+	public void testUSNInfo() throws Exception {
+		USNInfo usnInfo = new USNInfo(USN_VALUE);
+
+		assertSame(usnInfo.toUSN(), usnInfo.toUSN());
+		assertSame(USN.valueOf(USN_VALUE), usnInfo.toUSN());
+		assertSame(usnInfo.toString(), usnInfo.toString());
+
+		// the USN is formatted again when modified
+		usnInfo.setUrn("upnp:rootdevice");
+		assertEquals("uuid:9dcf6222-fc4b-33eb-bf49-e54643b4f416::upnp:rootdevice", usnInfo.toString());
+		usnInfo.setUuid("uuid:1234");
+		assertEquals("uuid:1234::upnp:rootdevice", usnInfo.toString());
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.jerabi.ssdp.message.helper;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.SSDPEncodedMessage;
+import com.jerabi.ssdp.message.ServiceInfo;
+import com.jerabi.ssdp.message.USNInfo;
+import com.jerabi.ssdp.util.SSDPContants;
+
+public class SSDPEncodedMessageCacheTest {
+
+	private static ServiceInfo createServiceInfo() {
+		return new ServiceInfo(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT, "upnp:rootdevice", "http://127.0.0.1:9000/config",
+				new USNInfo("1acf6222-fc4b-33eb-bf49-e54643b4f416", "upnp:rootdevice"));
+	}
+
+	@Test
+	public void testSameMessage() {
+		SSDPEncodedMessageCache cache = new SSDPEncodedMessageCache();
+		ServiceInfo serviceInfo = createServiceInfo();
+
+		SSDPEncodedMessage alive = cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server");
+		assertSame(alive, cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server"));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+
+		// same content as the message created by the helper
+		AliveMessage expected = SSDPMessageHelper.createSSDPAliveMessage(serviceInfo);
+		expected.setCacheControl("max-age=1800");
+		expected.setServer("Demo Server");
+
+		assertEquals(expected.toString(), alive.toString());
+		assertArrayEquals(expected.toString().getBytes(), alive.getBytes());
+		assertEquals(alive.getBytes().length, alive.getLength());
+
+		assertEquals(SSDPMessageHelper.createSSDPByeByeMessage(serviceInfo).toString(), cache.getByeByeMessage(serviceInfo).toString());
+		assertTrue(cache.getUpdateMessage(serviceInfo, "max-age=1800", "Demo Server").toString().startsWith("NOTIFY"));
+		assertEquals(1, cache.size());
+
+		// another instance with the same values has its own messages
+		assertNotSame(alive, cache.getAliveMessage(createServiceInfo(), "max-age=1800", "Demo Server"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testInvalidate() {
+		SSDPEncodedMessageCache cache = new SSDPEncodedMessageCache();
+		ServiceInfo serviceInfo = createServiceInfo();
+
+		SSDPEncodedMessage alive = cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server");
+
+		// sender settings
+		SSDPEncodedMessage other = cache.getAliveMessage(serviceInfo, "max-age=900", "Demo Server");
+		assertNotSame(alive, other);
+		assertTrue(other.toString().contains("max-age=900"));
+
+		alive = cache.getAliveMessage(serviceInfo, "max-age=900", "Other Server");
+		assertTrue(alive.toString().contains("Other Server"));
+
+		// ServiceInfo
+		serviceInfo.setLocation("http://127.0.0.1:9001/config");
+		other = cache.getAliveMessage(serviceInfo, "max-age=900", "Other Server");
+		assertNotSame(alive, other);
+		assertTrue(other.toString().contains("http://127.0.0.1:9001/config"));
+
+		// USNInfo of the ServiceInfo
+		serviceInfo.getUsn().setUrn("urn:schemas-upnp-org:device:MediaServer:1");
+		alive = cache.getAliveMessage(serviceInfo, "max-age=900", "Other Server");
+		assertNotSame(alive, other);
+		assertTrue(alive.toString().contains("::urn:schemas-upnp-org:device:MediaServer:1"));
+
+		assertSame(alive, cache.getAliveMessage(serviceInfo, "max-age=900", "Other Server"));
+		assertEquals(5, cache.getMissCount());
+	}
+
+	@Test
+	public void testRetainAll() {
+		SSDPEncodedMessageCache cache = new SSDPEncodedMessageCache();
+		ServiceInfo first = createServiceInfo();
+		ServiceInfo second = createServiceInfo();
+
+		SSDPEncodedMessage message = cache.getByeByeMessage(first);
+		cache.getByeByeMessage(second);
+		assertEquals(2, cache.size());
+
+		cache.retainAll(Arrays.asList(first));
+		assertEquals(1, cache.size());
+		assertSame(message, cache.getByeByeMessage(first));
+
+		cache.retainAll(new ArrayList<ServiceInfo>());
+		assertEquals(0, cache.size());
+
+		cache.getByeByeMessage(first);
+		cache.clear();
+		assertEquals(0, cache.size());
+
+		try {
+			cache.getByeByeMessage(null);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testEncodedMessage() {
+		SSDPEncodedMessage message = new SSDPEncodedMessage("NOTIFY * HTTP/1.1\r\n\r\n");
+		assertEquals("NOTIFY * HTTP/1.1\r\n\r\n", message.toString());
+		assertEquals(21, message.getLength());
+
+		try {
+			new SSDPEncodedMessage((String) null);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testPerInterface() throws Exception {
+		SSDPEncodedMessageCache cache = new SSDPEncodedMessageCache();
+		ServiceInfo serviceInfo = createServiceInfo();
+		NetworkInterface ni = NetworkInterface.getByInetAddress(InetAddress.getByName("127.0.0.1"));
+
+		SSDPEncodedMessage common = cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server");
+		assertNull(common.getNetworkInterface());
+
+		SSDPEncodedMessage alive = cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server", ni, "10.0.0.5");
+		assertNotSame(common, alive);
+		assertSame(ni, alive.getNetworkInterface());
+		assertTrue(alive.toString().contains("LOCATION: http://10.0.0.5:9000/config\r\n"));
+		assertEquals(common.toString().replace("127.0.0.1", "10.0.0.5"), alive.toString());
+
+		assertSame(alive, cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server", ni, "10.0.0.5"));
+		assertSame(common, cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server"));
+		assertEquals(1, cache.size());
+
+		// the address of the interface changed
+		SSDPEncodedMessage other = cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server", ni, "10.0.0.6");
+		assertNotSame(alive, other);
+		assertTrue(other.toString().contains("LOCATION: http://10.0.0.6:9000/config\r\n"));
+
+		// no address, LOCATION not modified
+		assertEquals(common.toString(), cache.getAliveMessage(serviceInfo, "max-age=1800", "Demo Server", ni, null).toString());
+
+		assertEquals(4, cache.getMissCount());
+	}
+
+}
@@ -0,0 +1,183 @@
+package com.jerabi.ssdp.message.helper;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.ByeByeMessage;
+import com.jerabi.ssdp.message.DiscoverMessage;
+import com.jerabi.ssdp.message.DiscoverResponseMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.UpdateMessage;
+
+public class SSDPMessageCacheTest {
+
+	@After
+	public void tearDown() {
+		SSDPMessageHelper.setMessageCache(null);
+	}
+
+	@Test
+	public void testInvalidCapacity() {
+		try {
+			new SSDPMessageCache(0);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+
+		assertEquals(256, new SSDPMessageCache(200).getCapacity());
+	}
+
+	@Test
+	public void testSameMessage() {
+		SSDPMessageCache cache = new SSDPMessageCache(16);
+		String message = SSDPMessageHelperTest.createAliveMessage();
+
+		ISSDPMessage first = cache.getSSDPMessage(message);
+		assertTrue(first instanceof AliveMessage);
+		assertEquals(1, cache.getMissCount());
+
+		// a new String with the same content
+		assertSame(first, cache.getSSDPMessage(new String(message)));
+		assertEquals(1, cache.getHitCount());
+
+		// the same message received as bytes
+		assertSame(first, cache.parse(ByteBuffer.wrap(message.getBytes())));
+		assertEquals(2, cache.getHitCount());
+
+		// same values as the parser
+		AliveMessage expected = (AliveMessage) SSDPMessageHelper.decode(message);
+		AliveMessage alive = (AliveMessage) first;
+		assertEquals(expected.toString(), alive.toString());
+		assertEquals(expected.getMessage(), alive.getMessage());
+		assertEquals(expected.getAttributes(), alive.getAttributes());
+
+		// a different message
+		assertNotSame(first, cache.getSSDPMessage(message + "X-Extra: 1\n"));
+		assertEquals(2, cache.getMissCount());
+
+		assertTrue(cache.getSSDPMessage(SSDPMessageHelperTest.createUpdateMessage()) instanceof UpdateMessage);
+		assertTrue(cache.getSSDPMessage(SSDPMessageHelperTest.createByeByeMessage()) instanceof ByeByeMessage);
+
+		assertNull(cache.getSSDPMessage(null));
+		assertNull(cache.getSSDPMessage("GET / HTTP/1.1"));
+	}
+
+	@Test
+	public void testBytes() {
+		SSDPMessageCache cache = new SSDPMessageCache(16);
+		byte[] bytes = SSDPMessageHelperTest.createByeByeMessage().getBytes();
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 10);
+		buffer.position(10);
+		buffer.put(bytes);
+		buffer.flip();
+		buffer.position(10);
+
+		ISSDPMessage first = cache.parse(buffer);
+		assertTrue(first instanceof ByeByeMessage);
+		assertEquals(10, buffer.position());
+
+		assertSame(first, cache.parse(ByteBuffer.wrap(bytes)));
+		assertSame(first, cache.getSSDPMessage(new String(bytes)));
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	public void testReadOnly() {
+		SSDPMessageCache cache = new SSDPMessageCache(16);
+		AliveMessage alive = (AliveMessage) cache.getSSDPMessage(SSDPMessageHelperTest.createAliveMessage());
+
+		try {
+			alive.setLocation("http://127.0.0.1/");
+			fail("Should throws UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+		}
+
+		try {
+			alive.setUsn("uuid:1");
+			fail("Should throws UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+		}
+
+		try {
+			alive.getAttributes().add("X-Extra: 1");
+			fail("Should throws UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+		}
+		assertTrue(alive.isFrozen());
+
+		ByeByeMessage byebye = (ByeByeMessage) cache.getSSDPMessage(SSDPMessageHelperTest.createByeByeMessage());
+		assertTrue(byebye.isFrozen());
+
+		try {
+			byebye.setHeaders(null);
+			fail("Should throws UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+		}
+
+		try {
+			byebye.setContentLength("0");
+			fail("Should throws UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+		}
+
+		// the messages parsed without the cache can be modified
+		AliveMessage parsed = (AliveMessage) SSDPMessageHelper.decode(SSDPMessageHelperTest.createAliveMessage());
+		assertFalse(parsed.isFrozen());
+		parsed.setUsn("uuid:1");
+		assertEquals("uuid:1", parsed.getUsn());
+	}
+
+	@Test
+	public void testNotCached() {
+		SSDPMessageCache cache = new SSDPMessageCache(16);
+
+		// M-SEARCH and responses are parsed each time, and can be modified
+		String discover = SSDPMessageHelperTest.createDiscoverMessage();
+		ISSDPMessage first = cache.getSSDPMessage(discover);
+		assertTrue(first instanceof DiscoverMessage);
+		assertNotSame(first, cache.getSSDPMessage(discover));
+
+		DiscoverResponseMessage response = (DiscoverResponseMessage) cache.getSSDPMessage(SSDPMessageHelperTest.createDiscoverResponseMessage());
+		response.setLocation("http://127.0.0.1/");
+
+		assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void testEviction() {
+		SSDPMessageCache cache = new SSDPMessageCache(2);
+		String message = SSDPMessageHelperTest.createAliveMessage();
+
+		for (int i = 0; i < 100; i++) {
+			assertNotNull(cache.getSSDPMessage(message + "X-Index: " + i + "\n"));
+		}
+		assertEquals(100, cache.getMissCount());
+
+		ISSDPMessage last = cache.getSSDPMessage(message + "X-Index: 99\n");
+		assertSame(last, cache.getSSDPMessage(message + "X-Index: 99\n"));
+
+		cache.clear();
+		assertNotSame(last, cache.getSSDPMessage(message + "X-Index: 99\n"));
+	}
+
+	@Test
+	public void testHelper() {
+		String message = SSDPMessageHelperTest.createAliveMessage();
+
+		assertNull(SSDPMessageHelper.getMessageCache());
+		assertNotSame(SSDPMessageHelper.getSSDPMessage(message), SSDPMessageHelper.getSSDPMessage(message));
+
+		SSDPMessageHelper.setMessageCache(new SSDPMessageCache());
+
+		ISSDPMessage first = SSDPMessageHelper.getSSDPMessage(message);
+		assertSame(first, SSDPMessageHelper.getSSDPMessage(message));
+		assertSame(first, SSDPMessageHelper.parseSSDPMessage(ByteBuffer.wrap(message.getBytes())));
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.jerabi.ssdp.message.helper;
+
+import static org.junit.Assert.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.DiscoverMessage;
+import com.jerabi.ssdp.message.DiscoverResponseMessage;
+import com.jerabi.ssdp.message.ISSDPEncodableMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.util.SSDPContants;
+
+public class SSDPMessageEncoderTest {
+
+	private static void assertEncoded(ISSDPMessage message) {
+		assertTrue(message instanceof ISSDPEncodableMessage);
+
+		byte[] expected = message.toString().getBytes(SSDPMessageEncoder.US_ASCII);
+
+		assertArrayEquals(expected, SSDPMessageEncoder.encode(message));
+
+		// direct buffer
+		ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+		((ISSDPEncodableMessage) message).encode(buffer);
+		buffer.flip();
+
+		byte[] data = new byte[buffer.remaining()];
+		buffer.get(data);
+		assertArrayEquals(expected, data);
+	}
+
+	@Test
+	public void testSameAsToString() {
+		assertEncoded(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createAliveMessage()));
+		assertEncoded(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createUpdateMessage()));
+		assertEncoded(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createByeByeMessage()));
+		assertEncoded(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createDiscoverMessage()));
+		assertEncoded(SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createDiscoverResponseMessage()));
+
+		// values not set
+		assertEncoded(new AliveMessage());
+		assertEncoded(new DiscoverResponseMessage());
+
+		List<String> attributes = new ArrayList<String>();
+		attributes.add("X-AV-Client-Info: av=5.0");
+		assertEncoded(SSDPMessageHelper.createSSDPDiscoverMessage(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT, 3, "ssdp:all", attributes));
+
+		DiscoverMessage discover = new DiscoverMessage();
+		discover.setHost(SSDPContants.DEFAULT_IP);
+		assertEncoded(discover);
+		assertTrue(discover.toString().contains(SSDPContants.DEFAULT_IP + ":" + SSDPContants.DEFAULT_PORT));
+	}
+
+	@Test
+	public void testNotAscii() {
+		AliveMessage message = new AliveMessage();
+		message.setServer("Caf\u00e9 Server");
+
+		assertEncoded(message);
+		assertTrue(new String(SSDPMessageEncoder.encode(message), SSDPMessageEncoder.US_ASCII).contains("SERVER: Caf? Server\r\n"));
+	}
+
+	@Test
+	public void testOverflow() {
+		AliveMessage message = (AliveMessage) SSDPMessageHelper.getSSDPMessage(SSDPMessageHelperTest.createAliveMessage());
+
+		ByteBuffer buffer = ByteBuffer.allocate(20);
+		try {
+			message.encode(buffer);
+			fail("Should throws BufferOverflowException");
+		} catch (BufferOverflowException e) {
+		}
+
+		// bigger than the buffers of the pool
+		StringBuilder server = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			server.append('x');
+		}
+		message = new AliveMessage();
+		message.setServer(server.toString());
+		assertEncoded(message);
+	}
+
+	@Test
+	public void testNotEncodable() {
+		ISSDPMessage message = new ISSDPMessage() {
+			@Override
+			public String toString() {
+				return "messagetosend";
+			}
+		};
+
+		assertArrayEquals("messagetosend".getBytes(), SSDPMessageEncoder.encode(message));
+		assertNull(SSDPMessageEncoder.encode(null));
+	}
+
+	@Test
+	public void testEncodeHeader() {
+		assertArrayEquals("HOST: ".getBytes(), SSDPMessageEncoder.encodeHeader(SSDPContants.HOST));
+	}
+
+}
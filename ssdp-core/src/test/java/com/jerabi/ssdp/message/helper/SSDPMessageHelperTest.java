@@ -359,5 +359,98 @@ public class SSDPMessageHelperTest {
 		assertEquals(discoverResponseMessage, msg.getMessage());
 		
 	}
-
+	
+	// canonical UDA message : CRLF and the empty line at the end
+	private static String crlf(String message) {
+		return message.replace("\n", "\r\n") + "\r\n";
+	}
+	
+	private static ISSDPMessage assertStrictMessage(String message, boolean strict) {
+		long strictCount = SSDPMessageHelper.getStrictParseCount();
+		long lenientCount = SSDPMessageHelper.getLenientParseCount();
+		
+		ISSDPMessage expected = SSDPMessageHelper.getSSDPMessage(message);
+		
+		ISSDPMessage parsed = null;
+		try {
+			SSDPMessageHelper.setStrictParsing(true);
+			parsed = SSDPMessageHelper.getSSDPMessage(message);
+		} finally {
+			SSDPMessageHelper.setStrictParsing(false);
+		}
+		
+		SSDPMessageParserTest.assertSameMessage(expected, parsed);
+		
+		assertEquals(strict ? strictCount + 1 : strictCount, SSDPMessageHelper.getStrictParseCount());
+		assertEquals(strict ? lenientCount : lenientCount + 1, SSDPMessageHelper.getLenientParseCount());
+		
+		return parsed;
+	}
+	
+	@Test
+	public void testStrictParsing() {
+		assertFalse(SSDPMessageHelper.isStrictParsing());
+		
+		assertTrue(assertStrictMessage(crlf(createAliveMessage()), true) instanceof AliveMessage);
+		assertTrue(assertStrictMessage(crlf(createByeByeMessage()), true) instanceof ByeByeMessage);
+		assertTrue(assertStrictMessage(crlf(createUpdateMessage()), true) instanceof UpdateMessage);
+		assertTrue(assertStrictMessage(crlf(createDiscoverMessage()), true) instanceof DiscoverMessage);
+		assertTrue(assertStrictMessage(crlf(createDiscoverResponseMessage()), true) instanceof DiscoverResponseMessage);
+		
+		// lower case, extra headers, empty values and spaces
+		assertStrictMessage("NOTIFY * HTTP/1.1\r\nhost: 239.255.255.250\r\nNts:ssdp:byebye\r\nNT:  upnp:rootdevice \r\nX-Extra: 1\r\nEXT:\r\n\r\n", true);
+		assertStrictMessage("HTTP/1.1 200 OK\r\nST: ssdp:all\r\n", true);
+	}
+	
+	@Test
+	public void testStrictParsingFallback() {
+		// LF only
+		assertTrue(assertStrictMessage(createAliveMessage(), false) instanceof AliveMessage);
+		
+		// not ended by CRLF
+		assertStrictMessage("HTTP/1.1 200 OK\r\nST: ssdp:all", false);
+		
+		// CR without LF
+		assertStrictMessage("HTTP/1.1 200 OK\rST: ssdp:all\r\n", false);
+		
+		// a line after the empty line
+		assertStrictMessage("HTTP/1.1 200 OK\r\n\r\nST: ssdp:all\r\n", false);
+		
+		// header without colon
+		assertStrictMessage("HTTP/1.1 200 OK\r\nST ssdp-all\r\n", false);
+		
+		// header repeated
+		assertStrictMessage("HTTP/1.1 200 OK\r\nST: ssdp:all\r\nst: upnp:rootdevice\r\n", false);
+		
+		// blank messages are rejected before
+		long count = SSDPMessageHelper.getStrictParseCount() + SSDPMessageHelper.getLenientParseCount();
+		try {
+			SSDPMessageHelper.setStrictParsing(true);
+			assertNull(SSDPMessageHelper.getSSDPMessage(" \r\n"));
+		} finally {
+			SSDPMessageHelper.setStrictParsing(false);
+		}
+		assertEquals(count, SSDPMessageHelper.getStrictParseCount() + SSDPMessageHelper.getLenientParseCount());
+	}
+	
+	@Test
+	public void testReplaceLocationHost() {
+		assertEquals("http://10.0.0.5:9000/description.xml", SSDPMessageHelper.replaceLocationHost("http://192.168.1.10:9000/description.xml", "10.0.0.5"));
+		assertEquals("http://10.0.0.5/description.xml", SSDPMessageHelper.replaceLocationHost("http://192.168.1.10/description.xml", "10.0.0.5"));
+		assertEquals("http://10.0.0.5", SSDPMessageHelper.replaceLocationHost("http://192.168.1.10", "10.0.0.5"));
+		assertEquals("http://10.0.0.5:9000/", SSDPMessageHelper.replaceLocationHost("http://[fe80::1]:9000/", "10.0.0.5"));
+		
+		// names are kept
+		assertEquals("http://mediaserver.local:9000/", SSDPMessageHelper.replaceLocationHost("http://mediaserver.local:9000/", "10.0.0.5"));
+		assertEquals("http://1.2.3/", SSDPMessageHelper.replaceLocationHost("http://1.2.3/", "10.0.0.5"));
+		
+		// same host, same instance
+		String location = "http://10.0.0.5:9000/";
+		assertSame(location, SSDPMessageHelper.replaceLocationHost(location, "10.0.0.5"));
+		
+		assertEquals("/description.xml", SSDPMessageHelper.replaceLocationHost("/description.xml", "10.0.0.5"));
+		assertNull(SSDPMessageHelper.replaceLocationHost(null, "10.0.0.5"));
+		assertEquals("http://192.168.1.10/", SSDPMessageHelper.replaceLocationHost("http://192.168.1.10/", null));
+	}
+	
 }
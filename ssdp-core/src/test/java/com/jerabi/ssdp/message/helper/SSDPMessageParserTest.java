@@ -0,0 +1,205 @@
+package com.jerabi.ssdp.message.helper;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.jerabi.ssdp.message.AbstractSSDPNotifyMessage;
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.ByeByeMessage;
+import com.jerabi.ssdp.message.DiscoverMessage;
+import com.jerabi.ssdp.message.DiscoverResponseMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.UpdateMessage;
+import com.jerabi.ssdp.util.SSDPStringCache;
+
+public class SSDPMessageParserTest {
+
+	// the parser must create the same message as SSDPMessageHelper
+	private ISSDPMessage assertSameMessage(String message) {
+		ISSDPMessage expected = SSDPMessageHelper.getSSDPMessage(message);
+		
+		byte[] bytes = message.getBytes();
+		
+		// the message in the middle of the buffer
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 20);
+		buffer.position(10);
+		buffer.put(bytes);
+		buffer.flip();
+		buffer.position(10);
+		
+		ISSDPMessage parsed = SSDPMessageHelper.parseSSDPMessage(buffer);
+		
+		// the position of the buffer is not changed
+		assertEquals(10, buffer.position());
+		assertEquals(10 + bytes.length, buffer.limit());
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes);
+		direct.flip();
+		
+		ISSDPMessage parsedDirect = SSDPMessageParser.parse(direct);
+		
+		ISSDPMessage view = SSDPMessageHelper.parseSSDPMessageView(buffer);
+		assertEquals(10, buffer.position());
+		
+		assertSameMessage(expected, parsed);
+		assertSameMessage(expected, parsedDirect);
+		assertSameMessage(expected, view);
+		
+		return parsed;
+	}
+	
+	static void assertSameMessage(ISSDPMessage expected, ISSDPMessage parsed) {
+		if(expected==null){
+			assertNull(parsed);
+			return;
+		}
+		
+		assertNotNull(parsed);
+		assertTrue(expected.getClass().isInstance(parsed));
+		assertEquals(expected.toString(), parsed.toString());
+		
+		if(expected instanceof AbstractSSDPNotifyMessage){
+			AbstractSSDPNotifyMessage notify = (AbstractSSDPNotifyMessage) expected;
+			AbstractSSDPNotifyMessage parsedNotify = (AbstractSSDPNotifyMessage) parsed;
+			
+			assertEquals(notify.getMessage(), parsedNotify.getMessage());
+			assertEquals(notify.getNotify(), parsedNotify.getNotify());
+			assertEquals(notify.getHost(), parsedNotify.getHost());
+			assertEquals(notify.getPort(), parsedNotify.getPort());
+			assertEquals(notify.getNt(), parsedNotify.getNt());
+			assertEquals(notify.getNts(), parsedNotify.getNts());
+			assertEquals(notify.getUsn(), parsedNotify.getUsn());
+			assertEquals(notify.getAttributes(), parsedNotify.getAttributes());
+		} else if(expected instanceof DiscoverMessage){
+			DiscoverMessage discover = (DiscoverMessage) expected;
+			DiscoverMessage parsedDiscover = (DiscoverMessage) parsed;
+			
+			assertEquals(discover.getMessage(), parsedDiscover.getMessage());
+			assertEquals(discover.getHost(), parsedDiscover.getHost());
+			assertEquals(discover.getPort(), parsedDiscover.getPort());
+			assertEquals(discover.getMx(), parsedDiscover.getMx());
+			assertEquals(discover.getSt(), parsedDiscover.getSt());
+			assertEquals(discover.getAttributes(), parsedDiscover.getAttributes());
+		} else if(expected instanceof DiscoverResponseMessage){
+			DiscoverResponseMessage response = (DiscoverResponseMessage) expected;
+			DiscoverResponseMessage parsedResponse = (DiscoverResponseMessage) parsed;
+			
+			assertEquals(response.getMessage(), parsedResponse.getMessage());
+			assertEquals(response.getLocation(), parsedResponse.getLocation());
+			assertEquals(response.getSt(), parsedResponse.getSt());
+			assertEquals(response.getUsn(), parsedResponse.getUsn());
+			assertEquals(response.getAttributes(), parsedResponse.getAttributes());
+		}
+	}
+	
+	@Test
+	public void testAliveMessage() {
+		assertTrue(assertSameMessage(SSDPMessageHelperTest.createAliveMessage()) instanceof AliveMessage);
+	}
+	
+	@Test
+	public void testByeByeMessage() {
+		assertTrue(assertSameMessage(SSDPMessageHelperTest.createByeByeMessage()) instanceof ByeByeMessage);
+	}
+	
+	@Test
+	public void testUpdateMessage() {
+		assertTrue(assertSameMessage(SSDPMessageHelperTest.createUpdateMessage()) instanceof UpdateMessage);
+	}
+	
+	@Test
+	public void testDiscoverMessage() {
+		assertTrue(assertSameMessage(SSDPMessageHelperTest.createDiscoverMessage()) instanceof DiscoverMessage);
+	}
+	
+	@Test
+	public void testDiscoverResponseMessage() {
+		assertTrue(assertSameMessage(SSDPMessageHelperTest.createDiscoverResponseMessage()) instanceof DiscoverResponseMessage);
+	}
+	
+	@Test
+	public void testCRLFAndCase() {
+		StringBuffer sb = new StringBuffer();
+		
+		sb.append("  NOTIFY * HTTP/1.1 ").append("\r\n");
+		sb.append("host:239.255.255.250").append("\r\n");
+		sb.append("Cache-Control: max-age=1800").append("\r\n");
+		sb.append("Location:  http://192.168.1.10:80/desc.xml \t").append("\r\n");
+		sb.append("nt: upnp:rootdevice").append("\r\n");
+		sb.append("Nts: ssdp:alive").append("\r\n");
+		sb.append("").append("\n");
+		sb.append("X-User-Agent: redsonic").append("\r\n");
+		sb.append("USN: uuid:1::upnp:rootdevice").append("\r\n");
+		sb.append("\r\n");
+		sb.append("\n\n");
+		
+		AliveMessage message = (AliveMessage) assertSameMessage(sb.toString());
+		
+		assertEquals("NOTIFY * HTTP/1.1", message.getNotify());
+		assertEquals("239.255.255.250", message.getHost());
+		assertEquals("1900", message.getPort());
+		assertEquals("http://192.168.1.10:80/desc.xml", message.getLocation());
+	}
+	
+	@Test
+	public void testLowerCaseDiscover() {
+		StringBuffer sb = new StringBuffer();
+		
+		sb.append("m-search * HTTP/1.1").append("\r\n");
+		sb.append("Host: 239.255.255.250:1900").append("\r\n");
+		sb.append("st: ssdp:all").append("\r\n");
+		sb.append("Man: \"ssdp:discover\"").append("\r\n");
+		sb.append("mx: 3").append("\r\n");
+		sb.append("\r\n");
+		
+		assertTrue(assertSameMessage(sb.toString()) instanceof DiscoverMessage);
+		
+		assertTrue(assertSameMessage("http/1.1 200 ok\r\nST: ssdp:all\r\nEXT:\r\n") instanceof DiscoverResponseMessage);
+	}
+	
+	@Test
+	public void testUnknownMessage() {
+		assertSameMessage("NOTIFY * HTTP/1.1\nNTS: ssdp:unknown\nNT: upnp:rootdevice\n");
+		assertSameMessage("NOTIFY * HTTP/1.1\nNT: upnp:rootdevice\n");
+		assertSameMessage("HTTP/1.1 404 Not Found\n");
+		assertSameMessage("GET / HTTP/1.1");
+		assertSameMessage(" \r\n ");
+		
+		assertNull(SSDPMessageParser.parse(new byte[0], 0, 0));
+		assertNull(SSDPMessageParser.parse(null));
+		assertNull(SSDPMessageParser.parseView(null));
+	}
+	
+	@Test
+	public void testStringCache() {
+		String message = SSDPMessageHelperTest.createAliveMessage();
+		
+		AliveMessage first = (AliveMessage) SSDPMessageParser.parse(ByteBuffer.wrap(message.getBytes()));
+		AliveMessage second = (AliveMessage) SSDPMessageParser.parse(ByteBuffer.wrap(message.getBytes()));
+		AliveMessage view = (AliveMessage) SSDPMessageParser.parseView(ByteBuffer.wrap(message.getBytes()));
+		AliveMessage decoded = (AliveMessage) SSDPMessageHelper.getSSDPMessage(message);
+		
+		// the same values are shared
+		assertSame(first.getUsn(), second.getUsn());
+		assertSame(first.getLocation(), second.getLocation());
+		assertSame(first.getServer(), view.getServer());
+		assertSame(first.getNt(), decoded.getNt());
+		assertSame(first.getHost(), decoded.getHost());
+		
+		SSDPStringCache cache = SSDPMessageHelper.getStringCache();
+		try {
+			SSDPMessageHelper.setStringCache(null);
+			
+			AliveMessage notCached = (AliveMessage) SSDPMessageParser.parse(ByteBuffer.wrap(message.getBytes()));
+			assertEquals(first.getUsn(), notCached.getUsn());
+			assertNotSame(first.getUsn(), notCached.getUsn());
+		} finally {
+			SSDPMessageHelper.setStringCache(cache);
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.jerabi.ssdp.message.view;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.DiscoverResponseMessage;
+import com.jerabi.ssdp.message.helper.SSDPMessageParser;
+
+public class SSDPMessageIndexTest {
+
+	private static String createAliveMessage() {
+		StringBuffer sb = new StringBuffer();
+		
+		sb.append("NOTIFY * HTTP/1.1").append("\r\n");
+		sb.append("HOST: 239.255.255.250:1900").append("\r\n");
+		sb.append("NT: upnp:rootdevice").append("\r\n");
+		sb.append("NTS: ssdp:alive").append("\r\n");
+		sb.append("LOCATION: http://192.168.1.10:80/desc.xml").append("\r\n");
+		sb.append("USN: uuid:1::upnp:rootdevice").append("\r\n");
+		sb.append("CACHE-CONTROL: max-age=1800").append("\r\n");
+		sb.append("SERVER: Linux/2.6, UPnP/1.0, test/1.0").append("\r\n");
+		sb.append("X-Extra: 1").append("\r\n");
+		sb.append("\r\n");
+		
+		return sb.toString();
+	}
+	
+	private static SSDPMessageIndex createIndex(String message) {
+		byte[] bytes = message.getBytes();
+		return SSDPMessageIndex.create(bytes, 0, bytes.length);
+	}
+	
+	@Test
+	public void testIndex() {
+		SSDPMessageIndex index = createIndex(createAliveMessage());
+		
+		assertFalse(index.isDiscover());
+		assertFalse(index.isDiscoverResponse());
+		assertEquals("NOTIFY * HTTP/1.1", index.getNotify());
+		assertEquals("ssdp:alive", index.getValue(SSDPMessageIndex.NTS));
+		assertEquals("239.255.255.250", index.getHost());
+		assertEquals("1900", index.getPort());
+		assertFalse(index.contains(SSDPMessageIndex.DATE));
+		assertNull(index.getValue(SSDPMessageIndex.DATE));
+		assertEquals(2, index.getAttributes().size());
+		assertEquals("X-Extra: 1\r", index.getAttributes().get(0));
+		
+		assertNull(SSDPMessageIndex.create(new byte[]{' ', '\r', '\n'}, 0, 3));
+	}
+	
+	@Test
+	public void testDecodeAscii() throws Exception {
+		// the bytes of a server name in UTF-8, not decoded with the platform charset
+		byte[] bytes = createAliveMessage().replace("test/1.0", "t\u00e9st/1.0").getBytes("UTF-8");
+		SSDPMessageIndex index = SSDPMessageIndex.create(bytes, 0, bytes.length);
+		
+		assertEquals("Linux/2.6, UPnP/1.0, t\ufffd\ufffdst/1.0", index.getValue(SSDPMessageIndex.SERVER));
+		assertTrue(index.getMessage().contains("t\ufffd\ufffdst/1.0"));
+	}
+	
+	@Test
+	public void testLazyValues() {
+		SSDPMessageIndex index = createIndex(createAliveMessage());
+		AliveMessageView message = new AliveMessageView(index);
+		
+		assertEquals("uuid:1::upnp:rootdevice", message.getUsn());
+		assertEquals("upnp:rootdevice", message.getNt());
+		
+		// only the values requested are decoded
+		assertTrue(index.isDecoded(SSDPMessageIndex.USN));
+		assertTrue(index.isDecoded(SSDPMessageIndex.NT));
+		assertFalse(index.isDecoded(SSDPMessageIndex.LOCATION));
+		assertFalse(index.isDecoded(SSDPMessageIndex.SERVER));
+		assertFalse(index.isDecoded(SSDPMessageIndex.MESSAGE));
+		assertFalse(index.isDecoded(SSDPMessageIndex.ATTRIBUTES));
+		
+		// the value is decoded once
+		assertSame(message.getUsn(), message.getUsn());
+	}
+	
+	@Test
+	public void testSetValues() {
+		SSDPMessageIndex index = createIndex(createAliveMessage());
+		AliveMessageView message = new AliveMessageView(index);
+		
+		// a value set replaces the value received, even before it's decoded
+		message.setLocation("http://10.0.0.1/desc.xml");
+		message.setServer(null);
+		message.setHost("10.0.0.2");
+		message.setAttributes(new ArrayList<String>());
+		
+		assertEquals("http://10.0.0.1/desc.xml", message.getLocation());
+		assertNull(message.getServer());
+		assertEquals("10.0.0.2", message.getHost());
+		assertEquals("1900", message.getPort());
+		assertTrue(message.getAttributes().isEmpty());
+	}
+	
+	@Test
+	public void testParseView() {
+		byte[] bytes = createAliveMessage().getBytes();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		
+		AliveMessage message = (AliveMessage) SSDPMessageParser.parseView(buffer);
+		
+		// the view keeps a copy of the bytes, the buffer can be reused
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = 0;
+		}
+		
+		assertTrue(message instanceof AliveMessageView);
+		assertEquals("http://192.168.1.10:80/desc.xml", message.getLocation());
+		assertEquals("max-age=1800", message.getCacheControl());
+		
+		String response = "HTTP/1.1 200 OK\r\nST: upnp:rootdevice\r\nUSN: uuid:1::upnp:rootdevice\r\nEXT:\r\n\r\n";
+		DiscoverResponseMessage responseMessage = (DiscoverResponseMessage) SSDPMessageParser.parseView(ByteBuffer.wrap(response.getBytes()));
+		
+		assertTrue(responseMessage instanceof DiscoverResponseMessageView);
+		assertEquals("upnp:rootdevice", responseMessage.getSt());
+		assertEquals("", responseMessage.getExt());
+		assertNull(responseMessage.getLocation());
+		assertEquals(response, responseMessage.getMessage());
+	}
+	
+}
@@ -0,0 +1,127 @@
+package com.jerabi.ssdp.network;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteBufferPoolTest {
+
+	private ByteBufferPool pool = null;
+	
+	@Before
+	public void setUp() throws Exception {
+		pool = new ByteBufferPool(1500, 2, false);
+	}
+
+	@Test
+	public void testAcquireRelease() {
+		ByteBuffer buffer = pool.acquire();
+		
+		assertNotNull(buffer);
+		assertEquals(1500, buffer.capacity());
+		assertFalse(buffer.isDirect());
+		assertEquals(1, pool.getAllocatedCount());
+		
+		buffer.put((byte)1);
+		pool.release(buffer);
+		assertEquals(1, pool.getPooledCount());
+		
+		// steady state : no more allocation
+		for(int i=0;i<100;i++){
+			ByteBuffer b = pool.acquire();
+			assertSame(buffer, b);
+			assertEquals(0, b.position());
+			assertEquals(b.capacity(), b.limit());
+			pool.release(b);
+		}
+		
+		assertEquals(1, pool.getAllocatedCount());
+		assertEquals(101, pool.getAcquiredCount());
+		assertEquals(101, pool.getReleasedCount());
+		assertEquals(0, pool.getDiscardedCount());
+	}
+	
+	@Test
+	public void testMaxPooled() {
+		ByteBuffer b1 = pool.acquire();
+		ByteBuffer b2 = pool.acquire();
+		ByteBuffer b3 = pool.acquire();
+		
+		assertEquals(3, pool.getAllocatedCount());
+		
+		pool.release(b1);
+		pool.release(b2);
+		pool.release(b3);
+		
+		assertEquals(2, pool.getPooledCount());
+		assertEquals(1, pool.getDiscardedCount());
+	}
+	
+	@Test
+	public void testReleaseForeignBuffer() {
+		pool.release(null);
+		pool.release(ByteBuffer.allocate(10));
+		pool.release(ByteBuffer.allocateDirect(1500));
+		
+		assertEquals(0, pool.getPooledCount());
+		assertEquals(2, pool.getDiscardedCount());
+	}
+	
+	@Test
+	public void testDirectPool() {
+		ByteBufferPool directPool = new ByteBufferPool(512, 2, true);
+		
+		ByteBuffer buffer = directPool.acquire();
+		assertTrue(buffer.isDirect());
+		assertEquals(512, buffer.capacity());
+		
+		assertTrue(ByteBufferPool.getDirectPool().isDirect());
+		assertFalse(ByteBufferPool.getHeapPool().isDirect());
+		assertTrue(ByteBufferPool.getHeapPool().getBufferSize()>0);
+	}
+	
+	@Test
+	public void testConcurrentAcquireRelease() throws Exception {
+		final ByteBufferPool sharedPool = new ByteBufferPool(64, 4, false);
+		Thread[] threads = new Thread[4];
+		
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(){
+				public void run() {
+					for(int j=0;j<10000;j++){
+						sharedPool.release(sharedPool.acquire());
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		
+		// each thread holds at most one buffer, all of them fit in the pool
+		assertTrue(sharedPool.getAllocatedCount()<=4);
+		assertEquals(sharedPool.getAllocatedCount(), sharedPool.getPooledCount());
+		assertEquals(40000, sharedPool.getAcquiredCount());
+		assertEquals(0, sharedPool.getDiscardedCount());
+	}
+	
+	@Test
+	public void testNoPooled() {
+		ByteBufferPool emptyPool = new ByteBufferPool(64, 0, false);
+		
+		emptyPool.release(emptyPool.acquire());
+		
+		assertEquals(0, emptyPool.getPooledCount());
+		assertEquals(1, emptyPool.getDiscardedCount());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidSize() {
+		new ByteBufferPool(0, 2, false);
+	}
+	
+}
@@ -0,0 +1,114 @@
+package com.jerabi.ssdp.sender;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SSDPRateLimiterTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testInvalidRate() {
+		try {
+			new SSDPRateLimiter(-1, 0, 0, 0);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testUnlimited() {
+		SSDPRateLimiter limiter = new SSDPRateLimiter(0, 0, 0, 0);
+
+		assertTrue(limiter.isUnlimited());
+		for(int i=0;i<1000;i++){
+			assertEquals(0, limiter.reserve(1000, 0));
+		}
+	}
+
+	@Test
+	public void testPacketsPerSecond() {
+		// 100 packets/s : one packet every 10 ms, burst of 3
+		SSDPRateLimiter limiter = new SSDPRateLimiter(100, 0, 3, 0);
+		long now = 1000 * MS;
+
+		assertEquals(0, limiter.reserve(300, now));
+		assertEquals(0, limiter.reserve(300, now));
+		assertEquals(0, limiter.reserve(300, now));
+
+		// the burst is used, the next packets are spaced evenly
+		assertEquals(10 * MS, limiter.reserve(300, now));
+		assertEquals(20 * MS, limiter.reserve(300, now));
+		assertEquals(30 * MS, limiter.reserve(300, now));
+
+		// after an idle period, the burst is available again
+		now += 1000 * MS;
+		assertEquals(0, limiter.reserve(300, now));
+		assertEquals(0, limiter.reserve(300, now));
+		assertEquals(0, limiter.reserve(300, now));
+		assertEquals(10 * MS, limiter.reserve(300, now));
+	}
+
+	@Test
+	public void testGetDelay() {
+		SSDPRateLimiter limiter = new SSDPRateLimiter(100, 0, 1, 0);
+		long now = 1000 * MS;
+
+		assertEquals(0, limiter.getDelay(300, now));
+		assertEquals(0, limiter.reserve(300, now));
+
+		// getDelay doesn't reserve the tokens
+		assertEquals(10 * MS, limiter.getDelay(300, now));
+		assertEquals(10 * MS, limiter.getDelay(300, now));
+		assertEquals(10 * MS, limiter.reserve(300, now));
+		assertEquals(0, limiter.getDelay(300, now + 20 * MS));
+	}
+
+	@Test
+	public void testBytesPerSecond() {
+		// 1000 bytes/s, burst of 500 bytes
+		SSDPRateLimiter limiter = new SSDPRateLimiter(0, 1000, 0, 500);
+		long now = 1000 * MS;
+
+		assertEquals(0, limiter.reserve(250, now));
+		assertEquals(0, limiter.reserve(250, now));
+
+		// the bucket is empty : 250 bytes take 250 ms
+		assertEquals(250 * MS, limiter.reserve(250, now));
+		assertEquals(500 * MS, limiter.reserve(250, now));
+	}
+
+	@Test
+	public void testBiggerThanBurst() {
+		SSDPRateLimiter limiter = new SSDPRateLimiter(0, 1000, 0, 100);
+		long now = 1000 * MS;
+
+		// the first packet is never delayed
+		assertEquals(0, limiter.reserve(500, now));
+
+		// waits until the bucket is full
+		assertEquals(500 * MS, limiter.reserve(500, now));
+	}
+
+	@Test
+	public void testSpreadEvenly() {
+		SSDPRateLimiter limiter = new SSDPRateLimiter(50, 0, 1, 0);
+		long now = 0;
+		long last = -1;
+
+		for(int i=0;i<100;i++){
+			long delay = limiter.reserve(300, now);
+			if(last>=0){
+				assertEquals(20 * MS, delay - last);
+			}
+			last = delay;
+		}
+
+		// 100 packets at 50 packets/s take about 2 seconds
+		assertEquals(99 * 20 * MS, last);
+	}
+
+}
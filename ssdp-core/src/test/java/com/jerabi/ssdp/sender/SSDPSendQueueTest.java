@@ -0,0 +1,280 @@
+package com.jerabi.ssdp.sender;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.jerabi.ssdp.util.State;
+
+public class SSDPSendQueueTest {
+
+	private static final SocketAddress ADDRESS = new InetSocketAddress("239.255.255.250", 1900);
+
+	private final List<String> sentList = new CopyOnWriteArrayList<String>();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private SSDPSendQueue queue = null;
+
+	@After
+	public void tearDown() throws Exception {
+		release.countDown();
+		if(queue!=null){
+			queue.stop();
+		}
+	}
+
+	// the writer stays blocked on the first message until release
+	private SSDPSendQueue createQueue(int capacity, SSDPSendQueue.OverflowPolicy policy) throws Exception {
+		queue = new SSDPSendQueue(capacity, policy) {
+			@Override
+			protected void send(String message, SocketAddress address, NetworkInterface ni) throws Exception {
+				release.await();
+				sentList.add(message);
+			}
+		};
+		queue.start();
+
+		assertTrue(queue.offer("first", ADDRESS, null));
+		waitFor(0);
+
+		return queue;
+	}
+
+	private void waitFor(int depth) throws InterruptedException {
+		long end = System.currentTimeMillis() + 2000;
+		while(queue.getDepth()!=depth && System.currentTimeMillis()<end){
+			Thread.sleep(10);
+		}
+		assertEquals(depth, queue.getDepth());
+	}
+
+	private void waitForSent(int sent) throws InterruptedException {
+		long end = System.currentTimeMillis() + 2000;
+		while(queue.getSentCount()<sent && System.currentTimeMillis()<end){
+			Thread.sleep(10);
+		}
+		assertEquals(sent, queue.getSentCount());
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new SSDPSendQueue(0, SSDPSendQueue.OverflowPolicy.REJECT);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+
+		try {
+			new SSDPSendQueue(1, null);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testOfferEncoded() throws Exception {
+		final List<byte[]> encodedList = new CopyOnWriteArrayList<byte[]>();
+
+		queue = new SSDPSendQueue(4, SSDPSendQueue.OverflowPolicy.REJECT) {
+			@Override
+			protected void send(String message, SocketAddress address, NetworkInterface ni) throws Exception {
+				sentList.add(message);
+			}
+
+			@Override
+			protected void sendEncoded(byte[] data, SocketAddress address, NetworkInterface ni) throws Exception {
+				encodedList.add(data);
+			}
+		};
+		queue.start();
+
+		byte[] data = "encoded".getBytes();
+
+		assertTrue(queue.offerEncoded(data, ADDRESS, null));
+		assertTrue(queue.offer("text", ADDRESS, null));
+		assertFalse(queue.offerEncoded(null, ADDRESS, null));
+
+		waitForSent(2);
+
+		// the array is not copied
+		assertEquals(1, encodedList.size());
+		assertSame(data, encodedList.get(0));
+		assertEquals("text", sentList.get(0));
+	}
+
+	@Test
+	public void testSendInOrder() throws Exception {
+		createQueue(4, SSDPSendQueue.OverflowPolicy.REJECT);
+
+		assertTrue(queue.offer("a", ADDRESS, null));
+		assertTrue(queue.offer("b", ADDRESS, null));
+		assertFalse(queue.offer(null, ADDRESS, null));
+		assertEquals(2, queue.getDepth());
+
+		release.countDown();
+		waitForSent(3);
+
+		assertEquals("first", sentList.get(0));
+		assertEquals("a", sentList.get(1));
+		assertEquals("b", sentList.get(2));
+		assertEquals(0, queue.getDepth());
+		assertEquals(2, queue.getMaxDepth());
+		assertEquals(3, queue.getOfferedCount());
+	}
+
+	@Test
+	public void testDropOldest() throws Exception {
+		createQueue(2, SSDPSendQueue.OverflowPolicy.DROP_OLDEST);
+
+		assertTrue(queue.offer("a", ADDRESS, null));
+		assertTrue(queue.offer("b", ADDRESS, null));
+		assertTrue(queue.offer("c", ADDRESS, null));
+		assertEquals(2, queue.getDepth());
+		assertEquals(1, queue.getDroppedCount());
+
+		release.countDown();
+		waitForSent(3);
+
+		assertEquals("b", sentList.get(1));
+		assertEquals("c", sentList.get(2));
+	}
+
+	@Test
+	public void testReject() throws Exception {
+		createQueue(2, SSDPSendQueue.OverflowPolicy.REJECT);
+
+		assertTrue(queue.offer("a", ADDRESS, null));
+		assertTrue(queue.offer("b", ADDRESS, null));
+		assertFalse(queue.offer("c", ADDRESS, null));
+		assertEquals(1, queue.getRejectedCount());
+		assertEquals(0, queue.getDroppedCount());
+
+		release.countDown();
+		waitForSent(3);
+
+		assertEquals("b", sentList.get(2));
+	}
+
+	@Test
+	public void testBlock() throws Exception {
+		createQueue(1, SSDPSendQueue.OverflowPolicy.BLOCK);
+
+		assertTrue(queue.offer("a", ADDRESS, null));
+
+		final CountDownLatch offered = new CountDownLatch(1);
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if(queue.offer("b", ADDRESS, null)){
+						offered.countDown();
+					}
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		t.start();
+
+		// the queue is full, the producer waits
+		assertFalse(offered.await(200, TimeUnit.MILLISECONDS));
+
+		release.countDown();
+
+		assertTrue(offered.await(2, TimeUnit.SECONDS));
+		waitForSent(3);
+		assertEquals("b", sentList.get(2));
+	}
+
+	@Test
+	public void testStop() throws Exception {
+		createQueue(4, SSDPSendQueue.OverflowPolicy.REJECT);
+
+		assertTrue(queue.offer("a", ADDRESS, null));
+
+		queue.stop();
+
+		assertEquals(State.STOPPED, queue.getState());
+		assertEquals(0, queue.getDepth());
+		assertEquals(1, queue.getDroppedCount());
+		assertFalse(queue.offer("b", ADDRESS, null));
+		assertEquals(1, queue.getRejectedCount());
+	}
+
+	@Test
+	public void testRateLimit() throws Exception {
+		createQueue(16, SSDPSendQueue.OverflowPolicy.REJECT);
+
+		// 20 packets/s : one message every 50 ms
+		queue.setRateLimit(20, 0, 1, 0);
+
+		for(int i=0;i<5;i++){
+			assertTrue(queue.offer("m" + i, ADDRESS, null));
+		}
+		// the producer isn't blocked by the pacing, the messages wait in the queue
+		assertEquals(5, queue.getDepth());
+		assertEquals(0, queue.getPacedCount());
+
+		long start = System.currentTimeMillis();
+		release.countDown();
+		waitForSent(6);
+
+		assertTrue(System.currentTimeMillis() - start >= 200);
+		assertTrue(queue.getPacedCount() > 0);
+		assertTrue(queue.getPacingDelay() > 0);
+		assertSame(queue.getRateLimiter(null), queue.getRateLimiter(null));
+		assertEquals(20, queue.getRateLimiter(null).getPacketsPerSecond());
+	}
+
+	@Test
+	public void testRateLimitPerInterface() throws Exception {
+		Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+		Assume.assumeTrue(interfaces!=null && interfaces.hasMoreElements());
+		NetworkInterface ni = interfaces.nextElement();
+
+		createQueue(16, SSDPSendQueue.OverflowPolicy.REJECT);
+
+		// 1 packet/s : the second message of the default interface waits 1 s
+		queue.setRateLimit(1, 0, 1, 0);
+
+		assertTrue(queue.offer("a1", ADDRESS, null));
+		assertTrue(queue.offer("a2", ADDRESS, null));
+		assertTrue(queue.offer("b1", ADDRESS, ni));
+
+		release.countDown();
+		waitForSent(3);
+
+		// the other interface doesn't wait behind the default interface
+		assertEquals("a1", sentList.get(1));
+		assertEquals("b1", sentList.get(2));
+		assertEquals(1, queue.getDepth());
+	}
+
+	@Test
+	public void testMulticastQueue() throws Exception {
+		SSDPSendQueue shared = SSDPSendQueue.getMulticastQueue();
+
+		assertSame(shared, SSDPSendQueue.getMulticastQueue());
+		assertEquals(State.STARTED, shared.getState());
+		// the periodic senders wait instead of losing their messages
+		assertEquals(SSDPSendQueue.OverflowPolicy.BLOCK, shared.getOverflowPolicy());
+
+		SSDPSendQueue.stopMulticastQueue();
+		assertEquals(State.STOPPED, shared.getState());
+
+		SSDPSendQueue other = SSDPSendQueue.getMulticastQueue();
+		assertNotSame(shared, other);
+
+		SSDPSendQueue.stopMulticastQueue();
+	}
+
+}
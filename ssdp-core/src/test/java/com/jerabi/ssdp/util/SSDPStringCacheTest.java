@@ -0,0 +1,141 @@
+package com.jerabi.ssdp.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SSDPStringCacheTest {
+
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new SSDPStringCache(0, 10);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+
+		try {
+			new SSDPStringCache(16, 0);
+			fail("Should throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+
+		assertEquals(16, new SSDPStringCache(10, 10).getCapacity());
+	}
+
+	@Test
+	public void testInternBytes() {
+		SSDPStringCache cache = new SSDPStringCache(16, 64);
+
+		byte[] data = "LOCATION: http://192.168.1.10:8080/desc.xml".getBytes();
+
+		String first = cache.intern(data, 10, data.length - 10);
+		assertEquals("http://192.168.1.10:8080/desc.xml", first);
+		assertEquals(1, cache.getMissCount());
+
+		// same bytes at another offset
+		byte[] other = ("  " + first).getBytes();
+		assertSame(first, cache.intern(other, 2, other.length - 2));
+		assertEquals(1, cache.getHitCount());
+
+		// different value
+		assertEquals("http://192.168.1.10:8080/desc.xmm", cache.intern("http://192.168.1.10:8080/desc.xmm".getBytes(), 0, 33));
+
+		assertEquals("", cache.intern(data, 0, 0));
+	}
+
+	@Test
+	public void testInternAscii() throws Exception {
+		SSDPStringCache cache = new SSDPStringCache(16, 4);
+		byte[] bytes = "t\u00e9st".getBytes("UTF-8");
+		
+		// decoded in US-ASCII, cached or not
+		assertEquals("t\ufffd\ufffd", cache.intern(bytes, 0, 3));
+		assertEquals("t\ufffd\ufffdst", cache.intern(bytes, 0, bytes.length));
+	}
+	
+	@Test
+	public void testInternString() {
+		SSDPStringCache cache = new SSDPStringCache(16, 64);
+
+		String usn = new String("uuid:1234::upnp:rootdevice");
+		assertSame(usn, cache.intern(usn));
+		assertSame(usn, cache.intern(new String("uuid:1234::upnp:rootdevice")));
+
+		// the strings and the bytes share the same entries
+		byte[] data = usn.getBytes();
+		assertSame(usn, cache.intern(data, 0, data.length));
+
+		assertNull(cache.intern(null));
+
+		// not ASCII, not cached
+		String value = new String("caf\u00e9");
+		assertSame(value, cache.intern(value));
+		assertNotSame(value, cache.intern(new String("caf\u00e9")));
+	}
+
+	@Test
+	public void testMaxLength() {
+		SSDPStringCache cache = new SSDPStringCache(16, 8);
+
+		byte[] data = "0123456789".getBytes();
+
+		assertNotSame(cache.intern(data, 0, 10), cache.intern(data, 0, 10));
+		assertSame(cache.intern(data, 0, 8), cache.intern(data, 0, 8));
+	}
+
+	@Test
+	public void testBounded() {
+		SSDPStringCache cache = new SSDPStringCache(4, 64);
+
+		for (int i = 0; i < 1000; i++) {
+			String value = "value-" + i;
+			byte[] data = value.getBytes();
+			assertEquals(value, cache.intern(data, 0, data.length));
+		}
+
+		assertEquals(1000, cache.getMissCount());
+
+		cache.clear();
+
+		byte[] data = "value-999".getBytes();
+		String value = cache.intern(data, 0, data.length);
+		assertSame(value, cache.intern(data, 0, data.length));
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		final SSDPStringCache cache = new SSDPStringCache(8, 64);
+		final String[] values = new String[32];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = "urn:schemas-upnp-org:service:Service:" + i;
+		}
+
+		final Throwable[] error = new Throwable[1];
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 10000; i++) {
+							byte[] data = values[i % values.length].getBytes();
+							assertEquals(values[i % values.length], cache.intern(data, 0, data.length));
+						}
+					} catch (Throwable e) {
+						error[0] = e;
+					}
+				}
+			});
+			threads[t].start();
+		}
+
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+
+		assertNull(error[0]);
+		assertEquals(40000, cache.getHitCount() + cache.getMissCount());
+	}
+
+}
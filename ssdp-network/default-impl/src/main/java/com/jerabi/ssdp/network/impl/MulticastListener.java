@@ -5,20 +5,61 @@ import java.net.InetAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import com.jerabi.ssdp.handler.ISSDPBatchResponseHandler;
+import com.jerabi.ssdp.handler.ISSDPRawResponseHandler;
 import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.handler.SSDPResponseBatch;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+import com.jerabi.ssdp.network.ByteBufferPool;
+import com.jerabi.ssdp.network.IEventMulticastListener;
 import com.jerabi.ssdp.network.IMulticastListener;
 
 /**
+ * 
+ * The receive buffers are taken from a {@link ByteBufferPool} and given back once the
+ * message is handled.  The same DatagramPacket is reused for each message, and the address of the
+ * last sender is formatted once.
+ * 
+ * With {@link #receive(boolean, int)}, the messages are read until no message is received 
+ * for {@link #BATCH_RECEIVE_TIMEOUT} ms : each batch that is not full ends with this wait.  MulticastSocket 
+ * can't tell if a message is queued, and a DatagramChannel can't join a group before Java 7.  The nio 
+ * implementation stops the batch as soon as the channel is empty.
+ * 
+ * With {@link #start(ISSDPResponseHandler)}, a Thread of the listener receives the messages without socket timeout 
+ * and pushes them to the handler.  {@link #stop()} closes the socket, the Thread ends immediately.
+ * 
+ * A {@link ISSDPRawResponseHandler} receives the buffer of the DatagramPacket, the message is not decoded.
  * 
  * @author Sebastien Dionne
  * @see MulticastSocket
  */
-public class MulticastListener implements IMulticastListener {
+public class MulticastListener implements IEventMulticastListener {
+	private static final Logger logger = Logger.getLogger(MulticastListener.class.getName());
 	
 	private MulticastSocket ssdpUniSock = null;
-	private ISSDPResponseHandler callbackHandler = null;
+	private volatile ISSDPResponseHandler callbackHandler = null;
 	private int timeout = 3000;
+	private ByteBufferPool bufferPool = ByteBufferPool.getHeapPool();
+	private final DatagramPacket dgmPacket = new DatagramPacket(new byte[0], 0);
+	private SSDPResponseBatch batch = null;
+	private int batchSize = 1;
+	private Thread receiveThread = null;
+	private volatile boolean started = false;
+	
+	// last sender, its address is formatted once.  Guarded by dgmPacket
+	private InetAddress lastAddress = null;
+	private String lastHostAddress = null;
+	
+	/**
+	 * Time in ms that {@link #receive(boolean, int)} waits for the next message of a batch.  The last receive
+	 * of a batch that is not full always waits this time.
+	 */
+	public static final int BATCH_RECEIVE_TIMEOUT = 1;
 	
 	public MulticastListener(int port, ISSDPResponseHandler callbackHandler) throws Exception {
 		ssdpUniSock = new MulticastSocket(port); 
@@ -64,25 +105,243 @@ public class MulticastListener implements IMulticastListener {
 	
 	@Override
 	public void receive(boolean blocking) throws Exception {
-		byte ssdvRecvBuf[] = new byte[1024];
-		DatagramPacket dgmPacket2 = new DatagramPacket(ssdvRecvBuf, 1024);
+		ByteBuffer buffer = bufferPool.acquire();
 		
-		if(!blocking){
-			ssdpUniSock.setSoTimeout(timeout);
+		try {
+			String remoteAddr = null;
+			int remotePort;
+			int packetLen;
+			
+			synchronized (dgmPacket) {
+				dgmPacket.setData(buffer.array(), 0, buffer.capacity());
+				
+				if(!blocking){
+					ssdpUniSock.setSoTimeout(timeout);
+				}
+				ssdpUniSock.receive(dgmPacket);
+				
+				remoteAddr = getHostAddress(dgmPacket.getAddress());
+				remotePort = dgmPacket.getPort();
+				packetLen = dgmPacket.getLength();
+			}
+			
+			// TODO en gros.. si la taille retournee est la meme que le buffer,
+			// il y a de grosse chance qu'il reste du data cote serveur..
+			// donc faire une boucle
+			
+			ISSDPResponseHandler callbackHandler = this.callbackHandler;
+			
+			if(callbackHandler instanceof ISSDPRawResponseHandler){
+				buffer.limit(packetLen);
+				((ISSDPRawResponseHandler) callbackHandler).handle(remoteAddr, remotePort, buffer);
+			} else if(callbackHandler!=null){
+				String packetData = new String(buffer.array(), 0, packetLen, SSDPMessageEncoder.US_ASCII);
+				callbackHandler.handle(remoteAddr, remotePort, packetData);
+			}
+		} finally {
+			bufferPool.release(buffer);
 		}
-		ssdpUniSock.receive(dgmPacket2);
+
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * MulticastSocket has no non blocking mode : after the first message, the socket waits up to
+	 * {@link #BATCH_RECEIVE_TIMEOUT} ms for the next one, and the batch ends when this wait times out.
+	 */
+	@Override
+	public int receive(boolean blocking, int maxMessages) throws Exception {
+		ISSDPResponseHandler callbackHandler = this.callbackHandler;
+		ISSDPRawResponseHandler rawHandler = null;
+		ISSDPBatchResponseHandler batchHandler = null;
 		
-		int packetLen = dgmPacket2.getLength();
-		String packetData = new String(dgmPacket2.getData(), 0, packetLen);
+		if(callbackHandler instanceof ISSDPRawResponseHandler){
+			// the bytes are passed one by one, without batch
+			rawHandler = (ISSDPRawResponseHandler) callbackHandler;
+		} else if(callbackHandler instanceof ISSDPBatchResponseHandler){
+			batchHandler = (ISSDPBatchResponseHandler) callbackHandler;
+			
+			if(batch==null || batch.getCapacity()!=maxMessages){
+				batch = new SSDPResponseBatch(maxMessages);
+			}
+		}
 		
-		// TODO en gros.. si la taille retournee est la meme que le buffer,
-		// il y a de grosse chance qu'il reste du data cote serveur..
-		// donc faire une boucle
+		ByteBuffer buffer = bufferPool.acquire();
+		int count = 0;
 		
-		if(callbackHandler!=null){
-			callbackHandler.handle(dgmPacket2.getAddress().getHostAddress(), dgmPacket2.getPort(), packetData);
+		try {
+			synchronized (dgmPacket) {
+				ssdpUniSock.setSoTimeout(blocking ? 0 : timeout);
+				
+				try {
+					while(count<maxMessages){
+						dgmPacket.setData(buffer.array(), 0, buffer.capacity());
+						
+						try {
+							ssdpUniSock.receive(dgmPacket);
+						} catch (SocketTimeoutException e) {
+							if(count==0){
+								throw e;
+							}
+							break;
+						}
+						
+						String remoteAddr = getHostAddress(dgmPacket.getAddress());
+						
+						if(rawHandler!=null){
+							buffer.clear();
+							buffer.limit(dgmPacket.getLength());
+							rawHandler.handle(remoteAddr, dgmPacket.getPort(), buffer);
+						} else {
+							String packetData = new String(buffer.array(), 0, dgmPacket.getLength(), SSDPMessageEncoder.US_ASCII);
+							
+							if(batchHandler!=null){
+								batch.add(remoteAddr, dgmPacket.getPort(), packetData);
+							} else if(callbackHandler!=null){
+								callbackHandler.handle(remoteAddr, dgmPacket.getPort(), packetData);
+							}
+						}
+						
+						if(count++==0){
+							ssdpUniSock.setSoTimeout(BATCH_RECEIVE_TIMEOUT);
+						}
+					}
+				} finally {
+					ssdpUniSock.setSoTimeout(blocking ? 0 : timeout);
+				}
+				
+				if(batchHandler!=null){
+					batchHandler.handleBatch(batch);
+				}
+			}
+		} finally {
+			if(batch!=null){
+				batch.clear();
+			}
+			bufferPool.release(buffer);
 		}
-
+		
+		return count;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * The messages are received by a daemon Thread.
+	 */
+	@Override
+	public synchronized void start(ISSDPResponseHandler callbackHandler) throws Exception {
+		if(ssdpUniSock.isClosed()){
+			throw new IllegalStateException("MulticastListener is stopped");
+		}
+		if(started){
+			return;
+		}
+		
+		this.callbackHandler = callbackHandler;
+		
+		// no timeout : the Thread sleeps until a message is received or the socket is closed
+		ssdpUniSock.setSoTimeout(0);
+		
+		started = true;
+		
+		receiveThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				receiveLoop();
+			}
+		}, "MulticastListener-" + ssdpUniSock.getLocalPort());
+		receiveThread.setDaemon(true);
+		receiveThread.start();
+	}
+	
+	/**
+	 * Receives the messages until the socket is closed
+	 */
+	private void receiveLoop() {
+		while(started && !ssdpUniSock.isClosed()){
+			try {
+				if(batchSize>1){
+					receive(true, batchSize);
+				} else {
+					receive(true);
+				}
+			} catch (Exception e) {
+				if(!started || ssdpUniSock.isClosed()){
+					break;
+				}
+				logger.log(Level.WARNING, e.getMessage(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the address of the sender as a String.  The String of the last sender is reused,
+	 * the same devices send most of the messages.  Called with the lock of dgmPacket.
+	 */
+	private String getHostAddress(InetAddress address) {
+		if(!address.equals(lastAddress)){
+			lastAddress = address;
+			lastHostAddress = address.getHostAddress();
+		}
+		return lastHostAddress;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Closes the socket, the blocked receive returns immediately.
+	 */
+	@Override
+	public void stop() throws Exception {
+		started = false;
+		ssdpUniSock.close();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isStarted() {
+		return started;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Used by the Thread started with {@link #start(ISSDPResponseHandler)}.
+	 */
+	@Override
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Used by the Thread started with {@link #start(ISSDPResponseHandler)}.
+	 */
+	@Override
+	public void setBatchSize(int batchSize) {
+		if(batchSize<1){
+			throw new IllegalArgumentException("Invalid batch size : " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Returns the pool that provides the receive buffers
+	 * @return ByteBufferPool
+	 */
+	public ByteBufferPool getBufferPool() {
+		return bufferPool;
+	}
+	
+	/**
+	 * Sets the pool that provides the receive buffers.  The pool must contains heap buffers.
+	 * @param bufferPool ByteBufferPool
+	 */
+	public void setBufferPool(ByteBufferPool bufferPool) {
+		if(bufferPool.isDirect()){
+			throw new IllegalArgumentException("MulticastSocket requires heap buffers");
+		}
+		this.bufferPool = bufferPool;
 	}
 
 	@Override
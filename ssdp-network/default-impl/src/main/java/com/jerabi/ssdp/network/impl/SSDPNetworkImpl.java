@@ -1,49 +1,147 @@
 package com.jerabi.ssdp.network.impl;
 
+import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
 import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
 import com.jerabi.ssdp.network.IMulticastListener;
 import com.jerabi.ssdp.network.ISSDPNetwork;
+import com.jerabi.ssdp.network.ISSDPRawNetwork;
 import com.jerabi.ssdp.network.IUDPSender;
 import com.jerabi.ssdp.network.impl.SSDPNetworkImpl;
 
 /**
  * test default implementation ssdp network
+ * 
+ * The multicast messages are sent with one MulticastSocket per NetworkInterface.  The sockets
+ * are kept open and reused for all the messages until {@link #close()} is called.
+ * 
  * @author Sebastien Dionne
  *
  */
-public class SSDPNetworkImpl implements ISSDPNetwork {
+public class SSDPNetworkImpl implements ISSDPRawNetwork {
 	
 	private static final Logger logger = Logger.getLogger(SSDPNetworkImpl.class.getName());
 	
-	// SSDPPeriodicMessageSender ->
+	// sockets used to send multicast messages. The key null is the default interface
+	private final Map<NetworkInterface, MulticastSocket> socketMap = new HashMap<NetworkInterface, MulticastSocket>();
+	
 	/**
-	 * {@inheritDoc}
+	 * Returns the socket used to send multicast messages on a NetworkInterface.  The socket is 
+	 * created on the first call and reused until {@link #close()} is called.
+	 * 
+	 * @param ni NetworkInterface or null to use the default interface
+	 * @return MulticastSocket
+	 * @throws IOException
 	 */
-	@Override
-	public void sendMulticastMessage(String msg, SocketAddress address) throws Exception {
-		try {
-
-			MulticastSocket ssdpUniSock = new MulticastSocket(null);
-			ssdpUniSock.setReuseAddress(true);
+	protected MulticastSocket getMulticastSocket(NetworkInterface ni) throws IOException {
+		synchronized (socketMap) {
+			MulticastSocket ssdpUniSock = socketMap.get(ni);
 			
-			logger.info("sending message \n" + msg);
-			
-			DatagramPacket dgmPacket = new DatagramPacket(msg.getBytes(), msg.length(), address);
+			if(ssdpUniSock==null || ssdpUniSock.isClosed()){
+				ssdpUniSock = new MulticastSocket(null);
+				ssdpUniSock.setReuseAddress(true);
+				if(ni!=null){
+					ssdpUniSock.setNetworkInterface(ni);
+				}
+				socketMap.put(ni, ssdpUniSock);
+			}
 			
+			return ssdpUniSock;
+		}
+	}
+	
+	/**
+	 * Sends the packet with the socket of the NetworkInterface.  If the send fails,
+	 * the socket is closed and will be recreated for the next message, and the exception is 
+	 * thrown to the caller (the {@link com.jerabi.ssdp.sender.SSDPSendQueue} counts the failures).
+	 * 
+	 * @param dgmPacket packet to send
+	 * @param ni NetworkInterface or null to use the default interface
+	 * @throws IOException if the packet can't be sent
+	 */
+	private void send(DatagramPacket dgmPacket, NetworkInterface ni) throws IOException {
+		MulticastSocket ssdpUniSock = getMulticastSocket(ni);
+		try {
 			ssdpUniSock.send(dgmPacket);
-
+		} catch (IOException e) {
+			synchronized (socketMap) {
+				if(socketMap.get(ni)==ssdpUniSock){
+					socketMap.remove(ni);
+				}
+			}
 			ssdpUniSock.close();
-
-		} catch (Throwable e) {
+			
+			throw e;
 		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Closes the sockets used to send multicast messages.
+	 */
+	@Override
+	public void close() throws Exception {
+		synchronized (socketMap) {
+			for (MulticastSocket ssdpUniSock : socketMap.values()) {
+				ssdpUniSock.close();
+			}
+			socketMap.clear();
+		}
+	}
+	
+	// SSDPPeriodicMessageSender ->
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(String msg, SocketAddress address) throws Exception {
+		logger.info("sending message \n" + msg);
+		
+		byte[] data = msg.getBytes(SSDPMessageEncoder.US_ASCII);
+		send(new DatagramPacket(data, data.length, address), null);
+	}
+	
+	// SSDPPeriodicMessageSender ->
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(String msg, SocketAddress address, NetworkInterface ni) throws Exception {
+		logger.info("sending message on " + ni + "\n" + msg);
+		
+		byte[] data = msg.getBytes(SSDPMessageEncoder.US_ASCII);
+		send(new DatagramPacket(data, data.length, address), ni);
+	}
+	
+	// SSDPSendQueue ->
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(byte[] data, SocketAddress address) throws Exception {
+		logger.info("sending " + data.length + " bytes");
+		
+		send(new DatagramPacket(data, data.length, address), null);
+	}
+	
+	// SSDPSendQueue ->
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(byte[] data, SocketAddress address, NetworkInterface ni) throws Exception {
+		logger.info("sending " + data.length + " bytes on " + ni);
 		
+		send(new DatagramPacket(data, data.length, address), ni);
 	}
 	
 	// SSDPPeriodicMessageSender ->
@@ -52,22 +150,10 @@ public class SSDPNetworkImpl implements ISSDPNetwork {
 	 */
 	@Override
 	public void sendMulticastMessage(String msg, InetAddress address, int port) throws Exception {
-		try {
-
-			MulticastSocket ssdpUniSock = new MulticastSocket(null);
-			ssdpUniSock.setReuseAddress(true);
-			
-			logger.info("sending message \n" + msg);
-			
-			DatagramPacket dgmPacket = new DatagramPacket(msg.getBytes(), msg.length(), address, port);
-			
-			ssdpUniSock.send(dgmPacket);
-
-			ssdpUniSock.close();
-
-		} catch (Throwable e) {
-		}
+		logger.info("sending message \n" + msg);
 		
+		byte[] data = msg.getBytes(SSDPMessageEncoder.US_ASCII);
+		send(new DatagramPacket(data, data.length, address, port), null);
 	}
 	
 	// SSDPPeriodicMessageSender ->
@@ -129,10 +215,5 @@ public class SSDPNetworkImpl implements ISSDPNetwork {
 		throw new RuntimeException("Not implemented");
 	}
 
-	@Override
-	public void sendMulticastMessage(String message, SocketAddress address, NetworkInterface ni) throws Exception {
-		throw new RuntimeException("Not implemented");
-	}
-
 
 }
@@ -1,25 +1,38 @@
 package com.jerabi.ssdp.network.impl;
 
+import java.io.Closeable;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+import com.jerabi.ssdp.network.ByteBufferPool;
 import com.jerabi.ssdp.network.IUDPSender;
 
 /**
+ * 
+ * In multiple responses mode, the responses are handled as they arrive until the TTL expired.
+ * 
+ * The response buffers are taken from a {@link ByteBufferPool} and given back once the
+ * response is handled.
  * 
  * @author Sebastien Dionne
  *
  */
-public class UDPSender implements IUDPSender {
+public class UDPSender implements IUDPSender, Closeable {
 	private static final Logger logger = Logger.getLogger(UDPSender.class.getName());
 	
 	private DatagramSocket ssdpUniSock = null;
+	private ByteBufferPool bufferPool = ByteBufferPool.getHeapPool();
+	private final DatagramPacket dgmPacket = new DatagramPacket(new byte[0], 0);
+	private boolean multipleResponses = false;
 	
 	public UDPSender() throws Exception {
 
@@ -36,59 +49,192 @@ public class UDPSender implements IUDPSender {
 	
 	/**
 	 * {@inheritDoc}
+	 * If no response is received, a {@link SocketTimeoutException} is thrown, unless
+	 * the multiple responses mode is enabled.
 	 */
 	@Override
-	public void sendMessage(String msg, SocketAddress address, ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
+	public int sendMessage(String msg, SocketAddress address, ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
 		
-		DatagramPacket dgmPacket = new DatagramPacket(msg.getBytes(), msg.length(), address);
+		byte[] data = msg.getBytes(SSDPMessageEncoder.US_ASCII);
+		DatagramPacket dgmPacket = new DatagramPacket(data, data.length, address);
 		
 		ssdpUniSock.send(dgmPacket);
 		
+		if(multipleResponses){
+			return receiveResponses(callbackHandler, ttl);
+		}
+		
 		ssdpUniSock.setSoTimeout(ttl*1000); // convert to seconds
 		
-		byte buf[] = new byte[1024];
-		DatagramPacket dgmPacket2 = new DatagramPacket(buf, buf.length);
-		ssdpUniSock.receive(dgmPacket2);
+		receiveResponse(callbackHandler);
 		
-		int packetLen = dgmPacket2.getLength();
-		String packetData = new String(dgmPacket2.getData(), 0, packetLen);
+		return 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int sendMessage(String msg, InetAddress address, int port, ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
 		
-		logger.finest("discover response : \n" + packetData);
+		byte[] data = msg.getBytes(SSDPMessageEncoder.US_ASCII);
+		DatagramPacket dgmPacket = new DatagramPacket(data, data.length, address, port);
 		
-		if(callbackHandler!=null){
-			callbackHandler.handle(dgmPacket2.getAddress().getHostAddress(), dgmPacket2.getPort(), packetData);
+		if(multipleResponses){
+			ssdpUniSock.send(dgmPacket);
+			
+			return receiveResponses(callbackHandler, ttl);
 		}
-
+		
+		ssdpUniSock.setSoTimeout(ttl*1000); // convert to seconds
+		ssdpUniSock.send(dgmPacket);
+		
+		try {
+			receiveResponse(callbackHandler);
+		} catch (SocketTimeoutException e) {
+			return 0;
+		}
+		
+		return 1;
 	}
-
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void sendMessage(String msg, InetAddress address, int port, ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
+	public void sendMessage(String msg, SocketAddress address) throws Exception {
 		
-		DatagramPacket dgmPacket = new DatagramPacket(msg.getBytes(), msg.length(), address, port);
+		byte[] data = msg.getBytes(SSDPMessageEncoder.US_ASCII);
+		DatagramPacket dgmPacket = new DatagramPacket(data, data.length, address);
 		
-		ssdpUniSock.setSoTimeout(ttl*1000); // convert to seconds
 		ssdpUniSock.send(dgmPacket);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void receive(ISSDPResponseHandler callbackHandler, int timeout) throws Exception {
+		ssdpUniSock.setSoTimeout(timeout);
+		
+		receiveResponse(callbackHandler);
+	}
+	
+	/**
+	 * Receives the responses until the TTL expired.  The socket timeout is reduced after each response
+	 * so the method doesn't wait longer than the TTL.  A response that the handler fails to handle
+	 * doesn't stop the next ones.
+	 * 
+	 * @param callbackHandler handle the responses
+	 * @param ttl Time to live in seconds
+	 * @return the number of responses received
+	 * @throws Exception
+	 */
+	private int receiveResponses(ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
+		long deadline = System.currentTimeMillis() + ttl*1000L; // convert to seconds
+		int count = 0;
+		
+		long remaining = ttl*1000L;
+		while(remaining>0){
+			ssdpUniSock.setSoTimeout((int)remaining);
+			
+			try {
+				receiveResponse(callbackHandler);
+			} catch (SocketTimeoutException e) {
+				break;
+			}
+			count++;
+			
+			remaining = deadline - System.currentTimeMillis();
+		}
+		
+		logger.fine(count + " responses received");
+		
+		return count;
+	}
+	
+	/**
+	 * Receives a response in a pooled buffer and forwards it to the handler.
+	 * The exceptions of the handler are logged, only the exceptions of the socket are thrown.
+	 * 
+	 * @param callbackHandler handle the response
+	 * @throws Exception
+	 */
+	private void receiveResponse(ISSDPResponseHandler callbackHandler) throws Exception {
+		ByteBuffer buffer = bufferPool.acquire();
 		
 		try {
-			byte buf[] = new byte[1024];
-			DatagramPacket dgmPacket2 = new DatagramPacket(buf, buf.length);
-			ssdpUniSock.receive(dgmPacket2);
+			InetAddress remoteAddr = null;
+			int remotePort;
+			int packetLen;
 			
-			int packetLen = dgmPacket2.getLength();
-			String packetData = new String(dgmPacket2.getData(), 0, packetLen);
+			synchronized (dgmPacket) {
+				dgmPacket.setData(buffer.array(), 0, buffer.capacity());
+				ssdpUniSock.receive(dgmPacket);
+				
+				remoteAddr = dgmPacket.getAddress();
+				remotePort = dgmPacket.getPort();
+				packetLen = dgmPacket.getLength();
+			}
+			
+			String packetData = new String(buffer.array(), 0, packetLen, SSDPMessageEncoder.US_ASCII);
 			
 			logger.finest("discover response : \n" + packetData);
 			
 			if(callbackHandler!=null){
-				callbackHandler.handle(dgmPacket2.getAddress().getHostAddress(), dgmPacket2.getPort(), packetData);
+				try {
+					callbackHandler.handle(remoteAddr.getHostAddress(), remotePort, packetData);
+				} catch (Exception e) {
+					// a bad response must not stop the others
+					logger.log(Level.WARNING, "Response from " + remoteAddr.getHostAddress() + " not handled", e);
+				}
 			}
-		} catch (SocketTimeoutException e) {
-			// does nothing
+		} finally {
+			bufferPool.release(buffer);
 		}
-
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isMultipleResponses() {
+		return multipleResponses;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setMultipleResponses(boolean multipleResponses) {
+		this.multipleResponses = multipleResponses;
+	}
+	
+	/**
+	 * Returns the pool that provides the response buffers
+	 * @return ByteBufferPool
+	 */
+	public ByteBufferPool getBufferPool() {
+		return bufferPool;
+	}
+	
+	/**
+	 * Sets the pool that provides the response buffers.  The pool must contains heap buffers.
+	 * @param bufferPool ByteBufferPool
+	 */
+	public void setBufferPool(ByteBufferPool bufferPool) {
+		if(bufferPool.isDirect()){
+			throw new IllegalArgumentException("DatagramSocket requires heap buffers");
+		}
+		this.bufferPool = bufferPool;
+	}
+	
+	/**
+	 * Closes the socket
+	 */
+	@Override
+	public void close() {
+		ssdpUniSock.close();
 	}
 
 }
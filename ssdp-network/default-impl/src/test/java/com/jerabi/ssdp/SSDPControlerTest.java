@@ -31,6 +31,7 @@ import com.jerabi.ssdp.message.UpdateMessage;
 import com.jerabi.ssdp.message.helper.SSDPMessageHelper;
 import com.jerabi.ssdp.sender.SSDPDiscoverSender;
 import com.jerabi.ssdp.sender.SSDPPeriodicMessageSender;
+import com.jerabi.ssdp.sender.SSDPSendQueue;
 import com.jerabi.ssdp.util.SSDPContants;
 import com.jerabi.ssdp.util.State;
 
@@ -201,6 +202,38 @@ public class SSDPControlerTest {
 		assertEquals(1, controler.getServiceInfoList().size());
 	}
 
+	@Test
+	public void testModifiedWhileIterated() throws Exception {
+		controler.addServiceInfo(new ServiceInfo());
+		controler.addServiceInfo(new ServiceInfo());
+		
+		// modified by the application while a sender iterates the list
+		int count = 0;
+		for (ServiceInfo serviceInfo : controler.getServiceInfoList()) {
+			controler.addServiceInfo(new ServiceInfo());
+			count++;
+		}
+		assertEquals(2, count);
+		assertEquals(4, controler.getServiceInfoList().size());
+		
+		final CountDownLatch latch = new CountDownLatch(2);
+		controler.addMessageHandler(new SSDPDefaultMessageHandler(){
+			@Override
+			public void processSSDPAliveMessage(AliveMessage ssdpMessage)
+					throws Exception {
+				latch.countDown();
+				// a handler added while the message is processed
+				controler.addMessageHandler(new SSDPDefaultMessageHandler());
+			}});
+		
+		controler.processSSDPMessage(aliveMessage);
+		assertEquals(2, controler.getMessageHandlerList().size());
+		
+		controler.processSSDPMessage(aliveMessage);
+		assertEquals(0, latch.getCount());
+		assertEquals(3, controler.getMessageHandlerList().size());
+	}
+
 	@Test
 	public void testStartandStopAll() {
 		try {
@@ -448,6 +481,34 @@ public class SSDPControlerTest {
 		
 	}
 	
+	@Test
+	public void testStopSharedResources() throws Exception {
+		SSDPControler other = new SSDPControler();
+		
+		controler.setPeriodicSenderEnabled(false);
+		controler.setDiscoverSenderEnabled(false);
+		controler.setMulticastListenerEnabled(false);
+		other.setPeriodicSenderEnabled(false);
+		other.setDiscoverSenderEnabled(false);
+		other.setMulticastListenerEnabled(false);
+		
+		controler.start();
+		other.start();
+		
+		SSDPSendQueue queue = SSDPSendQueue.getMulticastQueue();
+		
+		// the other controler still uses the shared queue
+		controler.stop();
+		assertEquals(State.STARTED, queue.getState());
+		
+		// stopped twice, released once
+		controler.stop();
+		assertEquals(State.STARTED, queue.getState());
+		
+		other.stop();
+		assertEquals(State.STOPPED, queue.getState());
+	}
+	
 	@Test
 	public void testProcessSSDPMessageISSDPMessage() {
 		final CountDownLatch aliveLatch = new CountDownLatch(2);
@@ -560,6 +621,81 @@ public class SSDPControlerTest {
 
 	}
 
+	@Test
+	public void testProcessSSDPMessageHandlerModified() throws Exception {
+		final CountDownLatch firstLatch = new CountDownLatch(3);
+		final CountDownLatch secondLatch = new CountDownLatch(1);
+		
+		ISSDPMessageHandler first = new SSDPDefaultMessageHandler(){
+			@Override
+			public void processSSDPAliveMessage(AliveMessage ssdpMessage)
+					throws Exception {
+				firstLatch.countDown();
+			}};
+		ISSDPMessageHandler second = new SSDPDefaultMessageHandler(){
+			@Override
+			public void processSSDPAliveMessage(AliveMessage ssdpMessage)
+					throws Exception {
+				secondLatch.countDown();
+			}};
+		
+		controler.addMessageHandler(first);
+		controler.processSSDPMessage(aliveMessage);
+		
+		// handlers added and removed without the controler
+		controler.getMessageHandlerList().add(second);
+		controler.processSSDPMessage(aliveMessage);
+		
+		controler.getMessageHandlerList().remove(second);
+		controler.processSSDPMessage(aliveMessage);
+		
+		assertEquals(0, firstLatch.getCount());
+		assertEquals(0, secondLatch.getCount());
+		
+		// replaced without changing the size
+		final CountDownLatch thirdLatch = new CountDownLatch(1);
+		controler.getMessageHandlerList().set(0, new SSDPDefaultMessageHandler(){
+			@Override
+			public void processSSDPAliveMessage(AliveMessage ssdpMessage)
+					throws Exception {
+				thirdLatch.countDown();
+			}});
+		controler.processSSDPMessage(aliveMessage);
+		
+		assertEquals(0, thirdLatch.getCount());
+	}
+
+	@Test
+	public void testProcessSSDPMessageHandlerReplaced() throws Exception {
+		final CountDownLatch firstLatch = new CountDownLatch(1);
+		final CountDownLatch secondLatch = new CountDownLatch(1);
+		
+		ISSDPMessageHandler first = new SSDPDefaultMessageHandler(){
+			@Override
+			public void processSSDPAliveMessage(AliveMessage ssdpMessage)
+					throws Exception {
+				firstLatch.countDown();
+			}};
+		ISSDPMessageHandler second = new SSDPDefaultMessageHandler(){
+			@Override
+			public void processSSDPAliveMessage(AliveMessage ssdpMessage)
+					throws Exception {
+				secondLatch.countDown();
+			}};
+		
+		// a list that is not the list of the controler, the handler is replaced without changing the size
+		List<ISSDPMessageHandler> list = new ArrayList<ISSDPMessageHandler>();
+		list.add(first);
+		controler.messageHandlerList = list;
+		controler.processSSDPMessage(aliveMessage);
+		
+		list.set(0, second);
+		controler.processSSDPMessage(aliveMessage);
+		
+		assertEquals(0, firstLatch.getCount());
+		assertEquals(0, secondLatch.getCount());
+	}
+
 	public static String createByeByeMessage(){
 		
 		/*
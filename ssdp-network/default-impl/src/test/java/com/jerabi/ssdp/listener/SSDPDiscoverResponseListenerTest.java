@@ -0,0 +1,178 @@
+package com.jerabi.ssdp.listener;
+
+import static org.junit.Assert.*;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+
+import com.jerabi.ssdp.handler.SSDPDefaultResponseHandler;
+import com.jerabi.ssdp.network.impl.UDPSender;
+import com.jerabi.ssdp.util.State;
+
+public class SSDPDiscoverResponseListenerTest {
+
+	private static final int PORT = 5034;
+
+	private SSDPDiscoverResponseListener responseListener = null;
+	private DatagramSocket responder = null;
+
+	@Before
+	public void setUp() throws Exception {
+		responseListener = new SSDPDiscoverResponseListener(new UDPSender());
+
+		responder = new DatagramSocket(null);
+		responder.setReuseAddress(true);
+		responder.bind(new InetSocketAddress("127.0.0.1", PORT));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		responseListener.stop();
+		responder.close();
+	}
+
+	private static String search(String st) {
+		return "M-SEARCH * HTTP/1.1\r\nHOST: 127.0.0.1:" + PORT + "\r\nMAN: \"ssdp:discover\"\r\nMX: 2\r\nST: " + st + "\r\n\r\n";
+	}
+
+	private static String response(String st) {
+		return "HTTP/1.1 200 OK\r\nCACHE-CONTROL: max-age=1800\r\nST: " + st + "\r\nUSN: uuid:1::" + st + "\r\n\r\n";
+	}
+
+	// responds to each M-SEARCH with the ST of the search
+	private void respond(int count) throws Exception {
+		for (int i = 0; i < count; i++) {
+			byte[] buf = new byte[1024];
+			DatagramPacket packet = new DatagramPacket(buf, buf.length);
+			responder.receive(packet);
+
+			String message = new String(packet.getData(), 0, packet.getLength());
+			int start = message.indexOf("\r\nST: ") + 6;
+			String st = message.substring(start, message.indexOf("\r\n", start));
+
+			byte[] data = response(st).getBytes();
+			responder.send(new DatagramPacket(data, data.length, packet.getSocketAddress()));
+		}
+	}
+
+	@Test
+	public void testDemultiplex() throws Exception {
+		final CountDownLatch rootLatch = new CountDownLatch(1);
+		final CountDownLatch mediaLatch = new CountDownLatch(1);
+
+		SSDPSearch rootSearch = responseListener.search(search("upnp:rootdevice"), "127.0.0.1", PORT, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				assertTrue(message.contains("ST: upnp:rootdevice"));
+				rootLatch.countDown();
+			}
+		}, 2);
+
+		SSDPSearch mediaSearch = responseListener.search(search("urn:schemas-upnp-org:device:MediaServer:1"), "127.0.0.1", PORT, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				assertTrue(message.contains("ST: urn:schemas-upnp-org:device:MediaServer:1"));
+				mediaLatch.countDown();
+			}
+		}, 2);
+
+		assertEquals(State.STARTED, responseListener.getState());
+		assertEquals(2, responseListener.getSearchList().size());
+
+		respond(2);
+
+		assertTrue(rootLatch.await(2, TimeUnit.SECONDS));
+		assertTrue(mediaLatch.await(2, TimeUnit.SECONDS));
+
+		assertEquals(1, rootSearch.getResponseCount());
+		assertEquals(1, mediaSearch.getResponseCount());
+	}
+
+	@Test
+	public void testSearchAll() throws Exception {
+		SSDPSearch allSearch = responseListener.search(search("ssdp:all"), "127.0.0.1", PORT, null, 2);
+		SSDPSearch rootSearch = responseListener.search(search("upnp:rootdevice"), "127.0.0.1", PORT, null, 2);
+
+		respond(2);
+
+		long end = System.currentTimeMillis() + 2000;
+		while (allSearch.getResponseCount() < 2 && System.currentTimeMillis() < end) {
+			Thread.sleep(50);
+		}
+
+		assertEquals(2, allSearch.getResponseCount());
+		assertEquals(1, rootSearch.getResponseCount());
+	}
+
+	@Test
+	public void testSameSearchTwice() throws Exception {
+		final AtomicInteger handled = new AtomicInteger();
+		SSDPDefaultResponseHandler handler = new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				handled.incrementAndGet();
+			}
+		};
+
+		// the M-SEARCH is sent twice, the second joins the first search
+		SSDPSearch search = responseListener.search(search("upnp:rootdevice"), "127.0.0.1", PORT, handler, 2);
+		assertSame(search, responseListener.search(search("upnp:rootdevice"), "127.0.0.1", PORT, handler, 2));
+		assertEquals(1, responseListener.getSearchList().size());
+		assertSame(search, responseListener.getSearch(search.getId()));
+
+		// another search of the same handler that matches the same responses
+		SSDPSearch allSearch = responseListener.search(search("ssdp:all"), "127.0.0.1", PORT, handler, 2);
+		assertNotSame(search, allSearch);
+
+		respond(3);
+
+		long end = System.currentTimeMillis() + 2000;
+		while (allSearch.getResponseCount() < 3 && System.currentTimeMillis() < end) {
+			Thread.sleep(50);
+		}
+
+		// each response reaches the handler once
+		assertEquals(3, handled.get());
+		assertEquals(2, search.getResponseCount());
+		assertEquals(3, allSearch.getResponseCount());
+	}
+
+	@Test
+	public void testStop() throws Exception {
+		SSDPSearch search = responseListener.search(search("upnp:rootdevice"), "127.0.0.1", PORT, null, 2);
+
+		responseListener.stop();
+
+		assertTrue(search.isDone());
+		assertEquals(0, responseListener.getSearchList().size());
+		assertEquals(State.STOPPED, responseListener.getState());
+
+		// restarted by the next search
+		final CountDownLatch latch = new CountDownLatch(1);
+		search = responseListener.search(search("upnp:rootdevice"), "127.0.0.1", PORT, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				latch.countDown();
+			}
+		}, 2);
+		assertEquals(State.STARTED, responseListener.getState());
+
+		respond(1);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+
+		// the sender created by the listener is closed
+		SSDPDiscoverResponseListener ownListener = new SSDPDiscoverResponseListener();
+		ownListener.search(search("upnp:rootdevice"), "127.0.0.1", PORT, null, 2);
+		UDPSender sender = (UDPSender) ownListener.getUDPSender();
+		ownListener.stop();
+		assertNotSame(sender, ownListener.getUDPSender());
+		ownListener.stop();
+	}
+
+}
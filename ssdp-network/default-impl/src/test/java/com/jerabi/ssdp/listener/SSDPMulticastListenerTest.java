@@ -11,9 +11,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.*;
 
+import com.jerabi.ssdp.filter.SSDPFilterChain;
+import com.jerabi.ssdp.filter.SSDPHeaderFilter;
+import com.jerabi.ssdp.filter.SSDPPacket;
 import com.jerabi.ssdp.handler.SSDPDefaultResponseHandler;
 import com.jerabi.ssdp.listener.SSDPMulticastListener;
 import com.jerabi.ssdp.network.IMulticastListener;
@@ -371,5 +375,166 @@ public class SSDPMulticastListenerTest {
 		assertEquals(State.STOPPED, listener2.getState());
 		
 	}
+	
+	@Test
+	public void testSSDPMulticastListenerShards() throws Exception {
+		final String msg = "Hello from testSSDPMulticastListenerShards";
+		final int port = 5033;
+		final int messages = 20;
+		final AtomicInteger handled = new AtomicInteger();
+		final CountDownLatch countDown = new CountDownLatch(messages);
+		
+		SSDPMulticastListener listener2 = new SSDPMulticastListener(SSDPContants.DEFAULT_IP, port, 500, false);
+		
+		assertEquals(1, listener2.getShardCount());
+		try {
+			listener2.setShardCount(0);
+			fail("Should had thrown IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		listener2.setShardCount(4);
+		assertEquals(4, listener2.getShardCount());
+		
+		listener2.setSSDPResponseHandler(new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				if (msg.equals(message)) {
+					handled.incrementAndGet();
+					countDown.countDown();
+				}
+			}
+		});
+		
+		Thread t2 = new Thread(listener2);
+		t2.start();
+		
+		Thread.sleep(1000);
+		
+		int shardThreads = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if(thread.getName().startsWith("SSDPMulticastListener-shard-") && thread.isAlive()){
+				shardThreads++;
+			}
+		}
+		assertEquals(4, shardThreads);
+		
+		// half multicast, half unicast : the unicast messages are handled whatever the shard of the sender
+		DatagramSocket socket = new DatagramSocket();
+		for (int i = 0; i < messages; i++) {
+			InetAddress address = InetAddress.getByName(i%2==0 ? SSDPContants.DEFAULT_IP : "127.0.0.1");
+			socket.send(new DatagramPacket(msg.getBytes(), msg.length(), address, port));
+		}
+		socket.close();
+		
+		assertTrue(countDown.await(5, TimeUnit.SECONDS));
+		
+		// each message is handled once
+		Thread.sleep(500);
+		assertEquals(messages, handled.get());
+		assertEquals(0, listener2.getShardDroppedCount());
+		
+		listener2.setState(State.STOPPED);
+		t2.join(2000);
+		assertFalse(t2.isAlive());
+	}
+	
+	@Test
+	public void testGetShardIndex() {
+		assertEquals(0, SSDPMulticastListener.getShardIndex("192.168.1.10", 1));
+		assertEquals(0, SSDPMulticastListener.getShardIndex(null, 4));
+		
+		for (int i = 0; i < 255; i++) {
+			String address = "192.168.1." + i;
+			int shard = SSDPMulticastListener.getShardIndex(address, 4);
+			assertTrue(shard>=0 && shard<4);
+			assertEquals(shard, SSDPMulticastListener.getShardIndex(address, 4));
+		}
+	}
+
+	@Test
+	public void testStopImmediately() throws Exception {
+		final String msg = "Hello from testStopImmediately";
+		final CountDownLatch countDown = new CountDownLatch(1);
+		
+		// the timeout is longer than the delay allowed to stop
+		SSDPMulticastListener listener2 = new SSDPMulticastListener(SSDPContants.DEFAULT_IP, 5036, 5000, false);
+		listener2.setSSDPResponseHandler(new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				if (msg.equals(message)) {
+					countDown.countDown();
+				}
+			}
+		});
+		
+		Thread t2 = new Thread(listener2);
+		t2.start();
+		
+		Thread.sleep(500);
+		
+		DatagramSocket socket = new DatagramSocket();
+		socket.send(new DatagramPacket(msg.getBytes(), msg.length(), InetAddress.getByName("127.0.0.1"), 5036));
+		socket.close();
+		
+		assertTrue(countDown.await(2, TimeUnit.SECONDS));
+		
+		long start = System.currentTimeMillis();
+		listener2.setState(State.STOPPED);
+		t2.join(2000);
+		
+		assertFalse(t2.isAlive());
+		assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+
+	@Test
+	public void testFilterChain() throws Exception {
+		final String msg = "NOTIFY * HTTP/1.1\r\nNT: upnp:rootdevice\r\nNTS: ssdp:alive\r\n\r\n";
+		final String dropped = "NOTIFY * HTTP/1.1\r\nNT: urn:schemas-microsoft-com:nhed:presence\r\nNTS: ssdp:alive\r\n\r\n";
+		final AtomicInteger handled = new AtomicInteger();
+		final CountDownLatch countDown = new CountDownLatch(2);
+		
+		SSDPFilterChain chain = new SSDPFilterChain();
+		chain.addRule("microsoft", new SSDPHeaderFilter(SSDPPacket.NT, "urn:schemas-microsoft-com:"), SSDPFilterChain.Action.DROP);
+		
+		SSDPMulticastListener listener2 = new SSDPMulticastListener(SSDPContants.DEFAULT_IP, 5038, 500, false);
+		listener2.setFilterChain(chain);
+		assertSame(chain, listener2.getFilterChain());
+		
+		listener2.setSSDPResponseHandler(new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				handled.incrementAndGet();
+				if (msg.equals(message)) {
+					countDown.countDown();
+				}
+			}
+		});
+		
+		Thread t2 = new Thread(listener2);
+		t2.start();
+		
+		Thread.sleep(500);
+		
+		DatagramSocket socket = new DatagramSocket();
+		for (int i = 0; i < 3; i++) {
+			socket.send(new DatagramPacket(dropped.getBytes(), dropped.length(), InetAddress.getByName("127.0.0.1"), 5038));
+		}
+		for (int i = 0; i < 2; i++) {
+			socket.send(new DatagramPacket(msg.getBytes(), msg.length(), InetAddress.getByName("127.0.0.1"), 5038));
+		}
+		socket.close();
+		
+		assertTrue(countDown.await(2, TimeUnit.SECONDS));
+		
+		// the datagrams dropped never reach the handler
+		assertEquals(2, handled.get());
+		assertEquals(3, chain.getRule("microsoft").getHitCount());
+		assertEquals(3, chain.getDroppedCount());
+		assertEquals(2, chain.getAcceptedCount());
+		
+		listener2.setState(State.STOPPED);
+		t2.join(2000);
+		assertFalse(t2.isAlive());
+	}
 
 }
@@ -0,0 +1,216 @@
+package com.jerabi.ssdp.network.impl;
+
+import static org.junit.Assert.*;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.jerabi.ssdp.handler.SSDPDefaultResponseHandler;
+import com.jerabi.ssdp.handler.SSDPRawResponseHandler;
+import com.jerabi.ssdp.handler.SSDPResponseBatch;
+import com.jerabi.ssdp.message.AliveMessage;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.helper.SSDPMessageParser;
+import com.jerabi.ssdp.network.ByteBufferPool;
+
+public class MulticastListenerTest {
+
+	private static final int PORT = 5029;
+	
+	@Test
+	public void testReceiveUsesPooledBuffers() throws Exception {
+		
+		final StringBuffer received = new StringBuffer();
+		
+		MulticastListener listener = new MulticastListener(PORT, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				received.append(message);
+			}
+		});
+		
+		ByteBufferPool pool = new ByteBufferPool(1500, 4, false);
+		listener.setBufferPool(pool);
+		
+		DatagramSocket socket = new DatagramSocket();
+		
+		try {
+			for(int i=0;i<20;i++){
+				byte[] data = Integer.toString(i%10).getBytes();
+				socket.send(new DatagramPacket(data, data.length, InetAddress.getByName("127.0.0.1"), PORT));
+				listener.receive(false);
+			}
+		} finally {
+			socket.close();
+		}
+		
+		assertEquals("01234567890123456789", received.toString());
+		
+		// the same buffer is reused for all the messages
+		assertEquals(1, pool.getAllocatedCount());
+		assertEquals(20, pool.getAcquiredCount());
+		assertEquals(20, pool.getReleasedCount());
+		assertEquals(1, pool.getPooledCount());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testDirectPoolRejected() throws Exception {
+		MulticastListener listener = new MulticastListener(PORT+1, null);
+		listener.setBufferPool(new ByteBufferPool(1500, 4, true));
+	}
+	
+	@Test
+	public void testReceiveBatch() throws Exception {
+		
+		final StringBuffer received = new StringBuffer();
+		final int[] batchCount = new int[1];
+		
+		MulticastListener listener = new MulticastListener(PORT+2, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handleBatch(SSDPResponseBatch batch) throws Exception {
+				batchCount[0]++;
+				super.handleBatch(batch);
+			}
+			
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				received.append(message);
+			}
+		});
+		
+		DatagramSocket socket = new DatagramSocket();
+		
+		try {
+			for(int i=0;i<10;i++){
+				byte[] data = Integer.toString(i).getBytes();
+				socket.send(new DatagramPacket(data, data.length, InetAddress.getByName("127.0.0.1"), PORT+2));
+			}
+			
+			// the messages already received are handled with one call
+			assertEquals(8, listener.receive(false, 8));
+			assertEquals(1, batchCount[0]);
+			assertEquals("01234567", received.toString());
+			
+			assertEquals(2, listener.receive(false, 8));
+			assertEquals(2, batchCount[0]);
+			assertEquals("0123456789", received.toString());
+		} finally {
+			socket.close();
+		}
+		
+		// nothing left, the timeout is used for the first message
+		listener.setTimeout(100);
+		try {
+			listener.receive(false, 8);
+			fail("Should had thrown SocketTimeoutException");
+		} catch (SocketTimeoutException e) {
+		}
+		assertEquals(2, batchCount[0]);
+	}
+
+	@Test
+	public void testStartStop() throws Exception {
+		
+		final CountDownLatch latch = new CountDownLatch(3);
+		
+		MulticastListener listener = new MulticastListener(PORT+6, null);
+		listener.setTimeout(50);
+		
+		assertFalse(listener.isStarted());
+		
+		listener.start(new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				latch.countDown();
+			}
+		});
+		
+		assertTrue(listener.isStarted());
+		
+		// idle longer than the timeout : the listener must still be receiving
+		Thread.sleep(200);
+		
+		DatagramSocket socket = new DatagramSocket();
+		
+		try {
+			for(int i=0;i<3;i++){
+				byte[] data = Integer.toString(i).getBytes();
+				socket.send(new DatagramPacket(data, data.length, InetAddress.getByName("127.0.0.1"), PORT+6));
+			}
+		} finally {
+			socket.close();
+		}
+		
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		
+		long start = System.currentTimeMillis();
+		listener.stop();
+		
+		assertFalse(listener.isStarted());
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		
+		try {
+			listener.start(null);
+			fail("Shouldn't restart a stopped listener");
+		} catch (IllegalStateException e) {
+		}
+	}
+	
+	@Test
+	public void testRawHandler() throws Exception {
+		
+		final List<ISSDPMessage> messageList = new CopyOnWriteArrayList<ISSDPMessage>();
+		
+		MulticastListener listener = new MulticastListener(PORT+8, new SSDPRawResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				fail("The message shouldn't be decoded");
+			}
+			
+			@Override
+			public void handle(String remoteAddr, int remotePort, ByteBuffer data) throws Exception {
+				messageList.add(SSDPMessageParser.parse(data));
+			}
+		});
+		listener.setTimeout(500);
+		
+		StringBuffer sb = new StringBuffer();
+		sb.append("NOTIFY * HTTP/1.1").append("\r\n");
+		sb.append("HOST: 239.255.255.250:1900").append("\r\n");
+		sb.append("NT: upnp:rootdevice").append("\r\n");
+		sb.append("NTS: ssdp:alive").append("\r\n");
+		sb.append("USN: uuid:1::upnp:rootdevice").append("\r\n");
+		sb.append("\r\n");
+		
+		DatagramSocket socket = new DatagramSocket();
+		
+		try {
+			byte[] data = sb.toString().getBytes();
+			for(int i=0;i<3;i++){
+				socket.send(new DatagramPacket(data, data.length, InetAddress.getByName("127.0.0.1"), PORT+8));
+			}
+			
+			listener.receive(false);
+			assertEquals(2, listener.receive(false, 4));
+		} finally {
+			socket.close();
+			listener.stop();
+		}
+		
+		assertEquals(3, messageList.size());
+		for (ISSDPMessage message : messageList) {
+			assertTrue(message instanceof AliveMessage);
+			assertEquals("uuid:1::upnp:rootdevice", ((AliveMessage) message).getUsn());
+		}
+	}
+	
+}
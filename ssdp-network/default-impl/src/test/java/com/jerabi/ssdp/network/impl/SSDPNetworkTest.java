@@ -2,9 +2,11 @@ package com.jerabi.ssdp.network.impl;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
 import java.net.SocketTimeoutException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -128,6 +130,20 @@ public class SSDPNetworkTest {
 		}
 	}
 
+	@Test
+	public void testSendFailure() throws Exception {
+		SSDPNetworkImpl instance = new SSDPNetworkImpl();
+		
+		// bigger than a UDP datagram : the failure reaches the caller
+		try {
+			instance.sendMulticastMessage(new byte[70000], new InetSocketAddress(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT));
+			fail("Should had thrown IOException");
+		} catch (IOException e) {
+		} finally {
+			instance.close();
+		}
+	}
+	
 	@Test
 	public void testCreateUDPSender() throws InstantiationException, IllegalAccessException, ClassNotFoundException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException {
 		ISSDPNetwork instance = SSDPNetworkFactory.getInstance();
@@ -440,5 +456,32 @@ public class SSDPNetworkTest {
 		assertEquals(0, latch2.getCount());
 		
 	}
+	
+	@Test
+	public void testSendMulticastMessageReuseSocket() throws Exception {
+		SSDPNetworkImpl instance = new SSDPNetworkImpl();
+		
+		String message = "testSendMulticastMessageReuseSocket";
+		InetSocketAddress address = new InetSocketAddress(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT);
+		
+		instance.sendMulticastMessage(message, address);
+		MulticastSocket socket = instance.getMulticastSocket(null);
+		
+		instance.sendMulticastMessage(message, address);
+		instance.sendMulticastMessage(message, InetAddress.getByName(SSDPContants.DEFAULT_IP), SSDPContants.DEFAULT_PORT);
+		
+		assertSame(socket, instance.getMulticastSocket(null));
+		assertFalse(socket.isClosed());
+		
+		instance.close();
+		
+		assertTrue(socket.isClosed());
+		
+		// recreated on the next message
+		instance.sendMulticastMessage(message, address);
+		assertNotSame(socket, instance.getMulticastSocket(null));
+		
+		instance.close();
+	}
 
 }
@@ -2,6 +2,8 @@ package com.jerabi.ssdp.network.impl;
 
 import static org.junit.Assert.*;
 
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -290,5 +292,98 @@ public class UDPSenderTest {
 		}
 		
 	}
+	
+	@Test
+	public void testMultipleResponses() throws Exception {
+		final int responses = 5;
+		final DatagramSocket device = new DatagramSocket(PORT+22);
+		
+		// respond several times to the same message, like several devices to a M-SEARCH
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+					device.receive(packet);
+					
+					for (int i = 0; i < responses; i++) {
+						byte[] data = ("response" + i).getBytes();
+						device.send(new DatagramPacket(data, data.length, packet.getSocketAddress()));
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		t.start();
+		
+		final CountDownLatch latch = new CountDownLatch(responses);
+		
+		UDPSender multiSender = new UDPSender();
+		assertFalse(multiSender.isMultipleResponses());
+		multiSender.setMultipleResponses(true);
+		
+		long start = System.currentTimeMillis();
+		int count = multiSender.sendMessage("M-SEARCH", InetAddress.getLocalHost(), PORT+22, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				latch.countDown();
+			}
+		}, 1);
+		
+		// waits until the TTL expired
+		assertTrue(System.currentTimeMillis() - start >= 900);
+		assertEquals(responses, count);
+		assertEquals(0, latch.getCount());
+		
+		t.join();
+		device.close();
+	}
+	
+	@Test
+	public void testMultipleResponsesHandlerFailure() throws Exception {
+		final int responses = 5;
+		final DatagramSocket device = new DatagramSocket(PORT+23);
+		
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+					device.receive(packet);
+					
+					for (int i = 0; i < responses; i++) {
+						byte[] data = ("response" + i).getBytes();
+						device.send(new DatagramPacket(data, data.length, packet.getSocketAddress()));
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		t.start();
+		
+		final CountDownLatch latch = new CountDownLatch(responses);
+		
+		UDPSender multiSender = new UDPSender();
+		multiSender.setMultipleResponses(true);
+		
+		// the handler fails on the first response, the next ones are still received
+		int count = multiSender.sendMessage("M-SEARCH", InetAddress.getLocalHost(), PORT+23, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				latch.countDown();
+				if(message.equals("response0")){
+					throw new IllegalStateException("invalid response");
+				}
+			}
+		}, 1);
+		
+		assertEquals(responses, count);
+		assertEquals(0, latch.getCount());
+		
+		t.join();
+		device.close();
+	}
 
 }
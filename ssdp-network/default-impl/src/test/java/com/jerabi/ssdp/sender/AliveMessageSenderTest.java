@@ -0,0 +1,74 @@
+package com.jerabi.ssdp.sender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jerabi.ssdp.SSDPControler;
+import com.jerabi.ssdp.message.ISSDPMessage;
+import com.jerabi.ssdp.message.ServiceInfo;
+import com.jerabi.ssdp.message.USNInfo;
+import com.jerabi.ssdp.util.SSDPContants;
+
+public class AliveMessageSenderTest {
+
+	private SSDPControler controler = null;
+	private NetworkInterface loopback = null;
+	
+	@Before
+	public void setUp() throws Exception {
+		controler = new SSDPControler();
+		controler.addServiceInfo(new ServiceInfo(SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT, "upnp:rootdevice", "http://127.0.0.1:9000/config",
+				new USNInfo("1acf6222-fc4b-33eb-bf49-e54643b4f416", "upnp:rootdevice")));
+		
+		loopback = NetworkInterface.getByInetAddress(InetAddress.getByName("127.0.0.1"));
+	}
+
+	@Test
+	public void testInterfaceLookup() throws Exception {
+		AliveMessageSender sender = new AliveMessageSender(controler, SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT, "max-age=1800", "Demo Server", 
+				Collections.singletonList(loopback));
+		
+		// the interface found again by its name
+		assertEquals("127.0.0.1", sender.getInterfaceHost(loopback));
+	}
+	
+	@Test
+	public void testAddressChanged() throws Exception {
+		final InetAddress[] address = {InetAddress.getByName("10.0.0.5")};
+		
+		// the lookup returns the address of the interface at this moment
+		AliveMessageSender sender = new AliveMessageSender(controler, SSDPContants.DEFAULT_IP, SSDPContants.DEFAULT_PORT, "max-age=1800", "Demo Server", 
+				Collections.singletonList(loopback)) {
+			@Override
+			protected Enumeration<InetAddress> getInterfaceAddresses(NetworkInterface ni) {
+				return Collections.enumeration(Collections.singletonList(address[0]));
+			}
+		};
+		
+		List<ISSDPMessage> messages = sender.getSSDPMessagesToSend();
+		assertEquals(1, messages.size());
+		assertTrue(messages.get(0).toString().contains("LOCATION: http://10.0.0.5:9000/config\r\n"));
+		
+		// same address : the message encoded is reused
+		assertSame(messages.get(0), sender.getSSDPMessagesToSend().get(0));
+		
+		// DHCP renewal
+		address[0] = InetAddress.getByName("10.0.0.6");
+		
+		List<ISSDPMessage> renewed = sender.getSSDPMessagesToSend();
+		assertNotSame(messages.get(0), renewed.get(0));
+		assertTrue(renewed.get(0).toString().contains("LOCATION: http://10.0.0.6:9000/config\r\n"));
+	}
+	
+}
@@ -112,6 +112,14 @@ public class SSDPNetwork implements ISSDPNetwork {
 		throw new RuntimeException("Not implemented");
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws Exception {
+		// no socket kept open
+	}
+
 	/**
 	 * Returns a ISSDPNetwork instance.
 	 * 
@@ -0,0 +1,105 @@
+package com.jerabi.ssdp.network.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+
+/**
+ * Helper methods shared by the NIO implementation.
+ *
+ * @author Sebastien Dionne
+ */
+public class NioHelper {
+
+	private NioHelper(){}
+
+	/**
+	 * Opens a IPv4 DatagramChannel with SO_REUSEADDR enabled.
+	 *
+	 * @param bindAddress address to bind, null for a ephemeral port
+	 * @return the channel
+	 * @throws IOException
+	 */
+	public static DatagramChannel openChannel(SocketAddress bindAddress) throws IOException {
+		DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+
+		channel.setOption(StandardSocketOptions.SO_REUSEADDR, Boolean.TRUE);
+		channel.bind(bindAddress);
+
+		return channel;
+	}
+
+	/**
+	 * Converts the datagram to a String, decoded in US-ASCII like the messages are encoded.  The buffer position is not modified.
+	 *
+	 * @param data datagram between position and limit
+	 * @return the message
+	 */
+	public static String decode(ByteBuffer data) {
+		byte[] bytes = new byte[data.remaining()];
+		data.duplicate().get(bytes);
+
+		return new String(bytes, SSDPMessageEncoder.US_ASCII);
+	}
+
+	/**
+	 * Returns the IP address of a SocketAddress
+	 * @param address socket address
+	 * @return IP address
+	 */
+	public static String getHostAddress(SocketAddress address) {
+		return ((InetSocketAddress) address).getAddress().getHostAddress();
+	}
+
+	/**
+	 * Returns the port of a SocketAddress
+	 * @param address socket address
+	 * @return port
+	 */
+	public static int getPort(SocketAddress address) {
+		return ((InetSocketAddress) address).getPort();
+	}
+
+	/**
+	 * Returns the NetworkInterfaces that are up and support multicast.  If none is found,
+	 * the loopback interfaces are returned.
+	 *
+	 * @return NetworkInterface list
+	 * @throws SocketException
+	 */
+	public static List<NetworkInterface> getMulticastInterfaces() throws SocketException {
+		List<NetworkInterface> list = new ArrayList<NetworkInterface>();
+		List<NetworkInterface> loopbackList = new ArrayList<NetworkInterface>();
+
+		Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces();
+		if(e==null){
+			return list;
+		}
+
+		for (NetworkInterface ni : Collections.list(e)) {
+			if(!ni.isUp() || !ni.getInetAddresses().hasMoreElements()){
+				continue;
+			}
+			if(ni.isLoopback()){
+				loopbackList.add(ni);
+			} else if(ni.supportsMulticast()){
+				list.add(ni);
+			}
+		}
+
+		return list.isEmpty() ? loopbackList : list;
+	}
+
+}
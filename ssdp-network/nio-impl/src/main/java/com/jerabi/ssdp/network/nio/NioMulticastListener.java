@@ -0,0 +1,387 @@
+package com.jerabi.ssdp.network.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.jerabi.ssdp.handler.ISSDPBatchResponseHandler;
+import com.jerabi.ssdp.handler.ISSDPRawResponseHandler;
+import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.handler.SSDPResponseBatch;
+import com.jerabi.ssdp.network.IEventMulticastListener;
+import com.jerabi.ssdp.network.IMulticastListener;
+import com.jerabi.ssdp.network.nio.SelectorLoop.IDatagramReader;
+
+/**
+ * {@link IMulticastListener} that uses a {@link DatagramChannel} registered on a {@link SelectorLoop}.
+ *
+ * The datagrams are read and passed to the {@link ISSDPResponseHandler} by the loop thread, as soon as they are received.
+ * {@link #receive(boolean)} doesn't read the socket, it only waits until the next message is handled.  It allows
+ * the existing polling loops (like {@link com.jerabi.ssdp.listener.SSDPMulticastListener}) to keep working.
+ *
+ * When the handler is a {@link ISSDPBatchResponseHandler}, the messages read in the same wakeup of the loop are
+ * passed to the handler with one call, up to {@link #getBatchSize()} messages per call.  A {@link ISSDPRawResponseHandler}
+ * receives the buffer read from the channel, without batch.
+ *
+ * The listener is already push based : {@link #start(ISSDPResponseHandler)} only registers the handler, and
+ * {@link #stop()} closes the channel.
+ *
+ * When {@link #joinGroup(InetAddress)} is used without a NetworkInterface, the group is joined on all the
+ * interfaces that support multicast.
+ *
+ * @author Sebastien Dionne
+ * @see DatagramChannel
+ */
+public class NioMulticastListener implements IEventMulticastListener, IDatagramReader {
+
+	private final SelectorLoop loop;
+	private final DatagramChannel channel;
+	private volatile ISSDPResponseHandler callbackHandler;
+	private volatile boolean started = false;
+	private final List<MembershipKey> membershipList = new ArrayList<MembershipKey>();
+	private NetworkInterface networkInterface = null;
+	private int timeout = 3000;
+	private int batchSize = SSDPResponseBatch.DEFAULT_CAPACITY;
+
+	// only used by the loop thread
+	private SSDPResponseBatch batch = null;
+
+	// number of messages handled.  Used by receive to wait for the next message
+	private final Object receiveLock = new Object();
+	private long receivedCount = 0;
+
+	/**
+	 * Constructor
+	 * @param loop loop that will read the channel
+	 * @param port listening port
+	 * @param callbackHandler handle the messages
+	 * @throws IOException
+	 */
+	public NioMulticastListener(SelectorLoop loop, int port, ISSDPResponseHandler callbackHandler) throws IOException {
+		this(loop, new InetSocketAddress(port), callbackHandler, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param loop loop that will read the channel
+	 * @param bindAddress listening address
+	 * @param callbackHandler handle the messages
+	 * @throws IOException
+	 */
+	public NioMulticastListener(SelectorLoop loop, SocketAddress bindAddress, ISSDPResponseHandler callbackHandler) throws IOException {
+		this(loop, bindAddress, callbackHandler, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param loop loop that will read the channel
+	 * @param bindAddress listening address
+	 * @param callbackHandler handle the messages
+	 * @param ni NetworkInterface that will be used, can be null
+	 * @throws IOException
+	 */
+	public NioMulticastListener(SelectorLoop loop, SocketAddress bindAddress, ISSDPResponseHandler callbackHandler, NetworkInterface ni) throws IOException {
+		this.loop = loop;
+		this.callbackHandler = callbackHandler;
+		this.networkInterface = ni;
+
+		// a multicast group address can't be bound on all the OS, listen on the port only
+		if(bindAddress instanceof InetSocketAddress && ((InetSocketAddress) bindAddress).getAddress()!=null && ((InetSocketAddress) bindAddress).getAddress().isMulticastAddress()){
+			bindAddress = new InetSocketAddress(((InetSocketAddress) bindAddress).getPort());
+		}
+
+		channel = NioHelper.openChannel(bindAddress);
+		if(ni!=null){
+			channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, ni);
+		}
+
+		loop.register(channel, this);
+	}
+
+	/**
+	 * Returns the channel used by this listener
+	 * @return DatagramChannel
+	 */
+	public DatagramChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Without NetworkInterface, the group is joined on all the multicast interfaces.
+	 */
+	@Override
+	public void joinGroup(InetAddress group) throws Exception {
+		if(networkInterface!=null){
+			join(group, networkInterface);
+		} else {
+			for (NetworkInterface ni : NioHelper.getMulticastInterfaces()) {
+				join(group, ni);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void joinGroup(SocketAddress socketAddress, NetworkInterface ni) throws Exception {
+		join(((InetSocketAddress) socketAddress).getAddress(), ni);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void leaveGroup(SocketAddress socketAddress, NetworkInterface ni) throws Exception {
+		leave(((InetSocketAddress) socketAddress).getAddress(), ni);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void leaveGroup(InetAddress group) throws Exception {
+		leave(group, null);
+	}
+
+	private void join(InetAddress group, NetworkInterface ni) throws IOException {
+		synchronized (membershipList) {
+			membershipList.add(channel.join(group, ni));
+		}
+	}
+
+	private void leave(InetAddress group, NetworkInterface ni) {
+		synchronized (membershipList) {
+			for (Iterator<MembershipKey> it = membershipList.iterator(); it.hasNext();) {
+				MembershipKey key = it.next();
+				if(key.group().equals(group) && (ni==null || key.networkInterface().equals(ni))){
+					key.drop();
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Waits until a message is handled by the loop thread or until the timeout expired.
+	 */
+	@Override
+	public void receive() throws Exception {
+		receive(false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The message is read and handled by the loop thread, this method only waits
+	 * until the next message is handled.  In non blocking mode a {@link SocketTimeoutException}
+	 * is thrown when the timeout expired.
+	 */
+	@Override
+	public void receive(boolean blocking) throws Exception {
+		synchronized (receiveLock) {
+			long count = receivedCount;
+			long end = System.currentTimeMillis() + timeout;
+
+			while (count==receivedCount) {
+				if(blocking){
+					receiveLock.wait();
+				} else {
+					long remaining = end - System.currentTimeMillis();
+					if(remaining<=0){
+						throw new SocketTimeoutException("Receive timed out");
+					}
+					receiveLock.wait(remaining);
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The message is read and handled by the loop thread, this method only waits
+	 * until the next messages are handled.  
+	 * 
+	 * @return the number of messages handled since the call, can be greater than maxMessages
+	 */
+	@Override
+	public int receive(boolean blocking, int maxMessages) throws Exception {
+		synchronized (receiveLock) {
+			long count = receivedCount;
+
+			receive(blocking);
+
+			return (int) (receivedCount - count);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Called by the loop thread.  With a {@link ISSDPBatchResponseHandler}, the message is added
+	 * to the batch, which is handled when it's full or when all the messages of the channel are read.
+	 */
+	@Override
+	public void read(SocketAddress source, ByteBuffer data) throws Exception {
+		ISSDPResponseHandler callbackHandler = this.callbackHandler;
+
+		if(callbackHandler instanceof ISSDPRawResponseHandler){
+			// the bytes are passed one by one, without batch
+			try {
+				((ISSDPRawResponseHandler) callbackHandler).handle(NioHelper.getHostAddress(source), NioHelper.getPort(source), data);
+			} finally {
+				handled(1);
+			}
+			return;
+		}
+
+		if(callbackHandler instanceof ISSDPBatchResponseHandler){
+			if(batch==null || batch.getCapacity()!=batchSize){
+				batch = new SSDPResponseBatch(batchSize);
+			}
+
+			batch.add(NioHelper.getHostAddress(source), NioHelper.getPort(source), NioHelper.decode(data));
+
+			if(batch.isFull()){
+				readComplete();
+			}
+			return;
+		}
+
+		try {
+			if(callbackHandler!=null){
+				callbackHandler.handle(NioHelper.getHostAddress(source), NioHelper.getPort(source), NioHelper.decode(data));
+			}
+		} finally {
+			handled(1);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Handles the pending batch.
+	 */
+	@Override
+	public void readComplete() throws Exception {
+		if(batch==null || batch.isEmpty()){
+			return;
+		}
+
+		ISSDPResponseHandler callbackHandler = this.callbackHandler;
+		int count = batch.size();
+		try {
+			if(callbackHandler instanceof ISSDPBatchResponseHandler){
+				((ISSDPBatchResponseHandler) callbackHandler).handleBatch(batch);
+			} else if(callbackHandler!=null){
+				// the handler was replaced since the batch was started
+				for (int i = 0; i < count; i++) {
+					callbackHandler.handle(batch.getRemoteAddr(i), batch.getRemotePort(i), batch.getMessage(i));
+				}
+			}
+		} finally {
+			batch.clear();
+			handled(count);
+		}
+	}
+
+	private void handled(int count) {
+		synchronized (receiveLock) {
+			receivedCount += count;
+			receiveLock.notifyAll();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The channel is already read by the loop thread, the handler replaces the handler of the constructor.
+	 */
+	@Override
+	public void start(ISSDPResponseHandler callbackHandler) throws Exception {
+		if(!channel.isOpen()){
+			throw new IllegalStateException("NioMulticastListener is stopped");
+		}
+		this.callbackHandler = callbackHandler;
+		started = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Closes the channel, see {@link #close()}.
+	 */
+	@Override
+	public void stop() throws Exception {
+		started = false;
+		close();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isStarted() {
+		return started && channel.isOpen();
+	}
+
+	/**
+	 * Returns the maximum number of messages passed to a {@link ISSDPBatchResponseHandler} with one call
+	 * @return batch size
+	 */
+	@Override
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the maximum number of messages passed to a {@link ISSDPBatchResponseHandler} with one call
+	 * @param batchSize batch size
+	 */
+	@Override
+	public void setBatchSize(int batchSize) {
+		if(batchSize<1){
+			throw new IllegalArgumentException("Invalid batch size : " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Leaves all the groups, unregisters the channel from the loop and closes it.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		synchronized (membershipList) {
+			for (MembershipKey key : membershipList) {
+				key.drop();
+			}
+			membershipList.clear();
+		}
+		loop.unregister(channel);
+		channel.close();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+}
@@ -0,0 +1,268 @@
+package com.jerabi.ssdp.network.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+import com.jerabi.ssdp.network.IUDPSender;
+import com.jerabi.ssdp.network.nio.SelectorLoop.IDatagramReader;
+
+/**
+ * {@link IUDPSender} that uses a {@link DatagramChannel} registered on a {@link SelectorLoop}.
+ *
+ * The message is sent by the calling thread.  The responses are read by the loop thread and passed
+ * to the {@link ISSDPResponseHandler} of the oldest message still waiting for a response.  The calling
+ * thread waits until the response is handled or until the TTL expired.
+ *
+ * In multiple responses mode, the message keeps receiving the responses until its TTL expired.  The calling
+ * thread always waits for the TTL.
+ *
+ * Once {@link #receive(ISSDPResponseHandler, int)} is used, the responses that no message is waiting for are kept
+ * (up to {@link #RECEIVE_BACKLOG} responses) until they are read by receive.
+ *
+ * @author Sebastien Dionne
+ */
+public class NioUDPSender implements IUDPSender, IDatagramReader, Closeable {
+	private static final Logger logger = Logger.getLogger(NioUDPSender.class.getName());
+
+	private final SelectorLoop loop;
+	private final DatagramChannel channel;
+
+	// messages waiting for a response, oldest first
+	private final Queue<ResponseWindow> responseWindowQueue = new ConcurrentLinkedQueue<ResponseWindow>();
+
+	private volatile boolean multipleResponses = false;
+
+	/**
+	 * Maximum number of responses kept for {@link #receive(ISSDPResponseHandler, int)}
+	 */
+	public static final int RECEIVE_BACKLOG = 64;
+
+	// responses waiting to be read by receive
+	private final BlockingQueue<ReceivedResponse> receiveQueue = new ArrayBlockingQueue<ReceivedResponse>(RECEIVE_BACKLOG);
+	private volatile boolean receiving = false;
+
+	/**
+	 * Response kept for receive
+	 */
+	private static class ReceivedResponse {
+		final String remoteAddr;
+		final int remotePort;
+		final String message;
+
+		ReceivedResponse(String remoteAddr, int remotePort, String message) {
+			this.remoteAddr = remoteAddr;
+			this.remotePort = remotePort;
+			this.message = message;
+		}
+	}
+
+	/**
+	 * Message sent that waits for a response
+	 */
+	private static class ResponseWindow {
+		final ISSDPResponseHandler callbackHandler;
+		final long deadline;
+		final boolean multipleResponses;
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicInteger responseCount = new AtomicInteger();
+
+		ResponseWindow(ISSDPResponseHandler callbackHandler, long deadline, boolean multipleResponses) {
+			this.callbackHandler = callbackHandler;
+			this.deadline = deadline;
+			this.multipleResponses = multipleResponses;
+		}
+	}
+
+	/**
+	 * Constructor.  Uses a ephemeral port.
+	 * @param loop loop that will read the responses
+	 * @throws IOException
+	 */
+	public NioUDPSender(SelectorLoop loop) throws IOException {
+		this(loop, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param loop loop that will read the responses
+	 * @param port local port
+	 * @throws IOException
+	 */
+	public NioUDPSender(SelectorLoop loop, int port) throws IOException {
+		this(loop, new InetSocketAddress(port));
+	}
+
+	private NioUDPSender(SelectorLoop loop, SocketAddress bindAddress) throws IOException {
+		this.loop = loop;
+		this.channel = NioHelper.openChannel(bindAddress);
+
+		loop.register(channel, this);
+	}
+
+	/**
+	 * Returns the channel used by this sender
+	 * @return DatagramChannel
+	 */
+	public DatagramChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int sendMessage(String msg, SocketAddress address, ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
+
+		ResponseWindow window = new ResponseWindow(callbackHandler, System.currentTimeMillis() + ttl*1000L, multipleResponses); // convert to seconds
+		responseWindowQueue.add(window);
+
+		try {
+			channel.send(ByteBuffer.wrap(msg.getBytes(SSDPMessageEncoder.US_ASCII)), address);
+
+			if(!loop.inLoop()){
+				window.latch.await(ttl, TimeUnit.SECONDS);
+			}
+		} finally {
+			if(!loop.inLoop()){
+				responseWindowQueue.remove(window);
+			}
+		}
+
+		return window.responseCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int sendMessage(String msg, InetAddress address, int port, ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
+		return sendMessage(msg, new InetSocketAddress(address, port), callbackHandler, ttl);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Called by the loop thread.  The response is given to the oldest message waiting for a response.
+	 */
+	@Override
+	public void read(SocketAddress source, ByteBuffer data) throws Exception {
+
+		ResponseWindow window = null;
+
+		long now = System.currentTimeMillis();
+		for (Iterator<ResponseWindow> it = responseWindowQueue.iterator(); it.hasNext();) {
+			ResponseWindow item = it.next();
+
+			if(item.deadline>=now){
+				if(!item.multipleResponses){
+					it.remove();
+				}
+				window = item;
+				break;
+			}
+
+			it.remove();
+		}
+
+		if(window==null){
+			if(!receiving || !receiveQueue.offer(new ReceivedResponse(NioHelper.getHostAddress(source), NioHelper.getPort(source), NioHelper.decode(data)))){
+				logger.finest("response received without pending message from " + source);
+			}
+			return;
+		}
+
+		window.responseCount.incrementAndGet();
+
+		try {
+			String packetData = NioHelper.decode(data);
+
+			logger.finest("discover response : \n" + packetData);
+
+			if(window.callbackHandler!=null){
+				window.callbackHandler.handle(NioHelper.getHostAddress(source), NioHelper.getPort(source), packetData);
+			}
+		} finally {
+			if(!window.multipleResponses){
+				window.latch.countDown();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMessage(String msg, SocketAddress address) throws Exception {
+		channel.send(ByteBuffer.wrap(msg.getBytes(SSDPMessageEncoder.US_ASCII)), address);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The responses are read by the loop thread and kept until this method is called.  The callback is
+	 * called by the current thread.
+	 */
+	@Override
+	public void receive(ISSDPResponseHandler callbackHandler, int timeout) throws Exception {
+		receiving = true;
+
+		ReceivedResponse response = receiveQueue.poll(timeout, TimeUnit.MILLISECONDS);
+
+		if(response==null){
+			throw new SocketTimeoutException("Receive timed out");
+		}
+
+		if(callbackHandler!=null){
+			callbackHandler.handle(response.remoteAddr, response.remotePort, response.message);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The responses are handled as soon as they are read.
+	 */
+	@Override
+	public void readComplete() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isMultipleResponses() {
+		return multipleResponses;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setMultipleResponses(boolean multipleResponses) {
+		this.multipleResponses = multipleResponses;
+	}
+
+	/**
+	 * Unregisters the channel from the loop and closes it.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		loop.unregister(channel);
+		channel.close();
+	}
+
+}
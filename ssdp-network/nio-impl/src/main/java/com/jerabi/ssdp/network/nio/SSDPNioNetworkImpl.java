@@ -0,0 +1,208 @@
+package com.jerabi.ssdp.network.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.jerabi.ssdp.handler.ISSDPResponseHandler;
+import com.jerabi.ssdp.message.helper.SSDPMessageEncoder;
+import com.jerabi.ssdp.network.IMulticastListener;
+import com.jerabi.ssdp.network.ISSDPNetwork;
+import com.jerabi.ssdp.network.ISSDPRawNetwork;
+import com.jerabi.ssdp.network.IUDPSender;
+
+/**
+ * {@link ISSDPNetwork} implementation based on {@link DatagramChannel} and a {@link java.nio.channels.Selector}.
+ *
+ * All the multicast listeners, the UDP senders and the responses of the multicast messages created by this
+ * instance share the same {@link SelectorLoop} thread, no matter how many NetworkInterfaces are used.
+ *
+ * The multicast messages are sent by the calling thread with one channel per NetworkInterface that is kept open.
+ *
+ * To use this implementation, see {@link com.jerabi.ssdp.network.SSDPNetworkFactory#NIO_IMPL}.
+ *
+ * @author Sebastien Dionne
+ */
+public class SSDPNioNetworkImpl implements ISSDPRawNetwork {
+
+	private static final Logger logger = Logger.getLogger(SSDPNioNetworkImpl.class.getName());
+
+	private final SelectorLoop loop = new SelectorLoop();
+
+	// channels used to send multicast messages. The key null is the default interface
+	private final Map<NetworkInterface, DatagramChannel> sendChannelMap = new HashMap<NetworkInterface, DatagramChannel>();
+
+	// used when a response is expected for a multicast message
+	private NioUDPSender responseSender = null;
+
+	/**
+	 * Returns the loop shared by all the channels of this instance
+	 * @return SelectorLoop
+	 */
+	public SelectorLoop getSelectorLoop() {
+		return loop;
+	}
+
+	/**
+	 * Returns the channel used to send multicast messages on a NetworkInterface.  The channel
+	 * is created on the first call.
+	 *
+	 * @param ni NetworkInterface, or null for the default interface
+	 * @return DatagramChannel in blocking mode
+	 * @throws IOException
+	 */
+	protected DatagramChannel getSendChannel(NetworkInterface ni) throws IOException {
+		synchronized (sendChannelMap) {
+			DatagramChannel channel = sendChannelMap.get(ni);
+
+			if(channel==null || !channel.isOpen()){
+				channel = NioHelper.openChannel(null);
+				if(ni!=null){
+					channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, ni);
+				}
+				sendChannelMap.put(ni, channel);
+			}
+
+			return channel;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Closes the channels used to send multicast messages and the channel that receives their responses.
+	 */
+	@Override
+	public void close() throws Exception {
+		synchronized (sendChannelMap) {
+			for (DatagramChannel channel : sendChannelMap.values()) {
+				channel.close();
+			}
+			sendChannelMap.clear();
+		}
+
+		synchronized (this) {
+			if(responseSender!=null){
+				responseSender.close();
+				responseSender = null;
+			}
+		}
+	}
+
+	private synchronized NioUDPSender getResponseSender() throws IOException {
+		if(responseSender==null){
+			responseSender = new NioUDPSender(loop);
+		}
+		return responseSender;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(String message, SocketAddress address) throws Exception {
+		sendMulticastMessage(message, address, (NetworkInterface) null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(String message, SocketAddress address, NetworkInterface ni) throws Exception {
+		logger.info("sending message \n" + message);
+
+		getSendChannel(ni).send(ByteBuffer.wrap(message.getBytes(SSDPMessageEncoder.US_ASCII)), address);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(byte[] data, SocketAddress address) throws Exception {
+		sendMulticastMessage(data, address, (NetworkInterface) null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(byte[] data, SocketAddress address, NetworkInterface ni) throws Exception {
+		logger.info("sending " + data.length + " bytes");
+
+		getSendChannel(ni).send(ByteBuffer.wrap(data), address);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendMulticastMessage(String message, InetAddress address, int port) throws Exception {
+		sendMulticastMessage(message, new InetSocketAddress(address, port));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The response is read by the loop thread.
+	 */
+	@Override
+	public void sendMulticastMessage(String message, SocketAddress address, ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
+		getResponseSender().sendMessage(message, address, callbackHandler, ttl);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The response is read by the loop thread.
+	 */
+	@Override
+	public void sendMulticastMessage(String message, InetAddress address, int port, ISSDPResponseHandler callbackHandler, int ttl) throws Exception {
+		sendMulticastMessage(message, new InetSocketAddress(address, port), callbackHandler, ttl);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IUDPSender createUDPSender() throws Exception {
+		return new NioUDPSender(loop);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IUDPSender createUDPSender(int port) throws Exception {
+		return new NioUDPSender(loop, port);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IMulticastListener createMulticastListener(int port, ISSDPResponseHandler callbackHandler) throws Exception {
+		return new NioMulticastListener(loop, port, callbackHandler);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IMulticastListener createMulticastListener(SocketAddress bindAddress, ISSDPResponseHandler callbackHandler) throws Exception {
+		return new NioMulticastListener(loop, bindAddress, callbackHandler);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IMulticastListener createMulticastListener(SocketAddress bindAddress, ISSDPResponseHandler callbackHandler, NetworkInterface ni) throws Exception {
+		return new NioMulticastListener(loop, bindAddress, callbackHandler, ni);
+	}
+
+}
@@ -0,0 +1,349 @@
+package com.jerabi.ssdp.network.nio;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Event loop that multiplexes all the {@link DatagramChannel} of a {@link SSDPNioNetworkImpl} on a single thread.
+ *
+ * The channels are registered with a {@link IDatagramReader}.  When a channel is readable, the loop reads the
+ * datagrams queued in the kernel and passes them to the reader, up to {@link #MAX_READS_PER_SELECT} for each channel :
+ * the datagrams left are read after the others channels, so a channel flooded can't starve them.  The readers are always called by the loop thread, so they
+ * don't need to be thread safe between themselves.
+ *
+ * The registrations are queued and done by the loop thread, so {@link #register(DatagramChannel, IDatagramReader)}
+ * and {@link #unregister(DatagramChannel)} can be called from any thread.
+ *
+ * The loop thread is a daemon thread started on the first registration.  After {@link #stop()}, the loop is restarted
+ * on the next registration or task with a new selector, and the channels still registered are registered again on it.
+ * Each start creates a new generation of the loop : a thread that is still stopping only closes its own selector and
+ * drops its own tasks.
+ *
+ * @author Sebastien Dionne
+ */
+public class SelectorLoop {
+	private static final Logger logger = Logger.getLogger(SelectorLoop.class.getName());
+
+	/**
+	 * Size of the receive buffer.  Big enough for any UDP datagram that SSDP could send.
+	 */
+	public static final int RECEIVE_BUFFER_SIZE = 8192;
+
+	/**
+	 * Maximum number of datagrams read on a channel before the others channels are read
+	 */
+	public static final int MAX_READS_PER_SELECT = 64;
+
+	// current generation, null when the loop is stopped
+	private volatile Generation generation = null;
+
+	// channels registered and not unregistered, registered again on the selector of each generation
+	private final Map<DatagramChannel, IDatagramReader> channelMap = new ConcurrentHashMap<DatagramChannel, IDatagramReader>();
+	private final AtomicInteger channelVersion = new AtomicInteger();
+
+	// set for the loop threads of this SelectorLoop
+	private final ThreadLocal<Boolean> loopThread = new ThreadLocal<Boolean>();
+
+	// only used by the loop thread, a thread still stopping may share it with the new one
+	private final ThreadLocal<ByteBuffer> receiveBuffer = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+		}
+	};
+
+	/**
+	 * Callback for the datagrams received on a registered channel.
+	 */
+	public interface IDatagramReader {
+
+		/**
+		 * Called by the loop thread for each datagram received
+		 *
+		 * @param source sender address
+		 * @param data datagram, between position and limit.  Only valid during the call.
+		 * @throws Exception
+		 */
+		void read(SocketAddress source, ByteBuffer data) throws Exception;
+
+		/**
+		 * Called by the loop thread when all the datagrams queued on the channel were read
+		 *
+		 * @throws Exception
+		 */
+		void readComplete() throws Exception;
+	}
+
+	/**
+	 * Returns true if the loop thread is running
+	 * @return running
+	 */
+	public boolean isRunning() {
+		Generation current = generation;
+		return current!=null && current.running;
+	}
+
+	/**
+	 * Returns true if the current thread is the loop thread
+	 * @return if called from the loop
+	 */
+	public boolean inLoop() {
+		return loopThread.get()!=null;
+	}
+
+	/**
+	 * Registers a channel for reading.  The channel will be configured in non blocking mode.
+	 *
+	 * @param channel channel to register
+	 * @param reader will receive the datagrams
+	 * @throws IOException
+	 */
+	public void register(DatagramChannel channel, IDatagramReader reader) throws IOException {
+		channel.configureBlocking(false);
+
+		channelMap.put(channel, reader);
+		channelVersion.incrementAndGet();
+
+		wakeup(startGeneration());
+	}
+
+	/**
+	 * Unregisters a channel.  The reader won't be called anymore.
+	 *
+	 * @param channel channel to unregister
+	 */
+	public void unregister(DatagramChannel channel) {
+		if(channelMap.remove(channel)==null){
+			return;
+		}
+		channelVersion.incrementAndGet();
+
+		Generation current = generation;
+		if(current!=null){
+			wakeup(current);
+		}
+	}
+
+	/**
+	 * Queues a task that will be executed by the loop thread and wakes up the selector.
+	 *
+	 * @param task task to execute
+	 * @throws IOException if the selector can't be opened
+	 */
+	public synchronized void execute(Runnable task) throws IOException {
+		Generation current = startGeneration();
+		current.pendingTasks.add(task);
+		wakeup(current);
+	}
+
+	private void wakeup(Generation current) {
+		current.selector.wakeup();
+	}
+
+	/**
+	 * Starts the loop thread if it's not already started
+	 * @throws IOException if the selector can't be opened
+	 */
+	public void start() throws IOException {
+		startGeneration();
+	}
+
+	// returns the current generation, started if needed
+	private synchronized Generation startGeneration() throws IOException {
+		Generation current = generation;
+		if(current!=null && current.running){
+			return current;
+		}
+
+		current = new Generation(Selector.open());
+		generation = current;
+
+		Thread thread = new Thread(current, "SSDP-SelectorLoop");
+		thread.setDaemon(true);
+		current.thread = thread;
+		thread.start();
+
+		return current;
+	}
+
+	/**
+	 * Stops the loop thread and closes the selector.  The registered channels are not closed.
+	 * The loop will be restarted on the next registration.
+	 */
+	public synchronized void stop() {
+		Generation current = generation;
+		if(current==null){
+			return;
+		}
+
+		generation = null;
+		current.running = false;
+		wakeup(current);
+
+		if(!inLoop()){
+			try {
+				current.thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * One run of the loop thread, with its own selector and its own tasks
+	 */
+	private class Generation implements Runnable {
+		final Selector selector;
+		final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+		volatile boolean running = true;
+		Thread thread = null;
+
+		// version of channelMap registered on the selector, only used by the loop thread
+		private int registeredVersion = -1;
+
+		Generation(Selector selector) {
+			this.selector = selector;
+		}
+
+		@Override
+		public void run() {
+			loopThread.set(Boolean.TRUE);
+
+			try {
+				while (running) {
+					if(updateRegistrations()){
+						selector.select();
+					} else {
+						// removes the keys cancelled, the channels are registered again on the next update
+						selector.selectNow();
+					}
+
+					runPendingTasks();
+
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+
+						if(key.isValid() && key.isReadable()){
+							read(key);
+						}
+					}
+				}
+			} catch (IOException e) {
+				logger.log(Level.WARNING, e.getMessage(), e);
+			} finally {
+				// only the state of this generation, a new one may be already started
+				running = false;
+				pendingTasks.clear();
+				try {
+					selector.close();
+				} catch (IOException e) {
+				}
+				loopThread.remove();
+			}
+		}
+
+		/**
+		 * Registers the channels added since the last call and cancels the keys of the channels unregistered
+		 * @return false if a channel must be registered again after the next select
+		 */
+		private boolean updateRegistrations() {
+			int version = channelVersion.get();
+			if(version==registeredVersion){
+				return true;
+			}
+			registeredVersion = version;
+
+			for (SelectionKey key : selector.keys()) {
+				if(key.isValid() && !channelMap.containsKey(key.channel())){
+					key.cancel();
+				}
+			}
+
+			for (Map.Entry<DatagramChannel, IDatagramReader> entry : channelMap.entrySet()) {
+				DatagramChannel channel = entry.getKey();
+				SelectionKey key = channel.keyFor(selector);
+
+				try {
+					if(key==null || !key.isValid()){
+						channel.register(selector, SelectionKey.OP_READ, entry.getValue());
+					} else if(key.attachment()!=entry.getValue()){
+						key.attach(entry.getValue());
+					}
+				} catch (ClosedChannelException e) {
+					logger.log(Level.FINE, "channel closed before registration", e);
+					channelMap.remove(channel);
+				} catch (CancelledKeyException e) {
+					// cancelled since the last select
+					registeredVersion = -1;
+				}
+			}
+
+			return registeredVersion!=-1;
+		}
+
+		private void runPendingTasks() {
+			Runnable task = null;
+			while ((task = pendingTasks.poll()) != null) {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					logger.log(Level.WARNING, e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the datagrams queued on the channel, up to {@link #MAX_READS_PER_SELECT}.  The channel stays
+	 * readable if datagrams are left, they are read on the next select.
+	 * @param key the channel key
+	 */
+	private void read(SelectionKey key) {
+		DatagramChannel channel = (DatagramChannel) key.channel();
+		IDatagramReader reader = (IDatagramReader) key.attachment();
+		ByteBuffer buffer = receiveBuffer.get();
+
+		try {
+			SocketAddress source = null;
+
+			buffer.clear();
+			for (int i = 0; i < MAX_READS_PER_SELECT && (source = channel.receive(buffer)) != null; i++) {
+				buffer.flip();
+
+				try {
+					reader.read(source, buffer);
+				} catch (Exception e) {
+					logger.log(Level.WARNING, e.getMessage(), e);
+				}
+
+				buffer.clear();
+			}
+		} catch (IOException e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+			key.cancel();
+		}
+
+		try {
+			reader.readComplete();
+		} catch (Exception e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,256 @@
+package com.jerabi.ssdp.network.nio;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jerabi.ssdp.handler.SSDPDefaultResponseHandler;
+import com.jerabi.ssdp.network.IMulticastListener;
+import com.jerabi.ssdp.network.ISSDPNetwork;
+import com.jerabi.ssdp.network.IUDPSender;
+import com.jerabi.ssdp.network.SSDPNetworkFactory;
+import com.jerabi.ssdp.util.SSDPContants;
+
+public class SSDPNioNetworkTest {
+
+	private static final int PORT = 5019;
+
+	private SSDPNioNetworkImpl network = null;
+	private InetAddress group = null;
+
+	@Before
+	public void setUp() throws Exception {
+		network = new SSDPNioNetworkImpl();
+		group = InetAddress.getByName(SSDPContants.DEFAULT_IP);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		network.getSelectorLoop().stop();
+	}
+
+	@Test
+	public void testGetInstance() throws Exception {
+		SSDPNetworkFactory.setImplementation(SSDPNetworkFactory.NIO_IMPL);
+		try {
+			ISSDPNetwork instance = SSDPNetworkFactory.getInstance();
+			assertTrue(instance instanceof SSDPNioNetworkImpl);
+		} finally {
+			SSDPNetworkFactory.setImplementation(null);
+		}
+	}
+
+	@Test
+	public void testMulticastListener() throws Exception {
+		final String msg = "testNioMulticastListener";
+		final CountDownLatch latch1 = new CountDownLatch(1);
+		final CountDownLatch latch2 = new CountDownLatch(1);
+
+		IMulticastListener listener1 = network.createMulticastListener(PORT, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				if(msg.equals(message)){
+					latch1.countDown();
+				}
+			}
+		});
+		IMulticastListener listener2 = network.createMulticastListener(new InetSocketAddress(PORT), new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				if(msg.equals(message)){
+					latch2.countDown();
+				}
+			}
+		});
+
+		listener1.joinGroup(group);
+		listener2.joinGroup(group);
+
+		network.sendMulticastMessage(msg, group, PORT);
+
+		assertTrue(latch1.await(4, TimeUnit.SECONDS));
+		assertTrue(latch2.await(4, TimeUnit.SECONDS));
+
+		// only one thread for all the channels
+		int count = 0;
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if(t.getName().equals("SSDP-SelectorLoop") && t.isAlive()){
+				count++;
+			}
+		}
+		assertEquals(1, count);
+
+		listener1.leaveGroup(group);
+		listener2.leaveGroup(group);
+		((NioMulticastListener)listener1).close();
+		((NioMulticastListener)listener2).close();
+	}
+
+	@Test
+	public void testRestartSelectorLoop() throws Exception {
+		final String msg = "testRestartSelectorLoop";
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		IMulticastListener listener = network.createMulticastListener(PORT+2, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				if(msg.equals(message)){
+					latch.countDown();
+				}
+			}
+		});
+		listener.joinGroup(group);
+
+		SelectorLoop loop = network.getSelectorLoop();
+		assertTrue(loop.isRunning());
+
+		loop.stop();
+		assertFalse(loop.isRunning());
+
+		// the channel registered before the stop is registered on the new selector
+		loop.start();
+		assertTrue(loop.isRunning());
+
+		network.sendMulticastMessage(msg, group, PORT+2);
+		assertTrue(latch.await(4, TimeUnit.SECONDS));
+
+		listener.leaveGroup(group);
+		((NioMulticastListener)listener).close();
+	}
+
+	@Test
+	public void testReadsPerSelect() throws Exception {
+		final int flood = 100;
+		final AtomicInteger floodCount = new AtomicInteger();
+		final AtomicInteger floodCountAtOther = new AtomicInteger(-1);
+		final CountDownLatch otherLatch = new CountDownLatch(1);
+
+		DatagramChannel floodChannel = NioHelper.openChannel(new InetSocketAddress("127.0.0.1", 0));
+		DatagramChannel otherChannel = NioHelper.openChannel(new InetSocketAddress("127.0.0.1", 0));
+		DatagramChannel senderChannel = NioHelper.openChannel(null);
+
+		// queued in the kernel before the channels are registered
+		for (int i = 0; i < flood; i++) {
+			senderChannel.send(ByteBuffer.wrap(("flood" + i).getBytes()), floodChannel.getLocalAddress());
+		}
+		senderChannel.send(ByteBuffer.wrap("other".getBytes()), otherChannel.getLocalAddress());
+
+		// the loop thread waits until both channels are registered
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch registered = new CountDownLatch(1);
+		SelectorLoop loop = network.getSelectorLoop();
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				blocked.countDown();
+				try {
+					registered.await(4, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		assertTrue(blocked.await(4, TimeUnit.SECONDS));
+
+		loop.register(floodChannel, new SelectorLoop.IDatagramReader() {
+			@Override
+			public void read(SocketAddress source, ByteBuffer data) throws Exception {
+				floodCount.incrementAndGet();
+			}
+			@Override
+			public void readComplete() throws Exception {
+			}
+		});
+		loop.register(otherChannel, new SelectorLoop.IDatagramReader() {
+			@Override
+			public void read(SocketAddress source, ByteBuffer data) throws Exception {
+				floodCountAtOther.set(floodCount.get());
+				otherLatch.countDown();
+			}
+			@Override
+			public void readComplete() throws Exception {
+			}
+		});
+
+		registered.countDown();
+
+		assertTrue(otherLatch.await(4, TimeUnit.SECONDS));
+
+		// the flooded channel doesn't delay the other one for more than one round
+		assertTrue(floodCountAtOther.get() <= SelectorLoop.MAX_READS_PER_SELECT);
+
+		loop.unregister(floodChannel);
+		loop.unregister(otherChannel);
+		floodChannel.close();
+		otherChannel.close();
+		senderChannel.close();
+	}
+
+	@Test
+	public void testDecode() {
+		ByteBuffer data = ByteBuffer.wrap(new byte[] {'O', 'K', (byte) 0xE9});
+
+		assertEquals("OK\uFFFD", NioHelper.decode(data));
+		assertEquals(0, data.position());
+	}
+
+	@Test
+	public void testReceiveTimeout() throws Exception {
+		IMulticastListener listener = network.createMulticastListener(PORT+1, null);
+		listener.setTimeout(200);
+
+		long start = System.currentTimeMillis();
+		try {
+			listener.receive(false);
+			fail("Should had thrown SocketTimeoutException");
+		} catch (java.net.SocketTimeoutException e) {
+		}
+		assertTrue(System.currentTimeMillis() - start >= 200);
+
+		((NioMulticastListener)listener).close();
+	}
+
+	@Test
+	public void testUDPSenderResponse() throws Exception {
+		final String msg = "testNioUDPSender";
+		final CountDownLatch responseLatch = new CountDownLatch(1);
+
+		final IUDPSender responder = network.createUDPSender();
+
+		IMulticastListener listener = network.createMulticastListener(PORT+2, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				// called by the loop thread, must not block
+				responder.sendMessage("response", InetAddress.getByName(remoteAddr), remotePort, null, 1);
+			}
+		});
+		listener.joinGroup(group);
+
+		IUDPSender sender = network.createUDPSender();
+		sender.sendMessage(msg, group, PORT+2, new SSDPDefaultResponseHandler(null) {
+			@Override
+			public void handle(String remoteAddr, int remotePort, String message) throws Exception {
+				if("response".equals(message)){
+					responseLatch.countDown();
+				}
+			}
+		}, 3);
+
+		assertEquals(0, responseLatch.getCount());
+
+		((NioMulticastListener)listener).close();
+		((NioUDPSender)sender).close();
+		((NioUDPSender)responder).close();
+	}
+
+}